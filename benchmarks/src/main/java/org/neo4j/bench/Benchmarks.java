@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, accepting the usual JMH command line options. Unless
+ * told otherwise with <code>-rf</code>/<code>-rff</code> the results are
+ * written as JSON to <code>benchmarks-&lt;version&gt;.json</code>, so that runs
+ * against different releases can be compared.
+ * <p>
+ * <code>java -jar benchmarks.jar [regexp of benchmarks to run] [JMH options]</code>
+ */
+public class Benchmarks
+{
+    public static void main( String[] args ) throws Exception
+    {
+        CommandLineOptions commandLine = new CommandLineOptions( args );
+        ChainedOptionsBuilder options = new OptionsBuilder().parent( commandLine );
+        if ( !commandLine.getResultFormat().hasValue() )
+        {
+            options.resultFormat( ResultFormatType.JSON );
+        }
+        if ( !commandLine.getResult().hasValue() )
+        {
+            String format = commandLine.getResultFormat().orElse( ResultFormatType.JSON ).name().toLowerCase();
+            options.result( "benchmarks-" + version() + "." + format );
+        }
+        new Runner( options.build() ).run();
+    }
+
+    private static String version()
+    {
+        String version = Benchmarks.class.getPackage().getImplementationVersion();
+        return version != null ? version : "unknown";
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bench;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.cypher.javacompat.ExecutionEngine;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.helpers.collection.MapUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Executes Cypher queries over a small social graph, where every person
+ * knows ten others, and consumes the whole result.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+public class CypherExecution extends GraphDatabaseBenchmark
+{
+    private static final int PEOPLE = 10000;
+    private static final int FRIENDS = 10;
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+
+    private ExecutionEngine engine;
+    private long[] ids;
+    private final Random random = new Random( 42 );
+
+    @Override
+    protected void populate()
+    {
+        engine = new ExecutionEngine( db );
+        Random random = new Random( 42 );
+        Index<Node> people = db.index().forNodes( "people" );
+        Node[] nodes = new Node[PEOPLE];
+        ids = new long[PEOPLE];
+        for ( int i = 0; i < nodes.length; i++ )
+        {
+            nodes[i] = db.createNode();
+            nodes[i].setProperty( "name", "person" + i );
+            nodes[i].setProperty( "age", i % 100 );
+            people.add( nodes[i], "name", "person" + i );
+            ids[i] = nodes[i].getId();
+        }
+        for ( Node node : nodes )
+        {
+            for ( int i = 0; i < FRIENDS; i++ )
+            {
+                node.createRelationshipTo( nodes[random.nextInt( nodes.length )], KNOWS );
+            }
+        }
+    }
+
+    private void consume( String query, Map<String, Object> params, Blackhole bh )
+    {
+        for ( Map<String, Object> row : engine.execute( query, params ) )
+        {
+            bh.consume( row );
+        }
+    }
+
+    @Benchmark
+    public void indexLookup( Blackhole bh )
+    {
+        consume( "start n=node:people(name={name}) return n.age",
+                MapUtil.map( "name", "person" + random.nextInt( PEOPLE ) ), bh );
+    }
+
+    @Benchmark
+    public void friendsOfFriends( Blackhole bh )
+    {
+        consume( "start n=node({id}) match n-[:KNOWS]->friend-[:KNOWS]->fof return distinct fof.name",
+                MapUtil.map( "id", ids[random.nextInt( PEOPLE )] ), bh );
+    }
+
+    @Benchmark
+    public void filterAndAggregate( Blackhole bh )
+    {
+        consume( "start n=node({id}) match n-[:KNOWS*1..2]->other where other.age > {age} "
+                 + "return other.age, count(*) order by other.age",
+                MapUtil.map( "id", ids[random.nextInt( PEOPLE )], "age", 50 ), bh );
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.util.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Base class for benchmarks that need a database. Each trial gets a fresh
+ * database in a temporary directory, populated by {@link #populate()} before
+ * measuring starts and deleted again when the trial is done.
+ */
+@State( Scope.Benchmark )
+public abstract class GraphDatabaseBenchmark
+{
+    protected GraphDatabaseService db;
+    private File storeDir;
+
+    @Setup( Level.Trial )
+    public void startDatabase() throws IOException
+    {
+        storeDir = File.createTempFile( getClass().getSimpleName(), "db" );
+        storeDir.delete();
+        db = new EmbeddedGraphDatabase( storeDir.getAbsolutePath() );
+        Transaction tx = db.beginTx();
+        try
+        {
+            populate();
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    /**
+     * Creates the data the benchmark works on, called within a transaction.
+     */
+    protected void populate()
+    {
+    }
+
+    @TearDown( Level.Trial )
+    public void stopDatabase() throws IOException
+    {
+        db.shutdown();
+        FileUtils.deleteRecursively( storeDir );
+    }
+}
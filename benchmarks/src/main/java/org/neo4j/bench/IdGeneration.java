@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.kernel.DefaultFileSystemAbstraction;
+import org.neo4j.kernel.IdType;
+import org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Allocates ids from an {@link IdGeneratorImpl}, either only new high ids or
+ * reusing an id freed just before, which goes through the free id list.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+public class IdGeneration
+{
+    @Param( { "false", "true" } )
+    public boolean aggressiveReuse;
+
+    private File file;
+    private IdGeneratorImpl idGenerator;
+
+    @Setup( Level.Trial )
+    public void createIdGenerator() throws IOException
+    {
+        file = File.createTempFile( "benchmark", ".id" );
+        file.delete();
+        DefaultFileSystemAbstraction fs = new DefaultFileSystemAbstraction();
+        IdGeneratorImpl.createGenerator( fs, file.getAbsolutePath() );
+        idGenerator = new IdGeneratorImpl( fs, file.getAbsolutePath(), IdType.NODE.getGrabSize(),
+                IdType.NODE.getMaxValue(), aggressiveReuse );
+    }
+
+    @TearDown( Level.Trial )
+    public void deleteIdGenerator()
+    {
+        idGenerator.close( true );
+        file.delete();
+    }
+
+    @Benchmark
+    public long nextId()
+    {
+        return idGenerator.nextId();
+    }
+
+    @Benchmark
+    public long freeAndReuseId()
+    {
+        idGenerator.freeId( idGenerator.nextId() );
+        return idGenerator.nextId();
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.Status;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+
+import org.neo4j.kernel.impl.transaction.LockManager;
+import org.neo4j.kernel.impl.transaction.RagManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Many threads locking and releasing random resources in a shared
+ * {@link LockManager}, one in ten of them for writing. Compares a single
+ * stripe, which is how the lock manager used to synchronize all lock
+ * requests on one monitor, against the default number of stripes.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Threads( Threads.MAX )
+public class LockManagerContention
+{
+    private static final int RESOURCES = 100000;
+
+    private LockManager singleStripe;
+    private LockManager striped;
+    private Object[] resources;
+
+    @State( Scope.Thread )
+    public static class Picks
+    {
+        private Random random;
+
+        @Setup
+        public void createRandom()
+        {
+            random = new Random( Thread.currentThread().getId() );
+        }
+    }
+
+    @Setup
+    public void createLockManagers()
+    {
+        singleStripe = new LockManager( new RagManager( new NoTransactions() ), 1 );
+        striped = new LockManager( new RagManager( new NoTransactions() ) );
+        resources = new Object[RESOURCES];
+        for ( int i = 0; i < resources.length; i++ )
+        {
+            resources[i] = "R" + i;
+        }
+    }
+
+    @Benchmark
+    public void singleStripe( Picks picks )
+    {
+        lockAndRelease( singleStripe, picks.random );
+    }
+
+    @Benchmark
+    public void defaultStripes( Picks picks )
+    {
+        lockAndRelease( striped, picks.random );
+    }
+
+    private void lockAndRelease( LockManager lockManager, Random random )
+    {
+        Object resource = resources[random.nextInt( resources.length )];
+        if ( random.nextInt( 10 ) == 0 )
+        {
+            lockManager.getWriteLock( resource );
+            lockManager.releaseWriteLock( resource, null );
+        }
+        else
+        {
+            lockManager.getReadLock( resource );
+            lockManager.releaseReadLock( resource, null );
+        }
+    }
+
+    /**
+     * Has no transactions, so each thread gets locks of its own, like
+     * threads locking outside of transactions do.
+     */
+    private static class NoTransactions implements TransactionManager
+    {
+        public void begin()
+        {
+        }
+
+        public void commit()
+        {
+        }
+
+        public int getStatus()
+        {
+            return Status.STATUS_NO_TRANSACTION;
+        }
+
+        public Transaction getTransaction()
+        {
+            return null;
+        }
+
+        public void resume( Transaction tx )
+        {
+        }
+
+        public void rollback()
+        {
+        }
+
+        public void setRollbackOnly()
+        {
+        }
+
+        public void setTransactionTimeout( int seconds )
+        {
+        }
+
+        public Transaction suspend()
+        {
+            return null;
+        }
+    }
+}
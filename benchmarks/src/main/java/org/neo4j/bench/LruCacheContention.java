@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.kernel.impl.cache.ConcurrentLruCache;
+import org.neo4j.kernel.impl.cache.LruCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Many threads looking up random keys in a shared {@link LruCache} or
+ * {@link ConcurrentLruCache}, putting the missing ones, the way the lucene
+ * index caches searchers and query results. Half of the keys fit in the
+ * cache.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Threads( Threads.MAX )
+public class LruCacheContention
+{
+    private static final int CACHE_SIZE = 10000;
+    private static final int KEYS = 2 * CACHE_SIZE;
+
+    private LruCache<Integer,Integer> lru;
+    private ConcurrentLruCache<Integer,Integer> concurrent;
+
+    @State( Scope.Thread )
+    public static class Keys
+    {
+        private Random random;
+
+        @Setup
+        public void createRandom()
+        {
+            random = new Random( Thread.currentThread().getId() );
+        }
+
+        Integer next()
+        {
+            return random.nextInt( KEYS );
+        }
+    }
+
+    @Setup
+    public void createCaches()
+    {
+        lru = new LruCache<Integer,Integer>( "lru", CACHE_SIZE );
+        concurrent = new ConcurrentLruCache<Integer,Integer>( "concurrent", CACHE_SIZE );
+    }
+
+    @Benchmark
+    public Integer lruCache( Keys keys )
+    {
+        Integer key = keys.next();
+        Integer value = lru.get( key );
+        if ( value == null )
+        {
+            lru.put( key, key );
+        }
+        return value;
+    }
+
+    @Benchmark
+    public Integer concurrentLruCache( Keys keys )
+    {
+        Integer key = keys.next();
+        Integer value = concurrent.get( key );
+        if ( value == null )
+        {
+            concurrent.put( key, key );
+        }
+        return value;
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Looks up nodes in a lucene index, by exact key/value and by a prefix query
+ * that matches around a hundred nodes.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+public class LuceneIndexAccess extends GraphDatabaseBenchmark
+{
+    @Param( { "10000", "100000" } )
+    public int nodes;
+
+    private Index<Node> index;
+    private final Random random = new Random( 42 );
+
+    @Override
+    protected void populate()
+    {
+        index = db.index().forNodes( "benchmark" );
+        for ( int i = 0; i < nodes; i++ )
+        {
+            Node node = db.createNode();
+            index.add( node, "id", String.valueOf( i ) );
+            index.add( node, "name", "name" + (i % (nodes / 100)) + "-" + i );
+        }
+    }
+
+    @Benchmark
+    public Node get()
+    {
+        return index.get( "id", String.valueOf( random.nextInt( nodes ) ) ).getSingle();
+    }
+
+    @Benchmark
+    public void query( Blackhole bh )
+    {
+        IndexHits<Node> hits = index.query( "name", "name" + random.nextInt( nodes / 100 ) + "-*" );
+        try
+        {
+            for ( Node node : hits )
+            {
+                bh.consume( node );
+            }
+        }
+        finally
+        {
+            hits.close();
+        }
+    }
+}
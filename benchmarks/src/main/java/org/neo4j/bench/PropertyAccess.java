@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.impl.nioneo.store.PropertyType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads and writes node properties with values chosen to be stored as each
+ * of the {@link PropertyType}s. Writes update {@value #NODES_PER_TX} nodes per
+ * transaction, scores are per property.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+public class PropertyAccess extends GraphDatabaseBenchmark
+{
+    private static final int NODES = 10000;
+    private static final int NODES_PER_TX = 100;
+    private static final String KEY = "key";
+
+    @Param( { "BOOL", "BYTE", "SHORT", "CHAR", "INT", "LONG", "FLOAT", "DOUBLE",
+            "STRING", "ARRAY", "SHORT_STRING", "SHORT_ARRAY" } )
+    public String type;
+
+    private Object value;
+    private Node[] nodes;
+    private int next;
+
+    @Override
+    protected void populate()
+    {
+        value = valueStoredAs( PropertyType.valueOf( type ) );
+        nodes = new Node[NODES];
+        for ( int i = 0; i < nodes.length; i++ )
+        {
+            nodes[i] = db.createNode();
+            nodes[i].setProperty( KEY, value );
+        }
+    }
+
+    static Object valueStoredAs( PropertyType type )
+    {
+        Random random = new Random( 42 );
+        switch ( type )
+        {
+        case BOOL:
+            return Boolean.TRUE;
+        case BYTE:
+            return Byte.valueOf( (byte) 42 );
+        case SHORT:
+            return Short.valueOf( (short) 4242 );
+        case CHAR:
+            return Character.valueOf( 'n' );
+        case INT:
+            return Integer.valueOf( 424242 );
+        case LONG:
+            return Long.valueOf( 4242424242424242L );
+        case FLOAT:
+            return Float.valueOf( 4.2f );
+        case DOUBLE:
+            return Double.valueOf( Math.PI );
+        case SHORT_STRING:
+            return "neo4j";
+        case STRING:
+            StringBuilder string = new StringBuilder();
+            for ( int i = 0; i < 200; i++ )
+            {
+                string.append( (char) (0x4E00 + random.nextInt( 1000 )) );
+            }
+            return string.toString();
+        case SHORT_ARRAY:
+            return new int[] { 1, 2, 3, 4 };
+        case ARRAY:
+            long[] array = new long[100];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = random.nextLong();
+            }
+            return array;
+        default:
+            throw new IllegalArgumentException( type.name() );
+        }
+    }
+
+    private Node nextNode()
+    {
+        Node node = nodes[next];
+        next = (next + 1) % nodes.length;
+        return node;
+    }
+
+    @Benchmark
+    public Object read()
+    {
+        return nextNode().getProperty( KEY );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( NODES_PER_TX )
+    public void write()
+    {
+        Transaction tx = db.beginTx();
+        try
+        {
+            for ( int i = 0; i < NODES_PER_TX; i++ )
+            {
+                nextNode().setProperty( KEY, value );
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+}
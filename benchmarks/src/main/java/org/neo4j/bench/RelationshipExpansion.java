@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Expands all, and only one type of, relationships of a node with a varying
+ * degree. One in ten relationships is of the type expanded by
+ * {@link #expandType(Blackhole)}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+public class RelationshipExpansion extends GraphDatabaseBenchmark
+{
+    private static final RelationshipType COMMON = DynamicRelationshipType.withName( "COMMON" );
+    private static final RelationshipType RARE = DynamicRelationshipType.withName( "RARE" );
+
+    @Param( { "10", "100", "1000", "10000" } )
+    public int degree;
+
+    private Node node;
+
+    @Override
+    protected void populate()
+    {
+        node = db.createNode();
+        for ( int i = 0; i < degree; i++ )
+        {
+            Node other = db.createNode();
+            if ( i % 2 == 0 )
+            {
+                node.createRelationshipTo( other, i % 10 == 0 ? RARE : COMMON );
+            }
+            else
+            {
+                other.createRelationshipTo( node, COMMON );
+            }
+        }
+    }
+
+    @Benchmark
+    public void expandAll( Blackhole bh )
+    {
+        for ( Relationship relationship : node.getRelationships() )
+        {
+            bh.consume( relationship.getOtherNode( node ) );
+        }
+    }
+
+    @Benchmark
+    public void expandOutgoing( Blackhole bh )
+    {
+        for ( Relationship relationship : node.getRelationships( Direction.OUTGOING ) )
+        {
+            bh.consume( relationship.getEndNode() );
+        }
+    }
+
+    @Benchmark
+    public void expandType( Blackhole bh )
+    {
+        for ( Relationship relationship : node.getRelationships( RARE ) )
+        {
+            bh.consume( relationship.getOtherNode( node ) );
+        }
+    }
+}
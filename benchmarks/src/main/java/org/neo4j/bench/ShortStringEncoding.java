@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.kernel.impl.nioneo.store.LongerShortString;
+import org.neo4j.kernel.impl.nioneo.store.PropertyBlock;
+import org.neo4j.kernel.impl.nioneo.store.PropertyRecord;
+import org.neo4j.kernel.impl.nioneo.store.PropertyType;
+import org.neo4j.kernel.impl.nioneo.store.ShortString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encodes strings that fit the different {@link ShortString} and
+ * {@link LongerShortString} encodings, and decodes the result again.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+public class ShortStringEncoding
+{
+    @Param( { "1234567890", "HELLO_WORLD", "hello world", "Neo4j 1.7", "2012-03-14",
+            "someone@neo4j.org", "http://neo4j.org/", "Grüße aus Malmö" } )
+    public String string;
+
+    private PropertyBlock encoded;
+
+    @Setup
+    public void encode()
+    {
+        encoded = new PropertyBlock();
+        if ( !LongerShortString.encode( 0, string, encoded, PropertyType.getPayloadSize() ) )
+        {
+            throw new IllegalArgumentException( string + " doesn't fit a short string" );
+        }
+    }
+
+    @Benchmark
+    public boolean encodeShortString()
+    {
+        return ShortString.encode( 0, string, new PropertyRecord( 0 ) );
+    }
+
+    @Benchmark
+    public PropertyBlock encodeLongerShortString()
+    {
+        PropertyBlock block = new PropertyBlock();
+        LongerShortString.encode( 0, string, block, PropertyType.getPayloadSize() );
+        return block;
+    }
+
+    @Benchmark
+    public String decodeLongerShortString()
+    {
+        return LongerShortString.decode( encoded );
+    }
+}
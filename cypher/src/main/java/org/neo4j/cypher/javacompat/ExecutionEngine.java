@@ -85,4 +85,40 @@ public class ExecutionEngine
     {
         return new ExecutionResult(inner.execute(query, params));
     }
+
+    /**
+     * Executes a query while recording what each step of the execution plan does
+     * @param query The query to execute
+     * @return A ExecutionResult that contains the result set, and can describe the execution plan
+     * @throws org.neo4j.cypher.SyntaxException If the Query contains errors,
+     * a SyntaxException exception might be thrown
+     * @see ExecutionResult#executionPlanDescription()
+     */
+    public ExecutionResult profile( String query ) throws SyntaxException
+    {
+        return new ExecutionResult(inner.profile( query ));
+    }
+
+    /**
+     * Executes a query while recording what each step of the execution plan does
+     * @param query The query to execute
+     * @param params Parameters for the query
+     * @return A ExecutionResult that contains the result set, and can describe the execution plan
+     * @throws org.neo4j.cypher.SyntaxException If the Query contains errors,
+     * a SyntaxException exception might be thrown
+     * @see ExecutionResult#executionPlanDescription()
+     */
+    public ExecutionResult profile( String query, Map<String, Object> params) throws SyntaxException
+    {
+        return new ExecutionResult(inner.profile(query, params));
+    }
+
+    /**
+     * Returns how well the execution plan cache is doing
+     * @return Hits, misses and compilation times of the plan cache
+     */
+    public org.neo4j.cypher.PlanCacheStatistics getPlanCacheStatistics()
+    {
+        return inner.planCacheStatistics();
+    }
 }
@@ -24,6 +24,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import org.neo4j.cypher.PlanDescription;
+import org.neo4j.cypher.ProfiledExecutionResult;
+
 /**
  * Holds Cypher query result sets, in tabular form. Each row of the result is a map
  * of column name to result object. Each column name correlates directly
@@ -84,6 +87,32 @@ public class ExecutionResult implements Iterable<Map<String,Object>>
         return inner.javaIterator();
     }
 
+    /**
+     * Describes the steps of the execution plan, with the rows, time and db hits of each step.
+     * Only results of {@link ExecutionEngine#profile(String)} can describe their plan, the
+     * query is run to completion first if it hasn't been already.
+     *
+     * @return the last step of the plan, the earlier steps are reached through its source.
+     * @throws IllegalStateException when the query wasn't profiled
+     */
+    public PlanDescription executionPlanDescription()
+    {
+        if ( !( inner instanceof ProfiledExecutionResult ) )
+        {
+            throw new IllegalStateException( "Only profiled queries can describe their execution plan" );
+        }
+        return ( (ProfiledExecutionResult) inner ).executionPlanDescription();
+    }
+
+    /**
+     * Deletes the temporary files a query may have written its rows to while sorting or aggregating them.
+     * Only needed for a result that isn't read to the end, reading the last row deletes them as well.
+     */
+    public void close()
+    {
+        inner.close();
+    }
+
     @Override
     public String toString()
     {
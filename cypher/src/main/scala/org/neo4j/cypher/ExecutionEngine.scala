@@ -20,8 +20,8 @@
 package org.neo4j.cypher
 
 import internal.commands._
-import internal.executionplan.ExecutionPlanImpl
-import internal.LRUCache
+import internal.executionplan.{BoundExecutionPlan, ExecutionPlanImpl}
+import internal.{QueryNormalizer, LRUCache}
 import scala.collection.JavaConverters._
 import java.lang.Error
 import java.util.{Map => JavaMap}
@@ -34,19 +34,22 @@ class ExecutionEngine(graph: GraphDatabaseService) {
 
   require(graph != null, "Can't work with a null graph database")
 
+  private val config: Map[String, String] = graph match {
+    case database: AbstractGraphDatabase => database.getConfig.getParams.asScala.toMap
+    case _ => Map()
+  }
+
   val parser = createCorrectParser()
 
-  private def createCorrectParser() = if (graph.isInstanceOf[AbstractGraphDatabase]) {
-    val database = graph.asInstanceOf[AbstractGraphDatabase]
-    database.getConfig.getParams.asScala.get("cypher_parser_version") match {
-      case None => new CypherParser()
-      case Some(v) => new CypherParser(v.toString)
-    }
-  }
-  else {
-    new CypherParser()
+  private def createCorrectParser() = config.get("cypher_parser_version") match {
+    case None => new CypherParser()
+    case Some(v) => new CypherParser(v.toString)
   }
 
+  private val normalizer = new QueryNormalizer(
+    config.getOrElse("cypher_parser_version", "1.7"),
+    config.get("cypher_auto_parameterize").forall(_.trim.toBoolean))
+
 
   @throws(classOf[SyntaxException])
   def execute(query: String): ExecutionResult = execute(query, Map[String, Any]())
@@ -58,7 +61,56 @@ class ExecutionEngine(graph: GraphDatabaseService) {
   def execute(query: String, params: JavaMap[String, Any]): ExecutionResult = execute(query, params.asScala.toMap)
 
   @throws(classOf[SyntaxException])
-  def prepare(query: String): ExecutionPlan = executionPlanCache.getOrElseUpdate(query, new ExecutionPlanImpl(parser.parse(query), graph))
+  def profile(query: String): ProfiledExecutionResult = profile(query, Map[String, Any]())
+
+  @throws(classOf[SyntaxException])
+  def profile(query: String, params: Map[String, Any]): ProfiledExecutionResult = prepare(query).profile(params)
+
+  @throws(classOf[SyntaxException])
+  def profile(query: String, params: JavaMap[String, Any]): ProfiledExecutionResult = profile(query, params.asScala.toMap)
+
+  /**
+   * Plans are cached by the normalized query text, with the literals that can be parameters taken out. When a
+   * query doesn't plan with parameters in place of its literals, it is planned and cached as it is from then on.
+   */
+  @throws(classOf[SyntaxException])
+  def prepare(query: String): ExecutionPlan = {
+    val normalized = normalizer(query)
+
+    if (normalized.parameters.isEmpty)
+      cachedPlan(normalized.text, query)
+    else if (unparameterizable.synchronized(unparameterizable.containsKey(normalized.text)))
+      cachedPlan(query, query)
+    else try {
+      new BoundExecutionPlan(cachedPlan(normalized.text, normalized.text), normalized.parameters)
+    } catch {
+      case e: CypherException => {
+        unparameterizable.synchronized(unparameterizable.put(normalized.text, true))
+        cachedPlan(query, query)
+      }
+    }
+  }
+
+  private def cachedPlan(key: String, query: String): ExecutionPlan =
+    executionPlanCache.synchronized(Option(executionPlanCache.get(key))) match {
+      case Some(plan) => {
+        statistics.hit()
+        plan
+      }
+      case None => {
+        statistics.miss()
+        val start = System.nanoTime()
+        try {
+          val plan = new ExecutionPlanImpl(parser.parse(query), graph)
+          executionPlanCache.synchronized(executionPlanCache.put(key, plan))
+          plan
+        } finally {
+          statistics.compiled(System.nanoTime() - start)
+        }
+      }
+    }
+
+  def planCacheStatistics: PlanCacheStatistics = statistics
 
   @throws(classOf[SyntaxException])
   @deprecated(message = "You should not parse queries manually any more. Use the execute(String) instead")
@@ -79,7 +131,9 @@ class ExecutionEngine(graph: GraphDatabaseService) {
     }
   }
 
-  private val cacheSize: Int = 100
+  private val cacheSize: Int = config.get("cypher_plan_cache_size").map(_.trim.toInt).getOrElse(100)
   private val executionPlanCache = new LRUCache[String, ExecutionPlan](cacheSize) {}
+  private val unparameterizable = new LRUCache[String, Boolean](cacheSize) {}
+  private val statistics = new PlanCacheStatistics(cacheSize, executionPlanCache.synchronized(executionPlanCache.size))
 }
 
@@ -21,4 +21,9 @@ package org.neo4j.cypher
 
 trait ExecutionPlan {
   def execute(params: Map[String,Any]): ExecutionResult
+
+  /**
+   * Executes the plan while recording the rows, time and db hits of every step.
+   */
+  def profile(params: Map[String,Any]): ProfiledExecutionResult
 }
\ No newline at end of file
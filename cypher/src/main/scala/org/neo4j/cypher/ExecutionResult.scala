@@ -33,5 +33,10 @@ trait ExecutionResult extends Iterator[Map[String, Any]] {
   def javaIterator: java.util.Iterator[java.util.Map[String, Any]]
   def dumpToString(writer: PrintWriter)
   def dumpToString(): String
+
+  /**
+   * Deletes the temporary files of a result that isn't read to the end. Reading it to the end deletes them too.
+   */
+  def close()
 }
 
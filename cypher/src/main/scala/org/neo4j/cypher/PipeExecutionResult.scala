@@ -20,6 +20,7 @@
 package org.neo4j.cypher
 
 import internal.StringExtras
+import internal.pipes.{IteratedRows, SpillFiles}
 import scala.collection.JavaConverters._
 import org.neo4j.graphdb.{PropertyContainer, Relationship, NotFoundException, Node}
 import java.io.{StringWriter, PrintWriter}
@@ -33,7 +34,10 @@ class PipeExecutionResult(r: => Traversable[Map[String, Any]], val symbols: Symb
   extends ExecutionResult
   with StringExtras {
 
-  lazy val immutableResult = r.map(m => m.toMap)
+  // Sorts and aggregations that spill rows to disk create their files while the rows are produced
+  private val spillFiles = new SpillFiles
+
+  lazy val immutableResult = spillFiles.collecting(r.map(m => m.toMap))
 
   def javaColumns: java.util.List[String] = columns.asJava
 
@@ -71,7 +75,7 @@ class PipeExecutionResult(r: => Traversable[Map[String, Any]], val symbols: Symb
 
   private def createTimedResults = {
     val start = System.currentTimeMillis()
-    val eagerResult = r.toList
+    val eagerResult = spillFiles.collecting(r.toList)
     val ms = System.currentTimeMillis() - start
 
     (eagerResult, ms.toString)
@@ -135,10 +139,18 @@ class PipeExecutionResult(r: => Traversable[Map[String, Any]], val symbols: Symb
     }).mkString("| ", " | ", " |")
   }
 
-  lazy val iterator = immutableResult.toIterator
+  lazy val iterator = spillFiles.collecting(IteratedRows.iterator(immutableResult))
+
+  def hasNext: Boolean = {
+    val more = spillFiles.collecting(iterator.hasNext)
+    if (!more) close()
+    more
+  }
 
-  def hasNext: Boolean = iterator.hasNext
+  def next(): ImmutableMap[String, Any] = spillFiles.collecting(iterator.next())
 
-  def next(): ImmutableMap[String, Any] = iterator.next()
+  def close() {
+    spillFiles.deleteAll()
+  }
 }
 
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * How the execution plan cache of an ExecutionEngine is doing. Queries that only differ in literals the engine
+ * turns into parameters count as the same query.
+ */
+class PlanCacheStatistics(maxSize: Int, currentSize: => Int) {
+  private val hits = new AtomicLong()
+  private val misses = new AtomicLong()
+  private val compilations = new AtomicLong()
+  private val compileNanos = new AtomicLong()
+
+  private[cypher] def hit() {
+    hits.incrementAndGet()
+  }
+
+  private[cypher] def miss() {
+    misses.incrementAndGet()
+  }
+
+  private[cypher] def compiled(nanos: Long) {
+    compilations.incrementAndGet()
+    compileNanos.addAndGet(nanos)
+  }
+
+  def getHits: Long = hits.get()
+
+  def getMisses: Long = misses.get()
+
+  def getHitRatio: Double = {
+    val total = getHits + getMisses
+    if (total == 0) 0 else getHits.toDouble / total
+  }
+
+  /**
+   * The number of queries that were parsed and planned, successfully or not.
+   */
+  def getCompilations: Long = compilations.get()
+
+  def getTotalCompileTimeMillis: Double = compileNanos.get() / 1000000.0
+
+  def getAverageCompileTimeMillis: Double = {
+    val count = getCompilations
+    if (count == 0) 0 else getTotalCompileTimeMillis / count
+  }
+
+  def getSize: Int = currentSize
+
+  def getMaxSize: Int = maxSize
+
+  override def toString = "PlanCacheStatistics[hits=%d, misses=%d, size=%d/%d, average compile time=%.3f ms]".
+    format(getHits, getMisses, getSize, getMaxSize, getAverageCompileTimeMillis)
+}
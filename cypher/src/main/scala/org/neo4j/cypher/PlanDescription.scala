@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher
+
+/**
+ * One step of a profiled execution plan, with what it did while the query ran. The description of a query
+ * starts at the step that produced the result rows, and goes back to the first step through source.
+ */
+class PlanDescription(val name: String,
+                      val rowsIn: Long,
+                      val rows: Long,
+                      val dbHits: Long,
+                      val millis: Double,
+                      val source: Option[PlanDescription]) {
+
+  def getSource: PlanDescription = source.orNull
+
+  def asJava: java.util.Map[String, Any] = {
+    val result = new java.util.LinkedHashMap[String, Any]()
+    result.put("name", name)
+    result.put("rowsIn", rowsIn)
+    result.put("rows", rows)
+    result.put("dbHits", dbHits)
+    result.put("time", millis)
+    source.foreach(s => result.put("source", s.asJava))
+    result
+  }
+
+  override def toString: String = {
+    val step = "%s (rows in: %d, rows out: %d, db hits: %d, time: %.3f ms)".format(name, rowsIn, rows, dbHits, millis)
+    source.map(_.toString + "\r\n").getOrElse("") + step
+  }
+}
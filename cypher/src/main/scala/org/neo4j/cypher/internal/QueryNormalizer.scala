@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import collection.mutable.{ListBuffer, StringBuilder}
+import scala.util.matching.Regex
+
+/**
+ * A query with its whitespace normalized and its literals replaced by parameters, as far as that is safe.
+ * Queries that only differ in those literals normalize to the same text, and can share an execution plan.
+ */
+case class NormalizedQuery(text: String, parameters: Map[String, Any])
+
+/**
+ * Normalizes queries with a single pass over the query text, without parsing it. Only 1.7 queries are
+ * normalized, other versions are returned as they are.
+ *
+ * Outside of string literals and escaped identifiers, runs of whitespace become a single space. RETURN and
+ * ORDER BY are kept as they are, since the text of the return items is used to name the columns. Clause
+ * keywords inside parentheses, like the WHERE of filter(x in n.list where x > 3), don't start a new clause.
+ *
+ * Literals are only replaced where the grammar accepts a parameter in their place and the value of the
+ * parameter is the value the literal would have had: node and relationship ids and index values in START,
+ * strings and numbers in WHERE, and SKIP and LIMIT.
+ */
+class QueryNormalizer(defaultVersion: String, parameterize: Boolean) {
+  private val Versioned = """(?si)^\s*cypher\s*([^\s]+)\s*(.*)""".r
+
+  def apply(query: String): NormalizedQuery = query match {
+    case Versioned("1.7", rest) => {
+      val normalized = new Pass(rest).run()
+      normalized.copy(text = "CYPHER 1.7 " + normalized.text)
+    }
+    case Versioned(_, _) => NormalizedQuery(query, Map())
+    case _ if defaultVersion == "1.7" => new Pass(query).run()
+    case _ => NormalizedQuery(query, Map())
+  }
+
+  private object Clause extends Enumeration {
+    val Start, Match, Where, Return, OrderBy, Slice, Other = Value
+  }
+
+  private val clauseKeywords = Map(
+    "start" -> Clause.Start,
+    "match" -> Clause.Match,
+    "where" -> Clause.Where,
+    "return" -> Clause.Return,
+    "order" -> Clause.OrderBy,
+    "skip" -> Clause.Slice,
+    "limit" -> Clause.Slice)
+
+  // Words after which a minus sign starts a negative number rather than a subtraction
+  private val operators = Set("and", "or", "xor", "not", "in", "is", "by")
+
+  private val ids = """\(\s*\d+(\s*,\s*\d+)*\s*\)""".r
+  private val doubleQuoted = ("\"" + """([^"\p{Cntrl}\\]|\\[\\'"bfnrt]|\\u[a-fA-F0-9]{4})*""" + "\"").r
+  private val singleQuoted = ("\'" + """([^'\p{Cntrl}\\]|\\[\\/bfnrt]|\\u[a-fA-F0-9]{4})*""" + "\'").r
+  private val indexQueryStart = """:\s*(\w+|`[^`]*`)\s*\($""".r
+  private val number = """-?(\d+(\.\d*)?|\d*\.\d+)""".r
+
+  private class Pass(query: String) {
+    private val out = new StringBuilder
+    private val parameters = new ListBuffer[(String, Any)]
+    private var clause = Clause.Other
+    // Clause keywords only start a clause outside of parentheses and brackets, a where in
+    // filter(x in n.list where x > 3) is part of the expression
+    private var depth = 0
+    private var afterOperand = false
+    private var pendingSpace = false
+    private var pos = 0
+
+    def run(): NormalizedQuery = {
+      while (pos < query.length) {
+        val c = query.charAt(pos)
+        if (c.isWhitespace) whitespace()
+        else if (c == '"' || c == '\'') string(c)
+        else if (c == '`') emit(closing('`', pos + 1), operand = true)
+        else if (c == '{') emit(closing('}', pos + 1), operand = true)
+        else if (c == '/') emit(closing('/', pos + 1), operand = true)
+        else if (Character.isJavaIdentifierStart(c)) word()
+        else if (startsNumber(c)) numberLiteral()
+        else {
+          if (c == '(' || c == '[') depth += 1
+          if ((c == ')' || c == ']') && depth > 0) depth -= 1
+          emit(pos + 1, operand = c == ')' || c == ']')
+        }
+      }
+      NormalizedQuery(out.toString(), parameters.toMap)
+    }
+
+    private def verbatim = clause == Clause.Return || clause == Clause.OrderBy
+
+    private def whitespace() {
+      if (verbatim) {
+        emit(pos + 1, afterOperand)
+      } else {
+        pendingSpace = true
+        pos += 1
+      }
+    }
+
+    private def emit(end: Int, operand: Boolean) {
+      emitText(query.substring(pos, end), operand)
+      pos = end
+    }
+
+    private def emitText(text: String, operand: Boolean) {
+      if (pendingSpace && out.nonEmpty) out += ' '
+      pendingSpace = false
+      out ++= text
+      afterOperand = operand
+    }
+
+    private def parameter(value: Any) {
+      val name = "auto-" + parameters.size
+      parameters += name -> value
+      emitText("{`" + name + "`}", operand = true)
+    }
+
+    // The position after the closing character, or the end of the query. Backslashes escape the next character.
+    private def closing(quote: Char, from: Int): Int = {
+      var i = from
+      while (i < query.length && query.charAt(i) != quote) {
+        i += (if (query.charAt(i) == '\\' && quote != '`') 2 else 1)
+      }
+      math.min(i + 1, query.length)
+    }
+
+    private def string(quote: Char) {
+      val end = closing(quote, pos + 1)
+      val literal = query.substring(pos, end)
+      val valid = if (quote == '"') doubleQuoted.pattern.matcher(literal).matches else singleQuoted.pattern.matcher(literal).matches
+      if (parameterize && valid && (clause == Clause.Where || (clause == Clause.Start && indexValueExpected))) {
+        parameter(literal.substring(1, literal.length - 1))
+        pos = end
+      } else {
+        emit(end, operand = true)
+      }
+    }
+
+    // Strings in START are only index values, as in node:index(key="value") or node:index("query")
+    private def indexValueExpected =
+      (out.nonEmpty && out.last == '=') || indexQueryStart.findFirstIn(out.takeRight(256)).isDefined
+
+    private def word() {
+      var end = pos + 1
+      while (end < query.length && Character.isJavaIdentifierPart(query.charAt(end))) end += 1
+      val lower = query.substring(pos, end).toLowerCase
+      val property = out.nonEmpty && out.last == '.' && !pendingSpace
+
+      if (!property && depth == 0 && clauseKeywords.contains(lower)) {
+        clause = clauseKeywords(lower)
+        emit(end, operand = false)
+      } else {
+        emit(end, operand = !operators.contains(lower))
+      }
+
+      if (clause == Clause.Start && parameterize && (lower == "node" || lower == "rel" || lower == "relationship")) {
+        startIds()
+      }
+    }
+
+    private def startIds() {
+      var from = pos
+      while (from < query.length && query.charAt(from).isWhitespace) from += 1
+      prefixMatch(ids, from).foreach(end => {
+        val values = query.substring(from + 1, end - 1).split(',').map(_.trim.toLong).toList
+        emitText("(", operand = false)
+        parameter(values)
+        emitText(")", operand = true)
+        pos = end
+      })
+    }
+
+    // The end of the match of regex starting at from, if there is one
+    private def prefixMatch(regex: Regex, from: Int): Option[Int] = {
+      val matcher = regex.pattern.matcher(query).region(from, query.length)
+      if (matcher.lookingAt()) Some(matcher.end) else None
+    }
+
+    private def startsNumber(c: Char) = {
+      def digitAt(i: Int) = i < query.length && query.charAt(i).isDigit
+      c.isDigit ||
+        (c == '.' && !afterOperand && digitAt(pos + 1)) ||
+        (c == '-' && !afterOperand && (digitAt(pos + 1) || (query.startsWith(".", pos + 1) && digitAt(pos + 2))))
+    }
+
+    private def numberLiteral() {
+      val end = prefixMatch(number, pos).getOrElse(pos + 1)
+      val literal = query.substring(pos, end)
+      clause match {
+        // A number can't be matched against a regular expression, and building the plan has to say so
+        case Clause.Where if parameterize && literal != "-" && !out.endsWith("=~") => {
+          parameter(if (literal.contains(".")) literal.toDouble else literal.toLong.toDouble)
+          pos = end
+        }
+        case Clause.Slice if parameterize && literal.forall(_.isDigit) && literal.length < 10 => {
+          parameter(literal.toInt)
+          pos = end
+        }
+        case _ => emit(end, operand = true)
+      }
+    }
+  }
+}
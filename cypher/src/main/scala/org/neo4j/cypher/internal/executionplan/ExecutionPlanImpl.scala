@@ -25,15 +25,47 @@ import collection.Seq
 import org.neo4j.cypher.internal.pipes._
 import org.neo4j.cypher._
 import internal.commands._
+import org.neo4j.cypher.internal.pipes.matching.ExpansionCost
 import collection.mutable.{Map => MutableMap}
 
 class ExecutionPlanImpl(inputQuery: Query, graph: GraphDatabaseService) extends ExecutionPlan {
-  val (executionPlan, executionPlanText) = prepareExecutionPlan()
+  val (executionPlan, pipe) = prepareExecutionPlan()
+
+  // Rendered every time, so the plan shows how the estimates compare to the executions so far
+  def executionPlanText = pipe.executionPlan()
 
   def execute(params: Map[String, Any]): ExecutionResult = executionPlan(params)
 
-  private def prepareExecutionPlan(): ((Map[String, Any]) => PipeExecutionResult, String) = {
-    var pipe: Pipe = new ParameterPipe()
+  def profile(params: Map[String, Any]): ProfiledExecutionResult = {
+    val dbHits = new DbHitCounter(graph)
+    var last: Option[ProfilingPipe] = None
+    buildPipe(p => {
+      val profiled = new ProfilingPipe(p, last, dbHits)
+      last = Some(profiled)
+      profiled
+    })
+    val top = last.get
+
+    // Consumed inside counting, so that loads made while the lazy pipes produce their rows are counted
+    lazy val results = dbHits.counting(top.createResults(MutableMap() ++ params).toList)
+    new ProfiledExecutionResult(results, top.symbols, inputQuery.returns.columns, top.planDescription)
+  }
+
+  private def prepareExecutionPlan(): ((Map[String, Any]) => PipeExecutionResult, Pipe) = {
+    val pipe = buildPipe(p => p)
+
+    val func = (params: Map[String, Any]) => {
+      val newMap = MutableMap() ++ params
+      new PipeExecutionResult(pipe.createResults(newMap), pipe.symbols, inputQuery.returns.columns)
+    }
+    (func, pipe)
+  }
+
+  /**
+   * Lets the builders solve the query one piece at a time, passing every pipe they add through decorate.
+   */
+  private def buildPipe(decorate: Pipe => Pipe): Pipe = {
+    var pipe: Pipe = decorate(new ParameterPipe())
     var query = PartiallySolvedQuery(inputQuery)
 
     while (builders.exists(_.isDefinedAt(pipe, query))) {
@@ -46,7 +78,7 @@ class ExecutionPlanImpl(inputQuery: Query, graph: GraphDatabaseService) extends
         throw new InternalException("Something went wrong trying to build your query. The offending builder was: " + builder.getClass.getSimpleName)
       }
       
-      pipe = p
+      pipe = if (p eq pipe) p else decorate(p)
       query = q
     }
 
@@ -57,13 +89,7 @@ class ExecutionPlanImpl(inputQuery: Query, graph: GraphDatabaseService) extends
       checkForMissingPredicates(query, pipe)
     }
 
-    val func = (params: Map[String, Any]) => {
-      val newMap = MutableMap() ++ params
-      new PipeExecutionResult(pipe.createResults(newMap), pipe.symbols, inputQuery.returns.columns)
-    }
-    val executionPlan = pipe.executionPlan()
-
-    (func, executionPlan)
+    pipe
   }
 
   private def checkForMissingPredicates(querySoFar: PartiallySolvedQuery, pipe: Pipe) {
@@ -78,19 +104,27 @@ class ExecutionPlanImpl(inputQuery: Query, graph: GraphDatabaseService) extends
     }
   }
 
+  lazy val expansionCost = ExpansionCost(graph)
+
+  lazy val memoryLimit = MemoryLimit.configured(graph)
+
+  lazy val compileExpressions = ExpressionCompiler.enabled(graph)
+
+  lazy val matchParallelism = MatchParallelism.configured(graph)
+
   lazy val builders = Seq(
     new NodeByIdBuilder(graph),
     new IndexQueryBuilder(graph),
     new GraphGlobalStartBuilder(graph),
-    new FilterBuilder,
+    new FilterBuilder(compileExpressions),
     new NamedPathBuilder,
-    new ExtractBuilder,
-    new SortedAggregationBuilder,
-    new MatchBuilder,
-    new SortBuilder,
+    new ExtractBuilder(compileExpressions),
+    new SortedAggregationBuilder(memoryLimit),
+    new MatchBuilder(expansionCost, matchParallelism),
+    new SortBuilder(memoryLimit),
     new ColumnFilterBuilder,
     new SliceBuilder,
-    new AggregationBuilder,
+    new AggregationBuilder(memoryLimit),
     new ShortestPathBuilder,
     new RelationshipByIdBuilder(graph))
 
@@ -20,16 +20,16 @@
 package org.neo4j.cypher.internal.executionplan.builders
 
 import org.neo4j.cypher.internal.executionplan.{PartiallySolvedQuery, PlanBuilder}
-import org.neo4j.cypher.internal.pipes.{ExtractPipe, EagerAggregationPipe, Pipe}
+import org.neo4j.cypher.internal.pipes.{MemoryLimit, ExtractPipe, EagerAggregationPipe, Pipe}
 import org.neo4j.cypher.internal.commands.{Entity, AggregationExpression}
 
-class AggregationBuilder extends PlanBuilder {
+class AggregationBuilder(memoryLimit: MemoryLimit = MemoryLimit.Unlimited) extends PlanBuilder {
   def apply(p: Pipe, q: PartiallySolvedQuery) = {
     val keyExpressionsToExtract = q.returns.map(_.token.expression).filterNot(_.containsAggregate)
     val (extractor,newPsq) = ExtractBuilder.extractIfNecessary(q,p, keyExpressionsToExtract)
     val keyExpressions = newPsq.returns.map(_.token.expression).filterNot(_.containsAggregate)
     val aggregationExpressions = newPsq.aggregation.map(_.token)
-    val aggregator = new EagerAggregationPipe(extractor, keyExpressions, aggregationExpressions)
+    val aggregator = new EagerAggregationPipe(extractor, keyExpressions, aggregationExpressions, memoryLimit)
 
     val notKeyAndNotAggregate = newPsq.returns.map(_.token.expression).filterNot(keyExpressions.contains)
 
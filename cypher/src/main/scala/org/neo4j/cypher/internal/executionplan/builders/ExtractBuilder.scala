@@ -23,8 +23,8 @@ import org.neo4j.cypher.internal.pipes.{ExtractPipe, Pipe}
 import org.neo4j.cypher.internal.executionplan.{PartiallySolvedQuery, PlanBuilder}
 import org.neo4j.cypher.internal.commands.{CachedExpression, Expression}
 
-class ExtractBuilder extends PlanBuilder {
-  def apply(p: Pipe, q: PartiallySolvedQuery) = ExtractBuilder.extractIfNecessary(q, p, q.returns.map(_.token.expression))
+class ExtractBuilder(compileExpressions: Boolean = false) extends PlanBuilder {
+  def apply(p: Pipe, q: PartiallySolvedQuery) = ExtractBuilder.extractIfNecessary(q, p, q.returns.map(_.token.expression), compileExpressions)
 
   def isDefinedAt(p: Pipe, q: PartiallySolvedQuery)= !q.extracted && q.readyToAggregate && q.aggregateQuery.solved
 
@@ -33,7 +33,7 @@ class ExtractBuilder extends PlanBuilder {
 
 object ExtractBuilder {
 
-  def extractIfNecessary(psq: PartiallySolvedQuery, p: Pipe, expressions: Seq[Expression]): (Pipe, PartiallySolvedQuery) = {
+  def extractIfNecessary(psq: PartiallySolvedQuery, p: Pipe, expressions: Seq[Expression], compile: Boolean = false): (Pipe, PartiallySolvedQuery) = {
     val missing = p.symbols.missingExpressions(expressions)
 
     if (missing.nonEmpty) {
@@ -43,7 +43,7 @@ object ExtractBuilder {
         else
           fromQueryExpression
       ))
-      (new ExtractPipe(p, expressions), newPsq.copy(extracted = true))
+      (new ExtractPipe(p, expressions, compile), newPsq.copy(extracted = true))
     } else {
       (p, psq.copy(extracted = true))
     }
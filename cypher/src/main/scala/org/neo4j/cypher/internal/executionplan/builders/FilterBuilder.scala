@@ -24,11 +24,11 @@ import org.neo4j.cypher.internal.commands.Predicate
 import org.neo4j.cypher.internal.executionplan.{QueryToken, Unsolved, PartiallySolvedQuery, PlanBuilder}
 import org.neo4j.cypher.internal.pipes.{FilterPipe, Pipe}
 
-class FilterBuilder extends PlanBuilder {
+class FilterBuilder(compileExpressions: Boolean = false) extends PlanBuilder {
   def apply(p: Pipe, q: PartiallySolvedQuery) = {
     val item = q.where.filter(pred => yesOrNo(pred, p))
     val pred: Predicate = item.map(_.token).reduce(_ ++ _)
-    val newPipe = new FilterPipe(p, pred)
+    val newPipe = new FilterPipe(p, pred, compileExpressions)
     val newQuery = q.where.filterNot(item.contains) ++ item.map(_.solve)
 
     (newPipe, q.copy(where = newQuery))
@@ -20,16 +20,17 @@
 package org.neo4j.cypher.internal.executionplan.builders
 
 import org.neo4j.cypher.internal.executionplan.{Unsolved, QueryToken, PartiallySolvedQuery, PlanBuilder}
-import org.neo4j.cypher.internal.pipes.{MatchPipe, Pipe}
+import org.neo4j.cypher.internal.pipes.{MatchParallelism, MatchPipe, Pipe}
+import org.neo4j.cypher.internal.pipes.matching.{NoStatistics, ExpansionCost}
 import org.neo4j.cypher.internal.commands.{ShortestPath, StartItem, Pattern}
 
-class MatchBuilder extends PlanBuilder {
+class MatchBuilder(expansionCost: ExpansionCost = NoStatistics, parallelism: Option[MatchParallelism] = None) extends PlanBuilder {
   def apply(p: Pipe, q: PartiallySolvedQuery) = {
       val items = q.patterns.filter(yesOrNo(_, p, q.start))
       val patterns = items.map(_.token)
       val predicates = q.where.filter(!_.solved).map(_.token)
 
-      val newPipe = new MatchPipe(p, patterns, predicates)
+      val newPipe = new MatchPipe(p, patterns, predicates, expansionCost, parallelism)
 
       (newPipe, q.copy(patterns = q.patterns.filterNot(items.contains) ++ items.map(_.solve)))
     }
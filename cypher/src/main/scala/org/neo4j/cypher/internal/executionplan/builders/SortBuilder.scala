@@ -20,16 +20,23 @@
 package org.neo4j.cypher.internal.executionplan.builders
 
 import org.neo4j.cypher.internal.executionplan.{PartiallySolvedQuery, PlanBuilder}
-import org.neo4j.cypher.internal.pipes.{SortPipe, Pipe}
+import org.neo4j.cypher.internal.commands.Slice
+import org.neo4j.cypher.internal.pipes.{MemoryLimit, TopPipe, SortPipe, Pipe}
 
-class SortBuilder extends PlanBuilder {
+class SortBuilder(memoryLimit: MemoryLimit = MemoryLimit.Unlimited) extends PlanBuilder {
   def apply(p: Pipe, q: PartiallySolvedQuery) = {
     val sortExpressionsToExtract = q.sort.map(_.token).map(_.expression)
 
     val (pipe, newPsq) = ExtractBuilder.extractIfNecessary(q,p, sortExpressionsToExtract)
 
     val sortItems = newPsq.sort.map(_.token)
-    val resultPipe = new SortPipe(pipe, sortItems.toList)
+
+    // If the sorted rows are limited, only the top skip + limit rows need to be kept around.
+    // The slice itself is still solved by the SliceBuilder
+    val resultPipe = newPsq.slice.filter(_.unsolved).map(_.token) match {
+      case Seq(Slice(skip, Some(limit))) => new TopPipe(pipe, sortItems.toList, skip, limit)
+      case _ => new SortPipe(pipe, sortItems.toList, memoryLimit)
+    }
 
     (resultPipe, newPsq.copy(sort = newPsq.sort.map(_.solve)))
   }
@@ -20,10 +20,10 @@
 package org.neo4j.cypher.internal.executionplan.builders
 
 import org.neo4j.cypher.internal.executionplan.{PartiallySolvedQuery, PlanBuilder}
-import org.neo4j.cypher.internal.pipes.{OrderedAggregationPipe, SortPipe, ExtractPipe, Pipe}
+import org.neo4j.cypher.internal.pipes.{MemoryLimit, OrderedAggregationPipe, SortPipe, ExtractPipe, Pipe}
 import org.neo4j.cypher.internal.commands.{AggregationExpression, SortItem, Expression}
 
-class SortedAggregationBuilder extends PlanBuilder {
+class SortedAggregationBuilder(memoryLimit: MemoryLimit = MemoryLimit.Unlimited) extends PlanBuilder {
   def apply(p: Pipe, q: PartiallySolvedQuery) = {
     val sortExpressions = q.sort.filter(_.unsolved).map(_.token.expression)
     val sortItems = q.sort.filter(_.unsolved).map(_.token)
@@ -40,7 +40,7 @@ class SortedAggregationBuilder extends PlanBuilder {
       filterNot(sortExpressions.contains).
       map(SortItem(_, true))
 
-    val sortPipe = new SortPipe(extractPipe, (sortItems ++ keyColumnsNotAlreadySorted).toList)
+    val sortPipe = new SortPipe(extractPipe, (sortItems ++ keyColumnsNotAlreadySorted).toList, memoryLimit)
     val aggregationPipe = new OrderedAggregationPipe(sortPipe, keyExpressions, aggregationExpressions)
 
     (aggregationPipe, q.copy(
@@ -33,15 +33,21 @@ class ColumnFilterPipe(source: Pipe, val returnItems: Seq[ReturnItem])
     case id => returnItems.find(ri=>ri.expression.identifier.name == id.name).map( x => id )
   }
     
+  override lazy val slots = SlotLayout(returnItemNames)
+
+  // (slot in the source rows, identifier name, slot in the filtered rows)
+  private val columns = returnItems.map(ri => {
+    val name = ri.expression.identifier.name
+    (source.slots.slot(name), name, slots.slot(ri.columnName))
+  })
+
   def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = {
     source.createResults(params).map(m => {
-      val newMap = Map[String,Any]()
-      for (ri <- returnItems) {
-        val name = ri.expression.identifier.name
-        val keys= m.keys.toSeq
-        newMap += (ri.columnName -> m(name))
+      val newRow = new SlotRow(slots)
+      columns.foreach {
+        case (sourceSlot, name, slot) => newRow.set(slot, source.slots.read(m, sourceSlot, name))
       }
-      newMap
+      newRow
     })
   }
 
@@ -19,15 +19,20 @@
  */
 package org.neo4j.cypher.internal.pipes
 
-import aggregation.AggregationFunction
+import aggregation.{DistinctFunction, CollectFunction, AggregationFunction}
 import org.neo4j.cypher.internal.symbols.{AnyType, Identifier, SymbolTable}
 import org.neo4j.cypher.internal.commands.{Expression, AggregationExpression}
-import collection.mutable.Map
+import collection.mutable.{Queue, Map}
 
 // Eager aggregation means that this pipe will eagerly load the whole resulting sub graphs before starting
 // to emit aggregated results.
 // Cypher is lazy until it has to - this pipe makes stops the lazyness
-class EagerAggregationPipe(source: Pipe, val keyExpressions: Seq[Expression], aggregations: Seq[AggregationExpression]) extends PipeWithSource(source) {
+//
+// When the groups outgrow the memory limit, rows of groups that haven't been seen yet are spilled to
+// partition files by the hash of their key, and every partition is aggregated on its own once the rows
+// before it have been read.
+class EagerAggregationPipe(source: Pipe, val keyExpressions: Seq[Expression], aggregations: Seq[AggregationExpression],
+                           memoryLimit: MemoryLimit = MemoryLimit.Unlimited) extends PipeWithSource(source) {
   val symbols: SymbolTable = createSymbols()
 
   def dependencies: Seq[Identifier] = keyExpressions.flatMap(_.dependencies(AnyType())) ++ aggregations.flatMap(_.dependencies(AnyType()))
@@ -39,33 +44,138 @@ class EagerAggregationPipe(source: Pipe, val keyExpressions: Seq[Expression], ag
     keySymbols.add(aggregatedColumns: _*)
   }
 
+  override lazy val slots = SlotLayout(keyExpressions.map(_.identifier.name) ++ aggregations.map(_.identifier.name))
+
+  private val keySlots = keyExpressions.map(exp => {
+    val name = exp.identifier.name
+    (source.slots.slot(name), name, slots.slot(name))
+  })
+
+  private val aggregationSlots = aggregations.map(agg => slots.slot(agg.identifier.name))
+
   def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = {
+    val result = aggregate(IteratedRows.iterator(source.createResults(params)), 0)
+    if (memoryLimit.isUnlimited) result.toList else IteratedRows(result)
+  }
+
+  private def aggregate(rows: Iterator[Map[String, Any]], depth: Int): Iterator[Map[String, Any]] = {
     // This is the temporary storage used while the aggregation is going on
-    val result = Map[NiceHasher, Seq[AggregationFunction]]()
-    val keyNames = keyExpressions.map(_.identifier.name)
-    val aggregationNames = aggregations.map(_.identifier.name)
+    val groups = Map[NiceHasher, Seq[AggregationFunction]]()
+    var partitions: Seq[SpillFile] = Seq()
+    var size = 0L
 
-    source.createResults(params).foreach(m => {
-      val groupValues: NiceHasher = new NiceHasher(keyNames.map(m(_)))
-      val functions = result.getOrElseUpdate(groupValues, aggregations.map(_.createAggregationFunction))
-      functions.foreach(func => func(m))
-    })
+    // Partitions that still don't fit are split again, up to a point
+    val mayPartition = !memoryLimit.isUnlimited && depth < MaxPartitionDepth
 
-    val r = result.map {
-      case (key, aggregator: Seq[AggregationFunction]) => {
-        val newMap = Map[String,Any]()
+    try {
+      rows.foreach(m => {
+        val groupValues: NiceHasher = new NiceHasher(keySlots.map {
+          case (sourceSlot, name, _) => source.slots.read(m, sourceSlot, name)
+        })
+        groups.get(groupValues) match {
+          case Some(functions) => {
+            functions.foreach(func => func(m))
+            size += growthPerRow
+          }
+          case None if partitions.nonEmpty =>
+            partitions(partitionOf(groupValues, depth)).write(m)
+          case None => {
+            val functions = aggregations.map(_.createAggregationFunction)
+            functions.foreach(func => func(m))
+            groups(groupValues) = functions
+            size += MemoryLimit.estimatedSize(groupValues.original) + functionSize + growthPerRow
+            if (mayPartition && memoryLimit.exceededBy(size)) {
+              partitions = (0 until PartitionCount).map(_ => new SpillFile(source.slots))
+            }
+          }
+        }
+      })
+    } catch {
+      case e: Throwable => {
+        partitions.foreach(_.delete())
+        throw e
+      }
+    }
 
-        //add key values
-        keyNames.zip(key.original).foreach( newMap += _)
+    val result = new Queue[Map[String, Any]]
+    groups.foreach {
+      case (key, aggregator) => result += createRow(key, aggregator)
+    }
+    groups.clear()
+
+    new Aggregated(result, partitions, depth)
+  }
+
+  /**
+   * Hands on the rows of the groups that were kept in memory, and then aggregates the partitions one at a time
+   * as their rows are asked for. Rows are dequeued as they are handed on, so they aren't kept. Every partition
+   * file is deleted as soon as it has been aggregated, or when aggregating one fails.
+   */
+  private class Aggregated(rows: Queue[Map[String, Any]], partitions: Seq[SpillFile], depth: Int)
+    extends Iterator[Map[String, Any]] {
+    private var nextPartition = 0
+    private var partition: Iterator[Map[String, Any]] = Iterator.empty
+
+    def hasNext: Boolean = {
+      while (rows.isEmpty && !partition.hasNext && nextPartition < partitions.size) {
+        partition = aggregatePartition(nextPartition)
+        nextPartition += 1
+      }
+      rows.nonEmpty || partition.hasNext
+    }
 
-        //add aggregated values
-        aggregationNames.zip(aggregator.map(_.result)).foreach( newMap += _ )
+    def next(): Map[String, Any] = {
+      if (!hasNext) throw new NoSuchElementException
+      if (rows.nonEmpty) rows.dequeue() else partition.next()
+    }
 
-        newMap
+    private def aggregatePartition(i: Int): Iterator[Map[String, Any]] = {
+      try {
+        EagerAggregationPipe.this.aggregate(partitions(i).read(), depth + 1)
+      } catch {
+        case e: Throwable => {
+          partitions.drop(i + 1).foreach(_.delete())
+          throw e
+        }
+      } finally {
+        partitions(i).delete()
       }
     }
+  }
+
+  private def createRow(key: NiceHasher, aggregator: Seq[AggregationFunction]): Map[String, Any] = {
+    val newRow = new SlotRow(slots)
+
+    //add key values
+    keySlots.zip(key.original).foreach {
+      case ((_, _, slot), value) => newRow.set(slot, value)
+    }
+
+    //add aggregated values
+    aggregationSlots.zip(aggregator.map(_.result)).foreach {
+      case (slot, value) => newRow.set(slot, value)
+    }
+
+    newRow
+  }
+
+  // Every depth mixes the hash differently, so a partition that is split again doesn't end up in one piece
+  private def partitionOf(key: NiceHasher, depth: Int) = {
+    var hash = key.hashCode() ^ (depth * 0x9E3779B9)
+    hash *= 0x85EBCA6B
+    hash ^= hash >>> 13
+    (hash & Int.MaxValue) % PartitionCount
+  }
+
+  private val PartitionCount = 16
+  private val MaxPartitionDepth = 3
 
-     r
+  // Rough sizes of the aggregation state kept for every group, collect and distinct grow with every row
+  private val functionSize = 48L * aggregations.size
+  private val growthPerRow = 32L * aggregations.map(_.createAggregationFunction).count {
+    case _: CollectFunction => true
+    case _: DistinctFunction => true
+    case _ => false
   }
 
   override def executionPlan(): String = source.executionPlan() + "\r\n" + "EagerAggregation( keys: [" + keyExpressions.map(_.identifier.name).mkString(", ") + "], aggregates: [" + aggregations.mkString(", ") + "])"
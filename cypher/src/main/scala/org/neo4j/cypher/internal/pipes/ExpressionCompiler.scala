@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.neo4j.cypher.internal.commands._
+import org.neo4j.cypher.internal.Comparer
+import org.neo4j.cypher.{CypherTypeException, EntityNotFoundException, ParameterNotFoundException}
+import org.neo4j.graphdb.{NotFoundException, PropertyContainer, GraphDatabaseService}
+import org.neo4j.kernel.AbstractGraphDatabase
+import collection.Map
+
+/**
+ * Turns predicates and expressions into closures when the execution plan is built, instead of walking
+ * the command trees for every row. Identifiers are read from the slots of `layout`, parameter keys and
+ * literal values are worked out once, and comparisons of numbers and strings skip the general type
+ * dispatch in Comparer. Anything the compiler doesn't know is evaluated by the command itself, so
+ * compiled and interpreted evaluation always give the same result.
+ */
+class ExpressionCompiler(layout: SlotLayout) extends Comparer {
+  type Row = Map[String, Any]
+
+  def predicate(p: Predicate): Row => Boolean = p match {
+    case And(a, b) => {
+      val (left, right) = (predicate(a), predicate(b))
+      row => left(row) && right(row)
+    }
+    case Or(a, b) => {
+      val (left, right) = (predicate(a), predicate(b))
+      row => left(row) || right(row)
+    }
+    case Not(a) => {
+      val inner = predicate(a)
+      row => !inner(row)
+    }
+    case True() => row => true
+    case IsNull(e) => {
+      val value = expression(e)
+      row => value(row) == null
+    }
+    case Has(Property(entity, propertyName)) => {
+      val slot = layout.slot(entity)
+      row => layout.read(row, slot, entity).asInstanceOf[PropertyContainer] match {
+        case null => false
+        case container => container.hasProperty(propertyName)
+      }
+    }
+    case Equals(a, b) => {
+      val (left, right) = (expression(a), expression(b))
+      row => left(row) == right(row)
+    }
+    case c@LessThan(a, b) => comparison(c, a, b)
+    case c@GreaterThan(a, b) => comparison(c, a, b)
+    case c@LessThanOrEqual(a, b) => comparison(c, a, b)
+    case c@GreaterThanOrEqual(a, b) => comparison(c, a, b)
+    case r@LiteralRegularExpression(a, _) => {
+      val value = expression(a)
+      val pattern = r.pattern
+      row => pattern.matcher(value(row).asInstanceOf[String]).matches()
+    }
+    case NullablePredicate(inner, nullables) => {
+      val nullResults = nullables.map {
+        case (e, result) => (expression(e), result)
+      }
+      val matches = predicate(inner)
+      row => nullResults.find {
+        case (value, _) => value(row) == null
+      } match {
+        case Some((_, result)) => result
+        case None => matches(row)
+      }
+    }
+    case _ => p.isMatch
+  }
+
+  def expression(e: Expression): Row => Any = e match {
+    case CachedExpression(key, _) => {
+      val slot = layout.slot(key)
+      row => layout.read(row, slot, key)
+    }
+    case Parameter(name) => {
+      val key = "-=PARAMETER=-" + name + "-=PARAMETER=-"
+      row => row.get(key) match {
+        case Some(ParameterValue(value)) => value
+        case _ => throw new ParameterNotFoundException("Expected a parameter named " + name)
+      }
+    }
+    case Literal(value) => orCompute(e, row => value)
+    case Null() => orCompute(e, row => null)
+    case Entity(name) => orCompute(e, row => throw new NotFoundException)
+    case Property(entity, propertyName) => {
+      val slot = layout.slot(entity)
+      orCompute(e, row => layout.read(row, slot, entity).asInstanceOf[PropertyContainer] match {
+        case null => null
+        case container => try {
+          container.getProperty(propertyName)
+        } catch {
+          case x: NotFoundException => throw new EntityNotFoundException("The property '%s' does not exist on %s".format(propertyName, container), x)
+        }
+      })
+    }
+    case Nullable(inner) => {
+      val value = expression(inner)
+      orCompute(e, row => try {
+        value(row)
+      } catch {
+        case x: EntityNotFoundException => null
+      })
+    }
+    case Add(a, b) => {
+      val (left, right) = (expression(a), expression(b))
+      orCompute(e, row => (left(row), right(row)) match {
+        case (x: Number, y: Number) => x.doubleValue() + y.doubleValue()
+        case (x: String, y: String) => x + y
+        case (x, y) => throw new CypherTypeException("Don't know how to add `" + x.toString + "` and `" + y.toString + "`")
+      })
+    }
+    case arithmetics@Subtract(a, b) => arithmetic(arithmetics, a, b)
+    case arithmetics@Multiply(a, b) => arithmetic(arithmetics, a, b)
+    case arithmetics@Divide(a, b) => arithmetic(arithmetics, a, b)
+    case arithmetics@Modulo(a, b) => arithmetic(arithmetics, a, b)
+    case arithmetics@Pow(a, b) => arithmetic(arithmetics, a, b)
+    case Collection(expressions@_*) => {
+      val values = expressions.map(expression).toList
+      orCompute(e, row => values.map(value => value(row)))
+    }
+    case _ => e
+  }
+
+  /**
+   * Like Expression.apply: rows that already hold the value of the expression, under its name, aren't
+   * computed again.
+   */
+  private def orCompute(e: Expression, compute: Row => Any): Row => Any = {
+    val name = e.identifier.name
+    val slot = layout.slot(name)
+    row => layout.readOrCompute(row, slot, name, compute)
+  }
+
+  private def arithmetic(arithmetics: Arithmetics, a: Expression, b: Expression): Row => Any = {
+    val (left, right) = (expression(a), expression(b))
+    orCompute(arithmetics, row => (left(row), right(row)) match {
+      case (x: Number, y: Number) => arithmetics.numberWithNumber(x, y)
+      case (x: String, y: String) => arithmetics.stringWithString(x, y)
+      case (x, y) => arithmetics.throwTypeError(y, x)
+    })
+  }
+
+  private def comparison(c: ComparablePredicate, a: Expression, b: Expression): Row => Boolean = {
+    val (left, right) = (expression(a), expression(b))
+    row => c.compare(compareValues(left(row), right(row)))
+  }
+
+  /**
+   * The same result as Comparer.compare, without its reflection and boxing for the common cases.
+   */
+  private def compareValues(l: Any, r: Any): Int = {
+    if (intOrDouble(l) && intOrDouble(r))
+      java.lang.Double.compare(l.asInstanceOf[Number].doubleValue(), r.asInstanceOf[Number].doubleValue())
+    else if (l.isInstanceOf[String] && r.isInstanceOf[String])
+      l.asInstanceOf[String].compareTo(r.asInstanceOf[String])
+    else if (l.isInstanceOf[java.lang.Long] && r.isInstanceOf[java.lang.Double] && exactlyComparable(l, r))
+      compareDoubles(l.asInstanceOf[java.lang.Long].doubleValue(), r.asInstanceOf[java.lang.Double].doubleValue())
+    else if (l.isInstanceOf[java.lang.Double] && r.isInstanceOf[java.lang.Long] && exactlyComparable(r, l))
+      compareDoubles(l.asInstanceOf[java.lang.Double].doubleValue(), r.asInstanceOf[java.lang.Long].doubleValue())
+    else
+      compare(l, r)
+  }
+
+  private def intOrDouble(x: Any) = x.isInstanceOf[java.lang.Integer] || x.isInstanceOf[java.lang.Double]
+
+  // Comparer compares longs with doubles as BigDecimals. Longs that doubles hold exactly compare the same as doubles.
+  private def exactlyComparable(longValue: Any, doubleValue: Any): Boolean = {
+    val l = longValue.asInstanceOf[java.lang.Long].longValue()
+    val d = doubleValue.asInstanceOf[java.lang.Double].doubleValue()
+    math.abs(l) <= ExpressionCompiler.ExactLongs && !d.isNaN && !d.isInfinite
+  }
+
+  // Unlike Double.compare, zero equals negative zero here, as it does for BigDecimals
+  private def compareDoubles(l: Double, r: Double): Int = if (l < r) -1 else if (l > r) 1 else 0
+}
+
+object ExpressionCompiler {
+  private val ExactLongs = 1L << 53
+
+  /**
+   * The configuration setting that turns compilation of WHERE predicates and RETURN expressions off, by
+   * setting it to false. It is on by default.
+   */
+  val configKey = "cypher_compile_expressions"
+
+  def enabled(graph: GraphDatabaseService): Boolean = graph match {
+    case db: AbstractGraphDatabase => Option(db.getConfig.getParams.get(configKey)).forall(_.toString.trim.toBoolean)
+    case _ => true
+  }
+}
@@ -27,16 +27,29 @@ import collection.mutable.Map
 
 //This class will extract properties and other stuff to make the maps
 //easy to work with for other pipes
-class ExtractPipe(source: Pipe, val expressions: Seq[Expression]) extends PipeWithSource(source) {
+class ExtractPipe(source: Pipe, val expressions: Seq[Expression], compile: Boolean = false) extends PipeWithSource(source) {
   def dependencies = expressions.flatMap(_.dependencies(AnyType()))
 
   def getSymbolType(item: ReturnItem): Identifier = item.identifier
 
   val symbols: SymbolTable = source.symbols.add(expressions.map(_.identifier):_*)
 
+  override lazy val slots = source.slots.extend(expressions.map(_.identifier.name))
+
+  private val expressionSlots = {
+    val compiler = new ExpressionCompiler(slots)
+    expressions.map(exp => {
+      val value: collection.Map[String, Any] => Any = if (compile) compiler.expression(exp) else exp
+      (value, exp.identifier.name, slots.slot(exp.identifier.name))
+    })
+  }
+
   def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = {
-    source.createResults(params).map(row => {
-      expressions.foreach( exp =>  row += exp.identifier.name -> exp(row) )
+    source.createResults(params).map(sourceRow => {
+      val row = SlotRow.widen(sourceRow, slots)
+      expressionSlots.foreach {
+        case (value, name, slot) => slots.write(row, slot, name, value(row))
+      }
       row
     })
   }
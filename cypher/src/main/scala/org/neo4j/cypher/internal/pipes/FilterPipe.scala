@@ -23,12 +23,17 @@ import java.lang.String
 import org.neo4j.cypher.internal.commands.Predicate
 import collection.mutable.Map
 
-class FilterPipe(source: Pipe, predicate: Predicate) extends PipeWithSource(source) {
+class FilterPipe(source: Pipe, predicate: Predicate, compile: Boolean = false) extends PipeWithSource(source) {
   val symbols = source.symbols
 
+  override lazy val slots = source.slots
+
+  private val isMatch: collection.Map[String, Any] => Boolean =
+    if (compile) new ExpressionCompiler(slots).predicate(predicate) else predicate.isMatch
+
   def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = {
     val src = source.createResults(params)
-    val result = src.filter(predicate isMatch)
+    val result = src.filter(isMatch)
     result
   }
 
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import collection.mutable.Map
+
+/**
+ * Rows handed on as they are read from an iterator. Unlike a Stream, rows that have been passed on aren't kept,
+ * so a result that is too big for the heap can be read to the end. Mapping and filtering them stays lazy, but
+ * they can only be iterated over once.
+ */
+object IteratedRows {
+  def apply(rows: Iterator[Map[String, Any]]): Traversable[Map[String, Any]] = new Iterable[Map[String, Any]] {
+    private var iterated = false
+
+    def iterator = {
+      if (iterated) throw new IllegalStateException("These rows can only be iterated over once")
+      iterated = true
+      rows
+    }
+  }.view
+
+  /**
+   * Iterates over rows without keeping them. Calling toIterator on a Traversable, a view among them, goes
+   * through a Stream, and the iterator it returns holds on to every row from the first one on.
+   */
+  def iterator[T](rows: Traversable[T]): Iterator[T] = rows match {
+    case iterable: Iterable[_] => iterable.iterator.asInstanceOf[Iterator[T]]
+    case _ => rows.toIterator
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import java.util.concurrent.{ExecutionException, Callable, Executors}
+import org.neo4j.graphdb.GraphDatabaseService
+import org.neo4j.helpers.DaemonThreadFactory
+import org.neo4j.kernel.AbstractGraphDatabase
+import scala.collection.JavaConverters._
+
+/**
+ * How many threads a MatchPipe may spread its start rows over. Every thread matches a contiguous part of the
+ * rows, and the matches are put back together in the order of the rows, so the result is the same as when
+ * matching on a single thread.
+ *
+ * Unlike sequential matching this isn't lazy: the start rows are read up front, and every thread collects
+ * all the matches of its part in memory before the first one is handed on. A LIMIT after the match therefore
+ * doesn't save any matching work, and the memory used grows with the number of matches.
+ *
+ * Worker threads read the committed state of the graph, they don't see the changes of the transaction the
+ * query runs in. Queries that run inside a transaction are therefore matched on the calling thread. Reads take
+ * no locks, so matching outside of a transaction needs no other coordination. Records loaded by the worker
+ * threads aren't counted as db hits when profiling.
+ */
+class MatchParallelism(val threads: Int, graph: GraphDatabaseService) {
+  def appliesTo(rows: Int): Boolean = rows > 1 && outsideOfTransaction
+
+  private def outsideOfTransaction = graph match {
+    case db: AbstractGraphDatabase => db.getTxManager.getTransaction == null
+    case _ => true
+  }
+
+  def flatMap[A, B](rows: IndexedSeq[A])(work: Seq[A] => Seq[B]): Seq[B] = {
+    val partitionSize = (rows.size + threads - 1) / threads
+    val tasks = rows.grouped(partitionSize).map(partition => new Callable[Seq[B]] {
+      def call() = work(partition)
+    }).toList
+
+    try {
+      MatchParallelism.workers.invokeAll(tasks.asJava).asScala.flatMap(_.get())
+    } catch {
+      case e: ExecutionException => throw e.getCause
+    }
+  }
+}
+
+object MatchParallelism {
+  /**
+   * The configuration setting holding the number of threads a single pattern match may use. Matching is
+   * done on the calling thread unless it is set to more than one.
+   */
+  val configKey = "cypher_match_threads"
+
+  def configured(graph: GraphDatabaseService): Option[MatchParallelism] = graph match {
+    case db: AbstractGraphDatabase => Option(db.getConfig.getParams.get(configKey)).
+      map(_.toString.trim.toInt).
+      filter(_ > 1).
+      map(new MatchParallelism(_, graph))
+    case _ => None
+  }
+
+  // Shared by all queries. Idle threads go away after a minute.
+  private lazy val workers = Executors.newCachedThreadPool(new DaemonThreadFactory("Cypher-Match"))
+}
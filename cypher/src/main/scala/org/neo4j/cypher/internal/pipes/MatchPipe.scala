@@ -19,21 +19,55 @@
  */
 package org.neo4j.cypher.internal.pipes
 
-import matching.MatchingContext
+import matching.{NoStatistics, ExpansionCost, MatchingContext}
 import java.lang.String
 import org.neo4j.cypher.internal.commands.{Predicate, Pattern}
 import collection.mutable.Map
+import java.util.concurrent.atomic.AtomicLong
 
-class MatchPipe(source: Pipe, patterns: Seq[Pattern], predicates: Seq[Predicate]) extends Pipe {
-  val matchingContext = new MatchingContext(patterns, source.symbols, predicates)
+class MatchPipe(source: Pipe, patterns: Seq[Pattern], predicates: Seq[Predicate], expansionCost: ExpansionCost = NoStatistics,
+                parallelism: Option[MatchParallelism] = None) extends Pipe {
+  val matchingContext = new MatchingContext(patterns, source.symbols, predicates, expansionCost)
   val symbols = matchingContext.symbols
 
-  def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] =
-    source.createResults(params).flatMap(sourcePipeRow => {
-      matchingContext.getMatches(sourcePipeRow.toMap).map( patternMatch => {
-        sourcePipeRow ++ patternMatch
-      })
+  override lazy val slots = source.slots.extend(symbols.keys)
+
+  def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = {
+    val sourceRows = source.createResults(params)
+
+    parallelism match {
+      case Some(threads) =>
+        // Buffered, so that the source only runs once even if it turns out to be too small to split up
+        val rows = sourceRows.toIndexedSeq
+        if (threads.appliesTo(rows.size))
+          threads.flatMap(rows)(partition => {
+            // The matchers keep state while matching, so every thread gets its own
+            val context = new MatchingContext(patterns, source.symbols, predicates, expansionCost)
+            partition.flatMap(matches(context, _)).toList
+          })
+        else
+          rows.flatMap(matches(matchingContext, _))
+      case _ => sourceRows.flatMap(matches(matchingContext, _))
+    }
+  }
+
+  private def matches(context: MatchingContext, sourcePipeRow: Map[String, Any]): Traversable[Map[String, Any]] = {
+    rowsIn.incrementAndGet()
+    context.getMatches(sourcePipeRow.toMap).map(patternMatch => {
+      rowsOut.incrementAndGet()
+      SlotRow.copyOf(sourcePipeRow, slots) ++= patternMatch
     })
+  }
+
+  // Counted over every execution of the plan, to compare against the estimate
+  private val rowsIn = new AtomicLong()
+  private val rowsOut = new AtomicLong()
+
+  private def costDescription = {
+    val in = rowsIn.get()
+    val actual = if (in == 0) "-" else "%.2f".format(rowsOut.get().toDouble / in)
+    "estimated matches per row: %.2f, actual: %s".format(matchingContext.estimatedMatches, actual)
+  }
 
-  override def executionPlan(): String = source.executionPlan() + "\r\nPatternMatch(" + patterns.mkString(",") + ")"
+  override def executionPlan(): String = source.executionPlan() + "\r\nPatternMatch(" + patterns.mkString(",") + "; " + costDescription + ")"
 }
\ No newline at end of file
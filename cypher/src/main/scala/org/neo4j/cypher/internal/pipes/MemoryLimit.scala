@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import collection.Map
+import org.neo4j.graphdb.{PropertyContainer, GraphDatabaseService}
+import org.neo4j.kernel.AbstractGraphDatabase
+
+/**
+ * How much memory a sorting or aggregating pipe may fill with rows before it spills them to temporary files.
+ * The limit applies to every such pipe of a query on its own, and sizes are rough estimates.
+ */
+case class MemoryLimit(bytes: Long) {
+  def isUnlimited = bytes == Long.MaxValue
+
+  def exceededBy(size: Long) = size > bytes
+}
+
+object MemoryLimit {
+  val Unlimited = MemoryLimit(Long.MaxValue)
+
+  /**
+   * The configuration setting holding the limit, in bytes or with a k, M or G suffix. Without it, rows are
+   * never spilled.
+   */
+  val configKey = "cypher_query_memory_limit"
+
+  def configured(graph: GraphDatabaseService): MemoryLimit = graph match {
+    case db: AbstractGraphDatabase => Option(db.getConfig.getParams.get(configKey)) match {
+      case Some(value) => parse(value.toString)
+      case None => Unlimited
+    }
+    case _ => Unlimited
+  }
+
+  def parse(value: String): MemoryLimit = {
+    val trimmed = value.trim
+    val (digits, multiplier) = trimmed.last.toLower match {
+      case 'k' => (trimmed.init, 1024L)
+      case 'm' => (trimmed.init, 1024L * 1024)
+      case 'g' => (trimmed.init, 1024L * 1024 * 1024)
+      case _ => (trimmed, 1L)
+    }
+    try {
+      MemoryLimit(digits.trim.toLong * multiplier)
+    } catch {
+      case e: NumberFormatException => throw new IllegalArgumentException("Invalid " + configKey + ": " + value, e)
+    }
+  }
+
+  private val RowOverhead = 64L
+  private val EntryOverhead = 32L
+
+  /**
+   * A rough estimate of the heap a row takes up, good enough to decide when to spill.
+   */
+  def estimatedSize(row: Map[String, Any]): Long = row.foldLeft(RowOverhead) {
+    case (size, (_, value)) => size + EntryOverhead + estimatedSize(value)
+  }
+
+  def estimatedSize(value: Any): Long = value match {
+    case null => 0
+    case s: String => 40 + 2 * s.length
+    case _: PropertyContainer => 24
+    case t: Traversable[_] => t.foldLeft(32L)((size, v) => size + 8 + estimatedSize(v))
+    case a: Array[_] => a.foldLeft(16L)((size, v) => size + 8 + estimatedSize(v))
+    case _ => 16
+  }
+}
@@ -37,7 +37,8 @@ class NamedPathPipe(source: Pipe, path: NamedPath) extends Pipe {
     firstNode
   }
 
-  def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = source.createResults(params).map(m => {
+  def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = source.createResults(params).map(sourceRow => {
+    val m = SlotRow.widen(sourceRow, slots)
     def get(x: String): PropertyContainer = m(x).asInstanceOf[PropertyContainer]
 
     val firstNode: String = getFirstNode
@@ -76,5 +77,7 @@ class NamedPathPipe(source: Pipe, path: NamedPath) extends Pipe {
 
   val symbols = source.symbols.add(Identifier(path.pathName, PathType()))
 
+  override lazy val slots = source.slots.extend(Seq(path.pathName))
+
   override def executionPlan(): String = source.executionPlan() + "\r\nExtractPath(" + path.pathName + " = " + path.pathPattern.mkString(", ") + ")"
 }
\ No newline at end of file
@@ -45,21 +45,28 @@ class OrderedAggregationPipe(source: Pipe, val keyExpressions: Seq[Expression],
     keySymbols.add(aggregateIdentifiers: _*)
   }
 
-  def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = new OrderedAggregator(source.createResults(params), keyExpressions, aggregations)
+  override lazy val slots = SlotLayout(keyExpressions.map(_.identifier.name) ++ aggregations.map(_.identifier.name))
+
+  def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = new OrderedAggregator(source.createResults(params), keyExpressions, aggregations, slots)
 
   override def executionPlan(): String = source.executionPlan() + "\r\n" + "EagerAggregation( keys: [" + keyExpressions.map(_.identifier.name).mkString(", ") + "], aggregates: [" + aggregations.mkString(", ") + "])"
 }
 
 private class OrderedAggregator(source: Traversable[Map[String, Any]],
                                 returnItems: Seq[Expression],
-                                aggregations: Seq[AggregationExpression]) extends Traversable[Map[String, Any]] {
+                                aggregations: Seq[AggregationExpression],
+                                slots: SlotLayout) extends Traversable[Map[String, Any]] {
   var currentKey: Option[Seq[Any]] = None
   var aggregationSpool: Seq[AggregationFunction] = null
-  val keyColumns = returnItems.map(_.identifier.name)
-  val aggregateColumns = aggregations.map(_.identifier.name)
+  val keySlots = returnItems.map(exp => slots.slot(exp.identifier.name))
+  val aggregateSlots = aggregations.map(agg => slots.slot(agg.identifier.name))
 
   def getIntermediateResults[U]: Map[String, Any] = {
-    (keyColumns.zip(currentKey.get) ++ aggregateColumns.zip(aggregationSpool.map(_.result))).foldLeft(Map[String,Any]())( _ += _ )
+    val row = new SlotRow(slots)
+    (keySlots.zip(currentKey.get) ++ aggregateSlots.zip(aggregationSpool.map(_.result))).foreach {
+      case (slot, value) => row.set(slot, value)
+    }
+    row
   }
 
   def foreach[U](f: (Map[String, Any]) => U) {
@@ -33,10 +33,16 @@ trait Pipe {
   def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]]
   def symbols: SymbolTable
   def executionPlan(): String
+
+  /**
+   * The slots of the rows this pipe produces. Pipes that pass on the rows of their source share
+   * or extend the layout of the source.
+   */
+  lazy val slots: SlotLayout = SlotLayout(symbols)
 }
 
 class NullPipe extends Pipe {
-  def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = Seq(Map())
+  def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = Seq(new SlotRow(slots))
 
   def symbols: SymbolTable = new SymbolTable()
 
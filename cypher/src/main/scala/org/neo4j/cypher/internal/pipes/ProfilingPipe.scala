@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import collection.mutable.Map
+import org.neo4j.cypher.PlanDescription
+import org.neo4j.graphdb.GraphDatabaseService
+import org.neo4j.kernel.AbstractGraphDatabase
+import org.neo4j.kernel.impl.core.StoreAccesses
+
+/**
+ * Counts the records loaded from the store while a profiled query runs. Only the loads made by the thread
+ * running the query are counted, and records found in the cache are not counted at all.
+ */
+class DbHitCounter(graph: GraphDatabaseService) {
+  private val nodeManager = graph match {
+    case db: AbstractGraphDatabase => Some(db.getNodeManager)
+    case _ => None
+  }
+
+  private var accesses: Option[StoreAccesses] = None
+
+  def counting[T](work: => T): T = nodeManager match {
+    case None => work
+    case Some(manager) => {
+      accesses = Some(manager.startCountingStoreAccesses())
+      try {
+        work
+      } finally {
+        manager.stopCountingStoreAccesses()
+      }
+    }
+  }
+
+  def current: Long = accesses.map(_.getTotal).getOrElse(0L)
+}
+
+/**
+ * Wraps the pipe added by a plan builder when a query is profiled. Rows are counted as they pass through, so
+ * lazy pipes still run once. The time and db hits measured are those spent producing the rows of the pipe, which
+ * covers the pipe and everything before it, but not the pipes consuming the rows. What the pipe did itself is
+ * what is left after taking away the numbers of the pipe before it.
+ */
+class ProfilingPipe(inner: Pipe, source: Option[ProfilingPipe], dbHits: DbHitCounter) extends Pipe {
+  val symbols = inner.symbols
+
+  override lazy val slots = inner.slots
+
+  private var rows = 0L
+  private var nanos = 0L
+  private var hits = 0L
+
+  def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] =
+    counted(measured(inner.createResults(params)))
+
+  private def measured[T](work: => T): T = {
+    val hitsBefore = dbHits.current
+    val start = System.nanoTime()
+    try {
+      work
+    } finally {
+      nanos += System.nanoTime() - start
+      hits += dbHits.current - hitsBefore
+    }
+  }
+
+  private def counted(result: Traversable[Map[String, Any]]): Traversable[Map[String, Any]] = result match {
+    case iterable: Iterable[_] => {
+      val rowIterator = measured(iterable.iterator.asInstanceOf[Iterator[Map[String, Any]]])
+
+      // A single iterator, so that each row is counted once even if the rows are looked at again
+      IteratedRows(new Iterator[Map[String, Any]] {
+        def hasNext = measured(rowIterator.hasNext)
+
+        def next() = {
+          val row = measured(rowIterator.next())
+          rows += 1
+          row
+        }
+      })
+    }
+
+    case _ => new Traversable[Map[String, Any]] {
+      def foreach[V](f: Map[String, Any] => V) {
+        var hitsBefore = dbHits.current
+        var start = System.nanoTime()
+        result.foreach(row => {
+          nanos += System.nanoTime() - start
+          hits += dbHits.current - hitsBefore
+          rows += 1
+          f(row)
+          hitsBefore = dbHits.current
+          start = System.nanoTime()
+        })
+        nanos += System.nanoTime() - start
+        hits += dbHits.current - hitsBefore
+      }
+    }
+  }
+
+  def executionPlan(): String = inner.executionPlan()
+
+  // A builder can add more than one pipe at a time, they share the numbers
+  private def name = {
+    val before = source.map(_.executionPlan().split("\r\n").size).getOrElse(0)
+    inner.executionPlan().split("\r\n").drop(before).mkString(", ")
+  }
+
+  def planDescription: PlanDescription = {
+    val rowsIn = source.map(_.rows).getOrElse(0L)
+    val ownNanos = nanos - source.map(_.nanos).getOrElse(0L)
+    val ownHits = hits - source.map(_.hits).getOrElse(0L)
+    new PlanDescription(name, rowsIn, rows, ownHits, ownNanos / 1000000.0, source.map(_.planDescription))
+  }
+}
@@ -47,7 +47,7 @@ abstract class ShortestPathPipe(source: Pipe, ast: ShortestPath) extends PipeWit
     val expander = createExpander
     val depth = maxDepth.getOrElse(15)
 
-    findResult(expander, start, end,  depth, m)
+    findResult(expander, start, end,  depth, SlotRow.widen(m, slots))
   })
 
   private def getStartAndEnd[U](m: Map[String, Any]): (Node, Node) = {
@@ -70,6 +70,8 @@ abstract class ShortestPathPipe(source: Pipe, ast: ShortestPath) extends PipeWit
 
   val symbols = source.symbols.add(Identifier(pathName, PathType()))
 
+  override lazy val slots = source.slots.extend(Seq(pathName))
+
   override def executionPlan(): String = source.executionPlan() + "\r\n" + "ShortestPath(" + ast + ")"
 }
 
@@ -27,26 +27,29 @@ import collection.mutable.Map
 class SlicePipe(source:Pipe, skip:Option[Expression], limit:Option[Expression]) extends Pipe {
   val symbols = source.symbols
 
+  override lazy val slots = source.slots
+
   //TODO: Make this nicer. I'm sure it's expensive and silly.
   def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = {
-    val sourceTraversable = source.createResults(params)
+    // Read only once, the rows of a pipe like a spilled sort can't be iterated over again
+    val sourceRows = IteratedRows.iterator(source.createResults(params)).buffered
 
-    if(sourceTraversable.isEmpty)
+    if(!sourceRows.hasNext)
       return Seq()
 
-    val first: Map[String, Any] = sourceTraversable.head
+    val first: Map[String, Any] = sourceRows.head
 
     def asInt(v:Expression)=v(first).asInstanceOf[Int]
 
-    (skip, limit) match {
-      case (Some(x), None) => sourceTraversable.drop(asInt(x))
-      case (None, Some(x)) => sourceTraversable.take(asInt(x))
+    IteratedRows((skip, limit) match {
+      case (Some(x), None) => sourceRows.drop(asInt(x))
+      case (None, Some(x)) => sourceRows.take(asInt(x))
       case (Some(startAt), Some(count)) => {
         val start = asInt(startAt)
-        sourceTraversable.slice(start, start + asInt(count))
+        sourceRows.slice(start, start + asInt(count))
       }
       case (None, None)=>throw new ThisShouldNotHappenError("Andres Taylor", "A slice pipe that doesn't slice should never exist.")
-    }
+    })
   }
 
   override def executionPlan(): String = {
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.neo4j.cypher.internal.symbols.SymbolTable
+
+/**
+ * Assigns the identifiers of a pipe fixed positions in a SlotRow. Layouts are resolved from the
+ * SymbolTable when the execution plan is built. A pipe that adds identifiers extends the layout of
+ * its source, so identifiers that already have a slot keep it all the way down the pipe chain.
+ */
+class SlotLayout private(val parent: Option[SlotLayout], val names: IndexedSeq[String]) {
+  private val slots: Map[String, Int] = names.zipWithIndex.toMap
+
+  def size: Int = names.size
+
+  def slot(name: String): Int = slots.getOrElse(name, -1)
+
+  def name(slot: Int): String = names(slot)
+
+  def extend(newNames: Seq[String]): SlotLayout = {
+    val added = newNames.distinct.filterNot(slots.contains)
+    if (added.isEmpty)
+      this
+    else
+      new SlotLayout(Some(this), names ++ added)
+  }
+
+  def extendsLayout(other: SlotLayout): Boolean = (this eq other) || parent.exists(_.extendsLayout(other))
+
+  def sharesSlotsWith(other: SlotLayout): Boolean = (this eq other) || extendsLayout(other) || other.extendsLayout(this)
+
+  /**
+   * Reads the identifier `name`, which lives at `slot` in this layout. Rows that aren't laid out
+   * compatibly with this layout are read by name.
+   */
+  def read(row: collection.Map[String, Any], slot: Int, name: String): Any = row match {
+    case r: SlotRow if slot != -1 && r.layout.sharesSlotsWith(this) => r.valueAt(slot) match {
+      case SlotRow.Unset => row(name)
+      case value => value
+    }
+    case _ => row(name)
+  }
+
+  /**
+   * Reads the identifier `name` if the row has it, and computes the value otherwise. Rows laid out by
+   * this layout only have identifiers with a slot, apart from the query parameters.
+   */
+  def readOrCompute(row: collection.Map[String, Any], slot: Int, name: String, compute: collection.Map[String, Any] => Any): Any = row match {
+    case r: SlotRow if slot == -1 && (r.layout eq this) => compute(row)
+    case r: SlotRow if slot != -1 && r.layout.sharesSlotsWith(this) => r.valueAt(slot) match {
+      case SlotRow.Unset => compute(row)
+      case value => value
+    }
+    case _ => row.get(name) match {
+      case Some(value) => value
+      case None => compute(row)
+    }
+  }
+
+  def write(row: collection.mutable.Map[String, Any], slot: Int, name: String, value: Any) {
+    row match {
+      case r: SlotRow if slot != -1 && (r.layout eq this) => r.set(slot, value)
+      case _ => row += name -> value
+    }
+  }
+
+  override def toString = names.mkString("Slots(", ", ", ")")
+}
+
+object SlotLayout {
+  val empty = new SlotLayout(None, IndexedSeq())
+
+  def apply(symbols: SymbolTable): SlotLayout = apply(symbols.keys)
+
+  def apply(names: Seq[String]): SlotLayout = empty.extend(names)
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import collection.mutable.Map
+import collection.immutable.{Map => ImmutableMap}
+
+/**
+ * A row that keeps the identifiers of its SlotLayout in an array instead of a hash map. Cloning a
+ * row is an array copy, and pipes that resolved their slots when the plan was built read and write
+ * values without hashing the identifier names. Keys outside the layout, such as query parameters,
+ * go into an immutable map that clones share.
+ */
+class SlotRow private(private var slotLayout: SlotLayout,
+                      private var slotValues: Array[Any],
+                      private var extra: ImmutableMap[String, Any]) extends Map[String, Any] {
+
+  def this(layout: SlotLayout) = this (layout, SlotRow.unsetSlots(layout.size), ImmutableMap())
+
+  def layout: SlotLayout = slotLayout
+
+  private[pipes] def valueAt(slot: Int): Any = if (slot < slotValues.length) slotValues(slot) else SlotRow.Unset
+
+  def set(slot: Int, value: Any) {
+    if (slot >= slotValues.length) {
+      slotValues = SlotRow.grow(slotValues, slotLayout.size)
+    }
+    slotValues(slot) = value
+  }
+
+  def get(key: String): Option[Any] = {
+    val slot = slotLayout.slot(key)
+    if (slot == -1)
+      extra.get(key)
+    else valueAt(slot) match {
+      case SlotRow.Unset => None
+      case value => Some(value)
+    }
+  }
+
+  def +=(kv: (String, Any)): this.type = {
+    val slot = slotLayout.slot(kv._1)
+    if (slot == -1)
+      extra += kv
+    else
+      set(slot, kv._2)
+    this
+  }
+
+  def -=(key: String): this.type = {
+    val slot = slotLayout.slot(key)
+    if (slot == -1)
+      extra -= key
+    else if (slot < slotValues.length)
+      slotValues(slot) = SlotRow.Unset
+    this
+  }
+
+  def iterator: Iterator[(String, Any)] = {
+    val slotted = (0 until slotValues.length).iterator.
+      filter(i => SlotRow.isSet(slotValues(i))).
+      map(i => slotLayout.name(i) -> slotValues(i))
+
+    slotted ++ extra.iterator
+  }
+
+  override def size: Int = slotValues.count(SlotRow.isSet) + extra.size
+
+  override def empty: SlotRow = new SlotRow(slotLayout)
+
+  override def clone(): SlotRow = new SlotRow(slotLayout, slotValues.clone(), extra)
+
+  /**
+   * Moves this row over to a layout that extends its current one. Existing values keep their slots,
+   * the array grows when a new slot is first written.
+   */
+  private[pipes] def widenTo(layout: SlotLayout) {
+    if (!(layout eq slotLayout)) {
+      slotLayout = layout
+      slotExtraKeys()
+    }
+  }
+
+  private[pipes] def copyTo(layout: SlotLayout): SlotRow = {
+    val copy = new SlotRow(layout, SlotRow.grow(slotValues, layout.size), extra)
+    copy.slotExtraKeys()
+    copy
+  }
+
+  private def slotExtraKeys() {
+    if (extra.nonEmpty) {
+      val slotted = extra.filterKeys(slotLayout.slot(_) != -1)
+      slotted.foreach {
+        case (key, value) => set(slotLayout.slot(key), value)
+      }
+      extra = extra -- slotted.keys
+    }
+  }
+}
+
+object SlotRow {
+  private[pipes] case object Unset
+
+  private def isSet(value: Any): Boolean = !(value.asInstanceOf[AnyRef] eq Unset)
+
+  private def unsetSlots(size: Int): Array[Any] = Array.fill[Any](size)(Unset)
+
+  private def grow(values: Array[Any], size: Int): Array[Any] = {
+    val grown = unsetSlots(math.max(size, values.length))
+    System.arraycopy(values, 0, grown, 0, values.length)
+    grown
+  }
+
+  /**
+   * Copies a row into a new row laid out by `layout`. Rows from pipes further up the chain are copied
+   * slot by slot, other maps entry by entry.
+   */
+  def copyOf(row: collection.Map[String, Any], layout: SlotLayout): SlotRow = row match {
+    case r: SlotRow if layout.extendsLayout(r.layout) => r.copyTo(layout)
+    case _ => new SlotRow(layout) ++= row
+  }
+
+  /**
+   * Lets a pipe that adds identifiers to the rows it passes on write them into slots. Rows that
+   * aren't laid out compatibly are returned as they are.
+   */
+  def widen(row: Map[String, Any], layout: SlotLayout): Map[String, Any] = {
+    row match {
+      case r: SlotRow if layout.extendsLayout(r.layout) => r.widenTo(layout)
+      case _ =>
+    }
+    row
+  }
+}
@@ -23,29 +23,121 @@ import scala.math.signum
 import org.neo4j.cypher.internal.commands.SortItem
 import java.lang.String
 import org.neo4j.cypher.internal.Comparer
-import collection.mutable.Map
+import collection.mutable.{ArrayBuffer, Map, PriorityQueue}
 
-class SortPipe(source: Pipe, sortDescription: List[SortItem]) extends Pipe with Comparer {
+class SortPipe(source: Pipe, sortDescription: List[SortItem], memoryLimit: MemoryLimit = MemoryLimit.Unlimited)
+  extends Pipe with Comparer {
   val symbols = source.symbols
 
+  override lazy val slots = source.slots
+
   assertDependenciesAreMet()
 
-  def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = source.createResults(params).toList.sortWith((a, b) => compareBy(a, b, sortDescription))
+  private val sortKeys = sortDescription.map(item => SortKey(item, slots.slot(item.expression.identifier.name)))
+
+  def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] =
+    if (memoryLimit.isUnlimited)
+      source.createResults(params).toList.sortWith(lessThan)
+    else
+      externalSort(IteratedRows.iterator(source.createResults(params)))
+
+  /**
+   * Sorts runs of rows that fit within the memory limit, spills all runs but the last, and merges them as the
+   * sorted rows are asked for. Sorting a run is stable and the merge prefers earlier runs, so rows that compare
+   * as equal keep their order. Merged rows aren't kept once handed on. The spilled runs are deleted when the
+   * merge is done or fails, or else when the result is closed.
+   */
+  private def externalSort(rows: Iterator[Map[String, Any]]): Traversable[Map[String, Any]] = {
+    val runs = new ArrayBuffer[SpillFile]
+    val buffer = new ArrayBuffer[Map[String, Any]]
+    var size = 0L
+
+    try {
+      rows.foreach(row => {
+        buffer += row
+        size += MemoryLimit.estimatedSize(row)
+        if (memoryLimit.exceededBy(size)) {
+          val run = new SpillFile(slots)
+          runs += run
+          buffer.sortWith(lessThan).foreach(run.write)
+          buffer.clear()
+          size = 0
+        }
+      })
+    } catch {
+      case e: Throwable => {
+        runs.foreach(_.delete())
+        throw e
+      }
+    }
+
+    val lastRun = buffer.sortWith(lessThan)
+    if (runs.isEmpty)
+      lastRun.toList
+    else
+      IteratedRows(new Merge(runs.map(_.read()) :+ lastRun.iterator, runs))
+  }
+
+  private class Merge(runs: Seq[Iterator[Map[String, Any]]], spilled: Seq[SpillFile]) extends Iterator[Map[String, Any]] {
+    // The queue dequeues its greatest element, which is made to be the head that sorts first
+    private val heads = new PriorityQueue[RunHead]()(Ordering.fromLessThan((a, b) => sortsBefore(b, a)))
+    closingOnFailure(runs.indices.foreach(advance))
+
+    private def advance(run: Int) {
+      if (runs(run).hasNext) heads += RunHead(runs(run).next(), run)
+    }
+
+    private def sortsBefore(a: RunHead, b: RunHead) =
+      lessThan(a.row, b.row) || (!lessThan(b.row, a.row) && a.run < b.run)
+
+    def hasNext = {
+      if (heads.isEmpty) close()
+      heads.nonEmpty
+    }
+
+    def next() = {
+      val head = heads.dequeue()
+      closingOnFailure(advance(head.run))
+      head.row
+    }
 
-  def compareBy(a: Map[String, Any], b: Map[String, Any], order: Seq[SortItem]): Boolean = order match {
+    private def closingOnFailure(work: => Unit) {
+      try {
+        work
+      } catch {
+        case e: Throwable => {
+          close()
+          throw e
+        }
+      }
+    }
+
+    def close() {
+      spilled.foreach(_.delete())
+    }
+  }
+
+  private case class RunHead(row: Map[String, Any], run: Int)
+
+  protected def lessThan(a: Map[String, Any], b: Map[String, Any]): Boolean = compareBy(a, b, sortKeys)
+
+  private def compareBy(a: Map[String, Any], b: Map[String, Any], order: List[SortKey]): Boolean = order match {
     case Nil => false
     case head :: tail => {
-      val key = head.expression.identifier.name
-      val aVal = a(key)
-      val bVal = b(key)
+      val aVal = slots.read(a, head.slot, head.name)
+      val bVal = slots.read(b, head.slot, head.name)
       signum(compare(aVal, bVal)) match {
-        case 1 => !head.ascending
-        case -1 => head.ascending
+        case 1 => !head.item.ascending
+        case -1 => head.item.ascending
         case 0 => compareBy(a, b, tail)
       }
     }
   }
 
+  private case class SortKey(item: SortItem, slot: Int) {
+    val name = item.expression.identifier.name
+  }
+
   override def executionPlan(): String = source.executionPlan() + "\r\nSort(" + sortDescription.mkString(",") + ")"
 
   private def assertDependenciesAreMet() {
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import java.io._
+import collection.mutable.{ArrayBuffer, HashMap, HashSet, Map}
+import org.neo4j.graphdb.{GraphDatabaseService, Relationship, Node}
+
+/**
+ * Rows written out to a temporary file, and read back in the same order. Nodes and relationships are written
+ * as their ids and looked up again when read, the few values that can't be serialized stay in memory. Rows
+ * are read back into the given layout.
+ *
+ * The file is deleted when the last row has been read back or on delete(). A spill file created while
+ * SpillFiles.collecting runs belongs to those spill files, so that it is deleted as well when the result of
+ * the query is closed before it has been read to the end.
+ */
+class SpillFile(layout: SlotLayout) {
+  import SpillFile._
+
+  private val file = File.createTempFile("cypher-", ".rows")
+  private val owner = Option(SpillFiles.current.get)
+  owner.foreach(_.add(this))
+
+  private val kept = new ArrayBuffer[Any]
+  private var graph: GraphDatabaseService = null
+  private var out: RowOutputStream = new RowOutputStream(new BufferedOutputStream(new FileOutputStream(file), BufferSize))
+  private var in: RowInputStream = null
+  private val keys = new HashMap[String, Int]
+  private var count = 0
+
+  def size = count
+
+  def write(row: collection.Map[String, Any]) {
+    out.writeInt(row.size)
+    row.foreach {
+      case (key, value) => {
+        keys.get(key) match {
+          case Some(index) => out.writeInt(index)
+          case None => {
+            out.writeInt(-1)
+            out.writeUTF(key)
+            keys(key) = keys.size
+          }
+        }
+        out.writeObject(value)
+      }
+    }
+    // Forget the objects written so far, they would otherwise be kept around to write back references
+    out.reset()
+    count += 1
+  }
+
+  /**
+   * Reads the rows back, and deletes the file once they have all been read. Nothing can be written after this.
+   */
+  def read(): Iterator[Map[String, Any]] = {
+    out.close()
+    out = null
+    if (count == 0) {
+      delete()
+      return Iterator.empty
+    }
+    in = new RowInputStream(new BufferedInputStream(new FileInputStream(file), BufferSize))
+    val names = new ArrayBuffer[String]
+
+    new Iterator[Map[String, Any]] {
+      private var left = SpillFile.this.count
+
+      def hasNext = left > 0
+
+      def next(): Map[String, Any] = {
+        if (left == 0) throw new NoSuchElementException
+        val row = new SlotRow(layout)
+        (0 until in.readInt()).foreach(_ => {
+          val index = in.readInt()
+          val key = if (index == -1) {
+            names += in.readUTF()
+            names.last
+          } else names(index)
+          row += key -> in.readObject()
+        })
+        left -= 1
+        if (left == 0) {
+          delete()
+        }
+        row
+      }
+    }
+  }
+
+  def delete() {
+    if (out != null) {
+      out.close()
+      out = null
+    }
+    if (in != null) {
+      in.close()
+      in = null
+    }
+    file.delete()
+    owner.foreach(_.remove(this))
+  }
+
+  private class RowOutputStream(stream: OutputStream) extends ObjectOutputStream(stream) {
+    enableReplaceObject(true)
+
+    override def replaceObject(obj: AnyRef): AnyRef = obj match {
+      case n: Node => {
+        graph = n.getGraphDatabase
+        NodeId(n.getId)
+      }
+      case r: Relationship => {
+        graph = r.getGraphDatabase
+        RelationshipId(r.getId)
+      }
+      case s: Serializable => s
+      case other => {
+        kept += other
+        KeptValue(kept.size - 1)
+      }
+    }
+  }
+
+  private class RowInputStream(stream: InputStream) extends ObjectInputStream(stream) {
+    enableResolveObject(true)
+
+    override def resolveObject(obj: AnyRef): AnyRef = obj match {
+      case NodeId(id) => graph.getNodeById(id)
+      case RelationshipId(id) => graph.getRelationshipById(id)
+      case KeptValue(index) => kept(index).asInstanceOf[AnyRef]
+      case x => x
+    }
+  }
+}
+
+/**
+ * The spill files created for one query result, deleted together when the result is closed.
+ */
+class SpillFiles {
+  private val files = new HashSet[SpillFile]
+
+  /**
+   * Runs work on this thread with the spill files it creates belonging to these.
+   */
+  def collecting[T](work: => T): T = {
+    val previous = SpillFiles.current.get
+    SpillFiles.current.set(this)
+    try {
+      work
+    } finally {
+      SpillFiles.current.set(previous)
+    }
+  }
+
+  private[pipes] def add(file: SpillFile) {
+    synchronized(files += file)
+  }
+
+  private[pipes] def remove(file: SpillFile) {
+    synchronized(files -= file)
+  }
+
+  def deleteAll() {
+    synchronized(files.toList).foreach(_.delete())
+  }
+}
+
+object SpillFiles {
+  private[pipes] val current = new ThreadLocal[SpillFiles]
+}
+
+object SpillFile {
+  private val BufferSize = 64 * 1024
+
+  private case class NodeId(id: Long)
+
+  private case class RelationshipId(id: Long)
+
+  private case class KeptValue(index: Int)
+}
@@ -32,13 +32,17 @@ abstract class StartPipe[T <: PropertyContainer](inner: Pipe, name: String, crea
 
   val symbols = inner.symbols.add(Identifier(name, identifierType))
 
+  override lazy val slots = inner.slots.extend(Seq(name))
+
+  private val slot = slots.slot(name)
 
   def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = {
     val map = inner.createResults(params).flatMap(sourceMap => {
       val source: Iterable[T] = createSource(sourceMap)
       source.map(x =>{
-        val newMap: Map[String, Any] = sourceMap.clone().asInstanceOf[Map[String, Any]]
-        newMap += name -> x
+        val newRow = SlotRow.copyOf(sourceMap, slots)
+        newRow.set(slot, x)
+        newRow
       })
     })
     map
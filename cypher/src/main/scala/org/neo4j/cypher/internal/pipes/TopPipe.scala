@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.neo4j.cypher.internal.commands.{Expression, SortItem}
+import collection.mutable.{Map, PriorityQueue}
+
+/**
+ * Sorts like SortPipe, but only keeps the first skip + limit rows. The rows are kept in a bounded
+ * heap with the row that sorts last on top, so memory stays proportional to skip + limit and
+ * every row costs O(log(skip + limit)). Skipping and limiting is still left to a SlicePipe.
+ */
+class TopPipe(source: Pipe, sortDescription: List[SortItem], skip: Option[Expression], limit: Expression)
+  extends SortPipe(source, sortDescription) {
+
+  override def createResults[U](params: Map[String, Any]): Traversable[Map[String, Any]] = {
+    var count = -1
+    var arrived = 0L
+    val heap = new PriorityQueue[TopRow]()(Ordering.fromLessThan(sortsBefore))
+
+    source.createResults(params).foreach(row => {
+      if (count == -1) {
+        count = skip.map(asInt(_, row)).getOrElse(0) + asInt(limit, row)
+      }
+
+      val candidate = TopRow(row, arrived)
+      arrived += 1
+
+      if (heap.size < count) {
+        heap += candidate
+      } else if (count > 0 && sortsBefore(candidate, heap.head)) {
+        heap.dequeue()
+        heap += candidate
+      }
+    })
+
+    heap.toList.sortWith(sortsBefore).map(_.row)
+  }
+
+  // Rows that compare as equal keep their arrival order, just like they do in a full sort
+  private def sortsBefore(a: TopRow, b: TopRow): Boolean =
+    lessThan(a.row, b.row) || (!lessThan(b.row, a.row) && a.arrived < b.arrived)
+
+  private def asInt(v: Expression, row: Map[String, Any]) = v(row).asInstanceOf[Int]
+
+  private case class TopRow(row: Map[String, Any], arrived: Long)
+
+  override def executionPlan(): String = source.executionPlan() + "\r\nTop(" + sortDescription.mkString(",") + ", " + (skip.toSeq :+ limit).mkString(" + ") + ")"
+}
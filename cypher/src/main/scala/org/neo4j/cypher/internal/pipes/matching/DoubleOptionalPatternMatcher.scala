@@ -28,8 +28,9 @@ class DoubleOptionalPatternMatcher(bindings: Map[String, MatchingPair],
                                    predicates: Seq[Predicate],
                                    includeOptionals: Boolean,
                                    source: Map[String, Any],
-                                   doubleOptionalPaths: Seq[DoubleOptionalPath])
-  extends PatternMatcher(bindings, predicates, includeOptionals, source) {
+                                   doubleOptionalPaths: Seq[DoubleOptionalPath],
+                                   costs: PatternCosts)
+  extends PatternMatcher(bindings, predicates, includeOptionals, source, costs) {
 
   override protected def traverseNextSpecificNode[U](remaining: Set[MatchingPair],
                                                      history: History,
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes.matching
+
+import org.neo4j.graphdb.{GraphDatabaseService, Direction}
+import org.neo4j.kernel.AbstractGraphDatabase
+import org.neo4j.kernel.impl.core.GraphStatistics
+
+/**
+ * Tells the pattern matchers how many relationships expanding a node is expected to yield, so they can start
+ * from the bound node that is cheapest to expand and expand the most selective relationships first.
+ */
+trait ExpansionCost {
+  def expectedDegree(relTypes: Seq[String], dir: Direction): Double
+
+  def nodeCount: Double
+}
+
+object ExpansionCost {
+  def apply(graph: GraphDatabaseService): ExpansionCost = graph match {
+    case db: AbstractGraphDatabase => new StatisticsExpansionCost(db.getNodeManager.getStatistics)
+    case _ => NoStatistics
+  }
+}
+
+/**
+ * Every expansion costs the same, so the matchers keep the order they would have used anyway
+ */
+object NoStatistics extends ExpansionCost {
+  def expectedDegree(relTypes: Seq[String], dir: Direction) = 1.0
+
+  def nodeCount = 1.0
+}
+
+class StatisticsExpansionCost(statistics: GraphStatistics) extends ExpansionCost {
+  def expectedDegree(relTypes: Seq[String], dir: Direction) = if (relTypes.isEmpty)
+    statistics.getExpectedDegree(null, dir)
+  else
+    relTypes.map(statistics.getExpectedDegree(_, dir)).sum
+
+  def nodeCount = statistics.getNodeCount.toDouble
+}
+
+/**
+ * The expected degrees of all the relationships in a pattern, from either side, worked out once when the
+ * execution plan is built.
+ */
+class PatternCosts(patternGraph: PatternGraph, cost: ExpansionCost) {
+  // Variable length relationships without an upper bound are assumed to be this long
+  val unboundedHops = 3
+
+  private val degrees: Map[(String, String), Double] = patternGraph.patternRels.values.flatMap(rel =>
+    Seq(rel.startNode, rel.endNode).map(node => (rel.key, node.key) -> estimateDegree(rel, node))).toMap
+
+  private def estimateDegree(rel: PatternRelationship, from: PatternNode): Double = {
+    val perHop = cost.expectedDegree(rel.relTypes, rel.getDirection(from))
+    rel match {
+      case varLength: VariableLengthPatternRelationship =>
+        math.pow(math.max(perHop, 1.0), varLength.maxHops.getOrElse(unboundedHops).toDouble)
+      case _ => perHop
+    }
+  }
+
+  def expectedDegree(rel: PatternRelationship, from: PatternNode): Double = degrees.getOrElse((rel.key, from.key), 1.0)
+
+  def startCost(node: PatternNode): Double = if (node.relationships.isEmpty)
+    0.0
+  else
+    node.relationships.map(expectedDegree(_, node)).min
+
+  def cheapestStart(pairs: Set[MatchingPair]): MatchingPair = pairs.minBy(pair => startCost(pair.patternNode))
+
+  def cheapestRelationship(rels: Seq[PatternRelationship], from: PatternNode): PatternRelationship = rels.minBy(expectedDegree(_, from))
+
+  /**
+   * Estimates how many matches a single row with the given nodes bound yields, expanding the pattern the way
+   * the matchers do: always the cheapest relationship reachable from what has been matched so far.
+   */
+  def estimatedMatches(boundNodes: Set[String]): Double = {
+    var visited = boundNodes.filter(patternGraph.patternNodes.contains)
+    var left = patternGraph.patternRels.values.toSet
+    var estimate = 1.0
+
+    while (left.nonEmpty) {
+      val reachable = for (rel <- left.toSeq; node <- Seq(rel.startNode, rel.endNode) if visited(node.key)) yield (rel, node)
+      if (reachable.isEmpty) {
+        return estimate
+      }
+
+      val (rel, from) = reachable.minBy {
+        case (r, n) => expectedDegree(r, n)
+      }
+      val other = rel.getOtherNode(from)
+      val degree = expectedDegree(rel, from)
+
+      // Closing a loop only keeps the matches where the relationship leads to the node already matched
+      val factor = if (visited(other.key)) math.min(1.0, degree / math.max(cost.nodeCount, 1.0)) else degree
+
+      estimate *= (if (rel.optional) math.max(factor, 1.0) else factor)
+      visited += other.key
+      left -= rel
+    }
+
+    estimate
+  }
+}
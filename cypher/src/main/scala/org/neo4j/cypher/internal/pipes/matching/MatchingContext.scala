@@ -31,8 +31,9 @@ import org.neo4j.cypher.internal.symbols._
  * The deciding factor is whether or not the pattern has loops in it. If it does, we have to use the much more
  * expensive pattern matching. If it doesn't, we get away with much simpler methods
  */
-class MatchingContext(patterns: Seq[Pattern], boundIdentifiers: SymbolTable, predicates: Seq[Predicate] = Seq()) {
+class MatchingContext(patterns: Seq[Pattern], boundIdentifiers: SymbolTable, predicates: Seq[Predicate] = Seq(), expansionCost: ExpansionCost = NoStatistics) {
   val patternGraph = buildPatternGraph()
+  val costs = new PatternCosts(patternGraph, expansionCost)
   val containsHardPatterns = patterns.find(!_.isInstanceOf[RelatedTo]).nonEmpty
   val builder: MatcherBuilder = decideWhichMatcherToUse()
 
@@ -48,6 +49,8 @@ class MatchingContext(patterns: Seq[Pattern], boundIdentifiers: SymbolTable, pre
 
   lazy val symbols = boundIdentifiers.add(identifiers: _*)
 
+  lazy val estimatedMatches = costs.estimatedMatches(boundIdentifiers.identifiers.filter(_.typ == NodeType()).map(_.name).toSet)
+
   def getMatches(sourceRow: Map[String, Any]): Traversable[Map[String, Any]] = {
     builder.getMatches(sourceRow)
   }
@@ -57,10 +60,10 @@ class MatchingContext(patterns: Seq[Pattern], boundIdentifiers: SymbolTable, pre
       new JoinerBuilder(patternGraph, predicates)
     } else */
     if(SimplePatternMatcherBuilder.canHandle(patternGraph)) {
-      new SimplePatternMatcherBuilder(patternGraph, predicates, symbols)
+      new SimplePatternMatcherBuilder(patternGraph, predicates, symbols, costs)
     } else {
 
-      new PatterMatchingBuilder(patternGraph, predicates)
+      new PatterMatchingBuilder(patternGraph, predicates, costs)
     }
   }
 
@@ -23,7 +23,7 @@ import org.neo4j.graphdb.Node
 import org.neo4j.cypher.internal.commands.{True, Predicate}
 import collection.Map
 
-class PatternMatcher(bindings: Map[String, MatchingPair], predicates: Seq[Predicate], includeOptionals: Boolean, source:Map[String,Any])
+class PatternMatcher(bindings: Map[String, MatchingPair], predicates: Seq[Predicate], includeOptionals: Boolean, source:Map[String,Any], costs: PatternCosts)
   extends Traversable[Map[String, Any]] {
   val boundNodes = bindings.filter(_._2.patternElement.isInstanceOf[PatternNode])
   val boundRels = bindings.filter(_._2.patternElement.isInstanceOf[PatternRelationship])
@@ -58,7 +58,7 @@ class PatternMatcher(bindings: Map[String, MatchingPair], predicates: Seq[Predic
     notYetVisited match {
       case List() => traverseNextNodeOrYield(leftToDoAfterThisOne, newHistory, yielder)
       case List(single) => traverseRelationship(current, single, newHistory, leftToDoAfterThisOne, yielder)
-      case _ => traverseRelationship(current, notYetVisited.head, newHistory, remaining, yielder)
+      case _ => traverseRelationship(current, costs.cheapestRelationship(notYetVisited, current.patternNode), newHistory, remaining, yielder)
     }
   }
 
@@ -66,8 +66,8 @@ class PatternMatcher(bindings: Map[String, MatchingPair], predicates: Seq[Predic
                               history: History,
                               yielder: Map[String, Any] => U): Boolean = {
 
-    val current = remaining.head
-    val leftToDoAfterThisOne = remaining.tail
+    val current = costs.cheapestStart(remaining)
+    val leftToDoAfterThisOne = remaining - current
 
     traverseNextSpecificNode(remaining, history, yielder, current, leftToDoAfterThisOne, false)
   }
@@ -52,7 +52,7 @@ class PatternRelationship(key: String,
       result
   }
 
-  protected def getDirection(node: PatternNode): Direction = {
+  def getDirection(node: PatternNode): Direction = {
     dir match {
       case Direction.OUTGOING => if (node == startNode) Direction.OUTGOING else Direction.INCOMING
       case Direction.INCOMING => if (node == endNode) Direction.OUTGOING else Direction.INCOMING
@@ -97,8 +97,8 @@ class VariableLengthPatternRelationship(pathName: String,
                                         val start: PatternNode,
                                         val end: PatternNode,
                                         val relIterable: Option[String],
-                                        minHops: Option[Int],
-                                        maxHops: Option[Int],
+                                        val minHops: Option[Int],
+                                        val maxHops: Option[Int],
                                         relType: Seq[String],
                                         dir: Direction,
                                         optional: Boolean,
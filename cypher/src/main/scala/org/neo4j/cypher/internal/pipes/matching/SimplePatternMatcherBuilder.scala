@@ -26,7 +26,7 @@ import collection.JavaConverters._
 import org.neo4j.cypher.internal.commands.{Predicate, True}
 import org.neo4j.cypher.internal.symbols.SymbolTable
 
-class SimplePatternMatcherBuilder(pattern: PatternGraph, predicates: Seq[Predicate], symbolTable: SymbolTable) extends MatcherBuilder {
+class SimplePatternMatcherBuilder(pattern: PatternGraph, predicates: Seq[Predicate], symbolTable: SymbolTable, costs: PatternCosts) extends MatcherBuilder {
   val patternNodes = pattern.patternNodes.map {
     case (key, pn) => {
       key -> {
@@ -74,7 +74,9 @@ class SimplePatternMatcherBuilder(pattern: PatternGraph, predicates: Seq[Predica
     setAssociations(sourceRow)
     val result = collection.mutable.Map(sourceRow.toSeq: _*)
     val validPredicates = predicates.filter(p => symbolTable.satisfies(p.dependencies))
-    val startPoint = patternNodes.values.find(_.getAssociation != null).get
+    val startPoint = patternNodes.filter(_._2.getAssociation != null).minBy {
+      case (key, _) => costs.startCost(pattern.patternNodes(key))
+    }._2
     SimplePatternMatcher.getMatcher.`match`(startPoint, startPoint.getAssociation).asScala.flatMap(patternMatch => {
       patternNodes.foreach {
         case (key, pn) => result += key -> patternMatch.getNodeFor(pn)
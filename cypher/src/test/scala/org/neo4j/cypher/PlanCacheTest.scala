@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher
+
+import org.junit.Test
+import org.scalatest.Assertions
+import org.neo4j.graphdb.Node
+
+class PlanCacheTest extends ExecutionEngineHelper with Assertions {
+  @Test def shouldShareThePlanBetweenQueriesDifferingInLiterals() {
+    val (a, b) = (createNode("a"), createNode("b"))
+
+    val first = engine.execute("start n=node(%d) return n".format(a.getId)).columnAs[Node]("n").toList
+    val second = engine.execute("start n=node(%d) return n".format(b.getId)).columnAs[Node]("n").toList
+
+    assert(first === List(a))
+    assert(second === List(b))
+    assert(engine.planCacheStatistics.getMisses === 1)
+    assert(engine.planCacheStatistics.getHits === 1)
+  }
+
+  @Test def shouldKeepColumnNamesOfTheOriginalQuery() {
+    val a = createNode("a")
+
+    val result = engine.execute("start n=node(%d) return n.name".format(a.getId))
+
+    assert(result.columns === List("n.name"))
+    assert(result.toList === List(Map("n.name" -> "a")))
+  }
+
+  @Test def shouldCombineExplicitAndAutomaticParameters() {
+    val (a, b) = (createNode("a"), createNode("b"))
+
+    val result = engine.execute("start n=node({id}) where n.name = 'b' return n", Map[String, Any]("id" -> List(a.getId, b.getId)))
+
+    assert(result.columnAs[Node]("n").toList === List(b))
+  }
+}
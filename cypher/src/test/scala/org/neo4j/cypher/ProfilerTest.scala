@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher
+
+import org.junit.Test
+import org.junit.Assert._
+import org.scalatest.Assertions
+
+class ProfilerTest extends ExecutionEngineHelper with Assertions {
+  private def steps(plan: PlanDescription): List[PlanDescription] = plan :: plan.source.map(steps).getOrElse(Nil)
+
+  @Test def shouldCountRowsGoingInAndOutOfEveryStep() {
+    val a = createNode("a")
+    val b = createNode("b")
+    val c = createNode("c")
+    relate(a, b)
+    relate(a, c)
+
+    val result = engine.profile("start a=node(%d) match a-->x return x".format(a.getId))
+    val plan = steps(result.executionPlanDescription())
+
+    assert(result.toList.size === 2)
+    assert(plan.head.rows === 2)
+    assert(plan.last.name === "Parameters()")
+
+    val matching = plan.find(_.name.startsWith("PatternMatch")).get
+    assert(matching.rowsIn === 1)
+    assert(matching.rows === 2)
+  }
+
+  @Test def shouldCountStoreAccessesOnCacheMisses() {
+    val a = createNode("a")
+    relate(a, createNode("b"))
+    graph.getNodeManager.clearCache()
+
+    val result = engine.profile("start a=node(%d) match a-->x return x.name".format(a.getId))
+    val plan = steps(result.executionPlanDescription())
+
+    assertTrue(result.executionPlanDescription().toString, plan.map(_.dbHits).sum > 0)
+    plan.foreach(step => assertTrue(step.toString, step.dbHits >= 0))
+  }
+
+  @Test def shouldProfileEveryExecutionOnItsOwn() {
+    createNodes("a", "b", "c")
+
+    val first = engine.profile("start n=node(1,2,3) return n").executionPlanDescription()
+    val second = engine.profile("start n=node(1,2,3) return n").executionPlanDescription()
+
+    assert(first.rows === 3)
+    assert(second.rows === 3)
+  }
+
+  @Test def shouldReturnTheSameRowsForSortedAggregationsWhenProfiled() {
+    val a = createNode("a")
+    val b = createNode("b")
+    relate(a, createNode("x"))
+    relate(a, createNode("y"))
+    relate(b, createNode("z"))
+    val query = "start n=node(%d,%d) match n-->x return n.name, count(x) order by n.name".format(a.getId, b.getId)
+
+    val profiled = engine.profile(query)
+    val plan = steps(profiled.executionPlanDescription())
+
+    assert(profiled.toList === engine.execute(query).toList)
+    assert(plan.head.rows === 2)
+    assert(plan.find(_.name.startsWith("PatternMatch")).get.rows === 3)
+  }
+
+  @Test def shouldCountEveryRowOnceWhenTheResultIsLimited() {
+    createNodes("a", "b", "c", "d", "e")
+
+    val result = engine.profile("start n=node(1,2,3,4,5) return n limit 2")
+    val plan = steps(result.executionPlanDescription())
+
+    assert(result.toList.size === 2)
+    assert(plan.head.rows === 2)
+    assert(plan.find(_.name.startsWith("Slice")).get.rowsIn === 2)
+    assert(plan.find(_.name.startsWith("Nodes")).get.rows === 2)
+  }
+
+  @Test def shouldOnlyDescribeProfiledResults() {
+    val result = new javacompat.ExecutionEngine(graph).execute("start n=node(0) return n")
+
+    intercept[IllegalStateException](result.executionPlanDescription())
+  }
+}
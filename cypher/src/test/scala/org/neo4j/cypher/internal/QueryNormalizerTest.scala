@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import org.scalatest.Assertions
+import org.junit.Test
+
+class QueryNormalizerTest extends Assertions {
+  val normalizer = new QueryNormalizer("1.7", true)
+
+  @Test def shouldCollapseWhitespaceOutsideOfReturn() {
+    val normalized = normalizer("start  n=node:idx(name={p})\n  match n-->  x\treturn n,   x")
+
+    assert(normalized.text === "start n=node:idx(name={p}) match n--> x return n,   x")
+    assert(normalized.parameters === Map())
+  }
+
+  @Test def shouldTurnStartIdsIntoAParameter() {
+    val normalized = normalizer("start n=node(1, 2), r=rel(3) return n")
+
+    assert(normalized.text === "start n=node({`auto-0`}), r=rel({`auto-1`}) return n")
+    assert(normalized.parameters === Map("auto-0" -> List(1L, 2L), "auto-1" -> List(3L)))
+  }
+
+  @Test def shouldTurnIndexValuesIntoParameters() {
+    val normalized = normalizer("start n=node:idx(name=\"Andres\"), m=node:idx('name:A*') return n")
+
+    assert(normalized.text === "start n=node:idx(name={`auto-0`}), m=node:idx({`auto-1`}) return n")
+    assert(normalized.parameters === Map("auto-0" -> "Andres", "auto-1" -> "name:A*"))
+  }
+
+  @Test def shouldTurnWhereLiteralsIntoParameters() {
+    val normalized = normalizer("start n=node({a}) where n.age > 30 and n.weight < -1.5 and n.name = 'Bob' return n")
+
+    assert(normalized.text === "start n=node({a}) where n.age > {`auto-0`} and n.weight < {`auto-1`} and n.name = {`auto-2`} return n")
+    assert(normalized.parameters === Map("auto-0" -> 30.0, "auto-1" -> -1.5, "auto-2" -> "Bob"))
+  }
+
+  @Test def shouldLeaveNumbersMatchedAgainstARegularExpressionAlone() {
+    val query = "start a=node({a}) where a.age =~ 13 return a"
+    val normalized = normalizer(query)
+
+    assert(normalized.text === query)
+    assert(normalized.parameters === Map())
+  }
+
+  @Test def shouldTurnSkipAndLimitIntoParameters() {
+    val normalized = normalizer("start n=node({a}) return n order by n.name skip 5 limit 10")
+
+    assert(normalized.text === "start n=node({a}) return n order by n.name skip {`auto-0`} limit {`auto-1`}")
+    assert(normalized.parameters === Map("auto-0" -> 5, "auto-1" -> 10))
+  }
+
+  @Test def shouldLeaveReturnAndMatchLiteralsAlone() {
+    val query = "start a=node({a}) match a-[:KNOWS*1..3]->b return b.name, \"x\" order by b.name"
+    val normalized = normalizer(query)
+
+    assert(normalized.text === query)
+    assert(normalized.parameters === Map())
+  }
+
+  @Test def shouldNotStartAWhereClauseInsideReturnExpressions() {
+    val query = "start n=node({a}) return filter(x in n.list where x > 3),  ALL(y in n.list where y = 'a')"
+    val normalized = normalizer(query)
+
+    assert(normalized.text === query)
+    assert(normalized.parameters === Map())
+  }
+
+  @Test def shouldKeepParameterizingAfterPredicatesInWhere() {
+    val normalized = normalizer("start n=node({a}) where ALL(x in n.list where x > 3) and n.age = 30 return n")
+
+    assert(normalized.text === "start n=node({a}) where ALL(x in n.list where x > {`auto-0`}) and n.age = {`auto-1`} return n")
+    assert(normalized.parameters === Map("auto-0" -> 3.0, "auto-1" -> 30.0))
+  }
+
+  @Test def shouldKeepTheVersionPrefix() {
+    val normalized = normalizer("cypher 1.7 start n=node(1) return n")
+
+    assert(normalized.text === "CYPHER 1.7 start n=node({`auto-0`}) return n")
+  }
+
+  @Test def shouldLeaveOtherVersionsAlone() {
+    val query = "cypher 1.6  start n=node(1) return n"
+
+    assert(normalizer(query) === NormalizedQuery(query, Map()))
+    assert(new QueryNormalizer("1.6", true)("start n=node(1) return n").parameters === Map())
+  }
+
+  @Test def shouldOnlyNormalizeWhitespaceWhenNotParameterizing() {
+    val normalized = new QueryNormalizer("1.7", false)("start  n=node(1) where n.age > 3 return n")
+
+    assert(normalized === NormalizedQuery("start n=node(1) where n.age > 3 return n", Map()))
+  }
+}
@@ -22,7 +22,8 @@ package org.neo4j.cypher.internal.executionplan.builders
 import org.junit.Test
 import org.junit.Assert._
 import org.scalatest.Assertions
-import org.neo4j.cypher.internal.commands.{CachedExpression, Property, SortItem}
+import org.neo4j.cypher.internal.commands.{Literal, Slice, CachedExpression, Property, SortItem}
+import org.neo4j.cypher.internal.pipes.{SortPipe, TopPipe}
 import org.neo4j.cypher.internal.symbols.{ScalarType, Identifier}
 import org.neo4j.cypher.internal.executionplan.{Solved, Unsolved, PartiallySolvedQuery}
 
@@ -58,4 +59,33 @@ class SortBuilderTest extends PipeBuilder with Assertions {
     assertFalse("Builder should accept this", builder.isDefinedAt(p, q))
   }
 
-}
\ No newline at end of file
+  @Test def should_keep_only_the_top_rows_when_the_sort_is_limited() {
+    val q = PartiallySolvedQuery().copy(
+      sort = Seq(Unsolved(SortItem(Property("x", "foo"), true))),
+      slice = Seq(Unsolved(Slice(Some(Literal(5)), Some(Literal(10))))),
+      extracted = true
+    )
+
+    val p = createPipe(nodes = Seq("x"))
+
+    val (resultPipe, resultQ) = builder(p, q)
+
+    assertTrue("Expected a top pipe", resultPipe.isInstanceOf[TopPipe])
+    assert(resultQ.slice === q.slice)
+  }
+
+  @Test def should_sort_everything_when_the_slice_only_skips() {
+    val q = PartiallySolvedQuery().copy(
+      sort = Seq(Unsolved(SortItem(Property("x", "foo"), true))),
+      slice = Seq(Unsolved(Slice(Some(Literal(5)), None))),
+      extracted = true
+    )
+
+    val p = createPipe(nodes = Seq("x"))
+
+    val (resultPipe, _) = builder(p, q)
+
+    assertFalse("Expected a plain sort pipe", resultPipe.isInstanceOf[TopPipe])
+    assertTrue(resultPipe.isInstanceOf[SortPipe])
+  }
+}
@@ -25,7 +25,7 @@ import org.junit.matchers.JUnitMatchers._
 import scala.collection.JavaConverters._
 import org.neo4j.cypher.internal.commands._
 import org.scalatest.junit.JUnitSuite
-import org.neo4j.cypher.SyntaxException
+import org.neo4j.cypher.{PipeExecutionResult, SyntaxException}
 import org.neo4j.cypher.internal.symbols._
 import collection.mutable.Map
 
@@ -81,6 +81,39 @@ class EagerAggregationPipeTest extends JUnitSuite {
     assertEquals(List(Map("count(name)" -> 3)), aggregationPipe.createResults(Map()).toList)
   }
 
+  @Test def shouldAggregatePartitionsSpilledToDisk() {
+    val rows = (0 until 200).map(i => Map[String, Any]("name" -> ("n" + i % 40), "age" -> i)).toList
+    val source = new FakePipe(rows, new SymbolTable(Identifier("name", StringType()), Identifier("age", NumberType())))
+
+    val returnItems = List(Entity("name"))
+    val grouping = List(CountStar(), Collect(Entity("age")))
+    val aggregationPipe = new EagerAggregationPipe(source, returnItems, grouping, MemoryLimit(1000))
+
+    val filesBefore = SpillFileTest.filesLeft
+    val result = aggregationPipe.createResults(Map()).toList
+    assertEquals(filesBefore, SpillFileTest.filesLeft)
+    assertEquals(40, result.size)
+    result.foreach(row => {
+      val group = row("name").asInstanceOf[String].drop(1).toInt
+      assertEquals(5L, row("count(*)"))
+      assertEquals((0 until 5).map(_ * 40 + group), row("collect(age)"))
+    })
+  }
+  @Test def closingAResultShouldDeletePartitionsNotAggregatedYet() {
+    val rows = (0 until 200).map(i => Map[String, Any]("name" -> ("n" + i % 40), "age" -> i)).toList
+    val source = new FakePipe(rows, new SymbolTable(Identifier("name", StringType()), Identifier("age", NumberType())))
+    val aggregationPipe = new EagerAggregationPipe(source, List(Entity("name")), List(CountStar()), MemoryLimit(1000))
+
+    val filesBefore = SpillFileTest.filesLeft
+    val result = new PipeExecutionResult(aggregationPipe.createResults(Map()), aggregationPipe.symbols, List("name", "count(*)"))
+    result.next()
+    assertTrue(SpillFileTest.filesLeft > filesBefore)
+
+    result.close()
+    assertEquals(filesBefore, SpillFileTest.filesLeft)
+  }
+
+
   private def createSymbolTableFor(name:String) = new SymbolTable(Identifier(name, NodeType()))
 
 }
\ No newline at end of file
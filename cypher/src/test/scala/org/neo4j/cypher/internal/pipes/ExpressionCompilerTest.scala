@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.junit.Assert._
+import org.junit.Test
+import org.scalatest.junit.JUnitSuite
+import org.neo4j.cypher.internal.commands._
+import org.neo4j.cypher.SyntaxException
+
+class ExpressionCompilerTest extends JUnitSuite {
+  val layout = SlotLayout(Seq("long", "int", "double", "string", "nothing", "long + double"))
+  val compiler = new ExpressionCompiler(layout)
+
+  val values = Map[String, Any](
+    "long" -> 5L,
+    "int" -> 5,
+    "double" -> 2.5,
+    "string" -> "abc",
+    "nothing" -> null,
+    "-=PARAMETER=-p-=PARAMETER=-" -> ParameterValue(5.0))
+
+  val slotRow = new SlotRow(layout) ++= values
+
+  val predicates = Seq(
+    LessThan(Entity("long"), Entity("double")),
+    GreaterThan(Entity("long"), Literal(4.0)),
+    GreaterThanOrEqual(Entity("long"), Parameter("p")),
+    LessThanOrEqual(Entity("int"), Literal(-0.0)),
+    LessThan(Literal(0L), Literal(-0.0)),
+    GreaterThan(Entity("string"), Literal("abb")),
+    Equals(Entity("long"), Entity("int")),
+    Equals(Entity("string"), Literal("abc")),
+    And(IsNull(Entity("nothing")), Not(IsNull(Entity("string")))),
+    Or(Equals(Entity("double"), Literal(3.0)), True()),
+    LiteralRegularExpression(Entity("string"), Literal("a.c")),
+    RegularExpression(Entity("string"), Literal("b.*")),
+    NullablePredicate(Equals(Entity("nothing"), Literal(1.0)), Seq((Entity("nothing"), true))),
+    Equals(Add(Entity("long"), Entity("double")), Literal(7.5)),
+    Equals(Multiply(Entity("int"), Literal(2.0)), Literal(10.0)),
+    Equals(Collection(Entity("int"), Literal("x")), Literal(Seq(5, "x"))))
+
+  @Test def compiledPredicatesShouldMatchLikeInterpretedOnes() {
+    predicates.foreach(predicate => {
+      val compiled = compiler.predicate(predicate)
+
+      assertEquals(predicate.toString, predicate.isMatch(values), compiled(values))
+      assertEquals(predicate.toString, predicate.isMatch(slotRow), compiled(slotRow))
+    })
+  }
+
+  @Test def compiledExpressionsShouldReadValuesRowsAlreadyHold() {
+    val sum = Add(Entity("long"), Entity("double"))
+    val row = slotRow.clone()
+    row += "long + double" -> 42
+
+    assertEquals(42, compiler.expression(sum)(row))
+    assertEquals(7.5, compiler.expression(sum)(slotRow))
+  }
+
+  @Test def compiledComparisonsShouldFailLikeInterpretedOnes() {
+    val predicate = compiler.predicate(LessThan(Entity("string"), Entity("long")))
+
+    intercept[SyntaxException](predicate(slotRow))
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.junit.Test
+import org.scalatest.Assertions
+import org.neo4j.cypher.GraphDatabaseTestBase
+import org.neo4j.cypher.internal.commands.RelatedTo
+import org.neo4j.cypher.internal.symbols.{NodeType, Identifier, SymbolTable}
+import org.neo4j.graphdb.{Node, Direction}
+import collection.mutable.Map
+
+class MatchPipeTest extends GraphDatabaseTestBase with Assertions {
+  val patterns = Seq(RelatedTo("a", "b", "r", "KNOWS", Direction.OUTGOING), RelatedTo("b", "c", "r2", "KNOWS", Direction.OUTGOING))
+
+  private def source(starts: Seq[Node]) =
+    new FakePipe(starts.map(n => Map[String, Any]("a" -> n)), new SymbolTable(Identifier("a", NodeType())))
+
+  private def matches(pipe: MatchPipe) = pipe.createResults(Map()).map(row => (row("a"), row("b"), row("c"))).toList
+
+  private def createGraph(): Seq[Node] = (0 until 20).map(x => {
+    val a = createNode("a" + x)
+    (0 until 3).foreach(y => {
+      val b = createNode()
+      relate(a, b, "KNOWS")
+      relate(b, createNode(), "KNOWS")
+    })
+    a
+  })
+
+  @Test def shouldFindTheSameMatchesInTheSameOrderOnSeveralThreads() {
+    val starts = createGraph()
+
+    val sequential = new MatchPipe(source(starts), patterns, Seq())
+    val parallel = new MatchPipe(source(starts), patterns, Seq(), parallelism = Some(new MatchParallelism(4, graph)))
+
+    assert(matches(sequential).size === 60)
+    assert(matches(parallel) === matches(sequential))
+  }
+
+  @Test def shouldOnlyReadTheSourceOnce() {
+    val starts = createGraph()
+    var runs = 0
+    val counting = new FakePipe(Seq(), new SymbolTable(Identifier("a", NodeType()))) {
+      override def createResults[U](params: Map[String, Any]) = new Traversable[Map[String, Any]] {
+        def foreach[V](f: Map[String, Any] => V) {
+          runs += 1
+          starts.foreach(n => f(Map[String, Any]("a" -> n)))
+        }
+      }
+    }
+    val parallel = new MatchPipe(counting, patterns, Seq(), parallelism = Some(new MatchParallelism(4, graph)))
+
+    assert(matches(parallel).size === 60)
+    assert(runs === 1)
+  }
+
+  @Test def shouldMatchOnTheCallingThreadInsideATransaction() {
+    val starts = createGraph()
+    val threads = new MatchParallelism(4, graph)
+    val parallel = new MatchPipe(source(starts), patterns, Seq(), parallelism = Some(threads))
+
+    val tx = graph.beginTx()
+    try {
+      val b = createNode()
+      relate(starts.head, b, "KNOWS")
+      relate(b, createNode(), "KNOWS")
+
+      assert(!threads.appliesTo(starts.size))
+      assert(matches(parallel).size === 61)
+    } finally {
+      tx.finish()
+    }
+  }
+}
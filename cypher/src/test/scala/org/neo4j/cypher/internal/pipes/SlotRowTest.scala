@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.junit.Assert._
+import org.junit.Test
+import org.scalatest.junit.JUnitSuite
+import collection.mutable.{Map => MutableMap}
+
+class SlotRowTest extends JUnitSuite {
+  val layout = SlotLayout(Seq("a", "b"))
+
+  @Test def shouldBehaveLikeAMap() {
+    val row = new SlotRow(layout)
+    row += "a" -> 1
+    row += "param" -> "x"
+
+    assertEquals(Map("a" -> 1, "param" -> "x"), row)
+    assertEquals(None, row.get("b"))
+
+    row -= "a"
+    assertEquals(Map("param" -> "x"), row)
+  }
+
+  @Test def shouldKeepNullValues() {
+    val row = new SlotRow(layout)
+    row += "b" -> null
+
+    assertTrue(row.contains("b"))
+    assertEquals(1, row.size)
+  }
+
+  @Test def clonesShouldNotShareValues() {
+    val row = new SlotRow(layout) += "a" -> 1
+    val clone = row.clone()
+    clone += "a" -> 2
+    clone += "param" -> "x"
+
+    assertEquals(Map("a" -> 1), row)
+    assertEquals(Map("a" -> 2, "param" -> "x"), clone)
+  }
+
+  @Test def copyingToAnExtendedLayoutKeepsSlots() {
+    val extended = layout.extend(Seq("b", "c"))
+    assertEquals(Seq("a", "b", "c"), extended.names)
+
+    val row = new SlotRow(layout) ++= Seq("a" -> 1, "c" -> 3)
+    val copy = SlotRow.copyOf(row, extended)
+    copy.set(extended.slot("b"), 2)
+
+    assertEquals(Map("a" -> 1, "b" -> 2, "c" -> 3), copy)
+    assertEquals(3, extended.read(copy, extended.slot("c"), "c"))
+  }
+
+  @Test def widenedRowsWriteIntoNewSlots() {
+    val extended = layout.extend(Seq("c"))
+    val row = SlotRow.widen(new SlotRow(layout) += "a" -> 1, extended)
+
+    extended.write(row, extended.slot("c"), "c", 3)
+
+    assertEquals(Map("a" -> 1, "c" -> 3), row)
+  }
+
+  @Test def plainMapsAreReadByName() {
+    val row = MutableMap[String, Any]("b" -> 2)
+
+    assertEquals(2, layout.read(row, layout.slot("b"), "b"))
+
+    layout.write(row, layout.slot("a"), "a", 1)
+    assertEquals(Map("a" -> 1, "b" -> 2), row)
+  }
+}
@@ -25,6 +25,8 @@ import org.scalatest.junit.JUnitSuite
 import org.neo4j.cypher.internal.commands.{Entity, SortItem}
 import org.neo4j.cypher.internal.symbols.{Identifier, SymbolTable}
 import collection.mutable.Map
+import org.neo4j.cypher.PipeExecutionResult
+import java.lang.ref.WeakReference
 
 class SortPipeTest extends JUnitSuite{
   @Test def emptyInIsEmptyOut() {
@@ -87,6 +89,48 @@ class SortPipeTest extends JUnitSuite{
       Map("y" -> null)), sortPipe.createResults(Map()).toList)
   }
 
+  @Test def shouldSortRunsSpilledToDiskLikeInMemory() {
+    val rows = (0 until 50).map(i => Map[String, Any]("x" -> (i * 7) % 10, "y" -> i)).toList
+    val sortItems = List(SortItem(Entity("x"), false))
+
+    val filesBefore = SpillFileTest.filesLeft
+    val inMemory = new SortPipe(new FakePipe(rows), sortItems).createResults(Map()).toList
+    val spilled = new SortPipe(new FakePipe(rows), sortItems, MemoryLimit(500)).createResults(Map()).toList
+
+    assertEquals(inMemory, spilled)
+    assertEquals(filesBefore, SpillFileTest.filesLeft)
+  }
+
+  @Test def shouldNotKeepMergedRowsOnceTheyHaveBeenRead() {
+    val rows = (0 until 2000).map(i => Map[String, Any]("x" -> i)).toList
+    val sortPipe = new SortPipe(new FakePipe(rows), List(SortItem(Entity("x"), true)), MemoryLimit(10000))
+    val result = new PipeExecutionResult(sortPipe.createResults(Map()), sortPipe.symbols, List("x"))
+
+    // The first row comes from a spilled run, so nothing but the result could be keeping it
+    val first = new WeakReference(result.next())
+    var count = 1
+    while (result.hasNext) {
+      result.next()
+      count += 1
+    }
+
+    assertEquals(2000, count)
+    (0 until 10).foreach(_ => if (first.get != null) System.gc())
+    assertNull("Read rows should not be kept by the result", first.get)
+  }
+
+  @Test def closingAResultShouldDeleteItsSpilledRuns() {
+    val rows = (0 until 200).map(i => Map[String, Any]("x" -> (i * 7) % 100)).toList
+    val sortPipe = new SortPipe(new FakePipe(rows), List(SortItem(Entity("x"), true)), MemoryLimit(500))
+
+    val filesBefore = SpillFileTest.filesLeft
+    val result = new PipeExecutionResult(sortPipe.createResults(Map()), sortPipe.symbols, List("x"))
+    result.next()
+    assertTrue(SpillFileTest.filesLeft > filesBefore)
+
+    result.close()
+    assertEquals(filesBefore, SpillFileTest.filesLeft)
+  }
 }
 
 class FakePipe(data: Seq[Map[String, Any]], val symbols: SymbolTable) extends Pipe {
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.junit.Test
+import org.junit.Assert._
+import org.scalatest.Assertions
+import org.neo4j.cypher.{PathImpl, GraphDatabaseTestBase}
+import java.io.File
+
+class SpillFileTest extends GraphDatabaseTestBase with Assertions {
+  val layout = SlotLayout(Seq("a", "r", "p"))
+
+  @Test def shouldReadBackWhatWasWritten() {
+    val a = createNode("a")
+    val b = createNode("b")
+    val r = relate(a, b)
+    val notSerializable = new Object
+
+    val rows = List(
+      Map[String, Any]("a" -> a, "r" -> r, "p" -> PathImpl(a, r, b)),
+      Map[String, Any]("a" -> null, "list" -> List(1, "two", b), "array" -> Array(1, 2)),
+      Map[String, Any]("other" -> notSerializable, "a" -> 3.5))
+
+    val file = new SpillFile(layout)
+    rows.foreach(file.write)
+    val read = file.read().toList
+
+    assert(read.size === 3)
+    assert(read(0) === rows(0))
+    assert(read(1)("list") === List(1, "two", b))
+    assert(read(1)("array").asInstanceOf[Array[Int]].toList === List(1, 2))
+    assert(read(2)("other").asInstanceOf[AnyRef] eq notSerializable)
+    assertTrue(read(0).isInstanceOf[SlotRow])
+  }
+
+  @Test def shouldReadNothingBackFromAnEmptyFile() {
+    val file = new SpillFile(layout)
+
+    assertFalse(file.read().hasNext)
+  }
+
+  @Test def shouldDeleteTheFileWhenReadToTheEndOrDeleted() {
+    val before = SpillFileTest.filesLeft
+
+    val read = new SpillFile(layout)
+    read.write(Map("a" -> 1))
+    read.write(Map("a" -> 2))
+    val rows = read.read()
+    rows.next()
+    assert(SpillFileTest.filesLeft === before + 1)
+    rows.next()
+    assert(SpillFileTest.filesLeft === before)
+
+    val deleted = new SpillFile(layout)
+    deleted.write(Map("a" -> 1))
+    deleted.read()
+    deleted.delete()
+    assert(SpillFileTest.filesLeft === before)
+  }
+}
+
+object SpillFileTest {
+  def filesLeft = new File(System.getProperty("java.io.tmpdir")).list().count(name =>
+    name.startsWith("cypher-") && name.endsWith(".rows"))
+}
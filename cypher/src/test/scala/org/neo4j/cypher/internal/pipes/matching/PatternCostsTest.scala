@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes.matching
+
+import org.junit.Test
+import org.scalatest.junit.JUnitSuite
+import org.neo4j.graphdb.Direction
+import org.neo4j.cypher.internal.commands.{Pattern, RelatedTo}
+import org.neo4j.cypher.internal.symbols.{NodeType, Identifier, SymbolTable}
+
+class PatternCostsTest extends JUnitSuite {
+
+  // Everybody knows a hundred people, and lives in one of few cities
+  object FakeStatistics extends ExpansionCost {
+    def expectedDegree(relTypes: Seq[String], dir: Direction) = (relTypes, dir) match {
+      case (Seq("LIVES_IN"), Direction.OUTGOING) => 1.0
+      case (Seq("LIVES_IN"), _) => 1000.0
+      case _ => 100.0
+    }
+
+    def nodeCount = 10000.0
+  }
+
+  @Test def shouldStartFromTheNodeThatIsCheapestToExpand() {
+    val patterns: Seq[Pattern] = Seq(RelatedTo("city", "person", "r", "LIVES_IN", Direction.INCOMING))
+    val context = new MatchingContext(patterns, bind("city", "person"), Seq(), FakeStatistics)
+
+    val person = context.patternGraph.patternNodes("person")
+    val city = context.patternGraph.patternNodes("city")
+
+    val start = context.costs.cheapestStart(Set(MatchingPair(city, null), MatchingPair(person, null)))
+
+    assert(start.patternElement === person)
+  }
+
+  @Test def shouldExpandTheMostSelectiveRelationshipFirst() {
+    val patterns: Seq[Pattern] = Seq(
+      RelatedTo("a", "friend", "r1", "KNOWS", Direction.OUTGOING),
+      RelatedTo("a", "city", "r2", "LIVES_IN", Direction.OUTGOING))
+    val context = new MatchingContext(patterns, bind("a"), Seq(), FakeStatistics)
+
+    val a = context.patternGraph.patternNodes("a")
+
+    assert(context.costs.cheapestRelationship(a.relationships.toSeq, a).key === "r2")
+  }
+
+  @Test def shouldEstimateMatchesPerRow() {
+    val patterns: Seq[Pattern] = Seq(
+      RelatedTo("a", "friend", "r1", "KNOWS", Direction.OUTGOING),
+      RelatedTo("friend", "city", "r2", "LIVES_IN", Direction.OUTGOING))
+
+    val context = new MatchingContext(patterns, bind("a"), Seq(), FakeStatistics)
+    assert(context.estimatedMatches === 100.0)
+
+    val closingContext = new MatchingContext(patterns, bind("a", "city"), Seq(), FakeStatistics)
+    assert(math.abs(closingContext.estimatedMatches - 0.01) < 0.000001)
+  }
+
+  @Test def withoutStatisticsEveryExpansionCostsTheSame() {
+    val patterns: Seq[Pattern] = Seq(
+      RelatedTo("a", "friend", "r1", "KNOWS", Direction.OUTGOING),
+      RelatedTo("a", "city", "r2", "LIVES_IN", Direction.OUTGOING))
+    val context = new MatchingContext(patterns, bind("a"))
+
+    val a = context.patternGraph.patternNodes("a")
+
+    assert(context.costs.startCost(a) === 1.0)
+    assert(context.estimatedMatches === 1.0)
+  }
+
+  private def bind(boundSymbols: String*): SymbolTable = new SymbolTable(boundSymbols.map(Identifier(_, NodeType())): _*)
+}
@@ -25,6 +25,8 @@ import org.neo4j.kernel.EmbeddedGraphDatabase
 import org.scalatest.Assertions
 import org.neo4j.graphdb.{DynamicRelationshipType, Node}
 import org.junit.{Ignore, After, Before, Test}
+import org.neo4j.cypher.internal.pipes.ExpressionCompiler
+import scala.collection.JavaConverters._
 
 @Ignore
 class PerformanceTest extends Assertions {
@@ -75,6 +77,38 @@ class PerformanceTest extends Assertions {
 
   }
 
+  @Test
+  def compiledAgainstInterpretedPredicates() {
+    val tx = db.beginTx()
+    val nodes = (0 until 100000).map(x => {
+      val n = createNode()
+      n.setProperty("age", r.nextInt(100))
+      n.setProperty("name", "n" + x)
+      n
+    })
+    tx.success()
+    tx.finish()
+
+    val query = "start n=node({nodes}) where n.age > 30 and n.age < 60 and n.name =~ /n1.*/ return n.name, n.age + 1"
+    val params = Map("nodes" -> nodes.map(_.getId))
+
+    def time(compiled: Boolean): Double = {
+      db.shutdown()
+      db = new EmbeddedGraphDatabase("target/db", Map(ExpressionCompiler.configKey -> compiled.toString).asJava)
+      val engine = new ExecutionEngine(db)
+      (0 until 5).foreach(x => engine.execute(query, params).toList)
+
+      val t0 = System.nanoTime: Double
+      (0 until 10).foreach(x => engine.execute(query, params).toList)
+      val t1 = System.nanoTime: Double
+      (t1 - t0) / 10 / 1000000.0
+    }
+
+    val interpreted = time(compiled = false)
+    val compiled = time(compiled = true)
+    println("Interpreted " + interpreted + " msecs, compiled " + compiled + " msecs per query")
+  }
+
   def createNode() = {
     db.createNode()
   }
@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.helpers.DaemonThreadFactory;
+import org.neo4j.kernel.AbstractGraphDatabase;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Betweenness centrality for unweighted graphs, computed with the algorithm
+ * by Ulrik Brandes (2001) on several threads at once. It gives the same
+ * values as {@link BetweennessCentrality} with a breadth first
+ * single source shortest path, without building maps of nodes for every
+ * source.
+ * <p>
+ * The source nodes are handed out to a number of worker threads. Each worker
+ * runs a breadth first search per source and accumulates the dependencies in
+ * its own {@code double[]} indexed by node id, so workers never contend. The
+ * arrays of all workers are summed when every source has been processed.
+ * Every worker allocates a few arrays the size of the highest node id in
+ * use, which bounds how many threads are worth using on a large graph.
+ * <p>
+ * For an approximation, only a random sample of the source nodes can be
+ * used, after which the values are scaled up by the ratio of all sources to
+ * the sampled ones (Brandes and Pich, 2007).
+ * @complexity O(n * m / t) for n sources, m relationships and t threads, or
+ *             O(k * m / t) when sampling k sources.
+ */
+public class ParallelBetweennessCentrality
+{
+    private final GraphDatabaseService graphDb;
+    private final Set<Node> nodeSet;
+    private final Direction direction;
+    private final RelationshipType[] types;
+    private final int threads;
+    private int sampleSize = -1;
+    private Random random = new Random();
+    private double[] centralities;
+
+    /**
+     * @param graphDb the graph to compute centralities in.
+     * @param nodeSet the source nodes of the shortest paths.
+     * @param threads the number of worker threads to use.
+     * @param direction the direction to follow relationships in.
+     * @param types the types of relationships to follow, or none to follow
+     *            all relationships.
+     */
+    public ParallelBetweennessCentrality( GraphDatabaseService graphDb, Set<Node> nodeSet, int threads,
+            Direction direction, RelationshipType... types )
+    {
+        if ( threads < 1 )
+        {
+            throw new IllegalArgumentException( "Need at least one thread, not " + threads );
+        }
+        this.graphDb = graphDb;
+        this.nodeSet = nodeSet;
+        this.threads = threads;
+        this.direction = direction;
+        this.types = types;
+    }
+
+    /**
+     * Approximates the centralities by only using {@code sampleSize} randomly
+     * picked source nodes.
+     * @param sampleSize the number of source nodes to use.
+     * @param random the source of randomness for picking them.
+     * @return this calculation.
+     */
+    public ParallelBetweennessCentrality sampling( int sampleSize, Random random )
+    {
+        if ( centralities != null )
+        {
+            throw new IllegalStateException( "Already calculated" );
+        }
+        this.sampleSize = sampleSize;
+        this.random = random;
+        return this;
+    }
+
+    /**
+     * Returns the betweenness centrality of {@code node}, calculating the
+     * centralities of all nodes first if that hasn't been done.
+     */
+    public double getCentrality( Node node )
+    {
+        calculate();
+        long id = node.getId();
+        return id < centralities.length ? centralities[(int) id] : 0;
+    }
+
+    /**
+     * Runs the calculation, unless it has already been run.
+     */
+    public void calculate()
+    {
+        if ( centralities != null )
+        {
+            return;
+        }
+
+        long[] sources = sources();
+        int size = (int) highestNodeId() + 1;
+        double scale = direction == Direction.BOTH ? 0.5 : 1.0;
+        if ( sampleSize >= 0 && sampleSize < nodeSet.size() )
+        {
+            scale *= sources.length == 0 ? 0 : (double) nodeSet.size() / sources.length;
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool( threads,
+                new DaemonThreadFactory( "Betweenness-Centrality" ) );
+        try
+        {
+            AtomicInteger nextSource = new AtomicInteger();
+            List<Future<double[]>> results = new ArrayList<Future<double[]>>();
+            for ( int i = 0; i < threads; i++ )
+            {
+                results.add( workers.submit( new Worker( sources, nextSource, size ) ) );
+            }
+
+            double[] sum = new double[size];
+            for ( Future<double[]> result : results )
+            {
+                double[] dependencies = result.get();
+                for ( int i = 0; i < size; i++ )
+                {
+                    sum[i] += dependencies[i] * scale;
+                }
+            }
+            centralities = sum;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while calculating betweenness centrality", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException( e.getCause() );
+        }
+        finally
+        {
+            workers.shutdownNow();
+        }
+    }
+
+    private long[] sources()
+    {
+        List<Node> nodes = new ArrayList<Node>( nodeSet );
+        if ( sampleSize >= 0 && sampleSize < nodes.size() )
+        {
+            Collections.shuffle( nodes, random );
+            nodes = nodes.subList( 0, sampleSize );
+        }
+        long[] ids = new long[nodes.size()];
+        for ( int i = 0; i < ids.length; i++ )
+        {
+            ids[i] = nodes.get( i ).getId();
+        }
+        return ids;
+    }
+
+    private long highestNodeId()
+    {
+        if ( graphDb instanceof AbstractGraphDatabase )
+        {
+            return ((AbstractGraphDatabase) graphDb).getNodeManager().getHighestPossibleIdInUse( Node.class );
+        }
+        long highest = 0;
+        for ( Node node : GlobalGraphOperations.at( graphDb ).getAllNodes() )
+        {
+            highest = Math.max( highest, node.getId() );
+        }
+        return highest;
+    }
+
+    private Iterable<Relationship> relationships( Node node )
+    {
+        return types.length == 0 ? node.getRelationships( direction ) : node.getRelationships( direction, types );
+    }
+
+    /**
+     * Processes sources until there are none left. All arrays are indexed by
+     * node id, and only the entries touched by a search are reset after it.
+     */
+    private class Worker implements Callable<double[]>
+    {
+        private final long[] sources;
+        private final AtomicInteger nextSource;
+        private final double[] centrality;
+        private final int[] distance;
+        private final double[] paths;
+        private final double[] dependency;
+        private final int[] firstPredecessor;
+
+        // Nodes in the order they were reached, doubling as the queue of the search
+        private int[] order = new int[1024];
+        // Predecessors as linked lists
+        private int[] predecessor = new int[1024];
+        private int[] nextPredecessor = new int[1024];
+        private int predecessorCount;
+
+        Worker( long[] sources, AtomicInteger nextSource, int size )
+        {
+            this.sources = sources;
+            this.nextSource = nextSource;
+            this.centrality = new double[size];
+            this.distance = new int[size];
+            this.paths = new double[size];
+            this.dependency = new double[size];
+            this.firstPredecessor = new int[size];
+            Arrays.fill( distance, -1 );
+            Arrays.fill( firstPredecessor, -1 );
+        }
+
+        public double[] call()
+        {
+            for ( int i = nextSource.getAndIncrement(); i < sources.length; i = nextSource.getAndIncrement() )
+            {
+                if ( sources[i] < distance.length )
+                {
+                    process( (int) sources[i] );
+                }
+            }
+            return centrality;
+        }
+
+        private void process( int source )
+        {
+            int reached = 0;
+            predecessorCount = 0;
+            order = ensure( order, reached );
+            order[reached++] = source;
+            distance[source] = 0;
+            paths[source] = 1;
+
+            for ( int head = 0; head < reached; head++ )
+            {
+                int v = order[head];
+                Node node = graphDb.getNodeById( v );
+                for ( Relationship relationship : relationships( node ) )
+                {
+                    long otherId = relationship.getOtherNode( node ).getId();
+                    if ( otherId >= distance.length )
+                    {
+                        // Created after the calculation started
+                        continue;
+                    }
+                    int w = (int) otherId;
+                    if ( distance[w] == -1 )
+                    {
+                        distance[w] = distance[v] + 1;
+                        order = ensure( order, reached );
+                        order[reached++] = w;
+                    }
+                    if ( distance[w] == distance[v] + 1 )
+                    {
+                        paths[w] += paths[v];
+                        addPredecessor( w, v );
+                    }
+                }
+            }
+
+            for ( int i = reached - 1; i >= 0; i-- )
+            {
+                int w = order[i];
+                for ( int p = firstPredecessor[w]; p != -1; p = nextPredecessor[p] )
+                {
+                    int v = predecessor[p];
+                    dependency[v] += paths[v] / paths[w] * (1 + dependency[w]);
+                }
+                if ( w != source )
+                {
+                    centrality[w] += dependency[w];
+                }
+            }
+
+            for ( int i = 0; i < reached; i++ )
+            {
+                int w = order[i];
+                distance[w] = -1;
+                paths[w] = 0;
+                dependency[w] = 0;
+                firstPredecessor[w] = -1;
+            }
+        }
+
+        private void addPredecessor( int w, int v )
+        {
+            predecessor = ensure( predecessor, predecessorCount );
+            nextPredecessor = ensure( nextPredecessor, predecessorCount );
+            predecessor[predecessorCount] = v;
+            nextPredecessor[predecessorCount] = firstPredecessor[w];
+            firstPredecessor[w] = predecessorCount++;
+        }
+
+        private int[] ensure( int[] array, int index )
+        {
+            if ( index < array.length )
+            {
+                return array;
+            }
+            return Arrays.copyOf( array, array.length * 2 );
+        }
+    }
+}
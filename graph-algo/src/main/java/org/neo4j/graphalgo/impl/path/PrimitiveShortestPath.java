@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.neo4j.graphalgo.impl.util.LongIntHashMap;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipExpander;
+
+/**
+ * Bidirectional breadth first search for the shortest paths between two
+ * nodes, keeping what it has visited in primitive arrays keyed by node id
+ * instead of maps of {@link Node} to per node objects.
+ * <p>
+ * Each side expands a whole level at a time, and the side with the smaller
+ * frontier is expanded next. After a level has been expanded, the nodes it
+ * reached that the other side has already visited are the middle nodes of
+ * all the shortest paths, so no further expansion is needed. Every visited
+ * node remembers the relationships that reached it from the previous level,
+ * which is all that is needed to build the paths afterwards.
+ */
+class PrimitiveShortestPath
+{
+    private final int maxDepth;
+    private final int maxResultCount;
+    private final boolean single;
+    private final Side startSide;
+    private final Side endSide;
+
+    PrimitiveShortestPath( Node start, Node end, RelationshipExpander expander, int maxDepth,
+            int maxResultCount, boolean single )
+    {
+        this.maxDepth = maxDepth;
+        this.maxResultCount = single ? 1 : maxResultCount;
+        this.single = single;
+        this.startSide = new Side( start, expander );
+        this.endSide = new Side( end, expander.reversed() );
+    }
+
+    Collection<Path> paths()
+    {
+        while ( startSide.depth + endSide.depth < maxDepth )
+        {
+            Side side = endSide.frontierSize < startSide.frontierSize ? endSide : startSide;
+            Side other = side == startSide ? endSide : startSide;
+            if ( side.frontierSize == 0 )
+            {
+                return Collections.emptyList();
+            }
+
+            side.expand();
+            Collection<Path> paths = pathsThroughFrontier( side, other );
+            if ( !paths.isEmpty() )
+            {
+                return paths;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private Collection<Path> pathsThroughFrontier( Side side, Side other )
+    {
+        Collection<Path> paths = new ArrayList<Path>();
+        int hits = 0;
+        for ( int i = 0; i < side.frontierSize && hits < maxResultCount; i++ )
+        {
+            Node middle = side.frontier[i];
+            if ( other.slots.get( middle.getId() ) == -1 )
+            {
+                continue;
+            }
+            hits++;
+            for ( PathImpl.Builder fromStart : startSide.pathsTo( middle ) )
+            {
+                for ( PathImpl.Builder fromEnd : endSide.pathsTo( middle ) )
+                {
+                    paths.add( fromStart.build( fromEnd ) );
+                    if ( single )
+                    {
+                        return paths;
+                    }
+                }
+            }
+        }
+        return paths;
+    }
+
+    private class Side
+    {
+        private final Node start;
+        private final RelationshipExpander expander;
+        private final LongIntHashMap slots = new LongIntHashMap();
+        private int depth;
+
+        // Per visited node, by slot
+        private int[] depths = new int[16];
+        private long[] firstRels = new long[16];
+        private int[] moreRels = new int[16];
+        private int visited;
+
+        // Relationships beyond the first that reached a node from the previous level, as linked lists
+        private long[] extraRels = new long[16];
+        private int[] extraNext = new int[16];
+        private int extraCount;
+
+        private Node[] frontier = new Node[16];
+        private int frontierSize;
+
+        Side( Node start, RelationshipExpander expander )
+        {
+            this.start = start;
+            this.expander = expander;
+            visit( start.getId(), 0, -1 );
+            frontier[frontierSize++] = start;
+        }
+
+        void expand()
+        {
+            Node[] current = frontier;
+            int currentSize = frontierSize;
+            frontier = new Node[Math.max( 16, currentSize )];
+            frontierSize = 0;
+            depth++;
+
+            for ( int i = 0; i < currentSize; i++ )
+            {
+                Node node = current[i];
+                for ( Relationship rel : expander.expand( node ) )
+                {
+                    Node other = rel.getOtherNode( node );
+                    int slot = slots.get( other.getId() );
+                    if ( slot == -1 )
+                    {
+                        visit( other.getId(), depth, rel.getId() );
+                        addToFrontier( other );
+                    }
+                    else if ( !single && depths[slot] == depth )
+                    {
+                        addRel( slot, rel.getId() );
+                    }
+                }
+            }
+        }
+
+        private void visit( long nodeId, int nodeDepth, long rel )
+        {
+            if ( visited == depths.length )
+            {
+                depths = grow( depths );
+                firstRels = grow( firstRels );
+                moreRels = grow( moreRels );
+            }
+            depths[visited] = nodeDepth;
+            firstRels[visited] = rel;
+            moreRels[visited] = -1;
+            slots.put( nodeId, visited++ );
+        }
+
+        private void addRel( int slot, long rel )
+        {
+            if ( extraCount == extraRels.length )
+            {
+                extraRels = grow( extraRels );
+                extraNext = grow( extraNext );
+            }
+            extraRels[extraCount] = rel;
+            extraNext[extraCount] = moreRels[slot];
+            moreRels[slot] = extraCount++;
+        }
+
+        private void addToFrontier( Node node )
+        {
+            if ( frontierSize == frontier.length )
+            {
+                Node[] grown = new Node[frontier.length * 2];
+                System.arraycopy( frontier, 0, grown, 0, frontierSize );
+                frontier = grown;
+            }
+            frontier[frontierSize++] = node;
+        }
+
+        /**
+         * All paths from the start of this side to {@code node}, sharing
+         * their common beginnings.
+         */
+        List<PathImpl.Builder> pathsTo( Node node )
+        {
+            int slot = slots.get( node.getId() );
+            if ( depths[slot] == 0 )
+            {
+                return Collections.singletonList( new PathImpl.Builder( start ) );
+            }
+
+            List<PathImpl.Builder> paths = new ArrayList<PathImpl.Builder>();
+            addPathsVia( firstRels[slot], node, paths );
+            for ( int extra = moreRels[slot]; extra != -1; extra = extraNext[extra] )
+            {
+                addPathsVia( extraRels[extra], node, paths );
+            }
+            return paths;
+        }
+
+        private void addPathsVia( long relId, Node node, List<PathImpl.Builder> paths )
+        {
+            Relationship rel = node.getGraphDatabase().getRelationshipById( relId );
+            for ( PathImpl.Builder path : pathsTo( rel.getOtherNode( node ) ) )
+            {
+                paths.add( path.push( rel ) );
+            }
+        }
+    }
+
+    private static int[] grow( int[] array )
+    {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy( array, 0, grown, 0, array.length );
+        return grown;
+    }
+
+    private static long[] grow( long[] array )
+    {
+        long[] grown = new long[array.length * 2];
+        System.arraycopy( array, 0, grown, 0, array.length );
+        return grown;
+    }
+}
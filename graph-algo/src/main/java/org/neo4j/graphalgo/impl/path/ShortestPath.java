@@ -52,6 +52,11 @@ import org.neo4j.helpers.collection.PrefetchingIterator;
  * Relationships are traversed in the specified directions from the start node,
  * but in the reverse direction ( {@link Direction#reverse()} ) from the
  * end node. This doesn't affect {@link Direction#BOTH}.
+ * <p>
+ * Unless only paths of exactly {@code maxDepth} are asked for, or a subclass
+ * filters the nodes of each level, the search is done by
+ * {@link PrimitiveShortestPath}, which expands whole levels and keeps track of
+ * visited nodes by their ids.
  */
 public class ShortestPath implements PathFinder<Path>
 {
@@ -123,6 +128,11 @@ public class ShortestPath implements PathFinder<Path>
         {
             return Arrays.asList( PathImpl.singular( start ) );
         }
+        if ( hitDecider == YES_HIT_DECIDER && getClass() == ShortestPath.class )
+        {
+            // Subclasses may filter the levels, which only this implementation supports
+            return new PrimitiveShortestPath( start, end, relExpander, maxDepth, maxResultCount, stopAsap ).paths();
+        }
 
         Hits hits = new Hits();
         Collection<Long> sharedVisitedRels = new HashSet<Long>();
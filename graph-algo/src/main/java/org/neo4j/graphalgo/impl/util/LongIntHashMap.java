@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * Maps {@code long} keys to non-negative {@code int} values without boxing
+ * either of them. Uses open addressing with linear probing in a single
+ * {@code long[]} for the keys and an {@code int[]} for the values. Entries
+ * can't be removed.
+ */
+public final class LongIntHashMap
+{
+    private static final int FREE = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+
+    public LongIntHashMap()
+    {
+        this( 16 );
+    }
+
+    public LongIntHashMap( int expectedSize )
+    {
+        int capacity = Integer.highestOneBit( Math.max( 4, expectedSize * 2 ) - 1 ) << 1;
+        allocate( capacity );
+    }
+
+    /**
+     * @return the value for {@code key}, or {@code -1} if there is none.
+     */
+    public int get( long key )
+    {
+        int mask = keys.length - 1;
+        for ( int i = slotFor( key, mask ); ; i = (i + 1) & mask )
+        {
+            int value = values[i];
+            if ( value == FREE || keys[i] == key )
+            {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * @param value the value to map {@code key} to, must not be negative.
+     */
+    public void put( long key, int value )
+    {
+        if ( value < 0 )
+        {
+            throw new IllegalArgumentException( "Negative value " + value );
+        }
+        if ( insert( key, value ) && ++size > resizeAt )
+        {
+            rehash();
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    private boolean insert( long key, int value )
+    {
+        int mask = keys.length - 1;
+        for ( int i = slotFor( key, mask ); ; i = (i + 1) & mask )
+        {
+            if ( values[i] == FREE )
+            {
+                keys[i] = key;
+                values[i] = value;
+                return true;
+            }
+            if ( keys[i] == key )
+            {
+                values[i] = value;
+                return false;
+            }
+        }
+    }
+
+    private void rehash()
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate( keys.length * 2 );
+        for ( int i = 0; i < oldKeys.length; i++ )
+        {
+            if ( oldValues[i] != FREE )
+            {
+                insert( oldKeys[i], oldValues[i] );
+            }
+        }
+    }
+
+    private void allocate( int capacity )
+    {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill( values, FREE );
+        resizeAt = capacity / 2;
+    }
+
+    private static int slotFor( long key, int mask )
+    {
+        // Ids are mostly sequential, spread them before masking
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.centrality;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.impl.centrality.BetweennessCentrality;
+import org.neo4j.graphalgo.impl.centrality.ParallelBetweennessCentrality;
+import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPathDijkstra;
+import org.neo4j.graphalgo.impl.util.DoubleAdder;
+import org.neo4j.graphalgo.impl.util.DoubleComparator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import common.Neo4jAlgoTestCase;
+
+public class ParallelBetweennessCentralityTest extends Neo4jAlgoTestCase
+{
+    private ParallelBetweennessCentrality parallel( int threads )
+    {
+        // The workers only see committed data
+        restartTx();
+        return new ParallelBetweennessCentrality( graphDb, graph.getAllNodes(), threads, Direction.BOTH,
+                MyRelTypes.R1, MyRelTypes.R2, MyRelTypes.R3 );
+    }
+
+    private void assertSameAsSequential( ParallelBetweennessCentrality parallel )
+    {
+        BetweennessCentrality<Double> sequential = new BetweennessCentrality<Double>(
+                new SingleSourceShortestPathDijkstra<Double>( 0.0, null, new CostEvaluator<Double>()
+                {
+                    public Double getCost( Relationship relationship, Direction direction )
+                    {
+                        return 1.0;
+                    }
+                }, new DoubleAdder(), new DoubleComparator(), Direction.BOTH, MyRelTypes.R1, MyRelTypes.R2,
+                        MyRelTypes.R3 ), graph.getAllNodes() );
+        for ( Node node : graph.getAllNodes() )
+        {
+            assertEquals( graph.getNodeId( node ), sequential.getCentrality( node ), parallel.getCentrality( node ),
+                    0.000001 );
+        }
+    }
+
+    @Test
+    public void testBox()
+    {
+        graph.makeEdgeChain( "a,b,c,d,a" );
+        ParallelBetweennessCentrality betweennessCentrality = parallel( 2 );
+        assertEquals( 0.5, betweennessCentrality.getCentrality( graph.getNode( "a" ) ), 0 );
+        assertEquals( 0.5, betweennessCentrality.getCentrality( graph.getNode( "b" ) ), 0 );
+        assertEquals( 0.5, betweennessCentrality.getCentrality( graph.getNode( "c" ) ), 0 );
+        assertEquals( 0.5, betweennessCentrality.getCentrality( graph.getNode( "d" ) ), 0 );
+    }
+
+    @Test
+    public void testChain()
+    {
+        graph.makeEdgeChain( "a,b,c,d,e" );
+        ParallelBetweennessCentrality betweennessCentrality = parallel( 3 );
+        assertEquals( 0.0, betweennessCentrality.getCentrality( graph.getNode( "a" ) ), 0 );
+        assertEquals( 3.0, betweennessCentrality.getCentrality( graph.getNode( "b" ) ), 0 );
+        assertEquals( 4.0, betweennessCentrality.getCentrality( graph.getNode( "c" ) ), 0 );
+        assertEquals( 3.0, betweennessCentrality.getCentrality( graph.getNode( "d" ) ), 0 );
+        assertEquals( 0.0, betweennessCentrality.getCentrality( graph.getNode( "e" ) ), 0 );
+    }
+
+    @Test
+    public void shouldAgreeWithTheSequentialCalculation()
+    {
+        graph.makeEdgeChain( "a,c,a" );
+        graph.makeEdgeChain( "b,c,b" );
+        graph.makeEdgeChain( "b,d,b" );
+        graph.setCurrentRelType( MyRelTypes.R2 );
+        graph.makeEdgeChain( "c,d,e,f,g,d" );
+        graph.makeEdgeChain( "e,h,i,j,g" );
+        graph.setCurrentRelType( MyRelTypes.R3 );
+        graph.makeEdgeChain( "j,k,l,a" );
+        for ( int threads = 1; threads <= 4; threads++ )
+        {
+            assertSameAsSequential( parallel( threads ) );
+        }
+    }
+
+    @Test
+    public void shouldOnlyFollowTheGivenRelationshipTypes()
+    {
+        graph.setCurrentRelType( MyRelTypes.R1 );
+        graph.makeEdgeChain( "a,b,c" );
+        graph.setCurrentRelType( MyRelTypes.R2 );
+        graph.makeEdgeChain( "a,c" );
+        restartTx();
+        ParallelBetweennessCentrality betweennessCentrality = new ParallelBetweennessCentrality( graphDb,
+                graph.getAllNodes(), 2, Direction.BOTH, MyRelTypes.R1 );
+        assertEquals( 1.0, betweennessCentrality.getCentrality( graph.getNode( "b" ) ), 0 );
+    }
+
+    @Test
+    public void shouldBeExactWhenSamplingAllSources()
+    {
+        graph.makeEdgeChain( "a,b,c,d,b,e,f,a" );
+        assertSameAsSequential( parallel( 2 ).sampling( graph.getAllNodes().size(), new Random( 1 ) ) );
+    }
+
+    @Test
+    public void shouldScaleSampledCentralities()
+    {
+        // Every source in a ring contributes the same total, so any sample
+        // scales up to the exact total
+        graph.makeEdgeChain( "a,b,c,d,e,f,a" );
+        ParallelBetweennessCentrality exact = parallel( 2 );
+        ParallelBetweennessCentrality sampled = parallel( 2 ).sampling( 2, new Random( 4 ) );
+        double exactTotal = 0;
+        double sampledTotal = 0;
+        for ( Node node : graph.getAllNodes() )
+        {
+            exactTotal += exact.getCentrality( node );
+            sampledTotal += sampled.getCentrality( node );
+        }
+        assertEquals( exactTotal, sampledTotal, 0.000001 );
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestLongIntHashMap
+{
+    @Test
+    public void shouldReturnMinusOneForMissingKeys()
+    {
+        LongIntHashMap map = new LongIntHashMap();
+        map.put( 3, 0 );
+
+        assertEquals( 0, map.get( 3 ) );
+        assertEquals( -1, map.get( 4 ) );
+        assertEquals( -1, map.get( -3 ) );
+    }
+
+    @Test
+    public void shouldReplaceValues()
+    {
+        LongIntHashMap map = new LongIntHashMap();
+        map.put( 7, 1 );
+        map.put( 7, 2 );
+
+        assertEquals( 2, map.get( 7 ) );
+        assertEquals( 1, map.size() );
+    }
+
+    @Test
+    public void shouldGrowLikeAHashMap()
+    {
+        LongIntHashMap map = new LongIntHashMap( 2 );
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        Random random = new Random( 42 );
+        for ( int i = 0; i < 10000; i++ )
+        {
+            long key = i % 3 == 0 ? random.nextLong() : i;
+            map.put( key, i );
+            expected.put( key, i );
+        }
+
+        assertEquals( expected.size(), map.size() );
+        for ( Map.Entry<Long, Integer> entry : expected.entrySet() )
+        {
+            assertEquals( entry.getValue().intValue(), map.get( entry.getKey() ) );
+        }
+    }
+}
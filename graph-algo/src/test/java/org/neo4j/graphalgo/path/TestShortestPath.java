@@ -341,6 +341,44 @@ public class TestShortestPath extends Neo4jAlgoTestCase
         assertPaths( paths, "m,s,n,p", "m,o,n,p" );
     }
 
+    @Test
+    public void shouldFindEveryCombinationOfShortestSubPaths()
+    {
+        // Layout:
+        //    (b1)      (d1)
+        //   /    \    /    \
+        // (a)-(b2)-(c)      (e)
+        //   \    /    \    /
+        //    (b3)      (d2)
+        graph.makeEdgeChain( "a,b1,c,d1,e" );
+        graph.makeEdgeChain( "a,b2,c,d2,e" );
+        graph.makeEdgeChain( "a,b3,c" );
+
+        PathFinder<Path> finder = instantiatePathFinder( 4 );
+        Iterable<Path> paths = finder.findAllPaths( graph.getNode( "a" ), graph.getNode( "e" ) );
+        assertPaths( paths, "a,b1,c,d1,e", "a,b2,c,d1,e", "a,b3,c,d1,e",
+                "a,b1,c,d2,e", "a,b2,c,d2,e", "a,b3,c,d2,e" );
+    }
+
+    @Test
+    public void shouldExpandFromTheSideWithTheSmallerFrontier()
+    {
+        // Layout: (s) has a lot of neighbours, only one of them leads to (t)
+        //
+        // (s)--(x0)--(m)--(t)
+        //   \--(x1..x99)
+        graph.makeEdgeChain( "s,x0,m,t" );
+        for ( int i = 1; i < 100; i++ )
+        {
+            graph.makeEdge( "s", "x" + i );
+        }
+
+        PathFinder<Path> finder = instantiatePathFinder( 3 );
+        assertPaths( finder.findAllPaths( graph.getNode( "s" ), graph.getNode( "t" ) ), "s,x0,m,t" );
+        assertPaths( finder.findAllPaths( graph.getNode( "t" ), graph.getNode( "s" ) ), "t,m,x0,s" );
+        assertPaths( instantiatePathFinder( 2 ).findAllPaths( graph.getNode( "s" ), graph.getNode( "t" ) ) );
+    }
+
     @Test
     public void makeSureAMaxResultCountCanIsObeyed()
     {
@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx;
+
+@ManagementInterface( name = GroupCommits.NAME )
+@Description( "Statistics about transactions sharing forces of the logical log (group commit)" )
+public interface GroupCommits
+{
+    final String NAME = "Group Commits";
+
+    @Description( "The maximum time in milliseconds a group waits for more transactions to join" )
+    long getMaxWaitMillis();
+
+    @Description( "The number of pending commits at which a group stops waiting for more transactions" )
+    int getMaxSize();
+
+    @Description( "The number of forces of the logical log done for groups of commits" )
+    long getNumberOfGroups();
+
+    @Description( "The number of commits made durable by group forces" )
+    long getNumberOfGroupedCommits();
+
+    @Description( "The average number of commits made durable by a single force" )
+    double getAverageGroupSize();
+
+    @Description( "The largest number of commits made durable by a single force" )
+    long getLargestGroupSize();
+
+    @Description( "The average time in milliseconds it takes to force the logical log" )
+    double getAverageForceLatencyMillis();
+
+    @Description( "The time in milliseconds the latest force of the logical log took" )
+    double getLastForceLatencyMillis();
+}
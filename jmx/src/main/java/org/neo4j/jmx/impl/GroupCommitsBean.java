@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx.impl;
+
+import javax.management.NotCompliantMBeanException;
+
+import org.neo4j.helpers.Service;
+import org.neo4j.jmx.GroupCommits;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommit;
+
+@Service.Implementation( ManagementBeanProvider.class )
+public final class GroupCommitsBean extends ManagementBeanProvider
+{
+    public GroupCommitsBean()
+    {
+        super( GroupCommits.class );
+    }
+
+    @Override
+    protected Neo4jMBean createMBean( ManagementData management ) throws NotCompliantMBeanException
+    {
+        GroupCommit groupCommit = KernelBean.getNeoDataSource( management.getKernelData() ).getXaContainer()
+                .getLogicalLog().getGroupCommit();
+        if ( groupCommit == null ) return null;
+        return new GroupCommitsImpl( management, groupCommit );
+    }
+
+    private static class GroupCommitsImpl extends Neo4jMBean implements GroupCommits
+    {
+        private final GroupCommit groupCommit;
+
+        GroupCommitsImpl( ManagementData management, GroupCommit groupCommit ) throws NotCompliantMBeanException
+        {
+            super( management );
+            this.groupCommit = groupCommit;
+        }
+
+        public long getMaxWaitMillis()
+        {
+            return groupCommit.getMaxWaitMillis();
+        }
+
+        public int getMaxSize()
+        {
+            return groupCommit.getMaxSize();
+        }
+
+        public long getNumberOfGroups()
+        {
+            return groupCommit.getNumberOfGroups();
+        }
+
+        public long getNumberOfGroupedCommits()
+        {
+            return groupCommit.getNumberOfGroupedCommits();
+        }
+
+        public double getAverageGroupSize()
+        {
+            return groupCommit.getAverageGroupSize();
+        }
+
+        public long getLargestGroupSize()
+        {
+            return groupCommit.getLargestGroupSize();
+        }
+
+        public double getAverageForceLatencyMillis()
+        {
+            return groupCommit.getAverageForceLatencyMillis();
+        }
+
+        public double getLastForceLatencyMillis()
+        {
+            return groupCommit.getLastForceLatencyMillis();
+        }
+    }
+}
@@ -110,6 +110,14 @@ public class Config implements DiagnosticsProvider
     /** The size to allocate for memory mapping the relationship store */
     @Documented
     public static final String RELATIONSHIP_STORE_MMAP_SIZE = "neostore.relationshipstore.db.mapped_memory";
+    /**
+     * The implementation managing the memory mapped windows of each store, one
+     * of [default, concurrent]. The concurrent one lets threads reading and
+     * writing a store acquire windows without synchronizing on the whole
+     * store, and picks windows to unmap with a CLOCK (second chance) policy.
+     */
+    @Documented
+    public static final String WINDOW_POOL = "window_pool";
     /** Relative path for where the Neo4j logical log is located */
     @Documented
     public static final String LOGICAL_LOG = "logical_log";
@@ -119,31 +127,46 @@ public class Config implements DiagnosticsProvider
 
     /**
      * The type of cache to use for nodes and relationships, one of [weak, soft,
-     * none, array]
+     * none, array, offheap]
      */
     @Documented
     public static final String CACHE_TYPE = "cache_type";
 
     /**
-     * The amount of memory to use for the node cache (when using the 'array' cache).
+     * The amount of memory to use for the node cache (when using the 'array' or 'offheap' cache).
      */
     @Documented
     public static final String NODE_ARRAY_CACHE_SIZE = "node_cache_size";
 
     /**
-     * The amount of memory to use for the relationship cache (when using the 'array' cache).
+     * The amount of memory to use for the relationship cache (when using the 'array' or 'offheap' cache).
      */
     @Documented
     public static final String RELATIONSHIP_ARRAY_CACHE_SIZE = "relationship_cache_size";
 
     /**
-     * The fraction of the heap (1%-10%) to use for the base array in the node cache (when using the 'array' cache).
+     * The amount of memory outside of the heap to use for the node cache (when using the 'offheap' cache).
+     */
+    @Documented
+    public static final String NODE_OFFHEAP_CACHE_SIZE = "node_offheap_cache_size";
+
+    /**
+     * The amount of memory outside of the heap to use for the relationship cache (when using the 'offheap'
+     * cache).
+     */
+    @Documented
+    public static final String RELATIONSHIP_OFFHEAP_CACHE_SIZE = "relationship_offheap_cache_size";
+
+    /**
+     * The fraction of the heap (1%-10%) to use for the base array in the node cache (when using the 'array' or
+     * 'offheap' cache).
      */
     @Documented
     public static final String NODE_ARRAY_CACHE_ARRAY_FRACTION = "node_cache_array_fraction";
 
     /**
-     * The fraction of the heap (1%-10%) to use for the base array in the relationship cache (when using the 'array' cache).
+     * The fraction of the heap (1%-10%) to use for the base array in the relationship cache (when using the 'array'
+     * or 'offheap' cache).
      */
     @Documented
     public static final String RELATIONSHIP_ARRAY_CACHE_ARRAY_FRACTION = "relationship_cache_array_fraction";
@@ -186,6 +209,17 @@ public class Config implements DiagnosticsProvider
      */
     @Documented
     public static final String ALLOW_STORE_UPGRADE = "allow_store_upgrade";
+
+    /**
+     * Integer value, the number of relationships at which a node is made
+     * dense, keeping its relationships grouped by type. Not set by default,
+     * in which case stores don't have dense nodes. When set, new stores are
+     * created with dense nodes and existing stores are migrated to them when
+     * started, which requires {@link #ALLOW_STORE_UPGRADE}. Property ids of
+     * nodes are limited to 35 bits in stores with dense nodes.
+     */
+    @Documented
+    public static final String DENSE_NODE_THRESHOLD = "dense_node_threshold";
     public static final String STRING_BLOCK_SIZE = "string_block_size";
     public static final String ARRAY_BLOCK_SIZE = "array_block_size";
     /**
@@ -251,6 +285,33 @@ public class Config implements DiagnosticsProvider
     @Documented
     public static final String GC_MONITOR_THRESHOLD = "gc_monitor_threshold";
 
+    /**
+     * Boolean (one of true,false) defining whether concurrently committing
+     * transactions should share a single force of the logical log, instead of
+     * forcing it once per transaction. Transactions committing in two phases
+     * also share the force of the transaction manager's log. Defaults to false.
+     */
+    @Documented
+    public static final String GROUP_COMMIT = "group_commit";
+
+    /**
+     * The maximum time a group commit waits for more transactions to join
+     * before forcing the logical log, when using group commit. Defaults to 0,
+     * i.e. only transactions arriving during the previous force are grouped.
+     * Default unit is seconds, suffix with 's', 'm', or 'ms' to have the unit
+     * be seconds, minutes or milliseconds respectively.
+     */
+    @Documented
+    public static final String GROUP_COMMIT_MAX_WAIT = "group_commit_max_wait";
+
+    /**
+     * The number of pending commits at which a group commit stops waiting
+     * for more transactions to join and forces the logical log, when using
+     * group commit. Defaults to 100.
+     */
+    @Documented
+    public static final String GROUP_COMMIT_MAX_SIZE = "group_commit_max_size";
+
     static final String LOAD_EXTENSIONS = "load_kernel_extensions";
 
     private Map<String, String> params;
@@ -281,12 +281,7 @@ public class BatchInserterImpl implements BatchInserter
     {
         boolean result = false;
         long nextProp = primitive.getNextProp();
-        int index = indexHolder.getKeyId( name );
-
-        if ( index == -1 )
-        {
-            index = createNewPropertyIndex( name );
-        }
+        int index = getOrCreatePropertyKeyId( name );
         PropertyBlock block = new PropertyBlock();
         getPropertyStore().encodeValue( block, index, value );
         int size = block.getSize();
@@ -401,13 +396,18 @@ public class BatchInserterImpl implements BatchInserter
     }
 
     private long internalCreateNode( long nodeId, Map<String, Object> properties )
+    {
+        writeNode( nodeId, createPropertyChain( properties ) );
+        return nodeId;
+    }
+
+    void writeNode( long nodeId, long firstProp )
     {
         NodeRecord nodeRecord = new NodeRecord( nodeId, Record.NO_NEXT_RELATIONSHIP.intValue(), Record.NO_NEXT_PROPERTY.intValue() );
         nodeRecord.setInUse(true);
         nodeRecord.setCreated();
-        nodeRecord.setNextProp( createPropertyChain( properties ) );
+        nodeRecord.setNextProp( firstProp );
         getNodeStore().updateRecord( nodeRecord );
-        return nodeId;
     }
 
     public void createNode( long id, Map<String,Object> properties )
@@ -437,23 +437,30 @@ public class BatchInserterImpl implements BatchInserter
     public long createRelationship( long node1, long node2, RelationshipType
         type, Map<String,Object> properties )
     {
-        NodeRecord firstNode = getNodeRecord( node1 );
-        NodeRecord secondNode = getNodeRecord( node2 );
-        int typeId = typeHolder.getTypeId( type.name() );
-        if ( typeId == -1 )
-        {
-            typeId = createNewRelationshipType( type.name() );
-        }
+        NodeRecord firstNode = getSparseNodeRecord( node1 );
+        NodeRecord secondNode = getSparseNodeRecord( node2 );
+        int typeId = getOrCreateRelationshipTypeId( type.name() );
         long id = getRelationshipStore().nextId();
-        RelationshipRecord record = new RelationshipRecord( id, node1, node2, typeId );
+        writeRelationship( id, firstNode, secondNode, typeId, createPropertyChain( properties ) );
+        return id;
+    }
+
+    void writeRelationship( long id, long node1, long node2, int typeId, long firstProp )
+    {
+        writeRelationship( id, getSparseNodeRecord( node1 ), getSparseNodeRecord( node2 ), typeId, firstProp );
+    }
+
+    private void writeRelationship( long id, NodeRecord firstNode, NodeRecord secondNode, int typeId,
+            long firstProp )
+    {
+        RelationshipRecord record = new RelationshipRecord( id, firstNode.getId(), secondNode.getId(), typeId );
         record.setInUse( true );
         record.setCreated();
         connectRelationship( firstNode, secondNode, record );
         getNodeStore().updateRecord( firstNode );
         getNodeStore().updateRecord( secondNode );
-        record.setNextProp( createPropertyChain( properties ) );
+        record.setNextProp( firstProp );
         getRelationshipStore().updateRecord( record );
-        return id;
     }
 
     private void connectRelationship( NodeRecord firstNode,
@@ -550,7 +557,7 @@ public class BatchInserterImpl implements BatchInserter
 
     public Iterable<Long> getRelationshipIds( long nodeId )
     {
-        NodeRecord nodeRecord = getNodeRecord(nodeId);
+        NodeRecord nodeRecord = getSparseNodeRecord( nodeId );
         long nextRel = nodeRecord.getNextRel();
         List<Long> ids = new ArrayList<Long>();
         while ( nextRel != Record.NO_NEXT_RELATIONSHIP.intValue() )
@@ -579,7 +586,7 @@ public class BatchInserterImpl implements BatchInserter
 
     public Iterable<SimpleRelationship> getRelationships( long nodeId )
     {
-        NodeRecord nodeRecord = getNodeRecord(nodeId);
+        NodeRecord nodeRecord = getSparseNodeRecord( nodeId );
         long nextRel = nodeRecord.getNextRel();
         List<SimpleRelationship> rels = new ArrayList<SimpleRelationship>();
         while ( nextRel != Record.NO_NEXT_RELATIONSHIP.intValue() )
@@ -684,11 +691,7 @@ public class BatchInserterImpl implements BatchInserter
         propRecords.add( currentRecord );
         for ( Entry<String,Object> entry : properties.entrySet() )
         {
-            int keyId = indexHolder.getKeyId( entry.getKey() );
-            if ( keyId == -1 )
-            {
-                keyId = createNewPropertyIndex( entry.getKey() );
-            }
+            int keyId = getOrCreatePropertyKeyId( entry.getKey() );
 
             PropertyBlock block = new PropertyBlock();
             propStore.encodeValue( block, keyId, entry.getValue() );
@@ -777,6 +780,22 @@ public class BatchInserterImpl implements BatchInserter
         return properties;
     }
 
+    /*
+     * Synchronized since the parallel importer encodes properties from
+     * many threads.
+     */
+    synchronized int getOrCreatePropertyKeyId( String key )
+    {
+        int keyId = indexHolder.getKeyId( key );
+        return keyId != -1 ? keyId : createNewPropertyIndex( key );
+    }
+
+    synchronized int getOrCreateRelationshipTypeId( String name )
+    {
+        int typeId = typeHolder.getTypeId( name );
+        return typeId != -1 ? typeId : createNewRelationshipType( name );
+    }
+
     private int createNewPropertyIndex( String stringKey )
     {
         PropertyIndexStore idxStore = getPropertyIndexStore();
@@ -816,12 +835,12 @@ public class BatchInserterImpl implements BatchInserter
         return id;
     }
 
-    private NodeStore getNodeStore()
+    NodeStore getNodeStore()
     {
         return neoStore.getNodeStore();
     }
 
-    private PropertyStore getPropertyStore()
+    PropertyStore getPropertyStore()
     {
         return neoStore.getPropertyStore();
     }
@@ -831,7 +850,7 @@ public class BatchInserterImpl implements BatchInserter
         return getPropertyStore().getIndexStore();
     }
 
-    private RelationshipStore getRelationshipStore()
+    RelationshipStore getRelationshipStore()
     {
         return neoStore.getRelationshipStore();
     }
@@ -850,6 +869,22 @@ public class BatchInserterImpl implements BatchInserter
         return getNodeStore().getRecord(id);
     }
 
+    /**
+     * Returns the record of a node whose relationships are in a single chain.
+     * The relationships of dense nodes, grouped by type, aren't supported by
+     * the batch inserter.
+     */
+    private NodeRecord getSparseNodeRecord( long id )
+    {
+        NodeRecord record = getNodeRecord( id );
+        if ( record.isDense() )
+        {
+            throw new IllegalStateException( "Node[" + id + "] has its relationships grouped by type, " +
+                    "which isn't supported by the batch inserter" );
+        }
+        return record;
+    }
+
     private RelationshipRecord getRelationshipRecord( long id )
     {
         if ( id < 0 || id >= getRelationshipStore().getHighId() )
@@ -859,6 +894,11 @@ public class BatchInserterImpl implements BatchInserter
         return getRelationshipStore().getRecord( id );
     }
 
+    StringLogger getMessageLog()
+    {
+        return msgLog;
+    }
+
     private String fixPath( String dir, StoreFactory sf )
     {
         File directories = new File( dir );
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.batchinsert;
+
+import java.util.List;
+
+/**
+ * A batch of input passed between the stages of an import. The parse stage
+ * turns the raw {@link #input} into {@link #entities}, which the later stages
+ * fill in.
+ */
+class ImportBatch<T, E extends InputEntity>
+{
+    static final long END_SEQUENCE = -1;
+
+    final long sequence;
+    final List<T> input;
+    List<E> entities;
+
+    ImportBatch( long sequence, List<T> input )
+    {
+        this.sequence = sequence;
+        this.input = input;
+    }
+
+    boolean isEnd()
+    {
+        return sequence == END_SEQUENCE;
+    }
+
+    int size()
+    {
+        return input.size();
+    }
+}
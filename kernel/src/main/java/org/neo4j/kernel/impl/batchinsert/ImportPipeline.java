@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.batchinsert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs input through a chain of {@link ImportStage}s connected by bounded
+ * queues. The input is read and cut into batches by the calling thread, the
+ * stages run in threads of their own.
+ */
+class ImportPipeline<T, E extends InputEntity>
+{
+    static final Comparator<ImportBatch<?,?>> BY_SEQUENCE = new Comparator<ImportBatch<?,?>>()
+    {
+        public int compare( ImportBatch<?,?> o1, ImportBatch<?,?> o2 )
+        {
+            return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+        }
+    };
+
+    private final String name;
+    private final List<ImportStage<T,E>> stages;
+    private final int queueSize;
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    ImportPipeline( String name, List<ImportStage<T,E>> stages, int queueSize )
+    {
+        this.name = name;
+        this.stages = stages;
+        this.queueSize = queueSize;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    static <T, E extends InputEntity> ImportBatch<T,E> end()
+    {
+        return new ImportBatch<T,E>( ImportBatch.END_SEQUENCE, Collections.EMPTY_LIST );
+    }
+
+    String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Feeds all of {@code input} through the stages, in batches of
+     * {@code batchSize}, and waits for the last stage to finish.
+     *
+     * @return the number of input items.
+     * @throws RuntimeException if any stage failed.
+     */
+    long run( Iterator<T> input, int batchSize )
+    {
+        BlockingQueue<ImportBatch<T,E>> first = new ArrayBlockingQueue<ImportBatch<T,E>>( queueSize );
+        BlockingQueue<ImportBatch<T,E>> queue = first;
+        for ( int i = 0; i < stages.size(); i++ )
+        {
+            BlockingQueue<ImportBatch<T,E>> next = i < stages.size() - 1 ?
+                    new ArrayBlockingQueue<ImportBatch<T,E>>( queueSize ) : null;
+            stages.get( i ).start( this, queue, next );
+            queue = next;
+        }
+
+        long count = 0;
+        long sequence = 0;
+        try
+        {
+            while ( input.hasNext() && !hasFailed() )
+            {
+                List<T> batch = new ArrayList<T>( batchSize );
+                while ( batch.size() < batchSize && input.hasNext() )
+                {
+                    batch.add( input.next() );
+                }
+                count += batch.size();
+                first.put( new ImportBatch<T,E>( sequence++, batch ) );
+            }
+        }
+        catch ( Throwable e )
+        {
+            fail( e );
+        }
+        try
+        {
+            first.put( ImportPipeline.<T,E>end() );
+            for ( ImportStage<T,E> stage : stages )
+            {
+                stage.join();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            fail( e );
+        }
+
+        Throwable cause = failure.get();
+        if ( cause instanceof RuntimeException )
+        {
+            throw (RuntimeException) cause;
+        }
+        if ( cause instanceof Error )
+        {
+            throw (Error) cause;
+        }
+        if ( cause != null )
+        {
+            throw new RuntimeException( name + " failed", cause );
+        }
+        return count;
+    }
+
+    void fail( Throwable cause )
+    {
+        failure.compareAndSet( null, cause );
+    }
+
+    boolean hasFailed()
+    {
+        return failure.get() != null;
+    }
+
+    List<StageMetrics> metrics()
+    {
+        List<StageMetrics> metrics = new ArrayList<StageMetrics>();
+        for ( ImportStage<T,E> stage : stages )
+        {
+            metrics.add( stage.metrics() );
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.batchinsert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One stage of an {@link ImportPipeline}. Takes batches from its input queue,
+ * processes them with one or more threads and passes them on to the output
+ * queue, if any. An ordered stage has a single thread and processes batches
+ * in the order they were read from the input, regardless of the order they
+ * arrive in from the stage before it.
+ * <p>
+ * When the pipeline has failed the stage keeps taking batches, without
+ * processing them, until the end of the input so that no stage blocks.
+ */
+abstract class ImportStage<T, E extends InputEntity>
+{
+    private final String name;
+    private final int threads;
+    private final boolean ordered;
+
+    private ImportPipeline<T,E> pipeline;
+    private BlockingQueue<ImportBatch<T,E>> input;
+    private BlockingQueue<ImportBatch<T,E>> output;
+    private final List<Thread> workers = new ArrayList<Thread>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong inputWaitNanos = new AtomicLong();
+    private final AtomicLong outputWaitNanos = new AtomicLong();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    ImportStage( String name, int threads, boolean ordered )
+    {
+        if ( threads < 1 || (ordered && threads != 1) )
+        {
+            throw new IllegalArgumentException( name + " can't run with " + threads + " threads" );
+        }
+        this.name = name;
+        this.threads = threads;
+        this.ordered = ordered;
+    }
+
+    abstract void process( ImportBatch<T,E> batch );
+
+    void start( ImportPipeline<T,E> pipeline, BlockingQueue<ImportBatch<T,E>> input,
+            BlockingQueue<ImportBatch<T,E>> output )
+    {
+        this.pipeline = pipeline;
+        this.input = input;
+        this.output = output;
+        startNanos = System.nanoTime();
+        running.set( threads );
+        for ( int i = 0; i < threads; i++ )
+        {
+            Thread worker = new Thread( pipeline.getName() + " " + name + " " + i )
+            {
+                @Override
+                public void run()
+                {
+                    work();
+                }
+            };
+            worker.setDaemon( true );
+            workers.add( worker );
+            worker.start();
+        }
+    }
+
+    void join() throws InterruptedException
+    {
+        for ( Thread worker : workers )
+        {
+            worker.join();
+        }
+    }
+
+    private void work()
+    {
+        PriorityQueue<ImportBatch<T,E>> pending = null;
+        long nextSequence = 0;
+        try
+        {
+            while ( true )
+            {
+                long waitStart = System.nanoTime();
+                ImportBatch<T,E> batch = input.take();
+                inputWaitNanos.addAndGet( System.nanoTime() - waitStart );
+                if ( batch.isEnd() )
+                {
+                    // Let the other threads of this stage see the end too
+                    input.put( batch );
+                    break;
+                }
+                if ( !ordered )
+                {
+                    handle( batch );
+                    continue;
+                }
+                if ( pending == null )
+                {
+                    pending = new PriorityQueue<ImportBatch<T,E>>( 11, ImportPipeline.BY_SEQUENCE );
+                }
+                pending.add( batch );
+                while ( !pending.isEmpty() && pending.peek().sequence == nextSequence )
+                {
+                    handle( pending.poll() );
+                    nextSequence++;
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            pipeline.fail( e );
+        }
+        finally
+        {
+            if ( running.decrementAndGet() == 0 )
+            {
+                endNanos = System.nanoTime();
+                if ( output != null )
+                {
+                    putUninterruptibly( ImportPipeline.<T,E>end() );
+                }
+            }
+        }
+    }
+
+    private void handle( ImportBatch<T,E> batch ) throws InterruptedException
+    {
+        if ( pipeline.hasFailed() )
+        {
+            return;
+        }
+        long start = System.nanoTime();
+        try
+        {
+            process( batch );
+        }
+        catch ( Throwable e )
+        {
+            pipeline.fail( e );
+            return;
+        }
+        finally
+        {
+            busyNanos.addAndGet( System.nanoTime() - start );
+        }
+        batches.incrementAndGet();
+        items.addAndGet( batch.size() );
+        if ( output != null )
+        {
+            long waitStart = System.nanoTime();
+            output.put( batch );
+            outputWaitNanos.addAndGet( System.nanoTime() - waitStart );
+        }
+    }
+
+    private void putUninterruptibly( ImportBatch<T,E> batch )
+    {
+        while ( true )
+        {
+            try
+            {
+                output.put( batch );
+                return;
+            }
+            catch ( InterruptedException e )
+            {
+                pipeline.fail( e );
+            }
+        }
+    }
+
+    StageMetrics metrics()
+    {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return new StageMetrics( name, threads, batches.get(), items.get(), end - startNanos, busyNanos.get(),
+                inputWaitNanos.get(), outputWaitNanos.get() );
+    }
+}
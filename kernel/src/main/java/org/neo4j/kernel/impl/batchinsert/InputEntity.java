@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.batchinsert;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.kernel.impl.nioneo.store.PropertyBlock;
+import org.neo4j.kernel.impl.nioneo.store.PropertyRecord;
+
+/**
+ * A node or relationship on its way through the {@link ParallelBatchImporter}.
+ * Each stage of the import fills in more of it: the encoded property blocks,
+ * then the id and property records, until it's written to the store.
+ */
+public abstract class InputEntity
+{
+    private final Map<String,Object> properties;
+
+    List<PropertyBlock> propertyBlocks;
+    List<PropertyRecord> propertyRecords = Collections.emptyList();
+    long id = -1;
+
+    InputEntity( Map<String,Object> properties )
+    {
+        this.properties = properties != null ? properties : Collections.<String,Object>emptyMap();
+    }
+
+    public Map<String,Object> getProperties()
+    {
+        return properties;
+    }
+
+    /**
+     * @return the id assigned to this entity by the import, or -1 if it
+     *         hasn't been assigned yet.
+     */
+    public long getId()
+    {
+        return id;
+    }
+}
@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.batchinsert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.kernel.impl.nioneo.store.CommonAbstractStore;
+import org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl;
+import org.neo4j.kernel.impl.nioneo.store.IdRange;
+import org.neo4j.kernel.impl.nioneo.store.PropertyBlock;
+import org.neo4j.kernel.impl.nioneo.store.PropertyRecord;
+import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
+import org.neo4j.kernel.impl.nioneo.store.PropertyType;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+
+/**
+ * Imports large amounts of nodes and relationships through a
+ * {@link BatchInserterImpl}, using many threads. The input goes through
+ * these stages, connected by bounded queues:
+ * <ol>
+ * <li>parse, many threads: turns raw input into {@link InputNode}s or
+ * {@link InputRelationship}s with the given {@link InputParser}.</li>
+ * <li>encode properties, many threads: encodes the properties into
+ * {@link PropertyBlock}s, including any dynamic string and array records.</li>
+ * <li>assign ids, one thread: gets ids for the entities and their property
+ * records with {@code nextIdBatch}, in input order.</li>
+ * <li>write, one thread: writes the property, node and relationship records
+ * to the stores, linking relationships into the chains of their nodes.</li>
+ * </ol>
+ * Nodes are given ids in input order, so in a store where no ids have been
+ * freed they get consecutive ids starting at the node high id before the
+ * import. The {@link StageMetrics} of the last import show which stage
+ * limited the throughput, they're also written to the messages log.
+ * <p>
+ * The batch inserter must not be used by other threads during an import.
+ */
+public class ParallelBatchImporter
+{
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    private final BatchInserterImpl inserter;
+    private final int threads;
+    private final int batchSize;
+    private List<StageMetrics> lastMetrics = Collections.emptyList();
+
+    public ParallelBatchImporter( BatchInserterImpl inserter )
+    {
+        this( inserter, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE );
+    }
+
+    /**
+     * @param inserter the batch inserter to write to.
+     * @param threads the number of threads to parse and encode with.
+     * @param batchSize the number of entities passed between stages at a time.
+     */
+    public ParallelBatchImporter( BatchInserterImpl inserter, int threads, int batchSize )
+    {
+        if ( threads < 1 || batchSize < 1 )
+        {
+            throw new IllegalArgumentException( "threads=" + threads + ", batchSize=" + batchSize );
+        }
+        this.inserter = inserter;
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports a node for every item of {@code input}.
+     *
+     * @return the number of imported nodes.
+     */
+    public <T> long importNodes( Iterator<T> input, InputParser<T,InputNode> parser )
+    {
+        List<ImportStage<T,InputNode>> stages = new ArrayList<ImportStage<T,InputNode>>();
+        stages.add( new ParseStage<T,InputNode>( parser ) );
+        stages.add( new EncodePropertiesStage<T,InputNode>() );
+        stages.add( new AssignIdsStage<T,InputNode>( inserter.getNodeStore() ) );
+        stages.add( new ImportStage<T,InputNode>( "write", 1, false )
+        {
+            @Override
+            void process( ImportBatch<T,InputNode> batch )
+            {
+                for ( InputNode node : batch.entities )
+                {
+                    inserter.writeNode( node.id, writePropertyChain( node ) );
+                }
+            }
+        } );
+        return run( "Node import", input, stages );
+    }
+
+    /**
+     * Imports a relationship for every item of {@code input}. The nodes of
+     * the relationships must already exist.
+     *
+     * @return the number of imported relationships.
+     */
+    public <T> long importRelationships( Iterator<T> input, InputParser<T,InputRelationship> parser )
+    {
+        List<ImportStage<T,InputRelationship>> stages = new ArrayList<ImportStage<T,InputRelationship>>();
+        stages.add( new ParseStage<T,InputRelationship>( parser ) );
+        stages.add( new EncodePropertiesStage<T,InputRelationship>()
+        {
+            @Override
+            void process( ImportBatch<T,InputRelationship> batch )
+            {
+                super.process( batch );
+                for ( InputRelationship relationship : batch.entities )
+                {
+                    relationship.typeId = inserter.getOrCreateRelationshipTypeId( relationship.getType().name() );
+                }
+            }
+        } );
+        stages.add( new AssignIdsStage<T,InputRelationship>( inserter.getRelationshipStore() ) );
+        stages.add( new ImportStage<T,InputRelationship>( "write", 1, false )
+        {
+            @Override
+            void process( ImportBatch<T,InputRelationship> batch )
+            {
+                for ( InputRelationship relationship : batch.entities )
+                {
+                    inserter.writeRelationship( relationship.id, relationship.getStartNode(),
+                            relationship.getEndNode(), relationship.typeId, writePropertyChain( relationship ) );
+                }
+            }
+        } );
+        return run( "Relationship import", input, stages );
+    }
+
+    /**
+     * @return the metrics of each stage of the last import.
+     */
+    public List<StageMetrics> getLastImportMetrics()
+    {
+        return lastMetrics;
+    }
+
+    private <T, E extends InputEntity> long run( String name, Iterator<T> input, List<ImportStage<T,E>> stages )
+    {
+        ImportPipeline<T,E> pipeline = new ImportPipeline<T,E>( name, stages, threads * 2 );
+        try
+        {
+            return pipeline.run( input, batchSize );
+        }
+        finally
+        {
+            lastMetrics = pipeline.metrics();
+            StringBuilder message = new StringBuilder( name + " done:" );
+            for ( StageMetrics metrics : lastMetrics )
+            {
+                message.append( "\n  " ).append( metrics );
+            }
+            inserter.getMessageLog().logMessage( message.toString(), true );
+        }
+    }
+
+    private long writePropertyChain( InputEntity entity )
+    {
+        List<PropertyRecord> records = entity.propertyRecords;
+        if ( records.isEmpty() )
+        {
+            return Record.NO_NEXT_PROPERTY.intValue();
+        }
+        // Largest id first, so that the store file is only expanded once
+        PropertyStore propertyStore = inserter.getPropertyStore();
+        for ( int i = records.size() - 1; i >= 0; i-- )
+        {
+            propertyStore.updateRecord( records.get( i ) );
+        }
+        return records.get( 0 ).getId();
+    }
+
+    private class ParseStage<T, E extends InputEntity> extends ImportStage<T,E>
+    {
+        private final InputParser<T,E> parser;
+
+        ParseStage( InputParser<T,E> parser )
+        {
+            super( "parse", threads, false );
+            this.parser = parser;
+        }
+
+        @Override
+        void process( ImportBatch<T,E> batch )
+        {
+            List<E> entities = new ArrayList<E>( batch.size() );
+            for ( T item : batch.input )
+            {
+                entities.add( parser.parse( item ) );
+            }
+            batch.entities = entities;
+        }
+    }
+
+    private class EncodePropertiesStage<T, E extends InputEntity> extends ImportStage<T,E>
+    {
+        EncodePropertiesStage()
+        {
+            super( "encode properties", threads, false );
+        }
+
+        @Override
+        void process( ImportBatch<T,E> batch )
+        {
+            PropertyStore propertyStore = inserter.getPropertyStore();
+            for ( E entity : batch.entities )
+            {
+                Map<String,Object> properties = entity.getProperties();
+                List<PropertyBlock> blocks = new ArrayList<PropertyBlock>( properties.size() );
+                for ( Map.Entry<String,Object> property : properties.entrySet() )
+                {
+                    PropertyBlock block = new PropertyBlock();
+                    propertyStore.encodeValue( block, inserter.getOrCreatePropertyKeyId( property.getKey() ),
+                            property.getValue() );
+                    blocks.add( block );
+                }
+                entity.propertyBlocks = blocks;
+            }
+        }
+    }
+
+    private class AssignIdsStage<T, E extends InputEntity> extends ImportStage<T,E>
+    {
+        private final CommonAbstractStore store;
+
+        AssignIdsStage( CommonAbstractStore store )
+        {
+            super( "assign ids", 1, true );
+            this.store = store;
+        }
+
+        @Override
+        void process( ImportBatch<T,E> batch )
+        {
+            IdIterator entityIds = new IdIterator( store, batch.entities.size() );
+            int propertyRecordCount = 0;
+            for ( E entity : batch.entities )
+            {
+                entity.id = entityIds.next();
+                propertyRecordCount += propertyRecordsNeeded( entity.propertyBlocks );
+            }
+            if ( propertyRecordCount == 0 )
+            {
+                return;
+            }
+            IdIterator propertyIds = new IdIterator( inserter.getPropertyStore(), propertyRecordCount );
+            for ( E entity : batch.entities )
+            {
+                entity.propertyRecords = packPropertyRecords( entity.propertyBlocks, propertyIds );
+            }
+        }
+    }
+
+    private static int propertyRecordsNeeded( List<PropertyBlock> blocks )
+    {
+        int records = 0;
+        int size = PropertyType.getPayloadSize();
+        for ( PropertyBlock block : blocks )
+        {
+            if ( size + block.getSize() > PropertyType.getPayloadSize() )
+            {
+                records++;
+                size = 0;
+            }
+            size += block.getSize();
+        }
+        return records;
+    }
+
+    /*
+     * Packs the blocks into records the same way BatchInserterImpl does,
+     * filling each record before starting the next.
+     */
+    private static List<PropertyRecord> packPropertyRecords( List<PropertyBlock> blocks, IdIterator ids )
+    {
+        if ( blocks.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+        List<PropertyRecord> records = new ArrayList<PropertyRecord>();
+        PropertyRecord current = null;
+        for ( PropertyBlock block : blocks )
+        {
+            if ( current == null || current.size() + block.getSize() > PropertyType.getPayloadSize() )
+            {
+                PropertyRecord previous = current;
+                current = new PropertyRecord( ids.next() );
+                current.setInUse( true );
+                current.setCreated();
+                if ( previous != null )
+                {
+                    previous.setNextProp( current.getId() );
+                    current.setPrevProp( previous.getId() );
+                }
+                records.add( current );
+            }
+            current.addPropertyBlock( block );
+        }
+        return records;
+    }
+
+    /*
+     * Hands out the ids of an IdRange. Unlike nextId, nextIdBatch doesn't
+     * skip the reserved id that looks like -1 as an int, so that one is
+     * replaced with an id from nextId.
+     */
+    private static class IdIterator
+    {
+        private final CommonAbstractStore store;
+        private final IdRange range;
+        private int position;
+
+        IdIterator( CommonAbstractStore store, int size )
+        {
+            this.store = store;
+            this.range = store.nextIdBatch( size );
+        }
+
+        long next()
+        {
+            long[] defragIds = range.getDefragIds();
+            int index = position++;
+            if ( index < defragIds.length )
+            {
+                return defragIds[index];
+            }
+            index -= defragIds.length;
+            if ( index >= range.getRangeLength() )
+            {
+                throw new IllegalStateException( "No more ids in " + range );
+            }
+            long id = range.getRangeStart() + index;
+            return id == IdGeneratorImpl.INTEGER_MINUS_ONE ? store.nextId() : id;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.batchinsert;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of one stage of an import run by the
+ * {@link ParallelBatchImporter}. The stage whose threads were busy the
+ * largest part of the time is the bottleneck; the stages before it spend
+ * their time waiting to hand off batches, the ones after it waiting for
+ * input.
+ */
+public class StageMetrics
+{
+    private final String name;
+    private final int threads;
+    private final long batches;
+    private final long items;
+    private final long elapsedNanos;
+    private final long busyNanos;
+    private final long inputWaitNanos;
+    private final long outputWaitNanos;
+
+    StageMetrics( String name, int threads, long batches, long items, long elapsedNanos, long busyNanos,
+            long inputWaitNanos, long outputWaitNanos )
+    {
+        this.name = name;
+        this.threads = threads;
+        this.batches = batches;
+        this.items = items;
+        this.elapsedNanos = elapsedNanos;
+        this.busyNanos = busyNanos;
+        this.inputWaitNanos = inputWaitNanos;
+        this.outputWaitNanos = outputWaitNanos;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    public long getBatches()
+    {
+        return batches;
+    }
+
+    public long getItems()
+    {
+        return items;
+    }
+
+    public long getElapsedMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( elapsedNanos );
+    }
+
+    /**
+     * @return items processed per second over the whole import.
+     */
+    public double getItemsPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : items * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return percentage of the time the threads of this stage spent
+     *         processing batches, as opposed to waiting.
+     */
+    public double getBusyPercentage()
+    {
+        return percentageOfThreadTime( busyNanos );
+    }
+
+    public double getInputWaitPercentage()
+    {
+        return percentageOfThreadTime( inputWaitNanos );
+    }
+
+    public double getOutputWaitPercentage()
+    {
+        return percentageOfThreadTime( outputWaitNanos );
+    }
+
+    private double percentageOfThreadTime( long nanos )
+    {
+        return elapsedNanos == 0 ? 0 : nanos * 100d / (elapsedNanos * threads);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "%s (%d threads): %d items in %d batches, %.0f items/s, " +
+                              "%.1f%% busy, %.1f%% waiting for input, %.1f%% waiting for output",
+                name, threads, items, batches, getItemsPerSecond(), getBusyPercentage(),
+                getInputWaitPercentage(), getOutputWaitPercentage() );
+    }
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A least-recently-used cache that can be used by many threads at once. It
+ * has the same semantics as {@link LruCache}, including calling
+ * {@link #elementCleaned(Object)} for elements removed to keep the cache
+ * within its <CODE>maxSize</CODE>, but instead of synchronizing every call on
+ * one monitor the keys are split over a number of segments, each with its
+ * own lock and its own share of the <CODE>maxSize</CODE>.
+ * <p>
+ * The least recently used element is therefore picked per segment, which
+ * makes eviction approximate across the whole cache. Small caches use a
+ * single segment and are exact. {@link #elementCleaned(Object)} is called
+ * without holding any lock, so it may do slow things like closing files.
+ */
+public class ConcurrentLruCache<K,E>
+{
+    private static final int MAX_SEGMENTS = 16;
+    // Caches smaller than this per segment get fewer segments
+    private static final int MIN_SEGMENT_SIZE = 64;
+
+    private final String name;
+    private final Segment<K,E>[] segments;
+    private volatile int maxSize;
+
+    /**
+     * Creates a LRU cache. If <CODE>maxSize < 1</CODE> an
+     * IllegalArgumentException is thrown.
+     *
+     * @param name
+     *            name of cache
+     * @param maxSize
+     *            maximum size of this cache
+     */
+    @SuppressWarnings( "unchecked" )
+    public ConcurrentLruCache( String name, int maxSize )
+    {
+        if ( name == null || maxSize < 1 )
+        {
+            throw new IllegalArgumentException( "maxSize=" + maxSize
+                + ", name=" + name );
+        }
+        this.name = name;
+        int segmentCount = 1;
+        while ( segmentCount < MAX_SEGMENTS && maxSize / (segmentCount * 2) >= MIN_SEGMENT_SIZE )
+        {
+            segmentCount *= 2;
+        }
+        this.segments = new Segment[segmentCount];
+        for ( int i = 0; i < segmentCount; i++ )
+        {
+            segments[i] = new Segment<K,E>();
+        }
+        setMaxSize( maxSize );
+    }
+
+    private void setMaxSize( int maxSize )
+    {
+        this.maxSize = maxSize;
+        for ( int i = 0; i < segments.length; i++ )
+        {
+            synchronized ( segments[i] )
+            {
+                segments[i].maxSize = maxSize / segments.length + (i < maxSize % segments.length ? 1 : 0);
+            }
+        }
+    }
+
+    private Segment<K,E> segment( Object key )
+    {
+        int hash = key.hashCode();
+        // Spread the bits, like java.util.HashMap does, so that keys with
+        // hash codes that only differ in the high bits are spread as well
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return segments[hash & (segments.length - 1)];
+    }
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+    public void put( K key, E element )
+    {
+        if ( key == null || element == null )
+        {
+            throw new IllegalArgumentException( "key=" + key + ", element="
+                + element );
+        }
+        Segment<K,E> segment = segment( key );
+        List<E> cleaned;
+        synchronized ( segment )
+        {
+            segment.elements.put( key, element );
+            cleaned = segment.evictOverflow();
+        }
+        cleaned( cleaned );
+    }
+
+    public E remove( K key )
+    {
+        if ( key == null )
+        {
+            throw new IllegalArgumentException( "Null parameter" );
+        }
+        Segment<K,E> segment = segment( key );
+        synchronized ( segment )
+        {
+            return segment.elements.remove( key );
+        }
+    }
+
+    public E get( K key )
+    {
+        if ( key == null )
+        {
+            throw new IllegalArgumentException();
+        }
+        Segment<K,E> segment = segment( key );
+        synchronized ( segment )
+        {
+            E element = segment.elements.get( key );
+            if ( element != null )
+            {
+                segment.hits++;
+            }
+            else
+            {
+                segment.misses++;
+            }
+            return element;
+        }
+    }
+
+    /**
+     * Removes all elements, calling {@link #elementCleaned(Object)} for each
+     * of them.
+     */
+    public void clear()
+    {
+        for ( Segment<K,E> segment : segments )
+        {
+            List<E> cleaned;
+            synchronized ( segment )
+            {
+                cleaned = new ArrayList<E>( segment.elements.values() );
+                segment.elements.clear();
+            }
+            cleaned( cleaned );
+        }
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for ( Segment<K,E> segment : segments )
+        {
+            synchronized ( segment )
+            {
+                size += segment.elements.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return a snapshot of the keys in this cache.
+     */
+    public Set<K> keySet()
+    {
+        Set<K> keys = new HashSet<K>();
+        for ( Segment<K,E> segment : segments )
+        {
+            synchronized ( segment )
+            {
+                keys.addAll( segment.elements.keySet() );
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return a snapshot of the elements in this cache.
+     */
+    public Collection<E> values()
+    {
+        List<E> values = new ArrayList<E>();
+        for ( Segment<K,E> segment : segments )
+        {
+            synchronized ( segment )
+            {
+                values.addAll( segment.elements.values() );
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return a snapshot of the entries in this cache.
+     */
+    public Set<Map.Entry<K,E>> entrySet()
+    {
+        Map<K,E> entries = new HashMap<K,E>();
+        for ( Segment<K,E> segment : segments )
+        {
+            synchronized ( segment )
+            {
+                entries.putAll( segment.elements );
+            }
+        }
+        return entries.entrySet();
+    }
+
+    /**
+     * Returns the maximum size of this cache.
+     *
+     * @return maximum size
+     */
+    public int maxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Changes the max size of the cache, see {@link LruCache#resize(int)}.
+     * If <CODE>newMaxSize</CODE> is less then <CODE>1</CODE> an
+     * {@link IllegalArgumentException} is thrown.
+     *
+     * @param newMaxSize
+     *            the new maximum size of the cache
+     */
+    public void resize( int newMaxSize )
+    {
+        if ( newMaxSize < 1 )
+        {
+            throw new IllegalArgumentException( "newMaxSize=" + newMaxSize );
+        }
+        setMaxSize( newMaxSize );
+        for ( Segment<K,E> segment : segments )
+        {
+            List<E> cleaned;
+            synchronized ( segment )
+            {
+                cleaned = segment.evictOverflow();
+            }
+            cleaned( cleaned );
+        }
+    }
+
+    private void cleaned( List<E> cleaned )
+    {
+        for ( E element : cleaned )
+        {
+            elementCleaned( element );
+        }
+    }
+
+    /**
+     * Called for every element removed from the cache to keep it within its
+     * max size, and for every element removed by {@link #clear()}. Not called
+     * for elements removed by {@link #remove(Object)}.
+     */
+    public void elementCleaned( E element )
+    {
+    }
+
+    public void putAll( Map<K,E> map )
+    {
+        for ( Map.Entry<K,E> entry : map.entrySet() )
+        {
+            put( entry.getKey(), entry.getValue() );
+        }
+    }
+
+    public long hitCount()
+    {
+        long hits = 0;
+        for ( Segment<K,E> segment : segments )
+        {
+            synchronized ( segment )
+            {
+                hits += segment.hits;
+            }
+        }
+        return hits;
+    }
+
+    public long missCount()
+    {
+        long misses = 0;
+        for ( Segment<K,E> segment : segments )
+        {
+            synchronized ( segment )
+            {
+                misses += segment.misses;
+            }
+        }
+        return misses;
+    }
+
+    private static class Segment<K,E>
+    {
+        // All guarded by this
+        private final LinkedHashMap<K,E> elements = new LinkedHashMap<K,E>( 16, 0.75f, true );
+        private int maxSize;
+        private long hits;
+        private long misses;
+
+        List<E> evictOverflow()
+        {
+            if ( elements.size() <= maxSize )
+            {
+                return Collections.emptyList();
+            }
+            List<E> cleaned = new ArrayList<E>();
+            Iterator<E> eldest = elements.values().iterator();
+            while ( elements.size() > maxSize )
+            {
+                cleaned.add( eldest.next() );
+                eldest.remove();
+            }
+            return cleaned;
+        }
+    }
+}
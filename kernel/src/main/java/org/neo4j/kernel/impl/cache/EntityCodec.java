@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Turns the cached state of entities into bytes and back, so that they can be
+ * kept outside of the heap by an {@link OffHeapCache}.
+ */
+public interface EntityCodec<E extends EntityWithSize>
+{
+    /**
+     * Writes the state of {@code entity} to {@code target}. Called while
+     * holding the monitor of {@code entity}.
+     *
+     * @return {@code false} if the entity can't be encoded, in which case it
+     * won't be cached.
+     * @throws java.nio.BufferOverflowException if {@code target} is too small,
+     * the entity will then be encoded again into a larger buffer.
+     */
+    boolean encode( E entity, ByteBuffer target );
+
+    /**
+     * Creates an entity with the given id from the state written by
+     * {@link #encode(EntityWithSize, ByteBuffer)}.
+     */
+    E decode( long id, ByteBuffer source );
+}
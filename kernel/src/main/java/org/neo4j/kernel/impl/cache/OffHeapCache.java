@@ -0,0 +1,521 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.neo4j.helpers.Counter;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.kernel.info.DiagnosticsPhase;
+import org.neo4j.kernel.info.DiagnosticsProvider;
+
+/**
+ * A cache which keeps most of its entities outside of the heap, to be able to
+ * cache large parts of a graph without the garbage collection pauses that
+ * come with having that many objects on the heap.
+ * <p>
+ * Entities are first put in an array on the heap, like in the
+ * {@link AtomicArrayCache}, which also limits the estimated
+ * {@link EntityWithSize#size() size} of the entities in it. An entity that is
+ * pushed out of that array by another entity, or to keep it within its size,
+ * is encoded, using an {@link EntityCodec}, into one of a
+ * number of {@link OffHeapSlab slabs} of memory outside of the heap. Getting
+ * an entity which is in a slab decodes it and moves it back into the array.
+ * The slabs have a fixed size, when full the oldest entities in them are
+ * evicted.
+ * <p>
+ * An entity is either in the array or in a slab, never in both. If an entity
+ * that has been moved to a slab changes (see
+ * {@link #updateSize(EntityWithSize, int, int)}), whoever changed it held on
+ * to it since before it was moved, so the encoded copy is outdated and is
+ * removed.
+ */
+public class OffHeapCache<E extends EntityWithSize> implements Cache<E>, DiagnosticsProvider
+{
+    public static final long MIN_SLAB_SIZE = 1024 * 1024;
+    private static final long MAX_SLAB_SIZE = 1024 * 1024 * 1024;
+    private static final int MIN_SLAB_COUNT = 16;
+    private static final int INITIAL_ENCODE_BUFFER_SIZE = 1024;
+
+    private final String name;
+    private final EntityCodec<E> codec;
+    private final AtomicReferenceArray<E> onHeap;
+    private final long maxOnHeapSize;
+    private final AtomicLong onHeapSize = new AtomicLong();
+    private final OffHeapSlab[] slabs;
+    private final StringLogger logger;
+
+    private final Counter hits = new Counter();
+    private final Counter offHeapHits = new Counter();
+    private final Counter misses = new Counter();
+    private final Counter movedOffHeap = new Counter();
+    private final Counter notEncoded = new Counter();
+    private final Counter purges = new Counter();
+
+    private final ThreadLocal<ByteBuffer> encodeBuffer = new ThreadLocal<ByteBuffer>()
+    {
+        @Override
+        protected ByteBuffer initialValue()
+        {
+            return ByteBuffer.allocate( INITIAL_ENCODE_BUFFER_SIZE );
+        }
+    };
+
+    /**
+     * @param onHeapSlots the length of the array of entities on the heap.
+     * @param maxOnHeapSize the total size in bytes of the entities to keep on
+     * the heap, as estimated by {@link EntityWithSize#size()}.
+     * @param offHeapSize the number of bytes of memory outside of the heap to
+     * use for encoded entities, split into equally large slabs.
+     */
+    public OffHeapCache( String name, EntityCodec<E> codec, int onHeapSlots, long maxOnHeapSize, long offHeapSize,
+            StringLogger logger )
+    {
+        if ( onHeapSlots < 1 )
+        {
+            throw new IllegalArgumentException( "On heap slots can not be " + onHeapSlots );
+        }
+        if ( maxOnHeapSize < AtomicArrayCache.MIN_SIZE )
+        {
+            throw new IllegalArgumentException( "On heap size can not be " + maxOnHeapSize );
+        }
+        if ( offHeapSize < MIN_SLAB_SIZE )
+        {
+            throw new IllegalArgumentException( "Off heap size can not be " + offHeapSize );
+        }
+        this.name = name;
+        this.codec = codec;
+        this.onHeap = new AtomicReferenceArray<E>( onHeapSlots );
+        this.maxOnHeapSize = maxOnHeapSize;
+        int slabCount = MIN_SLAB_COUNT;
+        while ( offHeapSize / slabCount > MAX_SLAB_SIZE )
+        {
+            slabCount *= 2;
+        }
+        long slabSize = Math.max( MIN_SLAB_SIZE, offHeapSize / slabCount );
+        this.slabs = new OffHeapSlab[(int) Math.min( slabCount, offHeapSize / slabSize )];
+        for ( int i = 0; i < slabs.length; i++ )
+        {
+            slabs[i] = new OffHeapSlab( (int) slabSize );
+        }
+        this.logger = logger == null ? StringLogger.SYSTEM : logger;
+    }
+
+    private int position( long id )
+    {
+        return (int) ( id % onHeap.length() );
+    }
+
+    private OffHeapSlab slab( long id )
+    {
+        return slabs[(int) ( id % slabs.length )];
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public void put( E entity )
+    {
+        long id = entity.getId();
+        OffHeapSlab slab = slab( id );
+        synchronized ( slab )
+        {
+            slab.remove( id );
+        }
+        int position = position( id );
+        E displaced = onHeap.getAndSet( position, entity );
+        if ( displaced != entity )
+        {
+            movedOnHeap( position, entity, displaced );
+        }
+    }
+
+    private void movedOnHeap( int position, E entity, E displaced )
+    {
+        long size = onHeapSize.addAndGet( entity.size() - ( displaced == null ? 0 : displaced.size() ) );
+        if ( displaced != null && displaced.getId() != entity.getId() )
+        {
+            moveOffHeap( displaced );
+        }
+        if ( size > maxOnHeapSize )
+        {
+            purgeFrom( position );
+        }
+    }
+
+    /**
+     * Moves the entities around {@code position} off heap until the ones left
+     * on the heap are well within the limit, like
+     * {@link AtomicArrayCache} purges its array.
+     */
+    private synchronized void purgeFrom( int position )
+    {
+        if ( onHeapSize.get() <= maxOnHeapSize * 0.95f )
+        {
+            return;
+        }
+        purges.inc();
+        for ( int distance = 1; position - distance >= 0 || position + distance < onHeap.length(); distance++ )
+        {
+            if ( ( position - distance >= 0 && purge( position - distance ) )
+                 || ( position + distance < onHeap.length() && purge( position + distance ) ) )
+            {
+                return;
+            }
+        }
+        // The entity at the position is larger than the limit by itself
+        purge( position );
+    }
+
+    /**
+     * @return whether the entities on the heap are within the limit.
+     */
+    private boolean purge( int position )
+    {
+        E entity = onHeap.get( position );
+        if ( entity != null && onHeap.compareAndSet( position, entity, null ) )
+        {
+            onHeapSize.addAndGet( -entity.size() );
+            moveOffHeap( entity );
+        }
+        return onHeapSize.get() <= maxOnHeapSize * 0.9f;
+    }
+
+    private void moveOffHeap( E entity )
+    {
+        // Changes to the entity are made while holding its monitor, encoding
+        // it under that monitor makes sure the slab sees either all or none of
+        // a change, and that updateSize for the change comes after it's in the
+        // slab.
+        synchronized ( entity )
+        {
+            ByteBuffer encoded = encode( entity );
+            if ( encoded == null )
+            {
+                notEncoded.inc();
+                return;
+            }
+            OffHeapSlab slab = slab( entity.getId() );
+            synchronized ( slab )
+            {
+                if ( slab.put( entity.getId(), encoded ) )
+                {
+                    movedOffHeap.inc();
+                }
+                else
+                {
+                    notEncoded.inc();
+                }
+            }
+        }
+    }
+
+    private ByteBuffer encode( E entity )
+    {
+        ByteBuffer buffer = encodeBuffer.get();
+        while ( true )
+        {
+            buffer.clear();
+            try
+            {
+                if ( !codec.encode( entity, buffer ) )
+                {
+                    return null;
+                }
+                buffer.flip();
+                return buffer;
+            }
+            catch ( BufferOverflowException e )
+            {
+                if ( buffer.capacity() >= slabs[0].capacity() )
+                {
+                    return null;
+                }
+                buffer = ByteBuffer.allocate( buffer.capacity() * 2 );
+                encodeBuffer.set( buffer );
+            }
+        }
+    }
+
+    @Override
+    public E get( long id )
+    {
+        int position = position( id );
+        E entity = onHeap.get( position );
+        if ( entity != null && entity.getId() == id )
+        {
+            hits.inc();
+            return entity;
+        }
+        OffHeapSlab slab = slab( id );
+        synchronized ( slab )
+        {
+            ByteBuffer encoded = slab.get( id );
+            if ( encoded == null )
+            {
+                misses.inc();
+                return null;
+            }
+            entity = codec.decode( id, encoded );
+            slab.remove( id );
+        }
+        offHeapHits.inc();
+        movedOnHeap( position, entity, onHeap.getAndSet( position, entity ) );
+        return entity;
+    }
+
+    @Override
+    public E remove( long id )
+    {
+        OffHeapSlab slab = slab( id );
+        E removed = null;
+        synchronized ( slab )
+        {
+            ByteBuffer encoded = slab.get( id );
+            if ( encoded != null )
+            {
+                removed = codec.decode( id, encoded );
+                slab.remove( id );
+            }
+        }
+        int position = position( id );
+        E entity = onHeap.get( position );
+        if ( entity != null && entity.getId() == id && onHeap.compareAndSet( position, entity, null ) )
+        {
+            onHeapSize.addAndGet( -entity.size() );
+            removed = entity;
+        }
+        return removed;
+    }
+
+    @Override
+    public void updateSize( E entity, int sizeBefore, int sizeAfter )
+    {
+        int position = position( entity.getId() );
+        E current = onHeap.get( position );
+        if ( current == entity )
+        {
+            if ( onHeapSize.addAndGet( sizeAfter - sizeBefore ) > maxOnHeapSize )
+            {
+                purgeFrom( position );
+            }
+            return;
+        }
+        // The entity has been moved off heap or replaced since it was handed
+        // out, any copy of it that's in this cache is from before this change
+        OffHeapSlab slab = slab( entity.getId() );
+        synchronized ( slab )
+        {
+            slab.remove( entity.getId() );
+        }
+        if ( current != null && current.getId() == entity.getId() && onHeap.compareAndSet( position, current, null ) )
+        {
+            onHeapSize.addAndGet( -current.size() );
+        }
+    }
+
+    @Override
+    public void putAll( Collection<E> entities )
+    {
+        for ( E entity : entities )
+        {
+            put( entity );
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        for ( int i = 0; i < onHeap.length(); i++ )
+        {
+            onHeap.set( i, null );
+        }
+        onHeapSize.set( 0 );
+        for ( OffHeapSlab slab : slabs )
+        {
+            synchronized ( slab )
+            {
+                slab.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the number of entities in the cache, on and off heap.
+     */
+    @Override
+    public long size()
+    {
+        long size = 0;
+        for ( int i = 0; i < onHeap.length(); i++ )
+        {
+            if ( onHeap.get( i ) != null )
+            {
+                size++;
+            }
+        }
+        for ( OffHeapSlab slab : slabs )
+        {
+            synchronized ( slab )
+            {
+                size += slab.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of gets for entities in the cache, both those that
+     * were on the heap and those that had to be decoded.
+     */
+    @Override
+    public long hitCount()
+    {
+        return hits.count() + offHeapHits.count();
+    }
+
+    @Override
+    public long missCount()
+    {
+        return misses.count();
+    }
+
+    /**
+     * @return the number of gets for entities that had to be decoded from the
+     * memory outside of the heap.
+     */
+    public long offHeapHitCount()
+    {
+        return offHeapHits.count();
+    }
+
+    /**
+     * @return the number of entities pushed out of the on heap array that
+     * were moved into a slab.
+     */
+    public long movedOffHeapCount()
+    {
+        return movedOffHeap.count();
+    }
+
+    /**
+     * @return the number of entities pushed out of the on heap array that
+     * couldn't be encoded, or were too large for a slab, and were dropped.
+     */
+    public long notEncodedCount()
+    {
+        return notEncoded.count();
+    }
+
+    /**
+     * @return the estimated size in bytes of the entities on the heap.
+     */
+    public long onHeapSize()
+    {
+        return onHeapSize.get();
+    }
+
+    /**
+     * @return the number of times entities were moved off heap to keep the
+     * ones on the heap within their size.
+     */
+    public long purgeCount()
+    {
+        return purges.count();
+    }
+
+    /**
+     * @return the number of entities evicted from full slabs.
+     */
+    public long evictionCount()
+    {
+        long evictions = 0;
+        for ( OffHeapSlab slab : slabs )
+        {
+            synchronized ( slab )
+            {
+                evictions += slab.evictions();
+            }
+        }
+        return evictions;
+    }
+
+    public long offHeapBytesUsed()
+    {
+        long used = 0;
+        for ( OffHeapSlab slab : slabs )
+        {
+            synchronized ( slab )
+            {
+                used += slab.usedBytes();
+            }
+        }
+        return used;
+    }
+
+    public long offHeapBytes()
+    {
+        return (long) slabs.length * slabs[0].capacity();
+    }
+
+    public void printStatistics()
+    {
+        logStatistics( logger );
+    }
+
+    @Override
+    public String getDiagnosticsIdentifier()
+    {
+        return getName();
+    }
+
+    @Override
+    public void acceptDiagnosticsVisitor( Object visitor )
+    {
+        // accept no visitors.
+    }
+
+    @Override
+    public void dump( DiagnosticsPhase phase, StringLogger log )
+    {
+        if ( phase.isExplicitlyRequested() ) logStatistics( log );
+    }
+
+    private void logStatistics( StringLogger log )
+    {
+        long hitCount = hitCount();
+        long total = hitCount + missCount();
+        String missPercentage = total == 0 ? "0%" : ( (float) missCount() / total * 100.0f ) + "%";
+        log.logMessage( name + " on heap: " + onHeapSize() + "/" + maxOnHeapSize + " bytes in " + onHeap.length()
+                + " slots, " + purgeCount() + " purges, off heap: " + offHeapBytesUsed() + "/"
+                + offHeapBytes() + " bytes in " + slabs.length + " slabs, " + hitCount + " hits ("
+                + offHeapHitCount() + " off heap), " + missPercentage + " misses, " + movedOffHeapCount()
+                + " moved off heap, " + notEncodedCount() + " not encoded, " + evictionCount() + " evictions.",
+                true );
+    }
+}
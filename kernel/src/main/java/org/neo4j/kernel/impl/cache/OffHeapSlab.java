@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A fixed amount of memory outside of the heap holding encoded entities by id.
+ * Entries are appended to the slab as to a ring buffer, when it's full the
+ * oldest entries are evicted to make room for new ones. The index from id to
+ * entry is kept in primitive arrays, so that the garbage collector never sees
+ * more than a few objects per slab regardless of how many entries it holds.
+ * <p>
+ * Every entry is an id (long) and a length (int) followed by the encoded
+ * entity. Removed or replaced entries stay in the ring until they're
+ * overwritten, they just aren't in the index anymore.
+ * <p>
+ * Not thread safe, the {@link OffHeapCache} synchronizes on the slab.
+ */
+class OffHeapSlab
+{
+    private static final int HEADER_SIZE = 8 + 4;
+    private static final long NO_ID = -1;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+
+    // The entries are in [tail,head) or, if wrapped, in [tail,end) and [0,head)
+    private int head;
+    private int tail;
+    private int end;
+    private boolean wrapped;
+    private int ringEntries;
+
+    // Open addressing with linear probing, ids to entry offsets
+    private long[] ids;
+    private int[] offsets;
+    private int size;
+
+    private long usedBytes;
+    private long evictions;
+
+    OffHeapSlab( int capacity )
+    {
+        this.capacity = capacity;
+        this.buffer = ByteBuffer.allocateDirect( capacity );
+        initIndex( 1024 );
+    }
+
+    private void initIndex( int length )
+    {
+        ids = new long[length];
+        offsets = new int[length];
+        Arrays.fill( ids, NO_ID );
+    }
+
+    /**
+     * Puts the encoded entity, in {@code source} between its position and
+     * limit, in the slab, evicting the oldest entries if needed.
+     *
+     * @return whether or not it was put in the slab, entities larger than the
+     * slab can't be.
+     */
+    boolean put( long id, ByteBuffer source )
+    {
+        remove( id );
+        int entrySize = HEADER_SIZE + source.remaining();
+        if ( entrySize > capacity )
+        {
+            return false;
+        }
+        while ( true )
+        {
+            if ( !wrapped )
+            {
+                if ( ringEntries == 0 )
+                {
+                    head = tail = 0;
+                }
+                if ( head + entrySize <= capacity )
+                {
+                    break;
+                }
+                end = head;
+                head = 0;
+                wrapped = true;
+            }
+            else
+            {
+                if ( head + entrySize <= tail )
+                {
+                    break;
+                }
+                evictOldest();
+            }
+        }
+        buffer.putLong( head, id );
+        buffer.putInt( head + 8, source.remaining() );
+        ByteBuffer target = buffer.duplicate();
+        target.position( head + HEADER_SIZE );
+        target.put( source );
+        indexPut( id, head );
+        usedBytes += entrySize;
+        head += entrySize;
+        ringEntries++;
+        return true;
+    }
+
+    private void evictOldest()
+    {
+        long id = buffer.getLong( tail );
+        int entrySize = HEADER_SIZE + buffer.getInt( tail + 8 );
+        if ( indexGet( id ) == tail )
+        {
+            indexRemove( id );
+            usedBytes -= entrySize;
+            evictions++;
+        }
+        tail += entrySize;
+        ringEntries--;
+        if ( tail >= end )
+        {
+            tail = 0;
+            wrapped = false;
+        }
+    }
+
+    /**
+     * @return the encoded entity for {@code id}, valid until the slab is
+     * modified, or {@code null} if there's no entry for it.
+     */
+    ByteBuffer get( long id )
+    {
+        int offset = indexGet( id );
+        if ( offset == -1 )
+        {
+            return null;
+        }
+        ByteBuffer entry = buffer.duplicate();
+        entry.position( offset + HEADER_SIZE );
+        entry.limit( offset + HEADER_SIZE + buffer.getInt( offset + 8 ) );
+        return entry.slice();
+    }
+
+    boolean remove( long id )
+    {
+        int offset = indexGet( id );
+        if ( offset == -1 )
+        {
+            return false;
+        }
+        indexRemove( id );
+        usedBytes -= HEADER_SIZE + buffer.getInt( offset + 8 );
+        return true;
+    }
+
+    void clear()
+    {
+        head = tail = end = ringEntries = size = 0;
+        wrapped = false;
+        usedBytes = 0;
+        initIndex( 1024 );
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    long usedBytes()
+    {
+        return usedBytes;
+    }
+
+    int capacity()
+    {
+        return capacity;
+    }
+
+    long evictions()
+    {
+        return evictions;
+    }
+
+    private int slot( long id )
+    {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (ids.length - 1);
+    }
+
+    private int indexGet( long id )
+    {
+        for ( int slot = slot( id ); ids[slot] != NO_ID; slot = (slot + 1) & (ids.length - 1) )
+        {
+            if ( ids[slot] == id )
+            {
+                return offsets[slot];
+            }
+        }
+        return -1;
+    }
+
+    private void indexPut( long id, int offset )
+    {
+        if ( (size + 1) * 2 > ids.length )
+        {
+            long[] oldIds = ids;
+            int[] oldOffsets = offsets;
+            initIndex( ids.length * 2 );
+            for ( int i = 0; i < oldIds.length; i++ )
+            {
+                if ( oldIds[i] != NO_ID )
+                {
+                    insert( oldIds[i], oldOffsets[i] );
+                }
+            }
+        }
+        insert( id, offset );
+        size++;
+    }
+
+    private void insert( long id, int offset )
+    {
+        int slot = slot( id );
+        while ( ids[slot] != NO_ID )
+        {
+            slot = (slot + 1) & (ids.length - 1);
+        }
+        ids[slot] = id;
+        offsets[slot] = offset;
+    }
+
+    private void indexRemove( long id )
+    {
+        int mask = ids.length - 1;
+        int slot = slot( id );
+        while ( ids[slot] != id )
+        {
+            slot = (slot + 1) & mask;
+        }
+        // Shift back the entries after the removed one that would otherwise
+        // become unreachable, instead of leaving a tombstone
+        int hole = slot;
+        for ( int next = (hole + 1) & mask; ids[next] != NO_ID; next = (next + 1) & mask )
+        {
+            int home = slot( ids[next] );
+            if ( ((next - home) & mask) >= ((next - hole) & mask) )
+            {
+                ids[hole] = ids[next];
+                offsets[hole] = offsets[next];
+                hole = next;
+            }
+        }
+        ids[hole] = NO_ID;
+        size--;
+    }
+}
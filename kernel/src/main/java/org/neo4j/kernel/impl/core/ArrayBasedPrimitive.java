@@ -83,6 +83,15 @@ abstract class ArrayBasedPrimitive extends Primitive
         updateSize( before, size(), nodeManager );
     }
 
+    /**
+     * Sets the properties of a primitive that isn't yet visible to other
+     * threads, without updating the cache size.
+     */
+    void initProperties( PropertyData[] properties )
+    {
+        this.properties = properties;
+    }
+
     @Override
     protected PropertyData[] allProperties()
     {
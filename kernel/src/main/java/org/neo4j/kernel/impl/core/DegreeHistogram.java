@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+/**
+ * Distribution of the number of relationships of one type and direction
+ * over a sample of nodes. Degrees are kept in buckets of powers of two, the
+ * first bucket holds the nodes without any such relationship.
+ */
+public class DegreeHistogram
+{
+    private static final int BUCKETS = 64;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long sampledNodes;
+    private long nodesWithRelationships;
+    private long totalDegree;
+
+    void add( long degree )
+    {
+        buckets[bucketFor( degree )]++;
+        sampledNodes++;
+        if ( degree > 0 )
+        {
+            nodesWithRelationships++;
+            totalDegree += degree;
+        }
+    }
+
+    static int bucketFor( long degree )
+    {
+        return degree == 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros( degree );
+    }
+
+    /**
+     * @return the number of sampled nodes in the given bucket. Bucket 0 holds
+     * the nodes without relationships, bucket {@code i > 0} holds the nodes
+     * with a degree of at least 2^(i-1) and less than 2^i.
+     */
+    public long getNodesInBucket( int bucket )
+    {
+        return buckets[bucket];
+    }
+
+    public int getNumberOfBuckets()
+    {
+        return BUCKETS;
+    }
+
+    public long getSampledNodes()
+    {
+        return sampledNodes;
+    }
+
+    public long getNodesWithRelationships()
+    {
+        return nodesWithRelationships;
+    }
+
+    /**
+     * @return the average degree of the sampled nodes that have at least one
+     * relationship of this type and direction.
+     */
+    public double getAverageDegree()
+    {
+        return nodesWithRelationships == 0 ? 0 : (double) totalDegree / nodesWithRelationships;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder result = new StringBuilder( "DegreeHistogram[sampled:" ).append( sampledNodes )
+                .append( ", average:" ).append( getAverageDegree() );
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            if ( buckets[i] > 0 )
+            {
+                result.append( ", <" ).append( i == 0 ? 1 : 1L << i ).append( ":" ).append( buckets[i] );
+            }
+        }
+        return result.append( "]" ).toString();
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.helpers.Triplet;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupRecord;
+import org.neo4j.kernel.impl.transaction.LockType;
+import org.neo4j.kernel.impl.util.ArrayMap;
+import org.neo4j.kernel.impl.util.RelIdArray;
+import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
+import org.neo4j.kernel.impl.util.RelIdIterator;
+
+/**
+ * A node that keeps its relationships in one group per relationship type,
+ * see {@link org.neo4j.kernel.impl.nioneo.store.NodeRecord#isDense()}. The
+ * relationships of such a node are loaded one type at a time, the first time
+ * relationships of that type are asked for, so that getting the relationships
+ * of one type doesn't load those of every other type as well.
+ */
+class DenseNodeImpl extends NodeImpl
+{
+    private static final String[] NO_TYPES = new String[0];
+
+    // The types whose relationships haven't been loaded yet, along with the
+    // ids of their groups, null until the relationships are first asked for
+    private volatile String[] unloadedTypes;
+    private long[] unloadedGroups;
+
+    DenseNodeImpl( long id )
+    {
+        super( id, Record.NO_NEXT_RELATIONSHIP.intValue(), Record.NO_NEXT_PROPERTY.intValue() );
+    }
+
+    @Override
+    public int size()
+    {
+        int size = super.size() + 8 + 8;
+        String[] types = unloadedTypes;
+        if ( types != null )
+        {
+            size += 16 + 16 + types.length * (8 + 8);
+        }
+        return size;
+    }
+
+    @Override
+    long loadRelChainPosition( NodeManager nodeManager )
+    {
+        List<RelationshipGroupRecord> groups = nodeManager.getRelationshipGroups( this );
+        String[] types = new String[groups.size()];
+        long[] groupIds = new long[groups.size()];
+        for ( int i = 0; i < types.length; i++ )
+        {
+            RelationshipGroupRecord group = groups.get( i );
+            types[i] = nodeManager.getRelationshipTypeById( group.getType() ).name();
+            groupIds[i] = group.getId();
+        }
+        unloadedGroups = groupIds;
+        unloadedTypes = types;
+        // There's no single chain to load, the groups are loaded one by one
+        return Record.NO_NEXT_RELATIONSHIP.intValue();
+    }
+
+    @Override
+    List<RelIdIterator> getAllRelationships( NodeManager nodeManager, DirectionWrapper direction )
+    {
+        loadGroups( nodeManager, null );
+        return super.getAllRelationships( nodeManager, direction );
+    }
+
+    @Override
+    List<RelIdIterator> getAllRelationshipsOfType( NodeManager nodeManager, DirectionWrapper direction,
+            RelationshipType... types )
+    {
+        loadGroups( nodeManager, types );
+        return super.getAllRelationshipsOfType( nodeManager, direction, types );
+    }
+
+    /**
+     * Loads the groups of the given types that aren't loaded yet, or all of
+     * them if {@code types} is {@code null}.
+     * <p>
+     * A committing transaction holds the write lock of this node from writing
+     * its relationships to the store until they have been added to this node
+     * in {@link #commitRelationshipMaps(ArrayMap, ArrayMap, long, NodeManager)}.
+     * The groups are read under the read lock of this node, so that such
+     * relationships are neither read from the store and then added again,
+     * nor left out of a type that was listed before they were written.
+     */
+    private void loadGroups( NodeManager nodeManager, RelationshipType[] types )
+    {
+        String[] typeNames = unloadedTypes;
+        if ( typeNames != null && !hasUnloaded( typeNames, types ) )
+        {
+            return;
+        }
+        List<RelationshipImpl> loadedRels = new LinkedList<RelationshipImpl>();
+        nodeManager.acquireLock( this, LockType.READ );
+        try
+        {
+            ensureRelationshipMapNotNull( nodeManager );
+            loadGroups( nodeManager, types, loadedRels );
+        }
+        finally
+        {
+            nodeManager.releaseLock( this, LockType.READ );
+        }
+        nodeManager.putAllInRelCache( loadedRels );
+    }
+
+    private synchronized void loadGroups( NodeManager nodeManager, RelationshipType[] types,
+            List<RelationshipImpl> loadedRels )
+    {
+        String[] typeNames = unloadedTypes;
+        if ( !hasUnloaded( typeNames, types ) )
+        {
+            return;
+        }
+        int sizeBefore = size();
+        String[] stillUnloadedTypes = new String[typeNames.length];
+        long[] stillUnloadedGroups = new long[typeNames.length];
+        int stillUnloaded = 0;
+        for ( int i = 0; i < typeNames.length; i++ )
+        {
+            if ( types == null || contains( types, typeNames[i] ) )
+            {
+                Triplet<ArrayMap<String,RelIdArray>,List<RelationshipImpl>,Long> rels =
+                        nodeManager.getRelationshipGroupChains( this, unloadedGroups[i] );
+                ArrayMap<String,RelIdArray> addMap = rels.first();
+                for ( String type : addMap.keySet() )
+                {
+                    addMap.put( type, addMap.get( type ).shrink() );
+                }
+                addRelationshipIds( addMap );
+                loadedRels.addAll( rels.second() );
+            }
+            else
+            {
+                stillUnloadedTypes[stillUnloaded] = typeNames[i];
+                stillUnloadedGroups[stillUnloaded++] = unloadedGroups[i];
+            }
+        }
+        unloadedGroups = Arrays.copyOf( stillUnloadedGroups, stillUnloaded );
+        unloadedTypes = stillUnloaded == 0 ? NO_TYPES : Arrays.copyOf( stillUnloadedTypes, stillUnloaded );
+        updateSize( sizeBefore, size(), nodeManager );
+    }
+
+    private static boolean hasUnloaded( String[] typeNames, RelationshipType[] types )
+    {
+        if ( typeNames == null || typeNames.length == 0 )
+        {
+            return false;
+        }
+        if ( types == null )
+        {
+            return true;
+        }
+        for ( String typeName : typeNames )
+        {
+            if ( contains( types, typeName ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains( RelationshipType[] types, String typeName )
+    {
+        for ( RelationshipType type : types )
+        {
+            if ( type.name().equals( typeName ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void commitRelationshipMaps( ArrayMap<String,RelIdArray> cowRelationshipAddMap,
+            ArrayMap<String,Collection<Long>> cowRelationshipRemoveMap, long firstRel, NodeManager nodeManager )
+    {
+        synchronized ( this )
+        {
+            // Types not loaded yet will be read from the store, which by now
+            // has these changes, when they are loaded
+            String[] typeNames = unloadedTypes;
+            if ( typeNames != null && typeNames.length > 0 )
+            {
+                cowRelationshipAddMap = withoutTypes( cowRelationshipAddMap, typeNames );
+                cowRelationshipRemoveMap = withoutTypes( cowRelationshipRemoveMap, typeNames );
+            }
+            super.commitRelationshipMaps( cowRelationshipAddMap, cowRelationshipRemoveMap, firstRel, nodeManager );
+        }
+    }
+
+    private static <T> ArrayMap<String,T> withoutTypes( ArrayMap<String,T> map, String[] typeNames )
+    {
+        if ( map == null )
+        {
+            return null;
+        }
+        ArrayMap<String,T> result = new ArrayMap<String,T>();
+        for ( String type : map.keySet() )
+        {
+            if ( !Arrays.asList( typeNames ).contains( type ) )
+            {
+                result.put( type, map.get( type ) );
+            }
+        }
+        return result;
+    }
+}
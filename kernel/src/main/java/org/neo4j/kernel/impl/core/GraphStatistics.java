@@ -0,0 +1,338 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupRecord;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
+
+/**
+ * Estimates of the shape of the graph, for query planners to decide where to
+ * start matching a pattern and in which order to expand it.
+ * <p>
+ * Relationship counts per type start from a sample of the relationship store,
+ * taken the first time any statistics are asked for. After that they are kept
+ * up to date incrementally from the transactions committed through this
+ * database. Degree histograms are sampled from the node store and sampled
+ * again once the number of relationships has changed by more than a tenth.
+ * <p>
+ * Sampling reads the records straight from the stores, so that the sampled
+ * nodes and relationships don't push the ones in use out of the caches.
+ */
+public class GraphStatistics
+{
+    static final int RELATIONSHIP_SAMPLE_SIZE = 10000;
+    static final int NODE_SAMPLE_SIZE = 500;
+    private static final double RESAMPLE_RATIO = 0.1;
+
+    private final NodeManager nodeManager;
+    private final Random random = new Random();
+
+    private volatile boolean tracking;
+    private final ConcurrentMap<String,AtomicLong> relationshipCounts = new ConcurrentHashMap<String,AtomicLong>();
+    private volatile Map<HistogramKey,DegreeHistogram> histograms;
+    private volatile long relationshipsAtLastNodeSample;
+
+    GraphStatistics( NodeManager nodeManager )
+    {
+        this.nodeManager = nodeManager;
+    }
+
+    public long getNodeCount()
+    {
+        return nodeManager.getNumberOfIdsInUse( Node.class );
+    }
+
+    public long getRelationshipCount()
+    {
+        return nodeManager.getNumberOfIdsInUse( Relationship.class );
+    }
+
+    public long getRelationshipCount( String type )
+    {
+        ensureTracking();
+        AtomicLong count = relationshipCounts.get( type );
+        return count == null ? 0 : Math.max( 0, count.get() );
+    }
+
+    /**
+     * @param type the relationship type, or {@code null} for all types.
+     */
+    public DegreeHistogram getDegreeHistogram( String type, Direction direction )
+    {
+        DegreeHistogram histogram = histograms().get( new HistogramKey( type, direction ) );
+        return histogram != null ? histogram : new DegreeHistogram();
+    }
+
+    /**
+     * Estimates how many relationships of the given type and direction a node
+     * that has any of them has, i.e. how many relationships expanding such a
+     * node is expected to yield.
+     *
+     * @param type the relationship type, or {@code null} for all types.
+     */
+    public double getExpectedDegree( String type, Direction direction )
+    {
+        DegreeHistogram histogram = getDegreeHistogram( type, direction );
+        if ( histogram.getNodesWithRelationships() > 0 )
+        {
+            return histogram.getAverageDegree();
+        }
+        long nodes = getNodeCount();
+        long relationships = type == null ? getRelationshipCount() : getRelationshipCount( type );
+        if ( nodes == 0 || relationships == 0 )
+        {
+            return 0;
+        }
+        return (direction == Direction.BOTH ? 2.0 : 1.0) * relationships / nodes;
+    }
+
+    /**
+     * Throws away what has been sampled so far, the next request samples the
+     * stores again.
+     */
+    public synchronized void resample()
+    {
+        tracking = false;
+        histograms = null;
+    }
+
+    boolean isTracking()
+    {
+        return tracking;
+    }
+
+    void relationshipsCommitted( String type, long delta )
+    {
+        if ( delta != 0 )
+        {
+            counter( type ).addAndGet( delta );
+        }
+    }
+
+    private AtomicLong counter( String type )
+    {
+        AtomicLong count = relationshipCounts.get( type );
+        if ( count == null )
+        {
+            AtomicLong existing = relationshipCounts.putIfAbsent( type, count = new AtomicLong() );
+            count = existing != null ? existing : count;
+        }
+        return count;
+    }
+
+    private void ensureTracking()
+    {
+        if ( !tracking )
+        {
+            sampleRelationships();
+        }
+    }
+
+    private synchronized void sampleRelationships()
+    {
+        if ( tracking )
+        {
+            return;
+        }
+        relationshipCounts.clear();
+        // Commits are counted from here on, a commit racing with the sample
+        // may be counted twice which is fine for an estimate
+        tracking = true;
+
+        long highId = nodeManager.getHighestPossibleIdInUse( Relationship.class );
+        boolean sampleAll = highId < RELATIONSHIP_SAMPLE_SIZE;
+        long samples = sampleAll ? highId + 1 : RELATIONSHIP_SAMPLE_SIZE;
+        Map<Integer,Long> sampledTypes = new HashMap<Integer,Long>();
+        long inUse = 0;
+        for ( long i = 0; i < samples; i++ )
+        {
+            RelationshipRecord record = nodeManager.loadLightRelationship(
+                    sampleAll ? i : (long) (random.nextDouble() * (highId + 1)) );
+            if ( record != null )
+            {
+                Long count = sampledTypes.get( record.getType() );
+                sampledTypes.put( record.getType(), count == null ? 1 : count + 1 );
+                inUse++;
+            }
+        }
+        if ( inUse == 0 )
+        {
+            return;
+        }
+
+        long total = getRelationshipCount();
+        for ( Map.Entry<Integer,Long> entry : sampledTypes.entrySet() )
+        {
+            long estimate = sampleAll ? entry.getValue() : Math.round( (double) total * entry.getValue() / inUse );
+            counter( nodeManager.getRelationshipTypeById( entry.getKey() ).name() ).addAndGet( estimate );
+        }
+    }
+
+    private Map<HistogramKey,DegreeHistogram> histograms()
+    {
+        ensureTracking();
+        Map<HistogramKey,DegreeHistogram> result = histograms;
+        long relationships = getRelationshipCount();
+        if ( result == null || Math.abs( relationships - relationshipsAtLastNodeSample ) >
+                               RESAMPLE_RATIO * Math.max( relationshipsAtLastNodeSample, NODE_SAMPLE_SIZE ) )
+        {
+            result = sampleNodes( relationships );
+        }
+        return result;
+    }
+
+    private synchronized Map<HistogramKey,DegreeHistogram> sampleNodes( long relationships )
+    {
+        List<Map<HistogramKey,Long>> sampled = new ArrayList<Map<HistogramKey,Long>>();
+        Set<HistogramKey> keys = new HashSet<HistogramKey>();
+        long highId = nodeManager.getHighestPossibleIdInUse( Node.class );
+        boolean sampleAll = highId < NODE_SAMPLE_SIZE;
+        long samples = sampleAll ? highId + 1 : NODE_SAMPLE_SIZE;
+        for ( long i = 0; i < samples; i++ )
+        {
+            NodeRecord node = nodeManager.loadLightNode(
+                    sampleAll ? i : (long) (random.nextDouble() * (highId + 1)) );
+            if ( node == null )
+            {
+                continue;
+            }
+            Map<HistogramKey,Long> degrees = degreesOf( node );
+            keys.addAll( degrees.keySet() );
+            sampled.add( degrees );
+        }
+
+        // Every sampled node counts in every histogram, with degree 0 if it
+        // didn't have any such relationship
+        Map<HistogramKey,DegreeHistogram> result = new HashMap<HistogramKey,DegreeHistogram>();
+        for ( HistogramKey key : keys )
+        {
+            DegreeHistogram histogram = new DegreeHistogram();
+            for ( Map<HistogramKey,Long> degrees : sampled )
+            {
+                Long degree = degrees.get( key );
+                histogram.add( degree == null ? 0 : degree );
+            }
+            result.put( key, histogram );
+        }
+        histograms = result;
+        relationshipsAtLastNodeSample = relationships;
+        return result;
+    }
+
+    private Map<HistogramKey,Long> degreesOf( NodeRecord node )
+    {
+        Map<HistogramKey,Long> degrees = new HashMap<HistogramKey,Long>();
+        if ( node.isDense() )
+        {
+            for ( RelationshipGroupRecord group : nodeManager.loadRelationshipGroups( node.getId() ) )
+            {
+                countChain( degrees, node.getId(), group.getFirstOut() );
+                countChain( degrees, node.getId(), group.getFirstIn() );
+                countChain( degrees, node.getId(), group.getFirstLoop() );
+            }
+        }
+        else
+        {
+            countChain( degrees, node.getId(), node.getNextRel() );
+        }
+        return degrees;
+    }
+
+    private void countChain( Map<HistogramKey,Long> degrees, long nodeId, long relId )
+    {
+        while ( relId != Record.NO_NEXT_RELATIONSHIP.intValue() )
+        {
+            RelationshipRecord relationship = nodeManager.loadLightRelationship( relId );
+            if ( relationship == null )
+            {
+                // Deleted while we were reading the chain, the rest of it
+                // can't be reached from here
+                return;
+            }
+            String type = nodeManager.getRelationshipTypeById( relationship.getType() ).name();
+            if ( relationship.getFirstNode() == nodeId )
+            {
+                increment( degrees, type, Direction.OUTGOING );
+            }
+            if ( relationship.getSecondNode() == nodeId )
+            {
+                increment( degrees, type, Direction.INCOMING );
+            }
+            increment( degrees, type, Direction.BOTH );
+            relId = relationship.getFirstNode() == nodeId ? relationship.getFirstNextRel()
+                    : relationship.getSecondNextRel();
+        }
+    }
+
+    private void increment( Map<HistogramKey,Long> degrees, String type, Direction direction )
+    {
+        for ( HistogramKey key : new HistogramKey[] { new HistogramKey( type, direction ),
+                new HistogramKey( null, direction ) } )
+        {
+            Long degree = degrees.get( key );
+            degrees.put( key, degree == null ? 1 : degree + 1 );
+        }
+    }
+
+    private static class HistogramKey
+    {
+        private final String type;
+        private final Direction direction;
+
+        HistogramKey( String type, Direction direction )
+        {
+            this.type = type;
+            this.direction = direction;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( !(obj instanceof HistogramKey) )
+            {
+                return false;
+            }
+            HistogramKey other = (HistogramKey) obj;
+            return direction == other.direction && (type == null ? other.type == null : type.equals( other.type ));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * direction.hashCode() + (type == null ? 0 : type.hashCode());
+        }
+    }
+}
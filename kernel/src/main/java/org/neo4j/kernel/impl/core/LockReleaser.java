@@ -21,8 +21,10 @@ package org.neo4j.kernel.impl.core;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Level;
@@ -433,6 +435,10 @@ public class LockReleaser
         {
             return;
         }
+        if ( param == Status.STATUS_COMMITTED && nodeManager.getStatistics().isTracking() )
+        {
+            updateStatistics( element );
+        }
         ArrayMap<Long,CowNodeElement> cowNodeElements = element.nodes;
         Set<Entry<Long,CowNodeElement>> nodeEntrySet =
             cowNodeElements.entrySet();
@@ -485,6 +491,60 @@ public class LockReleaser
         cowMap.remove( cowTxId );
     }
 
+    private void updateStatistics( PrimitiveElement element )
+    {
+        GraphStatistics statistics = nodeManager.getStatistics();
+        Map<String,Set<Long>> removed = null;
+        for ( CowNodeElement nodeElement : element.nodes.values() )
+        {
+            if ( nodeElement.relationshipAddMap != null )
+            {
+                for ( Entry<String,RelIdArray> entry : nodeElement.relationshipAddMap.entrySet() )
+                {
+                    // Each created relationship is added as outgoing to its start
+                    // node, or as a loop, so this counts it exactly once
+                    statistics.relationshipsCommitted( entry.getKey(),
+                            count( entry.getValue().iteratorOfOnly( DirectionWrapper.OUTGOING ) ) +
+                            count( entry.getValue().iteratorOfOnly( DirectionWrapper.BOTH ) ) );
+                }
+            }
+            if ( nodeElement.relationshipRemoveMap != null )
+            {
+                if ( removed == null )
+                {
+                    removed = new HashMap<String,Set<Long>>();
+                }
+                for ( Entry<String,Collection<Long>> entry : nodeElement.relationshipRemoveMap.entrySet() )
+                {
+                    Set<Long> ids = removed.get( entry.getKey() );
+                    if ( ids == null )
+                    {
+                        removed.put( entry.getKey(), ids = new HashSet<Long>() );
+                    }
+                    ids.addAll( entry.getValue() );
+                }
+            }
+        }
+        if ( removed != null )
+        {
+            for ( Entry<String,Set<Long>> entry : removed.entrySet() )
+            {
+                statistics.relationshipsCommitted( entry.getKey(), -entry.getValue().size() );
+            }
+        }
+    }
+
+    private static long count( RelIdIterator ids )
+    {
+        long count = 0;
+        while ( ids.hasNext() )
+        {
+            ids.next();
+            count++;
+        }
+        return count;
+    }
+
     // non thread safe but let exception be thrown instead of risking deadlock
     public void dumpLocks()
     {
@@ -52,6 +52,8 @@ public class NodeImpl extends ArrayBasedPrimitive
     private volatile RelIdArray[] relationships;
 
     private long relChainPosition = Record.NO_NEXT_RELATIONSHIP.intValue();
+    // Number of relationship batches loaded so far, saturates at Byte.MAX_VALUE
+    private byte relChainBatches;
     private final long id;
 
     NodeImpl( long id, long firstRel, long firstProp )
@@ -333,7 +335,7 @@ public class NodeImpl extends ArrayBasedPrimitive
         relationshipSet.add( relId );
     }
 
-    private void ensureRelationshipMapNotNull( NodeManager nodeManager )
+    void ensureRelationshipMapNotNull( NodeManager nodeManager )
     {
         if ( relationships == null )
         {
@@ -349,7 +351,7 @@ public class NodeImpl extends ArrayBasedPrimitive
         {
             if ( relationships == null )
             {
-                relChainPosition = nodeManager.getRelationshipChainPosition( this );
+                relChainPosition = loadRelChainPosition( nodeManager );
                 ArrayMap<String,RelIdArray> tmpRelMap = new ArrayMap<String,RelIdArray>();
                 rels = getMoreRelationships( nodeManager, tmpRelMap );
                 int sizeBefore = size();
@@ -367,6 +369,16 @@ public class NodeImpl extends ArrayBasedPrimitive
         }
     }
 
+    /**
+     * Returns where in the relationship chain of this node to start loading
+     * relationships. Called, under synchronization, the first time the
+     * relationships of this node are asked for.
+     */
+    long loadRelChainPosition( NodeManager nodeManager )
+    {
+        return nodeManager.getRelationshipChainPosition( this );
+    }
+
     @Override
     protected void updateSize( int sizeBefore, int sizeAfter, NodeManager nodeManager )
     {
@@ -455,25 +467,7 @@ public class NodeImpl extends ArrayBasedPrimitive
             {
                 return false;
             }
-            for ( String type : addMap.keySet() )
-            {
-                RelIdArray addRels = addMap.get( type );
-                // IntArray srcRels = tmpRelMap.get( type );
-                RelIdArray srcRels = getRelIdArray( type );
-                if ( srcRels == null )
-                {
-                    putRelIdArray( addRels );
-                }
-                else
-                {
-                    RelIdArray newSrcRels = srcRels.addAll( addRels );
-                    // This can happen if srcRels gets upgraded to a RelIdArrayWithLoops
-                    if ( newSrcRels != srcRels )
-                    {
-                        putRelIdArray( newSrcRels );
-                    }
-                }
-            }
+            addRelationshipIds( addMap );
             setRelChainPosition( rels.third() );
             updateSize( sizeBefore, size(), nodeManager );
         }
@@ -481,6 +475,29 @@ public class NodeImpl extends ArrayBasedPrimitive
         return true;
     }
 
+    void addRelationshipIds( ArrayMap<String,RelIdArray> addMap )
+    { // precondition: must be called under synchronization
+        for ( String type : addMap.keySet() )
+        {
+            RelIdArray addRels = addMap.get( type );
+            // IntArray srcRels = tmpRelMap.get( type );
+            RelIdArray srcRels = getRelIdArray( type );
+            if ( srcRels == null )
+            {
+                putRelIdArray( addRels );
+            }
+            else
+            {
+                RelIdArray newSrcRels = srcRels.addAll( addRels );
+                // This can happen if srcRels gets upgraded to a RelIdArrayWithLoops
+                if ( newSrcRels != srcRels )
+                {
+                    putRelIdArray( newSrcRels );
+                }
+            }
+        }
+    }
+
     private RelIdArray getRelIdArray( String type )
     {
         // Concurrency-wise it's ok even if the relationships variable
@@ -636,9 +653,18 @@ public class NodeImpl extends ArrayBasedPrimitive
         return relChainPosition;
     }
 
+    int getRelChainBatches()
+    {
+        return relChainBatches;
+    }
+
     void setRelChainPosition( long position )
     { // precondition: must be called under synchronization
         relChainPosition = position;
+        if ( relChainBatches < Byte.MAX_VALUE )
+        {
+            relChainBatches++;
+        }
         // use local reference to avoid multiple read barriers
         RelIdArray[] array = relationships;
         if ( !hasMoreRelationshipsToLoad() && array != null )
@@ -661,6 +687,15 @@ public class NodeImpl extends ArrayBasedPrimitive
         return relationships;
     }
 
+    /**
+     * Sets the fully loaded relationships of a node that isn't yet visible to
+     * other threads, without updating the cache size.
+     */
+    void initRelationships( RelIdArray[] relationships )
+    {
+        this.relationships = relationships;
+    }
+
     @Override
     public CowEntityElement getEntityElement( PrimitiveElement element, boolean create )
     {
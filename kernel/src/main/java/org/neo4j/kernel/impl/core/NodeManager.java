@@ -40,16 +40,17 @@ import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.event.TransactionData;
 import org.neo4j.graphdb.index.Index;
-import org.neo4j.helpers.Pair;
 import org.neo4j.helpers.TimeUtil;
 import org.neo4j.helpers.Triplet;
 import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.Lifecycle;
 import org.neo4j.kernel.Config;
 import org.neo4j.kernel.PropertyTracker;
 import org.neo4j.kernel.impl.cache.AtomicArrayCache;
 import org.neo4j.kernel.impl.cache.Cache;
 import org.neo4j.kernel.impl.cache.NoCache;
+import org.neo4j.kernel.impl.cache.OffHeapCache;
 import org.neo4j.kernel.impl.cache.SoftLruCache;
 import org.neo4j.kernel.impl.cache.StrongReferenceCache;
 import org.neo4j.kernel.impl.cache.WeakLruCache;
@@ -57,6 +58,8 @@ import org.neo4j.kernel.impl.nioneo.store.NameData;
 import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
 import org.neo4j.kernel.impl.nioneo.store.PropertyData;
 import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipChainBatch;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.persistence.EntityIdGenerator;
 import org.neo4j.kernel.impl.persistence.PersistenceManager;
@@ -79,6 +82,8 @@ public class NodeManager
         String relationship_cache_size( String def );
         String node_cache_array_fraction( String def );
         String relationship_cache_array_fraction( String def );
+        String node_offheap_cache_size( String def );
+        String relationship_offheap_cache_size( String def );
         String array_cache_min_log_interval( String def );
     }
     
@@ -112,11 +117,16 @@ public class NodeManager
     private static final int INDEX_COUNT = 2500;
 
     private static final int LOCK_STRIPE_COUNT = 32;
+
+    // Number of ids collected from the store at a time by a scan
+    private static final int SCAN_BATCH_SIZE = 1024;
     private final ReentrantLock loadLocks[] =
         new ReentrantLock[LOCK_STRIPE_COUNT];
     private GraphProperties graphProperties;
 
     private final StringLogger logger;
+    private final GraphStatistics statistics;
+    private final ThreadLocal<StoreAccesses> storeAccesses = new ThreadLocal<StoreAccesses>();
 
     public NodeManager( Configuration config, GraphDatabaseService graphDb,
             LockManager lockManager,
@@ -149,6 +159,7 @@ public class NodeManager
         nodePropertyTrackers = new LinkedList<PropertyTracker<Node>>();
         relationshipPropertyTrackers = new LinkedList<PropertyTracker<Relationship>>();
         this.graphProperties = instantiateGraphProperties();
+        this.statistics = new GraphStatistics( this );
     }
 
     public GraphDatabaseService getGraphDbService()
@@ -161,6 +172,39 @@ public class NodeManager
         return this.cacheType;
     }
 
+    public GraphStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Starts counting the records the calling thread loads from the store,
+     * until {@link #stopCountingStoreAccesses()} is called on the same thread.
+     * Records found in the cache are not counted.
+     *
+     * @return the counts, updated as the thread goes along.
+     */
+    public StoreAccesses startCountingStoreAccesses()
+    {
+        StoreAccesses accesses = new StoreAccesses();
+        storeAccesses.set( accesses );
+        return accesses;
+    }
+
+    public void stopCountingStoreAccesses()
+    {
+        storeAccesses.remove();
+    }
+
+    private void countStoreAccess( StoreAccesses.Kind kind )
+    {
+        StoreAccesses accesses = storeAccesses.get();
+        if ( accesses != null )
+        {
+            accesses.count( kind );
+        }
+    }
+
     @Override
     public void init()
     {
@@ -209,6 +253,14 @@ public class NodeManager
         {
             ((AtomicArrayCache<RelationshipImpl>) relCache).printStatistics();
         }
+        if ( nodeCache instanceof OffHeapCache )
+        {
+            ((OffHeapCache<NodeImpl>) nodeCache).printStatistics();
+        }
+        if ( relCache instanceof OffHeapCache )
+        {
+            ((OffHeapCache<RelationshipImpl>) relCache).printStatistics();
+        }
         nodeCache.clear();
         relCache.clear();
     }
@@ -377,9 +429,10 @@ public class NodeManager
             {
                 return new NodeProxy( nodeId, nodeLookup );
             }
+            countStoreAccess( StoreAccesses.Kind.NODE );
             NodeRecord record = persistenceManager.loadLightNode( nodeId );
             if ( record == null ) return null;
-            node = new NodeImpl( nodeId, record.getCommittedNextRel(), record.getCommittedNextProp() );
+            node = newNodeImpl( record );
             nodeCache.put( node );
             return new NodeProxy( nodeId, nodeLookup );
         }
@@ -450,9 +503,10 @@ public class NodeManager
             {
                 return node;
             }
+            countStoreAccess( StoreAccesses.Kind.NODE );
             NodeRecord record = persistenceManager.loadLightNode( nodeId );
             if ( record == null ) return null;
-            node = new NodeImpl( nodeId, record.getCommittedNextRel(), record.getCommittedNextProp() );
+            node = newNodeImpl( record );
 //            nodeCache.put( nodeId, node );
             nodeCache.put( node );
             return node;
@@ -501,6 +555,7 @@ public class NodeManager
             {
                 return new RelationshipProxy( relId, relationshipLookups );
             }
+            countStoreAccess( StoreAccesses.Kind.RELATIONSHIP );
             RelationshipRecord data = persistenceManager.loadLightRelationship( relId );
             if ( data == null )
             {
@@ -566,6 +621,149 @@ public class NodeManager
         };
     }
     
+    /**
+     * Returns the committed nodes with ids from {@code fromId} (inclusive) to
+     * {@code toId} (exclusive) in id order. Unlike {@link #getAllNodes()} the
+     * node store is read sequentially, a window at a time, and neither the
+     * load locks nor the node cache are involved. Changes made by the current
+     * transaction aren't seen, and a node deleted after it was scanned makes
+     * its proxy throw {@link NotFoundException} once used.
+     */
+    public Iterator<Node> scanNodes( long fromId, long toId )
+    {
+        return new ScanIterator<Node>( fromId, toId )
+        {
+            @Override
+            protected boolean scan( long fromId, long toId, final IdBatch batch )
+            {
+                return persistenceManager.nodeScan( fromId, toId, new Visitor<NodeRecord>()
+                {
+                    @Override
+                    public boolean visit( NodeRecord record )
+                    {
+                        return batch.add( record.getId() );
+                    }
+                } );
+            }
+
+            @Override
+            protected Node proxy( long id )
+            {
+                return newNodeProxyById( id );
+            }
+        };
+    }
+
+    /**
+     * Returns the committed relationships with ids from {@code fromId}
+     * (inclusive) to {@code toId} (exclusive) in id order, read like
+     * {@link #scanNodes(long, long)} reads nodes.
+     */
+    public Iterator<Relationship> scanRelationships( long fromId, long toId )
+    {
+        return new ScanIterator<Relationship>( fromId, toId )
+        {
+            @Override
+            protected boolean scan( long fromId, long toId, final IdBatch batch )
+            {
+                return persistenceManager.relScan( fromId, toId, new Visitor<RelationshipRecord>()
+                {
+                    @Override
+                    public boolean visit( RelationshipRecord record )
+                    {
+                        return batch.add( record.getId() );
+                    }
+                } );
+            }
+
+            @Override
+            protected Relationship proxy( long id )
+            {
+                return newRelationshipProxyById( id );
+            }
+        };
+    }
+
+    private static class IdBatch
+    {
+        private final long[] ids = new long[SCAN_BATCH_SIZE];
+        private int count;
+        private int index;
+
+        /**
+         * @return {@code true} if the batch is full.
+         */
+        boolean add( long id )
+        {
+            ids[count++] = id;
+            return count == ids.length;
+        }
+    }
+
+    /**
+     * Scans the store for a batch of ids at a time, so that no window is
+     * held while the caller is busy with the entities.
+     */
+    private static abstract class ScanIterator<T> extends PrefetchingIterator<T>
+    {
+        private final IdBatch batch = new IdBatch();
+        private final long toId;
+        private long nextId;
+
+        ScanIterator( long fromId, long toId )
+        {
+            this.nextId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected T fetchNextOrNull()
+        {
+            while ( batch.index == batch.count )
+            {
+                if ( nextId >= toId )
+                {
+                    return null;
+                }
+                batch.count = 0;
+                batch.index = 0;
+                boolean full = scan( nextId, toId, batch );
+                nextId = full ? batch.ids[batch.count - 1] + 1 : toId;
+            }
+            return proxy( batch.ids[batch.index++] );
+        }
+
+        /**
+         * Adds the ids in use from {@code fromId} to {@code toId} to
+         * {@code batch} until it is full.
+         *
+         * @return {@code true} if the batch got full.
+         */
+        protected abstract boolean scan( long fromId, long toId, IdBatch batch );
+
+        protected abstract T proxy( long id );
+    }
+
+    RelationshipRecord loadLightRelationship( long id )
+    {
+        return persistenceManager.loadLightRelationship( id );
+    }
+
+    /**
+     * Reads the record of a node from the store, without caching the node.
+     *
+     * @return the record, or {@code null} if the node isn't in use.
+     */
+    NodeRecord loadLightNode( long id )
+    {
+        return persistenceManager.loadLightNode( id );
+    }
+
+    List<RelationshipGroupRecord> loadRelationshipGroups( long nodeId )
+    {
+        return persistenceManager.getRelationshipGroups( nodeId );
+    }
+
     RelationshipType getRelationshipTypeById( int id )
     {
         return relTypeHolder.getRelationshipType( id );
@@ -585,6 +783,7 @@ public class NodeManager
             {
                 return relationship;
             }
+            countStoreAccess( StoreAccesses.Kind.RELATIONSHIP );
             RelationshipRecord data = persistenceManager.loadLightRelationship( relId );
             if ( data == null )
             {
@@ -622,9 +821,19 @@ public class NodeManager
 
     Object loadPropertyValue( PropertyData property )
     {
+        countStoreAccess( StoreAccesses.Kind.PROPERTY );
         return persistenceManager.loadPropertyValue( property );
     }
 
+    private NodeImpl newNodeImpl( NodeRecord record )
+    {
+        if ( record.isDense() )
+        {
+            return new DenseNodeImpl( record.getId() );
+        }
+        return new NodeImpl( record.getId(), record.getCommittedNextRel(), record.getCommittedNextProp() );
+    }
+
     long getRelationshipChainPosition( NodeImpl node )
     {
         return persistenceManager.getRelationshipChainPosition( node.getId() );
@@ -635,61 +844,71 @@ public class NodeManager
     {
         long nodeId = node.getId();
         long position = node.getRelChainPosition();
-        Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> rels =
-            persistenceManager.getMoreRelationships( nodeId, position );
-        ArrayMap<String,RelIdArray> newRelationshipMap =
-            new ArrayMap<String,RelIdArray>();
-        // Map<Long,RelationshipImpl> relsMap = new HashMap<Long,RelationshipImpl>( 150 );
-        List<RelationshipImpl> relsList = new ArrayList<RelationshipImpl>( 150 );
+        countStoreAccess( StoreAccesses.Kind.RELATIONSHIP_CHAIN );
+        RelationshipChainBatch rels =
+            persistenceManager.getMoreRelationships( nodeId, position, node.getRelChainBatches() );
+        return toRelIdArrays( rels );
+    }
 
-        Iterable<RelationshipRecord> loops = rels.first().get( DirectionWrapper.BOTH );
-        boolean hasLoops = loops != null;
-        if ( hasLoops )
-        {
-            receiveRelationships( loops, newRelationshipMap, relsList, DirectionWrapper.BOTH, true );
-        }
-        receiveRelationships( rels.first().get( DirectionWrapper.OUTGOING ), newRelationshipMap,
-                relsList, DirectionWrapper.OUTGOING, hasLoops );
-        receiveRelationships( rels.first().get( DirectionWrapper.INCOMING ), newRelationshipMap,
-                relsList, DirectionWrapper.INCOMING, hasLoops );
+    List<RelationshipGroupRecord> getRelationshipGroups( NodeImpl node )
+    {
+        countStoreAccess( StoreAccesses.Kind.RELATIONSHIP_CHAIN );
+        return persistenceManager.getRelationshipGroups( node.getId() );
+    }
 
-        // relCache.putAll( relsMap );
-        return Triplet.of( newRelationshipMap, relsList, rels.other() );
+    /**
+     * Loads all relationships in group {@code groupId} of the dense
+     * {@code node}, the third element of the result is of no use.
+     */
+    Triplet<ArrayMap<String,RelIdArray>,List<RelationshipImpl>,Long> getRelationshipGroupChains( NodeImpl node,
+            long groupId )
+    {
+        countStoreAccess( StoreAccesses.Kind.RELATIONSHIP_CHAIN );
+        return toRelIdArrays( persistenceManager.getRelationshipGroupChains( node.getId(), groupId ) );
     }
 
-//    private void receiveRelationships(
-//            Iterable<RelationshipRecord> rels, ArrayMap<String, RelIdArray> newRelationshipMap,
-//            Map<Long, RelationshipImpl> relsMap, DirectionWrapper dir, boolean hasLoops )
-    private void receiveRelationships(
-            Iterable<RelationshipRecord> rels, ArrayMap<String, RelIdArray> newRelationshipMap,
-            List<RelationshipImpl> relsList, DirectionWrapper dir, boolean hasLoops )
+    private Triplet<ArrayMap<String,RelIdArray>,List<RelationshipImpl>,Long> toRelIdArrays(
+            RelationshipChainBatch rels )
     {
-        for ( RelationshipRecord rel : rels )
+        ArrayMap<String,RelIdArray> newRelationshipMap =
+            new ArrayMap<String,RelIdArray>();
+        // Map<Long,RelationshipImpl> relsMap = new HashMap<Long,RelationshipImpl>( 150 );
+        List<RelationshipImpl> relsList = new ArrayList<RelationshipImpl>( rels.size() );
+
+        boolean hasLoops = rels.hasLoops();
+        // Relationships of the same type tend to come in runs in the chain
+        int lastTypeId = -1;
+        RelIdArray relationshipSet = null;
+        for ( int i = 0; i < rels.size(); i++ )
         {
-            long relId = rel.getId();
+            long relId = rels.getId( i );
+            int typeId = rels.getType( i );
             RelationshipImpl relImpl = relCache.get( relId );
-            RelationshipType type = null;
             if ( relImpl == null )
             {
-                type = getRelationshipTypeById( rel.getType() );
+                RelationshipType type = getRelationshipTypeById( typeId );
                 assert type != null;
-                relImpl = newRelationshipImpl( relId, rel.getFirstNode(), rel.getSecondNode(), type,
-                        rel.getType(), false );
+                relImpl = newRelationshipImpl( relId, rels.getFirstNode( i ), rels.getSecondNode( i ), type,
+                        typeId, false );
 //                relsMap.put( relId, relImpl );
                 relsList.add( relImpl );
             }
-            else
-            {
-                type = getRelationshipTypeById( relImpl.getTypeId());
-            }
-            RelIdArray relationshipSet = newRelationshipMap.get( type.name() );
-            if ( relationshipSet == null )
+            if ( relationshipSet == null || typeId != lastTypeId )
             {
-                relationshipSet = hasLoops ? new RelIdArrayWithLoops( type.name() ) : new RelIdArray( type.name() );
-                newRelationshipMap.put( type.name(), relationshipSet );
+                String typeName = getRelationshipTypeById( typeId ).name();
+                relationshipSet = newRelationshipMap.get( typeName );
+                if ( relationshipSet == null )
+                {
+                    relationshipSet = hasLoops ? new RelIdArrayWithLoops( typeName ) : new RelIdArray( typeName );
+                    newRelationshipMap.put( typeName, relationshipSet );
+                }
+                lastTypeId = typeId;
             }
-            relationshipSet.add( relId, dir );
+            relationshipSet.add( relId, rels.getDirection( i ) );
         }
+
+        // relCache.putAll( relsMap );
+        return Triplet.of( newRelationshipMap, relsList, rels.getNextPosition() );
     }
 
 //    void putAllInRelCache( Map<Long,RelationshipImpl> map )
@@ -709,12 +928,14 @@ public class NodeManager
 
     ArrayMap<Integer, PropertyData> loadProperties( NodeImpl node, boolean light )
     {
+        countStoreAccess( StoreAccesses.Kind.PROPERTY );
         return persistenceManager.loadNodeProperties( node.getId(), light );
     }
 
     ArrayMap<Integer,PropertyData> loadProperties(
             RelationshipImpl relationship, boolean light )
     {
+        countStoreAccess( StoreAccesses.Kind.PROPERTY );
         return persistenceManager.loadRelProperties( relationship.getId(), light );
     }
 
@@ -1270,26 +1491,6 @@ public class NodeManager
                         RELATIONSHIP_CACHE_NAME, logger );
             }
 
-            private long minLogInterval( String interval )
-            {
-                long result = 60000; // Default: a minute
-                try
-                {
-                    if ( interval != null ) result = TimeUtil.parseTimeMillis( interval );
-                }
-                catch ( Exception e )
-                {
-                    throw new IllegalArgumentException( "Invalid configuration value [" + interval + "] for "
-                                                        + Config.ARRAY_CACHE_MIN_LOG_INTERVAL, e );
-                }
-                if ( result < 0 )
-                {
-                    throw new IllegalArgumentException( "Invalid configuration value [" + interval + "] for "
-                                                        + Config.ARRAY_CACHE_MIN_LOG_INTERVAL );
-                }
-                return result;
-            }
-
             @SuppressWarnings( "boxing" )
             private void checkMemToUse( StringLogger logger, long node, long rel, long available )
             {
@@ -1307,57 +1508,118 @@ public class NodeManager
                     logger.logMessage( String.format( "Configured cache memory limits(node=%s, relationship=%s, total=%s) exceeds recommended limit (%s)",
                                                       node, rel, total, advicedMax ) );
             }
+        },
+        offheap( "off heap cache" )
+        {
+            @Override
+            Cache<NodeImpl> node( StringLogger logger, NodeManager.Configuration config )
+            {
+                return new OffHeapCache<NodeImpl>( NODE_CACHE_NAME, PrimitiveCodec.NODES,
+                        onHeapSlots( config.node_cache_array_fraction( "1" ), Config.NODE_ARRAY_CACHE_ARRAY_FRACTION ),
+                        memory( config.node_cache_size( defaultOnHeapSize() ), Config.NODE_ARRAY_CACHE_SIZE ),
+                        memory( config.node_offheap_cache_size( defaultOffHeapSize() ), Config.NODE_OFFHEAP_CACHE_SIZE ),
+                        logger );
+            }
 
-            private float fraction( String fraction, String param )
+            @Override
+            Cache<RelationshipImpl> relationship( StringLogger logger, NodeManager.Configuration config )
             {
-                float result = 1;
-                try
-                {
-                    if ( fraction != null ) result = Float.parseFloat( fraction );
-                }
-                catch ( NumberFormatException e )
-                {
-                    throw new IllegalArgumentException( "Invalid configuration value [" + fraction + "] for " + param,
-                                                        e );
-                }
-                if ( result < 1 || result > 10 )
-                {
-                    throw new IllegalArgumentException( "Invalid configuration value [" + fraction + "] for " + param );
-                }
-                return result;
+                return new OffHeapCache<RelationshipImpl>( RELATIONSHIP_CACHE_NAME, PrimitiveCodec.RELATIONSHIPS,
+                        onHeapSlots( config.relationship_cache_array_fraction( "1" ),
+                                Config.RELATIONSHIP_ARRAY_CACHE_ARRAY_FRACTION ),
+                        memory( config.relationship_cache_size( defaultOnHeapSize() ),
+                                Config.RELATIONSHIP_ARRAY_CACHE_SIZE ),
+                        memory( config.relationship_offheap_cache_size( defaultOffHeapSize() ),
+                                Config.RELATIONSHIP_OFFHEAP_CACHE_SIZE ), logger );
             }
 
-            @SuppressWarnings( "boxing" )
-            private Long memory( String mem, String param )
+            private String defaultOnHeapSize()
             {
-                mem = mem.trim().toLowerCase();
-                long multiplier = 1;
-                if ( mem.endsWith( "m" ) )
-                {
-                    multiplier = 1024 * 1024;
-                    mem = mem.substring( 0, mem.length() - 1 );
-                }
-                else if ( mem.endsWith( "k" ) )
-                {
-                    multiplier = 1024;
-                    mem = mem.substring( 0, mem.length() - 1 );
-                }
-                else if ( mem.endsWith( "g" ) )
-                {
-                    multiplier = 1024 * 1024 * 1024;
-                    mem = mem.substring( 0, mem.length() - 1 );
-                }
-                try
-                {
-                    return Long.parseLong( mem ) * multiplier;
-                }
-                catch ( NumberFormatException e )
-                {
-                    throw new IllegalArgumentException( "Invalid configuration value [" + mem + "] for " + param, e );
-                }
+                // Most of the cache is meant to be off heap, keep a smaller part on it than the array cache does
+                return "" + Math.max( AtomicArrayCache.MIN_SIZE, Runtime.getRuntime().maxMemory() / 16 );
+            }
+
+            private String defaultOffHeapSize()
+            {
+                return "" + Math.max( OffHeapCache.MIN_SLAB_SIZE, Runtime.getRuntime().maxMemory() / 4 );
+            }
+
+            private int onHeapSlots( String fraction, String param )
+            {
+                // Same sizing as the base array of the array cache
+                long memToUse = (long) ( (double) fraction( fraction, param ) * Runtime.getRuntime().maxMemory() / 100 );
+                return (int) Math.min( Integer.MAX_VALUE, memToUse / 8 );
             }
         };
 
+        private static long minLogInterval( String interval )
+        {
+            long result = 60000; // Default: a minute
+            try
+            {
+                if ( interval != null ) result = TimeUtil.parseTimeMillis( interval );
+            }
+            catch ( Exception e )
+            {
+                throw new IllegalArgumentException( "Invalid configuration value [" + interval + "] for "
+                                                    + Config.ARRAY_CACHE_MIN_LOG_INTERVAL, e );
+            }
+            if ( result < 0 )
+            {
+                throw new IllegalArgumentException( "Invalid configuration value [" + interval + "] for "
+                                                    + Config.ARRAY_CACHE_MIN_LOG_INTERVAL );
+            }
+            return result;
+        }
+
+        private static float fraction( String fraction, String param )
+        {
+            float result = 1;
+            try
+            {
+                if ( fraction != null ) result = Float.parseFloat( fraction );
+            }
+            catch ( NumberFormatException e )
+            {
+                throw new IllegalArgumentException( "Invalid configuration value [" + fraction + "] for " + param,
+                                                    e );
+            }
+            if ( result < 1 || result > 10 )
+            {
+                throw new IllegalArgumentException( "Invalid configuration value [" + fraction + "] for " + param );
+            }
+            return result;
+        }
+
+        @SuppressWarnings( "boxing" )
+        private static Long memory( String mem, String param )
+        {
+            mem = mem.trim().toLowerCase();
+            long multiplier = 1;
+            if ( mem.endsWith( "m" ) )
+            {
+                multiplier = 1024 * 1024;
+                mem = mem.substring( 0, mem.length() - 1 );
+            }
+            else if ( mem.endsWith( "k" ) )
+            {
+                multiplier = 1024;
+                mem = mem.substring( 0, mem.length() - 1 );
+            }
+            else if ( mem.endsWith( "g" ) )
+            {
+                multiplier = 1024 * 1024 * 1024;
+                mem = mem.substring( 0, mem.length() - 1 );
+            }
+            try
+            {
+                return Long.parseLong( mem ) * multiplier;
+            }
+            catch ( NumberFormatException e )
+            {
+                throw new IllegalArgumentException( "Invalid configuration value [" + mem + "] for " + param, e );
+            }
+        }
 
         private static final String NODE_CACHE_NAME = "NodeCache";
         private static final String RELATIONSHIP_CACHE_NAME = "RelationshipCache";
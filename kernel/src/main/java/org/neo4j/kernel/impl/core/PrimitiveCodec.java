@@ -0,0 +1,424 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.neo4j.kernel.impl.cache.EntityCodec;
+import org.neo4j.kernel.impl.nioneo.store.PropertyData;
+import org.neo4j.kernel.impl.nioneo.store.PropertyDatas;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.util.RelIdArray;
+import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
+import org.neo4j.kernel.impl.util.RelIdArrayWithLoops;
+import org.neo4j.kernel.impl.util.RelIdIterator;
+
+/**
+ * Encodes the cached state of nodes and relationships for the
+ * {@link org.neo4j.kernel.impl.cache.OffHeapCache}: their loaded properties
+ * and, for nodes, their relationship ids if all of them are loaded. State
+ * that isn't loaded is encoded as such and will be loaded again from the
+ * store when needed.
+ */
+abstract class PrimitiveCodec<E extends ArrayBasedPrimitive> implements EntityCodec<E>
+{
+    static final EntityCodec<NodeImpl> NODES = new PrimitiveCodec<NodeImpl>()
+    {
+        private final DirectionWrapper[] directions = { DirectionWrapper.OUTGOING, DirectionWrapper.INCOMING,
+                DirectionWrapper.BOTH };
+
+        @Override
+        public boolean encode( NodeImpl node, ByteBuffer target )
+        {
+            if ( node instanceof DenseNodeImpl )
+            {
+                // Its groups are loaded one by one
+                return false;
+            }
+            RelIdArray[] relationships = node.getRelationshipIds();
+            if ( relationships == null || node.hasMoreRelationshipsToLoad() )
+            {
+                target.put( NOT_LOADED );
+            }
+            else
+            {
+                target.put( LOADED );
+                target.putInt( relationships.length );
+                for ( RelIdArray ids : relationships )
+                {
+                    putString( target, ids.getType() );
+                    for ( DirectionWrapper direction : directions )
+                    {
+                        int countPosition = target.position();
+                        target.putInt( 0 );
+                        int count = 0;
+                        for ( RelIdIterator iterator = ids.iteratorOfOnly( direction ); iterator.hasNext(); count++ )
+                        {
+                            target.putLong( iterator.next() );
+                        }
+                        target.putInt( countPosition, count );
+                    }
+                }
+            }
+            return encodeProperties( node, target );
+        }
+
+        @Override
+        public NodeImpl decode( long id, ByteBuffer source )
+        {
+            NodeImpl node = new NodeImpl( id, Record.NO_NEXT_RELATIONSHIP.intValue(),
+                    Record.NO_NEXT_PROPERTY.intValue() );
+            if ( source.get() == LOADED )
+            {
+                RelIdArray[] relationships = new RelIdArray[source.getInt()];
+                for ( int i = 0; i < relationships.length; i++ )
+                {
+                    String type = getString( source );
+                    long[][] ids = new long[directions.length][];
+                    for ( int d = 0; d < directions.length; d++ )
+                    {
+                        ids[d] = new long[source.getInt()];
+                        for ( int j = 0; j < ids[d].length; j++ )
+                        {
+                            ids[d][j] = source.getLong();
+                        }
+                    }
+                    RelIdArray array = ids[2].length > 0 ? new RelIdArrayWithLoops( type ) : new RelIdArray( type );
+                    for ( int d = 0; d < directions.length; d++ )
+                    {
+                        for ( long relId : ids[d] )
+                        {
+                            array.add( relId, directions[d] );
+                        }
+                    }
+                    relationships[i] = array.shrink();
+                }
+                node.initRelationships( relationships );
+            }
+            decodeProperties( node, source );
+            return node;
+        }
+    };
+
+    static final EntityCodec<RelationshipImpl> RELATIONSHIPS = new PrimitiveCodec<RelationshipImpl>()
+    {
+        @Override
+        public boolean encode( RelationshipImpl relationship, ByteBuffer target )
+        {
+            target.putLong( relationship.getStartNodeId() );
+            target.putLong( relationship.getEndNodeId() );
+            target.putInt( relationship.getTypeId() );
+            return encodeProperties( relationship, target );
+        }
+
+        @Override
+        public RelationshipImpl decode( long id, ByteBuffer source )
+        {
+            RelationshipImpl relationship = new RelationshipImpl( id, source.getLong(), source.getLong(),
+                    source.getInt(), false );
+            decodeProperties( relationship, source );
+            return relationship;
+        }
+    };
+
+    private static final byte NOT_LOADED = 0;
+    private static final byte LOADED = 1;
+
+    // Property value types, a value that isn't loaded is NOT_LOADED
+    private static final byte BOOLEAN = 1, BYTE = 2, SHORT = 3, CHAR = 4, INT = 5, LONG = 6, FLOAT = 7,
+            DOUBLE = 8, STRING = 9, BOOLEAN_ARRAY = 10, BYTE_ARRAY = 11, SHORT_ARRAY = 12, CHAR_ARRAY = 13,
+            INT_ARRAY = 14, LONG_ARRAY = 15, FLOAT_ARRAY = 16, DOUBLE_ARRAY = 17, STRING_ARRAY = 18;
+
+    static boolean encodeProperties( ArrayBasedPrimitive primitive, ByteBuffer target )
+    {
+        PropertyData[] properties = primitive.allProperties();
+        if ( properties == null )
+        {
+            target.put( NOT_LOADED );
+            return true;
+        }
+        target.put( LOADED );
+        target.putInt( properties.length );
+        for ( PropertyData property : properties )
+        {
+            target.putInt( property.getIndex() );
+            target.putLong( property.getId() );
+            if ( !encodeValue( property.getValue(), target ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void decodeProperties( ArrayBasedPrimitive primitive, ByteBuffer source )
+    {
+        if ( source.get() == NOT_LOADED )
+        {
+            return;
+        }
+        int count = source.getInt();
+        if ( count == 0 )
+        {
+            primitive.setEmptyProperties();
+            return;
+        }
+        List<PropertyData> properties = new ArrayList<PropertyData>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            properties.add( decodeProperty( source.getInt(), source.getLong(), source ) );
+        }
+        primitive.initProperties( properties.toArray( new PropertyData[count] ) );
+    }
+
+    private static boolean encodeValue( Object value, ByteBuffer target )
+    {
+        if ( value == null )
+        {
+            target.put( NOT_LOADED );
+        }
+        else if ( value instanceof Boolean )
+        {
+            target.put( BOOLEAN ).put( (byte) ( ( (Boolean) value ).booleanValue() ? 1 : 0 ) );
+        }
+        else if ( value instanceof Byte )
+        {
+            target.put( BYTE ).put( ( (Byte) value ).byteValue() );
+        }
+        else if ( value instanceof Short )
+        {
+            target.put( SHORT ).putShort( ( (Short) value ).shortValue() );
+        }
+        else if ( value instanceof Character )
+        {
+            target.put( CHAR ).putChar( ( (Character) value ).charValue() );
+        }
+        else if ( value instanceof Integer )
+        {
+            target.put( INT ).putInt( ( (Integer) value ).intValue() );
+        }
+        else if ( value instanceof Long )
+        {
+            target.put( LONG ).putLong( ( (Long) value ).longValue() );
+        }
+        else if ( value instanceof Float )
+        {
+            target.put( FLOAT ).putFloat( ( (Float) value ).floatValue() );
+        }
+        else if ( value instanceof Double )
+        {
+            target.put( DOUBLE ).putDouble( ( (Double) value ).doubleValue() );
+        }
+        else if ( value instanceof String )
+        {
+            target.put( STRING );
+            putString( target, (String) value );
+        }
+        else if ( value instanceof boolean[] )
+        {
+            boolean[] array = (boolean[]) value;
+            target.put( BOOLEAN_ARRAY ).putInt( array.length );
+            for ( boolean item : array )
+            {
+                target.put( (byte) ( item ? 1 : 0 ) );
+            }
+        }
+        else if ( value instanceof byte[] )
+        {
+            byte[] array = (byte[]) value;
+            target.put( BYTE_ARRAY ).putInt( array.length ).put( array );
+        }
+        else if ( value instanceof short[] )
+        {
+            short[] array = (short[]) value;
+            target.put( SHORT_ARRAY ).putInt( array.length );
+            for ( short item : array )
+            {
+                target.putShort( item );
+            }
+        }
+        else if ( value instanceof char[] )
+        {
+            char[] array = (char[]) value;
+            target.put( CHAR_ARRAY ).putInt( array.length );
+            for ( char item : array )
+            {
+                target.putChar( item );
+            }
+        }
+        else if ( value instanceof int[] )
+        {
+            int[] array = (int[]) value;
+            target.put( INT_ARRAY ).putInt( array.length );
+            for ( int item : array )
+            {
+                target.putInt( item );
+            }
+        }
+        else if ( value instanceof long[] )
+        {
+            long[] array = (long[]) value;
+            target.put( LONG_ARRAY ).putInt( array.length );
+            for ( long item : array )
+            {
+                target.putLong( item );
+            }
+        }
+        else if ( value instanceof float[] )
+        {
+            float[] array = (float[]) value;
+            target.put( FLOAT_ARRAY ).putInt( array.length );
+            for ( float item : array )
+            {
+                target.putFloat( item );
+            }
+        }
+        else if ( value instanceof double[] )
+        {
+            double[] array = (double[]) value;
+            target.put( DOUBLE_ARRAY ).putInt( array.length );
+            for ( double item : array )
+            {
+                target.putDouble( item );
+            }
+        }
+        else if ( value instanceof String[] )
+        {
+            String[] array = (String[]) value;
+            target.put( STRING_ARRAY ).putInt( array.length );
+            for ( String item : array )
+            {
+                putString( target, item );
+            }
+        }
+        else
+        {
+            return false;
+        }
+        return true;
+    }
+
+    private static PropertyData decodeProperty( int index, long id, ByteBuffer source )
+    {
+        byte type = source.get();
+        switch ( type )
+        {
+        case NOT_LOADED:
+            return PropertyDatas.forStringOrArray( index, id, null );
+        case BOOLEAN:
+            return PropertyDatas.forBoolean( index, id, source.get() != 0 );
+        case BYTE:
+            return PropertyDatas.forByte( index, id, source.get() );
+        case SHORT:
+            return PropertyDatas.forShort( index, id, source.getShort() );
+        case CHAR:
+            return PropertyDatas.forChar( index, id, source.getChar() );
+        case INT:
+            return PropertyDatas.forInt( index, id, source.getInt() );
+        case LONG:
+            return PropertyDatas.forLong( index, id, source.getLong() );
+        case FLOAT:
+            return PropertyDatas.forFloat( index, id, source.getFloat() );
+        case DOUBLE:
+            return PropertyDatas.forDouble( index, id, source.getDouble() );
+        case STRING:
+            return PropertyDatas.forStringOrArray( index, id, getString( source ) );
+        default:
+            return PropertyDatas.forStringOrArray( index, id, decodeArray( type, source ) );
+        }
+    }
+
+    private static Object decodeArray( byte type, ByteBuffer source )
+    {
+        int length = source.getInt();
+        switch ( type )
+        {
+        case BOOLEAN_ARRAY:
+            boolean[] booleans = new boolean[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                booleans[i] = source.get() != 0;
+            }
+            return booleans;
+        case BYTE_ARRAY:
+            byte[] bytes = new byte[length];
+            source.get( bytes );
+            return bytes;
+        case SHORT_ARRAY:
+            short[] shorts = new short[length];
+            source.asShortBuffer().get( shorts );
+            source.position( source.position() + length * 2 );
+            return shorts;
+        case CHAR_ARRAY:
+            char[] chars = new char[length];
+            source.asCharBuffer().get( chars );
+            source.position( source.position() + length * 2 );
+            return chars;
+        case INT_ARRAY:
+            int[] ints = new int[length];
+            source.asIntBuffer().get( ints );
+            source.position( source.position() + length * 4 );
+            return ints;
+        case LONG_ARRAY:
+            long[] longs = new long[length];
+            source.asLongBuffer().get( longs );
+            source.position( source.position() + length * 8 );
+            return longs;
+        case FLOAT_ARRAY:
+            float[] floats = new float[length];
+            source.asFloatBuffer().get( floats );
+            source.position( source.position() + length * 4 );
+            return floats;
+        case DOUBLE_ARRAY:
+            double[] doubles = new double[length];
+            source.asDoubleBuffer().get( doubles );
+            source.position( source.position() + length * 8 );
+            return doubles;
+        case STRING_ARRAY:
+            String[] strings = new String[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                strings[i] = getString( source );
+            }
+            return strings;
+        default:
+            throw new IllegalArgumentException( "Unknown property value type " + type );
+        }
+    }
+
+    private static void putString( ByteBuffer target, String value )
+    {
+        target.putInt( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            target.putChar( value.charAt( i ) );
+        }
+    }
+
+    private static String getString( ByteBuffer source )
+    {
+        char[] chars = new char[source.getInt()];
+        source.asCharBuffer().get( chars );
+        source.position( source.position() + chars.length * 2 );
+        return new String( chars );
+    }
+}
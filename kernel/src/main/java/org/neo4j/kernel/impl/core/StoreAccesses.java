@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+/**
+ * Counts the records one thread loads from the store, as opposed to finding
+ * them in the cache. Started and stopped through
+ * {@link NodeManager#startCountingStoreAccesses()} and
+ * {@link NodeManager#stopCountingStoreAccesses()}, and only ever updated by
+ * the thread it was started on.
+ */
+public class StoreAccesses
+{
+    public enum Kind
+    {
+        /**
+         * A node record loaded on a cache miss.
+         */
+        NODE,
+        /**
+         * A relationship record loaded on a cache miss.
+         */
+        RELATIONSHIP,
+        /**
+         * A batch of a relationship chain, or the relationship groups of a
+         * dense node, loaded while expanding a node.
+         */
+        RELATIONSHIP_CHAIN,
+        /**
+         * The property records of a node or relationship, or a property value
+         * kept in a dynamic record.
+         */
+        PROPERTY
+    }
+
+    private final long[] counts = new long[Kind.values().length];
+
+    void count( Kind kind )
+    {
+        counts[kind.ordinal()]++;
+    }
+
+    public long get( Kind kind )
+    {
+        return counts[kind.ordinal()];
+    }
+
+    public long getTotal()
+    {
+        long total = 0;
+        for ( long count : counts )
+        {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder result = new StringBuilder( "StoreAccesses[" );
+        for ( Kind kind : Kind.values() )
+        {
+            result.append( kind.ordinal() == 0 ? "" : ", " ).append( kind.name().toLowerCase() ).append( "=" )
+                  .append( get( kind ) );
+        }
+        return result.append( "]" ).toString();
+    }
+}
@@ -27,6 +27,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.neo4j.helpers.UTF8;
+import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.IdGeneratorFactory;
 import org.neo4j.kernel.IdType;
 import org.neo4j.kernel.impl.util.StringLogger;
@@ -405,6 +406,19 @@ public abstract class AbstractDynamicStore extends CommonAbstractStore implement
         return forceGetRecord( id );
     }
 
+    @Override
+    public boolean forceScan( long fromId, long toId, final Visitor<DynamicRecord> visitor )
+    {
+        return scanWindows( fromId, toId, new WindowVisitor()
+        {
+            @Override
+            public boolean visit( long id, PersistenceWindow window )
+            {
+                return visitor.visit( getRecord( id, window, RecordLoad.FORCE ) );
+            }
+        } );
+    }
+
     public Collection<DynamicRecord> getRecords( long startBlockId )
     {
         List<DynamicRecord> recordList = new LinkedList<DynamicRecord>();
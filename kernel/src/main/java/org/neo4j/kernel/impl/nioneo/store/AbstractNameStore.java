@@ -25,6 +25,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.IdGeneratorFactory;
 import org.neo4j.kernel.IdType;
 import org.neo4j.kernel.impl.util.StringLogger;
@@ -217,6 +218,19 @@ public abstract class AbstractNameStore<T extends AbstractNameRecord> extends Ab
         return forceGetRecord( id );
     }
 
+    @Override
+    public boolean forceScan( long fromId, long toId, final Visitor<T> visitor )
+    {
+        return scanWindows( fromId, toId, new WindowVisitor()
+        {
+            @Override
+            public boolean visit( long id, PersistenceWindow window )
+            {
+                return visitor.visit( getRecord( (int) id, window, true ) );
+            }
+        } );
+    }
+
     public Collection<DynamicRecord> allocateNameRecords( int nameId, byte[] chars )
     {
         return nameStore.allocateRecords( nameId, chars );
@@ -28,6 +28,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.neo4j.helpers.UTF8;
+import org.neo4j.kernel.Config;
 import org.neo4j.kernel.ConfigProxy;
 import org.neo4j.kernel.IdGeneratorFactory;
 import org.neo4j.kernel.IdType;
@@ -51,6 +52,8 @@ public abstract class CommonAbstractStore
 
         boolean use_memory_mapped_buffers(boolean def);
 
+        String window_pool(String def);
+
         String store_dir();
     }
 
@@ -69,7 +72,7 @@ public abstract class CommonAbstractStore
     protected StringLogger stringLogger;
     private IdGenerator idGenerator = null;
     private FileChannel fileChannel = null;
-    private PersistenceWindowPool windowPool;
+    private WindowPool windowPool;
     private boolean storeOk = true;
     private Throwable causeOfStoreNotOk;
     private FileLock fileLock;
@@ -208,9 +211,25 @@ public abstract class CommonAbstractStore
         }
         loadIdGenerator();
 
-        setWindowPool( new PersistenceWindowPool( getStorageFileName(),
-            getEffectiveRecordSize(), getFileChannel(), calculateMappedMemory(ConfigProxy.map(configuration), storageFileName ),
-            getIfMemoryMapped(), isReadOnly() && !isBackupSlave() ) );
+        setWindowPool( newWindowPool() );
+    }
+
+    private WindowPool newWindowPool()
+    {
+        long mappedMemory = calculateMappedMemory( ConfigProxy.map( configuration ), storageFileName );
+        boolean readOnlyPool = isReadOnly() && !isBackupSlave();
+        String type = configuration.window_pool( "default" );
+        if ( ConcurrentPersistenceWindowPool.TYPE.equals( type ) )
+        {
+            return new ConcurrentPersistenceWindowPool( getStorageFileName(), getEffectiveRecordSize(),
+                    getFileChannel(), mappedMemory, getIfMemoryMapped(), readOnlyPool );
+        }
+        else if ( "default".equals( type ) )
+        {
+            return new PersistenceWindowPool( getStorageFileName(), getEffectiveRecordSize(), getFileChannel(),
+                    mappedMemory, getIfMemoryMapped(), readOnlyPool );
+        }
+        throw new IllegalArgumentException( "Unknown " + Config.WINDOW_POOL + " '" + type + "'" );
     }
 
     protected abstract int getEffectiveRecordSize();
@@ -332,7 +351,7 @@ public abstract class CommonAbstractStore
     }
 
     /**
-     * Sets the {@link PersistenceWindowPool} for this store to use. Normally
+     * Sets the {@link WindowPool} for this store to use. Normally
      * this is set in the {@link #loadStorage()} method. This method must be
      * invoked with a valid "pool" before any of the
      * {@link #acquireWindow(long, OperationType)}
@@ -344,7 +363,7 @@ public abstract class CommonAbstractStore
      * @param pool
      *            The window pool this store should use
      */
-    protected void setWindowPool( PersistenceWindowPool pool )
+    protected void setWindowPool( WindowPool pool )
     {
         this.windowPool = pool;
     }
@@ -359,6 +378,18 @@ public abstract class CommonAbstractStore
         return idGenerator.nextId();
     }
 
+    /**
+     * Returns a batch of ids from this store's {@link IdGenerator}, see
+     * {@link IdGenerator#nextIdBatch(int)}.
+     *
+     * @param size the number of ids
+     * @return the free ids followed by a range of new high ids
+     */
+    public IdRange nextIdBatch( int size )
+    {
+        return idGenerator.nextIdBatch( size );
+    }
+
     /**
      * Frees an id for this store's {@link IdGenerator}.
      *
@@ -524,6 +555,61 @@ public abstract class CommonAbstractStore
         windowPool.release( window );
     }
 
+    /**
+     * Visits the ids from {@code fromId} (inclusive) to {@code toId}
+     * (exclusive) in order. Every id covered by an acquired window is visited
+     * while that window is held, so a memory mapped region is read through
+     * sequentially instead of being looked up again for every record. Stops
+     * at the high id of the store.
+     *
+     * @return {@code true} if the visitor terminated the scan.
+     */
+    protected boolean scanWindows( long fromId, long toId, WindowVisitor visitor )
+    {
+        long id = fromId;
+        while ( id < toId )
+        {
+            PersistenceWindow window;
+            try
+            {
+                window = acquireWindow( id, OperationType.READ );
+            }
+            catch ( InvalidRecordException e )
+            {
+                // ok to high id
+                return false;
+            }
+            try
+            {
+                long end = Math.min( toId, Math.max( id + 1, window.position() + window.size() ) );
+                for ( ; id < end; id++ )
+                {
+                    if ( visitor.visit( id, window ) )
+                    {
+                        return true;
+                    }
+                }
+            }
+            finally
+            {
+                releaseWindow( window );
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Called by {@link CommonAbstractStore#scanWindows(long, long, WindowVisitor)}
+     * for every id, with the window covering it.
+     */
+    protected interface WindowVisitor
+    {
+        /**
+         * @return {@code true} to terminate the scan.
+         */
+        boolean visit( long id, PersistenceWindow window );
+    }
+
     public void flushAll()
     {
         windowPool.flushAll();
@@ -0,0 +1,604 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link WindowPool} that, unlike {@link PersistenceWindowPool}, doesn't
+ * serialize every acquisition on the pool monitor. The store is divided into
+ * bricks the same way, but finding and pinning the mapped window of a brick
+ * is lock free, so readers of hot, already mapped parts of a store never
+ * contend with each other on the pool itself.
+ * <p>
+ * Which bricks are mapped is decided with the CLOCK (second chance)
+ * algorithm: every access bumps a small, capped usage counter on the brick.
+ * A brick that isn't mapped gets mapped once it has been used a couple of
+ * times, and if there's no memory left for it a clock hand sweeps the bricks,
+ * decrementing usage counters as it goes, and evicts the first mapped brick
+ * that has no usage left and isn't in use. Only one thread at a time does any
+ * (re)mapping; threads that find the mapping lock taken don't wait for it but
+ * fall back to a {@link PersistenceRow}, which is counted as contention.
+ * <p>
+ * A row writes its record straight to the file when released, so a window
+ * mapped meanwhile could hold an older copy of the record and write it back
+ * later. Each brick therefore keeps count of the rows acquired within it:
+ * rows are only handed out while the brick isn't mapped, and a brick is only
+ * mapped while it has no rows. All access to a record at a time goes through
+ * a single window.
+ * <p>
+ * Windows are still locked exclusively while acquired, as with the default
+ * pool, so the record level semantics are the same for both pools.
+ */
+public class ConcurrentPersistenceWindowPool implements WindowPool
+{
+    public static final String TYPE = "concurrent";
+
+    private static final int MAX_BRICK_COUNT = 100000;
+    private static final int MAX_USAGE = 4;
+    private static final int MAPPING_USAGE = 2;
+    private static final int ROW_STRIPES = 16;
+
+    private static Logger log = Logger.getLogger( ConcurrentPersistenceWindowPool.class.getName() );
+
+    private final String storeName;
+    // == recordSize
+    private final int blockSize;
+    private volatile FileChannel fileChannel;
+    private final FileChannel.MapMode mapMode;
+    private final boolean useMemoryMapped;
+    private final boolean readOnly;
+    private final long availableMem;
+    private final int brickSize;
+
+    private volatile Brick[] bricks;
+    private final Lock mappingLock = new ReentrantLock();
+    // Guarded by mappingLock
+    private int clockHand;
+    private volatile long memUsed;
+
+    private final Map<Long,PersistenceRow>[] activeRowWindows;
+
+    private final AtomicInteger hit = new AtomicInteger();
+    private final AtomicInteger miss = new AtomicInteger();
+    private final AtomicInteger ooe = new AtomicInteger();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong contention = new AtomicLong();
+
+    /**
+     * Create new pool for a store.
+     *
+     * @param storeName
+     *            Name of store that use this pool
+     * @param blockSize
+     *            The size of each record/block in the store
+     * @param fileChannel
+     *            A fileChannel to the store
+     * @param mappedMem
+     *            Number of bytes dedicated to memory mapped windows
+     */
+    @SuppressWarnings( "unchecked" )
+    public ConcurrentPersistenceWindowPool( String storeName, int blockSize, FileChannel fileChannel,
+            long mappedMem, boolean useMemoryMappedBuffers, boolean readOnly )
+    {
+        this.storeName = storeName;
+        this.blockSize = blockSize;
+        this.fileChannel = fileChannel;
+        this.useMemoryMapped = useMemoryMappedBuffers;
+        this.readOnly = readOnly;
+        this.mapMode = readOnly ? MapMode.READ_ONLY : MapMode.READ_WRITE;
+        this.activeRowWindows = new Map[ROW_STRIPES];
+        for ( int i = 0; i < activeRowWindows.length; i++ )
+        {
+            activeRowWindows[i] = new HashMap<Long,PersistenceRow>();
+        }
+
+        long fileSize = fileSize();
+        int size = calculateBrickSize( mappedMem, fileSize );
+        this.brickSize = size;
+        this.availableMem = size > 0 ? mappedMem : 0;
+        Brick[] initial = new Brick[size > 0 ? (int) (fileSize / size) : 0];
+        for ( int i = 0; i < initial.length; i++ )
+        {
+            initial[i] = new Brick( i );
+        }
+        this.bricks = initial;
+        log.fine( "[" + storeName + "] brickCount=" + initial.length + " brickSize=" + brickSize
+                  + "b mappedMem=" + availableMem + "b (storeSize=" + fileSize + "b)" );
+    }
+
+    private long fileSize()
+    {
+        try
+        {
+            return fileChannel.size();
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Unable to get file size for " + storeName, e );
+        }
+    }
+
+    private int calculateBrickSize( long mappedMem, long fileSize )
+    {
+        if ( blockSize == 0 || mappedMem <= 0 )
+        {
+            return 0;
+        }
+        // If we can't fit even 10 blocks in available memory don't even try
+        // to use available memory.
+        if ( mappedMem < blockSize * 10l )
+        {
+            logWarn( "Unable to use " + mappedMem + "b as memory mapped windows, need at least "
+                     + blockSize * 10 + "b (block size * 10)" );
+            logWarn( "Memory mapped windows have been turned off" );
+            return 0;
+        }
+        long size = Math.max( mappedMem / 1000, fileSize / MAX_BRICK_COUNT + 1 );
+        size = Math.min( size, Integer.MAX_VALUE );
+        size = Math.max( (size / blockSize) * blockSize, blockSize );
+        if ( size > mappedMem )
+        {
+            logWarn( "Unable to use " + (mappedMem / 1024) + "kb as memory mapped windows, need at least "
+                     + (size / 1024) + "kb" );
+            logWarn( "Memory mapped windows have been turned off" );
+            return 0;
+        }
+        return (int) size;
+    }
+
+    public PersistenceWindow acquire( long position, OperationType operationType )
+    {
+        Brick brick = brickSize > 0 ? brickFor( position ) : null;
+        if ( brick != null )
+        {
+            brick.used();
+        }
+        LockableWindow window;
+        while ( true )
+        {
+            window = null;
+            if ( brick != null )
+            {
+                window = brick.pin();
+                if ( window == null && brick.usage() >= MAPPING_USAGE )
+                {
+                    window = map( brick );
+                }
+            }
+            if ( window != null )
+            {
+                hit.incrementAndGet();
+                window.mark();
+                window.lock();
+                break;
+            }
+            window = acquireRow( position, brick, operationType );
+            if ( window != null )
+            {
+                miss.incrementAndGet();
+                break;
+            }
+            // The brick got mapped, or is being evicted, in between
+            Thread.yield();
+        }
+        window.setOperationType( operationType );
+        return window;
+    }
+
+    private Brick brickFor( long position )
+    {
+        int brickIndex = (int) (position * blockSize / brickSize);
+        Brick[] current = bricks;
+        if ( brickIndex >= current.length )
+        {
+            current = expandBricks( brickIndex + 1 );
+        }
+        return brickIndex < current.length ? current[brickIndex] : null;
+    }
+
+    /**
+     * @return the row for {@code position}, locked, or {@code null} if
+     *         {@code brick} is mapped, in which case the record has to be
+     *         accessed through the window of the brick.
+     */
+    private PersistenceRow acquireRow( long position, Brick brick, OperationType operationType )
+    {
+        if ( brick != null && !brick.rowAcquired() )
+        {
+            return null;
+        }
+        Map<Long,PersistenceRow> rows = rowsFor( position );
+        PersistenceRow row;
+        synchronized ( rows )
+        {
+            row = rows.get( position );
+            if ( row == null )
+            {
+                row = new PersistenceRow( position, blockSize, fileChannel );
+                rows.put( position, row );
+            }
+            row.mark();
+        }
+        row.lock();
+        if ( operationType == OperationType.READ )
+        {
+            row.readPosition();
+        }
+        return row;
+    }
+
+    private Map<Long,PersistenceRow> rowsFor( long position )
+    {
+        return activeRowWindows[(int) (position & (ROW_STRIPES - 1))];
+    }
+
+    public void release( PersistenceWindow window )
+    {
+        if ( window instanceof PersistenceRow )
+        {
+            PersistenceRow row = (PersistenceRow) window;
+            row.writeOut();
+            Map<Long,PersistenceRow> rows = rowsFor( row.position() );
+            synchronized ( rows )
+            {
+                if ( row.getWaitingThreadsCount() == 0 && !row.isMarked() )
+                {
+                    rows.remove( row.position() );
+                }
+            }
+            row.unLock();
+            if ( brickSize > 0 )
+            {
+                // Written out, the brick can be mapped once all its rows are released
+                bricks[(int) (row.position() * blockSize / brickSize)].rowReleased();
+            }
+        }
+        else
+        {
+            LockableWindow mapped = (LockableWindow) window;
+            // A pinned window is never evicted, so its position is intact
+            Brick brick = bricks[(int) (mapped.position() * blockSize / brickSize)];
+            mapped.unLock();
+            brick.unpin();
+        }
+    }
+
+    /**
+     * Maps the window of {@code brick}, evicting another brick if needed, and
+     * returns it pinned. Returns {@code null} if some other thread is busy
+     * mapping or if no window could be mapped.
+     */
+    private LockableWindow map( Brick brick )
+    {
+        if ( !mappingLock.tryLock() )
+        {
+            contention.incrementAndGet();
+            return null;
+        }
+        try
+        {
+            // No rows can be acquired within the brick while it's being mapped
+            synchronized ( brick )
+            {
+                if ( brick.window == null && fileChannel != null )
+                {
+                    if ( brick.rows > 0 )
+                    {
+                        return null;
+                    }
+                    if ( memUsed + brickSize > availableMem && !evictOne( brick ) )
+                    {
+                        return null;
+                    }
+                    try
+                    {
+                        brick.window = allocateNewWindow( brick.index );
+                        memUsed += brickSize;
+                    }
+                    catch ( MappedMemException e )
+                    {
+                        ooe.incrementAndGet();
+                        logWarn( "Unable to memory map", e );
+                    }
+                    catch ( OutOfMemoryError e )
+                    {
+                        ooe.incrementAndGet();
+                        logWarn( "Unable to allocate direct buffer", e );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            mappingLock.unlock();
+        }
+        return brick.pin();
+    }
+
+    // Must hold mappingLock
+    private boolean evictOne( Brick except )
+    {
+        Brick[] current = bricks;
+        // Every round of the clock hand decrements each usage at least once
+        int maxSteps = current.length * (MAX_USAGE + 1);
+        for ( int i = 0; i < maxSteps; i++ )
+        {
+            if ( clockHand >= current.length )
+            {
+                clockHand = 0;
+            }
+            Brick candidate = current[clockHand++];
+            if ( candidate == except || candidate.decay() )
+            {
+                continue;
+            }
+            LockableWindow window = candidate.window;
+            if ( window != null && candidate.tryEvict() )
+            {
+                if ( !readOnly ) window.writeOut();
+                candidate.window = null;
+                candidate.evicted();
+                memUsed -= brickSize;
+                evictions.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Brick[] expandBricks( int newBrickCount )
+    {
+        mappingLock.lock();
+        try
+        {
+            Brick[] current = bricks;
+            if ( newBrickCount > current.length )
+            {
+                Brick[] expanded = new Brick[newBrickCount];
+                System.arraycopy( current, 0, expanded, 0, current.length );
+                for ( int i = current.length; i < expanded.length; i++ )
+                {
+                    expanded[i] = new Brick( i );
+                }
+                bricks = expanded;
+                return expanded;
+            }
+            return current;
+        }
+        finally
+        {
+            mappingLock.unlock();
+        }
+    }
+
+    private LockableWindow allocateNewWindow( long brick )
+    {
+        if ( useMemoryMapped )
+        {
+            return new MappedPersistenceWindow( brick * brickSize / blockSize, blockSize, brickSize,
+                    fileChannel, mapMode );
+        }
+        PlainPersistenceWindow dpw = new PlainPersistenceWindow( brick * brickSize / blockSize, blockSize,
+                brickSize, fileChannel );
+        dpw.readPosition();
+        return dpw;
+    }
+
+    public void flushAll()
+    {
+        if ( readOnly ) return;
+
+        for ( Brick brick : bricks )
+        {
+            PersistenceWindow window = brick.window;
+            if ( window != null )
+            {
+                window.force();
+            }
+        }
+        try
+        {
+            fileChannel.force( false );
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Failed to flush file channel " + storeName, e );
+        }
+    }
+
+    public void close()
+    {
+        mappingLock.lock();
+        try
+        {
+            flushAll();
+            for ( Brick brick : bricks )
+            {
+                LockableWindow window = brick.window;
+                if ( window != null )
+                {
+                    window.close();
+                    brick.window = null;
+                }
+            }
+            fileChannel = null;
+            for ( Map<Long,PersistenceRow> rows : activeRowWindows )
+            {
+                synchronized ( rows )
+                {
+                    rows.clear();
+                }
+            }
+        }
+        finally
+        {
+            mappingLock.unlock();
+        }
+        log.finest( storeName + " hit=" + hit + " miss=" + miss + " evictions=" + evictions + " contention="
+                    + contention + " ooe=" + ooe );
+    }
+
+    public WindowPoolStats getStats()
+    {
+        return new WindowPoolStats( storeName, availableMem, memUsed, bricks.length, brickSize, hit.get(),
+                miss.get(), ooe.get(), evictions.get(), contention.get() );
+    }
+
+    private void logWarn( String logMessage )
+    {
+        log.warning( "[" + storeName + "] " + logMessage );
+    }
+
+    private void logWarn( String logMessage, Throwable cause )
+    {
+        log.log( Level.WARNING, "[" + storeName + "] " + logMessage, cause );
+    }
+
+    private static class Brick
+    {
+        private final int index;
+        private final AtomicInteger usage = new AtomicInteger();
+        // Number of threads using the window, -1 while it's being evicted
+        private final AtomicInteger pins = new AtomicInteger();
+        private volatile LockableWindow window;
+        // Number of rows acquired within this brick, guarded by this
+        private int rows;
+
+        Brick( int index )
+        {
+            this.index = index;
+        }
+
+        /**
+         * Registers a row acquired within this brick, returns {@code false}
+         * if the brick is mapped and the row can't be used.
+         */
+        synchronized boolean rowAcquired()
+        {
+            if ( window != null )
+            {
+                return false;
+            }
+            rows++;
+            return true;
+        }
+
+        synchronized void rowReleased()
+        {
+            rows--;
+        }
+
+        void used()
+        {
+            while ( true )
+            {
+                int current = usage.get();
+                if ( current >= MAX_USAGE || usage.compareAndSet( current, current + 1 ) )
+                {
+                    return;
+                }
+            }
+        }
+
+        int usage()
+        {
+            return usage.get();
+        }
+
+        /**
+         * Gives the brick a second chance, returns {@code false} if it had
+         * no usage left.
+         */
+        boolean decay()
+        {
+            while ( true )
+            {
+                int current = usage.get();
+                if ( current == 0 )
+                {
+                    return false;
+                }
+                if ( usage.compareAndSet( current, current - 1 ) )
+                {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return the mapped window of this brick, pinned so that it can't be
+         *         evicted until {@link #unpin()}, or {@code null} if there's
+         *         no mapped window.
+         */
+        LockableWindow pin()
+        {
+            while ( true )
+            {
+                LockableWindow current = window;
+                int count = pins.get();
+                if ( current == null || count < 0 )
+                {
+                    return null;
+                }
+                if ( pins.compareAndSet( count, count + 1 ) )
+                {
+                    if ( window == current )
+                    {
+                        return current;
+                    }
+                    // Evicted and remapped in between, try again
+                    pins.decrementAndGet();
+                }
+            }
+        }
+
+        void unpin()
+        {
+            pins.decrementAndGet();
+        }
+
+        boolean tryEvict()
+        {
+            return pins.compareAndSet( 0, -1 );
+        }
+
+        void evicted()
+        {
+            pins.set( 0 );
+        }
+
+        @Override
+        public String toString()
+        {
+            return "" + usage + (window == null ? "x" : "o");
+        }
+    }
+}
@@ -52,10 +52,12 @@ public class NeoStore extends AbstractStore
     public static final String TYPE_DESCRIPTOR = "NeoStore";
 
     /*
-     *  6 longs in header (long + in use), time | random | version | txid | store version | graph next prop
+     *  7 longs in header (long + in use), time | random | version | txid | store version | graph next prop |
+     *  dense nodes
      */
     public static final int RECORD_SIZE = 9;
     private static final int DEFAULT_REL_GRAB_SIZE = 100;
+    private static final int DENSE_NODES_RECORD = 6;
 
     public static final String DEFAULT_NAME = "neostore";
 
@@ -63,6 +65,7 @@ public class NeoStore extends AbstractStore
     private PropertyStore propStore;
     private RelationshipStore relStore;
     private RelationshipTypeStore relTypeStore;
+    private RelationshipGroupStore relGroupStore;
     private final TxHook txHook;
     private boolean isStarted;
     private long lastCommittedTx = -1;
@@ -72,11 +75,17 @@ public class NeoStore extends AbstractStore
     private final Configuration conf;
     private final LastCommittedTxIdSetter lastCommittedTxIdSetter;
 
+    /**
+     * @param relGroupStore the relationship group store, or {@code null} if
+     *            the store doesn't have one. Required if the store has
+     *            {@link #hasDenseNodes() dense nodes}.
+     */
     public NeoStore(String fileName, Configuration conf,
                     LastCommittedTxIdSetter lastCommittedTxIdSetter,
                     IdGeneratorFactory idGeneratorFactory, FileSystemAbstraction fileSystemAbstraction,
                     StringLogger stringLogger, TxHook txHook,
-                    RelationshipTypeStore relTypeStore, PropertyStore propStore, RelationshipStore relStore, NodeStore nodeStore)
+                    RelationshipTypeStore relTypeStore, PropertyStore propStore, RelationshipStore relStore, NodeStore nodeStore,
+                    RelationshipGroupStore relGroupStore)
     {
         super( fileName, conf, IdType.NEOSTORE_BLOCK, idGeneratorFactory, fileSystemAbstraction, stringLogger);
         this.fileName = fileName;
@@ -86,6 +95,7 @@ public class NeoStore extends AbstractStore
         this.propStore = propStore;
         this.relStore = relStore;
         this.nodeStore = nodeStore;
+        this.relGroupStore = relGroupStore;
         REL_GRAB_SIZE = conf.relationship_grab_size(DEFAULT_REL_GRAB_SIZE);
         this.txHook = txHook;
 
@@ -107,6 +117,17 @@ public class NeoStore extends AbstractStore
                 setStoreVersion( versionStringToLong( CommonAbstractStore.ALL_STORES_VERSION ) );
                 updateHighId();
             }
+
+            // Read before recovery, which may write dense node records
+            if ( getHighId() > DENSE_NODES_RECORD && getRecord( DENSE_NODES_RECORD ) != 0 )
+            {
+                if ( relGroupStore == null )
+                {
+                    throw new UnderlyingStorageException( "Store " + getStorageFileName()
+                            + " has dense nodes, but no relationship group store" );
+                }
+                nodeStore.setDenseNodes( true );
+            }
         }
         finally
         {
@@ -173,6 +194,16 @@ public class NeoStore extends AbstractStore
             insertRecord( 5, -1 );
             registerIdFromUpdateRecord( 5 );
         }
+
+        /*
+         * Same for the "dense nodes" record, stores from before it was added
+         * don't have dense nodes.
+         */
+        if ( getFileChannel().size() == RECORD_SIZE*6 )
+        {
+            insertRecord( DENSE_NODES_RECORD, 0 );
+            registerIdFromUpdateRecord( DENSE_NODES_RECORD );
+        }
     }
 
     private void insertRecord( int recordPosition, long value ) throws IOException
@@ -235,6 +266,11 @@ public class NeoStore extends AbstractStore
             nodeStore.close();
             nodeStore = null;
         }
+        if ( relGroupStore != null )
+        {
+            relGroupStore.close();
+            relGroupStore = null;
+        }
     }
 
     @Override
@@ -249,6 +285,7 @@ public class NeoStore extends AbstractStore
         propStore.flushAll();
         relStore.flushAll();
         nodeStore.flushAll();
+        if ( relGroupStore != null ) relGroupStore.flushAll();
     }
 
     @Override
@@ -500,6 +537,51 @@ public class NeoStore extends AbstractStore
         setRecord( 5, propId );
     }
 
+    /**
+     * Returns whether the relationships of dense nodes of this store are kept
+     * grouped by type, in the {@link #getRelationshipGroupStore() relationship
+     * group store}. Stores don't have dense nodes unless they have been
+     * migrated by the
+     * {@link org.neo4j.kernel.impl.storemigration.RelationshipGroupMigrator}.
+     *
+     * @return whether this store has dense nodes
+     */
+    public boolean hasDenseNodes()
+    {
+        return nodeStore.hasDenseNodes();
+    }
+
+    /**
+     * Makes node records of this store able to be dense, which takes one bit of
+     * the property id of each node record. Property ids above
+     * {@link NodeStore#MAX_DENSE_NODES_PROPERTY_ID} can't be used by nodes
+     * after this.
+     *
+     * @throws IllegalStateException if the store doesn't have a relationship
+     *             group store, or if the property store already has more
+     *             records than dense nodes allow.
+     */
+    public void enableDenseNodes()
+    {
+        if ( relGroupStore == null )
+        {
+            throw new IllegalStateException( "No relationship group store for " + getStorageFileName() );
+        }
+        if ( propStore.getHighId() > NodeStore.MAX_DENSE_NODES_PROPERTY_ID + 1 )
+        {
+            throw new IllegalStateException( "Property store has " + propStore.getHighId()
+                    + " records, only " + (NodeStore.MAX_DENSE_NODES_PROPERTY_ID + 1)
+                    + " property ids fit in node records with dense nodes" );
+        }
+        setDenseNodes( true );
+    }
+
+    void setDenseNodes( boolean denseNodes )
+    {
+        setRecord( DENSE_NODES_RECORD, denseNodes ? 1 : 0 );
+        nodeStore.setDenseNodes( denseNodes );
+    }
+
     /**
      * Returns the node store.
      *
@@ -520,6 +602,17 @@ public class NeoStore extends AbstractStore
         return relStore;
     }
 
+    /**
+     * Returns the relationship group store.
+     *
+     * @return The relationship group store, or {@code null} if this store
+     *         doesn't have one
+     */
+    public RelationshipGroupStore getRelationshipGroupStore()
+    {
+        return relGroupStore;
+    }
+
     /**
      * Returns the relationship type store.
      *
@@ -547,6 +640,7 @@ public class NeoStore extends AbstractStore
         propStore.makeStoreOk();
         relStore.makeStoreOk();
         nodeStore.makeStoreOk();
+        if ( relGroupStore != null ) relGroupStore.makeStoreOk();
         super.makeStoreOk();
         isStarted = true;
     }
@@ -558,6 +652,7 @@ public class NeoStore extends AbstractStore
         propStore.rebuildIdGenerators();
         relStore.rebuildIdGenerators();
         nodeStore.rebuildIdGenerators();
+        if ( relGroupStore != null ) relGroupStore.rebuildIdGenerators();
         super.rebuildIdGenerators();
     }
 
@@ -568,6 +663,7 @@ public class NeoStore extends AbstractStore
         propStore.updateIdGenerators();
         relStore.updateHighId();
         nodeStore.updateHighId();
+        if ( relGroupStore != null ) relGroupStore.updateHighId();
     }
 
     public int getRelationshipGrabSize()
@@ -583,13 +679,15 @@ public class NeoStore extends AbstractStore
         list.addAll( propStore.getAllWindowPoolStats() );
         list.addAll( relStore.getAllWindowPoolStats() );
         list.addAll( relTypeStore.getAllWindowPoolStats() );
+        if ( relGroupStore != null ) list.addAll( relGroupStore.getAllWindowPoolStats() );
         return list;
     }
 
     public boolean isStoreOk()
     {
         return getStoreOk() && relTypeStore.getStoreOk() &&
-            propStore.getStoreOk() && relStore.getStoreOk() && nodeStore.getStoreOk();
+            propStore.getStoreOk() && relStore.getStoreOk() && nodeStore.getStoreOk() &&
+            (relGroupStore == null || relGroupStore.getStoreOk());
     }
 
     @Override
@@ -602,6 +700,7 @@ public class NeoStore extends AbstractStore
         relStore.logVersions( msgLog );
         relTypeStore.logVersions( msgLog );
         propStore.logVersions(msgLog  );
+        if ( relGroupStore != null ) relGroupStore.logVersions( msgLog );
 
         stringLogger.flush();
     }
@@ -614,6 +713,7 @@ public class NeoStore extends AbstractStore
         relStore.logIdUsage(msgLog );
         relTypeStore.logIdUsage( msgLog);
         propStore.logIdUsage( msgLog );
+        if ( relGroupStore != null ) relGroupStore.logIdUsage( msgLog );
         stringLogger.flush();
     }
 
@@ -22,6 +22,7 @@ package org.neo4j.kernel.impl.nioneo.store;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.IdGeneratorFactory;
 import org.neo4j.kernel.IdType;
 import org.neo4j.kernel.impl.util.StringLogger;
@@ -42,12 +43,39 @@ public class NodeStore extends AbstractStore implements Store, RecordStore<NodeR
     // in_use(byte)+next_rel_id(int)+next_prop_id(int)
     public static final int RECORD_SIZE = 9;
 
+    private static final short DENSE_FLAG = 0x80;
+
+    /**
+     * The highest property id a node record can point to in a store with
+     * {@link #hasDenseNodes() dense nodes}, where the highest of the property
+     * id bits in the header is the dense flag instead.
+     */
+    public static final long MAX_DENSE_NODES_PROPERTY_ID = (1L << 35) - 1;
+
+    // Set for stores that have dense nodes enabled, see NeoStore#hasDenseNodes()
+    private boolean denseNodes;
+
     public NodeStore(String fileName, Configuration config,
                      IdGeneratorFactory idGeneratorFactory, FileSystemAbstraction fileSystemAbstraction, StringLogger stringLogger)
     {
         super(fileName, config, IdType.NODE, idGeneratorFactory, fileSystemAbstraction, stringLogger);
     }
 
+    /**
+     * Makes the node records of this store use the {@link NodeRecord#isDense()
+     * dense} flag, at the cost of one bit of the property id. Only set by the
+     * {@link NeoStore} of a store with dense nodes enabled.
+     */
+    void setDenseNodes( boolean denseNodes )
+    {
+        this.denseNodes = denseNodes;
+    }
+
+    public boolean hasDenseNodes()
+    {
+        return denseNodes;
+    }
+
     @Override
     public void accept( RecordStore.Processor processor, NodeRecord record )
     {
@@ -181,6 +209,37 @@ public class NodeStore extends AbstractStore implements Store, RecordStore<NodeR
         }
     }
 
+    /**
+     * Visits the node records in use from {@code fromId} (inclusive) to
+     * {@code toId} (exclusive) in id order, reading a whole window at a time.
+     * Records not in use are skipped.
+     *
+     * @return {@code true} if the visitor terminated the scan.
+     */
+    public boolean scan( long fromId, long toId, Visitor<NodeRecord> visitor )
+    {
+        return scan( fromId, toId, RecordLoad.CHECK, visitor );
+    }
+
+    @Override
+    public boolean forceScan( long fromId, long toId, Visitor<NodeRecord> visitor )
+    {
+        return scan( fromId, toId, RecordLoad.FORCE, visitor );
+    }
+
+    private boolean scan( long fromId, long toId, final RecordLoad load, final Visitor<NodeRecord> visitor )
+    {
+        return scanWindows( fromId, toId, new WindowVisitor()
+        {
+            @Override
+            public boolean visit( long id, PersistenceWindow window )
+            {
+                NodeRecord record = getRecord( id, window, load );
+                return record != null && visitor.visit( record );
+            }
+        } );
+    }
+
     private NodeRecord getRecord( long id, PersistenceWindow window,
         RecordLoad load  )
     {
@@ -189,6 +248,7 @@ public class NodeStore extends AbstractStore implements Store, RecordStore<NodeR
         // [    ,   x] in use bit
         // [    ,xxx ] higher bits for rel id
         // [xxxx,    ] higher bits for prop id
+        // [x   ,    ] dense flag instead, if the store has dense nodes
         long inUseByte = buffer.get();
 
         boolean inUse = (inUseByte & 0x1) == Record.IN_USE.intValue();
@@ -207,10 +267,11 @@ public class NodeStore extends AbstractStore implements Store, RecordStore<NodeR
         long nextProp = buffer.getUnsignedInt();
 
         long relModifier = (inUseByte & 0xEL) << 31;
-        long propModifier = (inUseByte & 0xF0L) << 28;
+        long propModifier = (inUseByte & (denseNodes ? 0x70L : 0xF0L)) << 28;
 
         NodeRecord nodeRecord = new NodeRecord( id, longFromIntAndMod( nextRel, relModifier ), longFromIntAndMod( nextProp, propModifier ) );
         nodeRecord.setInUse( inUse );
+        nodeRecord.setDense( denseNodes && (inUseByte & DENSE_FLAG) != 0 );
         return nodeRecord;
     }
 
@@ -231,6 +292,16 @@ public class NodeStore extends AbstractStore implements Store, RecordStore<NodeR
             // [xxxx,    ] higher bits for prop id
             short inUseUnsignedByte = ( record.inUse() ? Record.IN_USE : Record.NOT_IN_USE ).byteValue();
             inUseUnsignedByte = (short) ( inUseUnsignedByte | relModifier | propModifier );
+            if ( denseNodes ? (propModifier & DENSE_FLAG) != 0 : record.isDense() )
+            {
+                throw new UnderlyingStorageException( "Unable to store " + record + " in "
+                                                      + getStorageFileName() + ", " + (denseNodes ?
+                                                      "property id out of range" : "dense nodes not enabled") );
+            }
+            if ( record.isDense() )
+            {
+                inUseUnsignedByte |= DENSE_FLAG;
+            }
             buffer.put( (byte) inUseUnsignedByte ).putInt( (int) nextRel ).putInt( (int) nextProp );
         }
         else
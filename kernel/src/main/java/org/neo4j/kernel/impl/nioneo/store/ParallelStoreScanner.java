@@ -0,0 +1,290 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.helpers.DaemonThreadFactory;
+import org.neo4j.helpers.ProgressIndicator;
+import org.neo4j.helpers.collection.Visitor;
+
+/**
+ * Applies {@link RecordStore.Processor processors} to the records in use of
+ * all the stores of a {@link StoreAccess}, using several threads.
+ * <p>
+ * The id space of every store is split into partitions of consecutive ids,
+ * which the threads take in turn and read through with
+ * {@link RecordStore#forceScan(long, long, Visitor)}, a window at a time. Each
+ * thread has a processor of its own, so a processor is never called
+ * concurrently, and the processors are merged by a {@link Reducer} when all
+ * stores have been scanned. Records are not processed in id order.
+ * <p>
+ * The throughput getters can be called from another thread while a scan is
+ * running.
+ */
+public class ParallelStoreScanner
+{
+    public static final int DEFAULT_PARTITION_SIZE = 100000;
+
+    /**
+     * Creates the processor of each of the scanning threads.
+     */
+    public interface ProcessorFactory<P extends RecordStore.Processor>
+    {
+        P newProcessor();
+    }
+
+    /**
+     * Merges the results of the processors of two scanning threads.
+     */
+    public interface Reducer<P extends RecordStore.Processor>
+    {
+        P reduce( P left, P right );
+    }
+
+    private final StoreAccess stores;
+    private final int threads;
+    private final int partitionSize;
+
+    private final AtomicLong idsScanned = new AtomicLong();
+    private final AtomicLong recordsProcessed = new AtomicLong();
+    private volatile long startTime;
+    private volatile long endTime;
+
+    public ParallelStoreScanner( StoreAccess stores )
+    {
+        this( stores, Runtime.getRuntime().availableProcessors(), DEFAULT_PARTITION_SIZE );
+    }
+
+    public ParallelStoreScanner( StoreAccess stores, int threads, int partitionSize )
+    {
+        if ( threads < 1 || partitionSize < 1 )
+        {
+            throw new IllegalArgumentException( "Invalid scan settings, threads " + threads + ", partition size "
+                                                + partitionSize );
+        }
+        this.stores = stores;
+        this.threads = threads;
+        this.partitionSize = partitionSize;
+    }
+
+    /**
+     * Applies a processor per thread to the records in use of all stores.
+     *
+     * @return the processors of all threads, merged by {@code reducer}.
+     */
+    public <P extends RecordStore.Processor> P applyToAll( ProcessorFactory<P> factory, Reducer<P> reducer )
+    {
+        List<Partition> partitions = new ArrayList<Partition>();
+        long totalIds = 0;
+        for ( RecordStore<?> store : stores.allStores() )
+        {
+            long highId = store.getHighId();
+            for ( long fromId = 0; fromId <= highId; fromId += partitionSize )
+            {
+                partitions.add( new Partition( store, fromId, Math.min( highId + 1, fromId + partitionSize ) ) );
+            }
+            totalIds += highId + 1;
+        }
+
+        idsScanned.set( 0 );
+        recordsProcessed.set( 0 );
+        startTime = System.currentTimeMillis();
+        endTime = 0;
+        ProgressIndicator progress = progressInit( totalIds );
+        ExecutorService workers = Executors.newFixedThreadPool( threads,
+                new DaemonThreadFactory( "Store-Scanner" ) );
+        try
+        {
+            AtomicInteger nextPartition = new AtomicInteger();
+            List<Future<P>> results = new ArrayList<Future<P>>();
+            for ( int i = 0; i < Math.min( threads, partitions.size() ); i++ )
+            {
+                results.add( workers.submit( new Worker<P>( factory.newProcessor(), partitions, nextPartition,
+                        progress ) ) );
+            }
+            P result = null;
+            for ( Future<P> future : results )
+            {
+                P processor = future.get();
+                result = result == null ? processor : reducer.reduce( result, processor );
+            }
+            if ( progress != null ) progress.done( totalIds );
+            return result == null ? factory.newProcessor() : result;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while scanning the stores", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            if ( e.getCause() instanceof Error )
+            {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException( "Failed to scan the stores", e.getCause() );
+        }
+        finally
+        {
+            endTime = System.currentTimeMillis();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Override to get progress indication for the scan, reported as the
+     * number of ids scanned over all stores. Updates come from the scanning
+     * threads, but never concurrently.
+     *
+     * @param totalIds the number of ids the scan will reach.
+     * @return a {@link ProgressIndicator} to report the progress to.
+     */
+    protected ProgressIndicator progressInit( long totalIds )
+    {
+        return null;
+    }
+
+    /**
+     * @return the number of ids scanned so far, in use or not.
+     */
+    public long getIdsScanned()
+    {
+        return idsScanned.get();
+    }
+
+    /**
+     * @return the number of records in use handed to the processors so far.
+     */
+    public long getRecordsProcessed()
+    {
+        return recordsProcessed.get();
+    }
+
+    /**
+     * @return the time spent on the current, or last, scan.
+     */
+    public long getElapsedMillis()
+    {
+        long start = startTime;
+        if ( start == 0 )
+        {
+            return 0;
+        }
+        long end = endTime;
+        return (end == 0 ? System.currentTimeMillis() : end) - start;
+    }
+
+    /**
+     * @return the number of ids scanned per second by the current, or last,
+     *         scan.
+     */
+    public double getIdsPerSecond()
+    {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : getIdsScanned() * 1000.0 / elapsed;
+    }
+
+    private static class Partition
+    {
+        final RecordStore<?> store;
+        final long fromId;
+        final long toId;
+
+        Partition( RecordStore<?> store, long fromId, long toId )
+        {
+            this.store = store;
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+    }
+
+    private class Worker<P extends RecordStore.Processor> implements Callable<P>
+    {
+        private final P processor;
+        private final List<Partition> partitions;
+        private final AtomicInteger nextPartition;
+        private final ProgressIndicator progress;
+
+        Worker( P processor, List<Partition> partitions, AtomicInteger nextPartition, ProgressIndicator progress )
+        {
+            this.processor = processor;
+            this.partitions = partitions;
+            this.nextPartition = nextPartition;
+            this.progress = progress;
+        }
+
+        @Override
+        public P call()
+        {
+            for ( int i; (i = nextPartition.getAndIncrement()) < partitions.size(); )
+            {
+                if ( Thread.currentThread().isInterrupted() )
+                {
+                    // Another worker failed
+                    break;
+                }
+                Partition partition = partitions.get( i );
+                recordsProcessed.addAndGet( scan( partition.store, partition.fromId, partition.toId ) );
+                long ids = partition.toId - partition.fromId;
+                idsScanned.addAndGet( ids );
+                if ( progress != null )
+                {
+                    synchronized ( progress )
+                    {
+                        progress.update( true, ids );
+                    }
+                }
+            }
+            return processor;
+        }
+
+        private <R extends AbstractBaseRecord> long scan( final RecordStore<R> store, long fromId, long toId )
+        {
+            final long[] processed = new long[1];
+            store.forceScan( fromId, toId, new Visitor<R>()
+            {
+                @Override
+                public boolean visit( R record )
+                {
+                    if ( RecordStore.IN_USE.accept( record ) )
+                    {
+                        store.accept( processor, record );
+                        processed[0]++;
+                    }
+                    return false;
+                }
+            } );
+            return processed[0];
+        }
+    }
+}
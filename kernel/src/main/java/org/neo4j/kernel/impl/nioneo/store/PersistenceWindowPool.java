@@ -39,7 +39,7 @@ import java.util.logging.Logger;
  * that the most frequently used records/blocks (be it for read or write
  * operations) are encapsulated by a memory mapped persistence window.
  */
-public class PersistenceWindowPool
+public class PersistenceWindowPool implements WindowPool
 {
     private static final int MAX_BRICK_COUNT = 100000;
 
@@ -217,7 +217,7 @@ public class PersistenceWindowPool
         }
     }
 
-    synchronized void close()
+    public synchronized void close()
     {
         flushAll();
 //        synchronized ( activeRowWindows )
@@ -237,7 +237,7 @@ public class PersistenceWindowPool
         dumpStatistics();
     }
 
-    void flushAll()
+    public void flushAll()
     {
         if ( readOnly ) return;
 
@@ -641,9 +641,9 @@ public class PersistenceWindowPool
         log.log( Level.WARNING, "[" + storeName + "] " + logMessage, cause );
     }
 
-    WindowPoolStats getStats()
+    public WindowPoolStats getStats()
     {
         return new WindowPoolStats( storeName, availableMem, memUsed, brickCount,
-                brickSize, hit, miss, ooe );
+                brickSize, hit, miss, ooe, switches, 0 );
     }
 }
\ No newline at end of file
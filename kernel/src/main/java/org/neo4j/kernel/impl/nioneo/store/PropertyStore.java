@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.neo4j.helpers.UTF8;
+import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.IdGeneratorFactory;
 import org.neo4j.kernel.IdType;
 import org.neo4j.kernel.impl.util.StringLogger;
@@ -397,6 +398,19 @@ public class PropertyStore extends AbstractStore implements Store, RecordStore<P
         return forceGetRecord( id );
     }
 
+    @Override
+    public boolean forceScan( long fromId, long toId, final Visitor<PropertyRecord> visitor )
+    {
+        return scanWindows( fromId, toId, new WindowVisitor()
+        {
+            @Override
+            public boolean visit( long id, PersistenceWindow window )
+            {
+                return visitor.visit( getRecord( id, window, RecordLoad.FORCE ) );
+            }
+        } );
+    }
+
     private PropertyRecord getRecordFromBuffer( long id, Buffer buffer )
     {
         int offsetAtBeggining = buffer.getOffset();
@@ -25,6 +25,7 @@ import org.neo4j.helpers.Predicate;
 import org.neo4j.helpers.ProgressIndicator;
 import org.neo4j.helpers.collection.IterableWrapper;
 import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.helpers.collection.Visitor;
 
 public interface RecordStore<R extends AbstractBaseRecord>
 {
@@ -40,6 +41,15 @@ public interface RecordStore<R extends AbstractBaseRecord>
 
     public void forceUpdateRecord( R record );
 
+    /**
+     * Reads the records from {@code fromId} (inclusive) to {@code toId}
+     * (exclusive), in use or not, the way {@link #forceGetRecord(long)} reads
+     * them, but a whole window at a time. Stops at the high id of the store.
+     *
+     * @return {@code true} if the visitor terminated the scan.
+     */
+    public boolean forceScan( long fromId, long toId, Visitor<R> visitor );
+
     public void accept( Processor processor, R record );
 
     public int getRecordSize();
@@ -69,6 +79,12 @@ public interface RecordStore<R extends AbstractBaseRecord>
             processRecord( RelationshipRecord.class, store, rel );
         }
 
+        public void processRelationshipGroup( RecordStore<RelationshipGroupRecord> store,
+                RelationshipGroupRecord group )
+        {
+            processRecord( RelationshipGroupRecord.class, store, group );
+        }
+
         public void processProperty( RecordStore<PropertyRecord> store, PropertyRecord property )
         {
             processRecord( PropertyRecord.class, store, property );
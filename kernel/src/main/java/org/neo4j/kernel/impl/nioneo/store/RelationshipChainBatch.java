@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.util.Arrays;
+
+import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
+
+/**
+ * A batch of relationships loaded from the relationship chain of a node, see
+ * {@link RelationshipStore#getMoreRelationships(long, long, int)}. The
+ * relationships are kept in primitive arrays rather than as one
+ * {@link RelationshipRecord} each, since loading the relationships of nodes
+ * with many relationships would otherwise create lots of short lived records.
+ */
+public class RelationshipChainBatch
+{
+    private long[] ids;
+    private long[] firstNodes;
+    private long[] secondNodes;
+    private int[] types;
+    private DirectionWrapper[] directions;
+    private int size;
+    private boolean hasLoops;
+    private long nextPosition = Record.NO_NEXT_RELATIONSHIP.intValue();
+
+    public RelationshipChainBatch( int initialCapacity )
+    {
+        int capacity = Math.max( 1, initialCapacity );
+        ids = new long[capacity];
+        firstNodes = new long[capacity];
+        secondNodes = new long[capacity];
+        types = new int[capacity];
+        directions = new DirectionWrapper[capacity];
+    }
+
+    void add( long id, long firstNode, long secondNode, int type, DirectionWrapper direction )
+    {
+        if ( size == ids.length )
+        {
+            int capacity = size * 2;
+            ids = Arrays.copyOf( ids, capacity );
+            firstNodes = Arrays.copyOf( firstNodes, capacity );
+            secondNodes = Arrays.copyOf( secondNodes, capacity );
+            types = Arrays.copyOf( types, capacity );
+            directions = Arrays.copyOf( directions, capacity );
+        }
+        ids[size] = id;
+        firstNodes[size] = firstNode;
+        secondNodes[size] = secondNode;
+        types[size] = type;
+        directions[size] = direction;
+        if ( direction == DirectionWrapper.BOTH )
+        {
+            hasLoops = true;
+        }
+        size++;
+    }
+
+    void setNextPosition( long nextPosition )
+    {
+        this.nextPosition = nextPosition;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long getId( int index )
+    {
+        return ids[index];
+    }
+
+    public long getFirstNode( int index )
+    {
+        return firstNodes[index];
+    }
+
+    public long getSecondNode( int index )
+    {
+        return secondNodes[index];
+    }
+
+    public int getType( int index )
+    {
+        return types[index];
+    }
+
+    /**
+     * @return the direction of the relationship as seen from the node whose
+     *         chain was loaded, {@link DirectionWrapper#BOTH} for loops.
+     */
+    public DirectionWrapper getDirection( int index )
+    {
+        return directions[index];
+    }
+
+    public boolean hasLoops()
+    {
+        return hasLoops;
+    }
+
+    /**
+     * @return the relationship chain position as it stands after this batch
+     *         has been loaded.
+     */
+    public long getNextPosition()
+    {
+        return nextPosition;
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.neo4j.helpers.collection.Visitor;
+import org.neo4j.kernel.IdGeneratorFactory;
+import org.neo4j.kernel.IdType;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * Implementation of the relationship group store, holding the
+ * {@link RelationshipGroupRecord groups} of dense nodes. Nodes are made
+ * dense by the
+ * {@link org.neo4j.kernel.impl.storemigration.RelationshipGroupMigrator}.
+ */
+public class RelationshipGroupStore extends AbstractStore implements Store, RecordStore<RelationshipGroupRecord>
+{
+    public interface Configuration
+        extends AbstractStore.Configuration
+    {
+
+    }
+
+    public static final String TYPE_DESCRIPTOR = "RelationshipGroupStore";
+
+    // in_use(byte)+high_bits(byte)+type(int)+next(int)+first_out(int)+
+    // first_in(int)+first_loop(int)+owning_node(int)
+    public static final int RECORD_SIZE = 26;
+
+    public RelationshipGroupStore( String fileName, Configuration config,
+            IdGeneratorFactory idGeneratorFactory, FileSystemAbstraction fileSystemAbstraction,
+            StringLogger stringLogger )
+    {
+        super( fileName, config, IdType.RELATIONSHIP_GROUP, idGeneratorFactory, fileSystemAbstraction, stringLogger );
+    }
+
+    @Override
+    public void accept( RecordStore.Processor processor, RelationshipGroupRecord record )
+    {
+        processor.processRelationshipGroup( this, record );
+    }
+
+    @Override
+    public String getTypeDescriptor()
+    {
+        return TYPE_DESCRIPTOR;
+    }
+
+    @Override
+    public int getRecordSize()
+    {
+        return RECORD_SIZE;
+    }
+
+    @Override
+    public int getRecordHeaderSize()
+    {
+        return getRecordSize();
+    }
+
+    public RelationshipGroupRecord getRecord( long id )
+    {
+        PersistenceWindow window = acquireWindow( id, OperationType.READ );
+        try
+        {
+            return getRecord( id, window, RecordLoad.NORMAL );
+        }
+        finally
+        {
+            releaseWindow( window );
+        }
+    }
+
+    @Override
+    public RelationshipGroupRecord forceGetRecord( long id )
+    {
+        PersistenceWindow window = null;
+        try
+        {
+            window = acquireWindow( id, OperationType.READ );
+        }
+        catch ( InvalidRecordException e )
+        {
+            return new RelationshipGroupRecord( id, -1 ); // inUse=false by default
+        }
+
+        try
+        {
+            return getRecord( id, window, RecordLoad.FORCE );
+        }
+        finally
+        {
+            releaseWindow( window );
+        }
+    }
+
+    @Override
+    public RelationshipGroupRecord forceGetRaw( long id )
+    {
+        return forceGetRecord( id );
+    }
+
+    @Override
+    public boolean forceScan( long fromId, long toId, final Visitor<RelationshipGroupRecord> visitor )
+    {
+        return scanWindows( fromId, toId, new WindowVisitor()
+        {
+            @Override
+            public boolean visit( long id, PersistenceWindow window )
+            {
+                return visitor.visit( getRecord( id, window, RecordLoad.FORCE ) );
+            }
+        } );
+    }
+
+    /**
+     * Loads the whole chain of groups starting at {@code firstGroup}.
+     */
+    public List<RelationshipGroupRecord> getGroups( long firstGroup )
+    {
+        List<RelationshipGroupRecord> groups = new ArrayList<RelationshipGroupRecord>();
+        for ( long id = firstGroup; id != Record.NO_NEXT_RELATIONSHIP.intValue(); )
+        {
+            RelationshipGroupRecord group = getRecord( id );
+            groups.add( group );
+            id = group.getNext();
+        }
+        return groups;
+    }
+
+    public void updateRecord( RelationshipGroupRecord record, boolean recovered )
+    {
+        assert recovered;
+        setRecovered();
+        try
+        {
+            updateRecord( record );
+            registerIdFromUpdateRecord( record.getId() );
+        }
+        finally
+        {
+            unsetRecovered();
+        }
+    }
+
+    @Override
+    public void forceUpdateRecord( RelationshipGroupRecord record )
+    {
+        PersistenceWindow window = acquireWindow( record.getId(), OperationType.WRITE );
+        try
+        {
+            updateRecord( record, window, true );
+        }
+        finally
+        {
+            releaseWindow( window );
+        }
+    }
+
+    public void updateRecord( RelationshipGroupRecord record )
+    {
+        PersistenceWindow window = acquireWindow( record.getId(), OperationType.WRITE );
+        try
+        {
+            updateRecord( record, window, false );
+        }
+        finally
+        {
+            releaseWindow( window );
+        }
+    }
+
+    private RelationshipGroupRecord getRecord( long id, PersistenceWindow window, RecordLoad load )
+    {
+        Buffer buffer = window.getOffsettedBuffer( id );
+
+        // [    ,   x] in use flag
+        // [    ,xxx ] next high order bits
+        // [ xxx,    ] first out high order bits
+        long inUseByte = buffer.get();
+
+        boolean inUse = (inUseByte & 0x1) == Record.IN_USE.intValue();
+        if ( !inUse )
+        {
+            switch ( load )
+            {
+            case NORMAL:
+                throw new InvalidRecordException( "RelationshipGroupRecord[" + id + "] not in use" );
+            case CHECK:
+                return null;
+            }
+        }
+
+        // [    , xxx] first in high order bits
+        // [  xx,x   ] first loop high order bits
+        long highByte = buffer.get();
+
+        // [    ,    ][    , xxx][    ,    ][    ,    ] owning node high order bits
+        // [    ,    ][    ,    ][xxxx,xxxx][xxxx,xxxx] type
+        long typeInt = buffer.getInt();
+
+        RelationshipGroupRecord record = new RelationshipGroupRecord( id, (int) (typeInt & 0xFFFF) );
+        record.setInUse( inUse );
+        record.setNext( longFromIntAndMod( buffer.getUnsignedInt(), (inUseByte & 0xEL) << 31 ) );
+        record.setFirstOut( longFromIntAndMod( buffer.getUnsignedInt(), (inUseByte & 0x70L) << 28 ) );
+        record.setFirstIn( longFromIntAndMod( buffer.getUnsignedInt(), (highByte & 0x7L) << 32 ) );
+        record.setFirstLoop( longFromIntAndMod( buffer.getUnsignedInt(), (highByte & 0x38L) << 29 ) );
+        record.setOwningNode( longFromIntAndMod( buffer.getUnsignedInt(), (typeInt & 0x70000L) << 16 ) );
+        return record;
+    }
+
+    private void updateRecord( RelationshipGroupRecord record, PersistenceWindow window, boolean force )
+    {
+        long id = record.getId();
+        Buffer buffer = window.getOffsettedBuffer( id );
+        if ( record.inUse() || force )
+        {
+            long next = record.getNext();
+            long firstOut = record.getFirstOut();
+            long firstIn = record.getFirstIn();
+            long firstLoop = record.getFirstLoop();
+            long owningNode = record.getOwningNode();
+
+            short inUseUnsignedByte = (short) ( ( record.inUse() ? Record.IN_USE : Record.NOT_IN_USE ).byteValue()
+                                                | highBits( next ) >> 31 | highBits( firstOut ) >> 28 );
+            short highByte = (short) ( highBits( firstIn ) >> 32 | highBits( firstLoop ) >> 29 );
+            int typeInt = (int) ( record.getType() | highBits( owningNode ) >> 16 );
+
+            buffer.put( (byte) inUseUnsignedByte ).put( (byte) highByte ).putInt( typeInt )
+                .putInt( (int) next ).putInt( (int) firstOut ).putInt( (int) firstIn )
+                .putInt( (int) firstLoop ).putInt( (int) owningNode );
+        }
+        else
+        {
+            buffer.put( Record.NOT_IN_USE.byteValue() );
+            if ( !isInRecoveryMode() )
+            {
+                freeId( id );
+            }
+        }
+    }
+
+    private static long highBits( long reference )
+    {
+        return reference == Record.NO_NEXT_RELATIONSHIP.intValue() ? 0 : reference & 0x700000000L;
+    }
+
+    @Override
+    public List<WindowPoolStats> getAllWindowPoolStats()
+    {
+        List<WindowPoolStats> list = new ArrayList<WindowPoolStats>();
+        list.add( getWindowPoolStats() );
+        return list;
+    }
+}
@@ -22,8 +22,10 @@ package org.neo4j.kernel.impl.nioneo.store;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.IdGeneratorFactory;
 import org.neo4j.kernel.IdType;
+import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
 import org.neo4j.kernel.impl.util.StringLogger;
 
 /**
@@ -145,6 +147,37 @@ public class RelationshipStore extends AbstractStore implements Store, RecordSto
         }
     }
 
+    /**
+     * Visits the relationship records in use from {@code fromId} (inclusive)
+     * to {@code toId} (exclusive) in id order, reading a whole window at a
+     * time. Records not in use are skipped.
+     *
+     * @return {@code true} if the visitor terminated the scan.
+     */
+    public boolean scan( long fromId, long toId, Visitor<RelationshipRecord> visitor )
+    {
+        return scan( fromId, toId, RecordLoad.CHECK, visitor );
+    }
+
+    @Override
+    public boolean forceScan( long fromId, long toId, Visitor<RelationshipRecord> visitor )
+    {
+        return scan( fromId, toId, RecordLoad.FORCE, visitor );
+    }
+
+    private boolean scan( long fromId, long toId, final RecordLoad load, final Visitor<RelationshipRecord> visitor )
+    {
+        return scanWindows( fromId, toId, new WindowVisitor()
+        {
+            @Override
+            public boolean visit( long id, PersistenceWindow window )
+            {
+                RelationshipRecord record = getRecord( id, window, load );
+                return record != null && visitor.visit( record );
+            }
+        } );
+    }
+
     public void updateRecord( RelationshipRecord record, boolean recovered )
     {
         assert recovered;
@@ -349,6 +382,119 @@ public class RelationshipStore extends AbstractStore implements Store, RecordSto
         }
     }
 
+    /**
+     * Loads up to {@code grabSize} relationships from the relationship chain
+     * of {@code nodeId}, starting at {@code position}. The records are decoded
+     * straight into the returned batch, and the window of a hop is kept for
+     * as long as the following hops fall within it, which is typical for
+     * relationships created in sequence, instead of being acquired and
+     * released once per relationship.
+     */
+    public RelationshipChainBatch getMoreRelationships( long nodeId, long position, int grabSize )
+    {
+        RelationshipChainBatch batch = new RelationshipChainBatch( Math.min( grabSize, 1024 ) );
+        batch.setNextPosition( loadChain( nodeId, position, grabSize, batch ) );
+        return batch;
+    }
+
+    /**
+     * Loads the whole of each of the relationship chains of {@code nodeId}
+     * starting at {@code firstRels}, as kept in the
+     * {@link RelationshipGroupRecord group} of a dense node.
+     */
+    public RelationshipChainBatch getRelationshipChains( long nodeId, long... firstRels )
+    {
+        RelationshipChainBatch batch = new RelationshipChainBatch( 16 );
+        for ( long firstRel : firstRels )
+        {
+            loadChain( nodeId, firstRel, Integer.MAX_VALUE, batch );
+        }
+        return batch;
+    }
+
+    /**
+     * Adds relationships from the chain of {@code nodeId} starting at
+     * {@code position} to {@code batch} until it holds {@code limit}
+     * relationships, returning the chain position reached.
+     */
+    private long loadChain( long nodeId, long position, int limit, RelationshipChainBatch batch )
+    {
+        PersistenceWindow window = null;
+        try
+        {
+            while ( batch.size() < limit && position != Record.NO_NEXT_RELATIONSHIP.intValue() )
+            {
+                if ( window == null || position < window.position()
+                     || position >= window.position() + window.size() )
+                {
+                    if ( window != null )
+                    {
+                        // Never hold more than one window at a time
+                        releaseWindow( window );
+                        window = null;
+                    }
+                    try
+                    {
+                        window = acquireWindow( position, OperationType.READ );
+                    }
+                    catch ( InvalidRecordException e )
+                    {
+                        // ok to high id, return what we got so far
+                        break;
+                    }
+                }
+                position = readChainRecord( nodeId, position, window, batch );
+            }
+        }
+        finally
+        {
+            if ( window != null )
+            {
+                releaseWindow( window );
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Adds relationship {@code id} to {@code batch} and returns the next
+     * position in the chain of {@code nodeId}. See
+     * {@link #getRecord(long, PersistenceWindow, RecordLoad)} for the layout.
+     */
+    private long readChainRecord( long nodeId, long id, PersistenceWindow window,
+            RelationshipChainBatch batch )
+    {
+        Buffer buffer = window.getOffsettedBuffer( id );
+        long inUseByte = buffer.get();
+        if ( (inUseByte & 0x1) != Record.IN_USE.intValue() )
+        {
+            throw new InvalidRecordException( "RelationshipRecord[" + id + "] not in use" );
+        }
+        long firstNode = longFromIntAndMod( buffer.getUnsignedInt(), (inUseByte & 0xEL) << 31 );
+        long secondNode = buffer.getUnsignedInt();
+        long typeInt = buffer.getInt();
+        secondNode = longFromIntAndMod( secondNode, (typeInt & 0x70000000L) << 4 );
+        int type = (int)(typeInt & 0xFFFF);
+
+        buffer.getUnsignedInt(); // first prev rel
+        long firstNextRel = buffer.getUnsignedInt();
+        buffer.getUnsignedInt(); // second prev rel
+        long secondNextRel = buffer.getUnsignedInt();
+        if ( firstNode == nodeId )
+        {
+            batch.add( id, firstNode, secondNode, type,
+                    secondNode == nodeId ? DirectionWrapper.BOTH : DirectionWrapper.OUTGOING );
+            return longFromIntAndMod( firstNextRel, (typeInt & 0x1C00000L) << 10 );
+        }
+        else if ( secondNode == nodeId )
+        {
+            batch.add( id, firstNode, secondNode, type, DirectionWrapper.INCOMING );
+            return longFromIntAndMod( secondNextRel, (typeInt & 0x70000L) << 16 );
+        }
+        throw new InvalidRecordException( "Node[" + nodeId + "] is neither firstNode[" + firstNode
+                                          + "] nor secondNode[" + secondNode + "] for Relationship[" + id + "]" );
+    }
+
     @Override
     public List<WindowPoolStats> getAllWindowPoolStats()
     {
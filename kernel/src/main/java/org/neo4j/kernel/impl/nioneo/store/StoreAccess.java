@@ -21,7 +21,10 @@
 package org.neo4j.kernel.impl.nioneo.store;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.neo4j.kernel.AbstractGraphDatabase;
@@ -40,6 +43,7 @@ public class StoreAccess
     private final RecordStore<RelationshipRecord> relStore;
     private final RecordStore<RelationshipTypeRecord> relTypeStore;
     private final RecordStore<PropertyRecord> propStore;
+    private final RecordStore<RelationshipGroupRecord> relGroupStore;
     // Transitive stores
     private final RecordStore<DynamicRecord> stringStore, arrayStore;
     private final RecordStore<PropertyIndexRecord> propIndexStore;
@@ -62,16 +66,18 @@ public class StoreAccess
     public StoreAccess( NeoStore store )
     {
         this( store.getNodeStore(), store.getRelationshipStore(), store.getPropertyStore(),
-                store.getRelationshipTypeStore() );
+                store.getRelationshipTypeStore(), store.getRelationshipGroupStore() );
         this.neoStore = store;
     }
 
     public StoreAccess( NodeStore nodeStore, RelationshipStore relStore, PropertyStore propStore,
-            RelationshipTypeStore typeStore )
+            RelationshipTypeStore typeStore, RelationshipGroupStore relGroupStore )
     {
         this.nodeStore = wrapStore( nodeStore );
         this.relStore = wrapStore( relStore );
         this.propStore = wrapStore( propStore );
+        // Only stores with dense nodes have a relationship group store
+        this.relGroupStore = relGroupStore == null ? null : wrapStore( relGroupStore );
         this.stringStore = wrapStore( propStore.getStringStore() );
         this.arrayStore = wrapStore( propStore.getArrayStore() );
         this.relTypeStore = wrapStore( typeStore );
@@ -119,6 +125,15 @@ public class StoreAccess
         return relStore;
     }
 
+    /**
+     * @return the relationship group store, or {@code null} if the store
+     *         doesn't have dense nodes.
+     */
+    public RecordStore<RelationshipGroupRecord> getRelationshipGroupStore()
+    {
+        return relGroupStore;
+    }
+
     public RecordStore<PropertyRecord> getPropertyStore()
     {
         return propStore;
@@ -163,12 +178,17 @@ public class StoreAccess
 
     protected RecordStore<?>[] allStores()
     {
-        if ( propStore == null ) return new RecordStore<?>[] { // no property stores
-                nodeStore, relStore, relTypeStore, typeNameStore };
-        return new RecordStore<?>[] {
-                nodeStore, relStore, propStore, stringStore, arrayStore, // basic
+        RecordStore<?>[] stores;
+        if ( propStore == null ) stores = new RecordStore<?>[] { // no property stores
+                nodeStore, relStore, relGroupStore, relTypeStore, typeNameStore };
+        else stores = new RecordStore<?>[] {
+                nodeStore, relStore, relGroupStore, propStore, stringStore, arrayStore, // basic
                 relTypeStore, propIndexStore, typeNameStore, propKeyStore, // internal
                 };
+        if ( relGroupStore != null ) return stores;
+        List<RecordStore<?>> withoutGroups = new ArrayList<RecordStore<?>>( Arrays.asList( stores ) );
+        withoutGroups.remove( null );
+        return withoutGroups.toArray( new RecordStore<?>[withoutGroups.size()] );
     }
 
     protected <R extends AbstractBaseRecord> RecordStore<R> wrapStore( RecordStore<R> store )
@@ -28,12 +28,14 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.neo4j.helpers.UTF8;
+import org.neo4j.kernel.Config;
 import org.neo4j.kernel.ConfigProxy;
 import org.neo4j.kernel.IdGeneratorFactory;
 import org.neo4j.kernel.IdType;
 import org.neo4j.kernel.impl.core.LastCommittedTxIdSetter;
 import org.neo4j.kernel.impl.storemigration.ConfigMapUpgradeConfiguration;
 import org.neo4j.kernel.impl.storemigration.DatabaseFiles;
+import org.neo4j.kernel.impl.storemigration.RelationshipGroupMigrator;
 import org.neo4j.kernel.impl.storemigration.StoreMigrator;
 import org.neo4j.kernel.impl.storemigration.StoreUpgrader;
 import org.neo4j.kernel.impl.storemigration.UpgradableDatabase;
@@ -70,15 +72,31 @@ public class StoreFactory
 
     public NeoStore newNeoStore(String fileName)
     {
+        NeoStore neoStore;
         try
         {
-            return attemptNewNeoStore( fileName );
+            neoStore = attemptNewNeoStore( fileName );
         }
         catch ( NotCurrentStoreVersionException e )
         {
             tryToUpgradeStores( fileName );
-            return attemptNewNeoStore( fileName );
+            neoStore = attemptNewNeoStore( fileName );
         }
+
+        if ( config.containsKey( Config.DENSE_NODE_THRESHOLD ) && !neoStore.hasDenseNodes() )
+        {
+            if ( !neoStore.isStoreOk() )
+            {
+                // Migrated on a later start, once it has been recovered
+                stringLogger.logMessage( "Not migrating " + fileName
+                        + " to dense nodes, it wasn't cleanly shut down" );
+                return neoStore;
+            }
+            neoStore.close();
+            tryToMigrateToDenseNodes( fileName );
+            neoStore = attemptNewNeoStore( fileName );
+        }
+        return neoStore;
     }
 
     NeoStore attemptNewNeoStore( String fileName )
@@ -88,14 +106,33 @@ public class StoreFactory
                 newRelationshipTypeStore(fileName + ".relationshiptypestore.db"),
                 newPropertyStore(fileName + ".propertystore.db"),
                 newRelationshipStore(fileName + ".relationshipstore.db"),
-                newNodeStore(fileName + ".nodestore.db"));
+                newNodeStore(fileName + ".nodestore.db"),
+                openRelationshipGroupStore(fileName + ".relationshipgroupstore.db"));
+    }
+
+    private RelationshipGroupStore openRelationshipGroupStore( String fileName )
+    {
+        // Only stores migrated to have dense nodes have a relationship group store
+        return fileSystemAbstraction.fileExists( fileName ) ? newRelationshipGroupStore( fileName ) : null;
     }
 
     private void tryToUpgradeStores( String fileName )
     {
-        new StoreUpgrader(config, new ConfigMapUpgradeConfiguration(config),
+        newStoreUpgrader().attemptUpgrade( fileName );
+    }
+
+    private void tryToMigrateToDenseNodes( String fileName )
+    {
+        int denseNodeThreshold = Integer.parseInt( config.get( Config.DENSE_NODE_THRESHOLD ) );
+        newStoreUpgrader().attemptDenseNodeMigration( fileName, new RelationshipGroupMigrator( denseNodeThreshold,
+                new VisibleMigrationProgressMonitor( System.out ) ) );
+    }
+
+    private StoreUpgrader newStoreUpgrader()
+    {
+        return new StoreUpgrader(config, new ConfigMapUpgradeConfiguration(config),
                 new UpgradableDatabase(), new StoreMigrator( new VisibleMigrationProgressMonitor( System.out ) ),
-                new DatabaseFiles(), idGeneratorFactory, fileSystemAbstraction ).attemptUpgrade( fileName );
+                new DatabaseFiles(), idGeneratorFactory, fileSystemAbstraction );
     }
 
     private DynamicStringStore newDynamicStringStore(String s, IdType nameIdType)
@@ -129,6 +166,11 @@ public class StoreFactory
         return new RelationshipStore( s, ConfigProxy.config(config, RelationshipStore.Configuration.class), idGeneratorFactory, fileSystemAbstraction, stringLogger);
     }
 
+    private RelationshipGroupStore newRelationshipGroupStore(String s)
+    {
+        return new RelationshipGroupStore( s, ConfigProxy.config(config, RelationshipGroupStore.Configuration.class), idGeneratorFactory, fileSystemAbstraction, stringLogger);
+    }
+
     private DynamicArrayStore newDynamicArrayStore(String s)
     {
         return new DynamicArrayStore( s, ConfigProxy.config(config, DynamicArrayStore.Configuration.class), IdType.ARRAY_BLOCK, idGeneratorFactory, fileSystemAbstraction, stringLogger);
@@ -151,6 +193,11 @@ public class StoreFactory
         createRelationshipStore(fileName + ".relationshipstore.db");
         createPropertyStore(fileName + ".propertystore.db");
         createRelationshipTypeStore(fileName + ".relationshiptypestore.db");
+        boolean denseNodes = config.containsKey( Config.DENSE_NODE_THRESHOLD );
+        if ( denseNodes )
+        {
+            createRelationshipGroupStore( fileName );
+        }
 /*
         if ( !config.containsKey( "neo_store" ) )
         {
@@ -160,17 +207,22 @@ public class StoreFactory
             config = newConfig;
         }
 */
-        NeoStore neoStore = newNeoStore( fileName );
+        NeoStore neoStore = attemptNewNeoStore( fileName );
         /*
-        *  created time | random long | backup version | tx id | store version | next prop
+        *  created time | random long | backup version | tx id | store version | next prop | dense nodes
         */
-        for ( int i = 0; i < 6; i++ ) neoStore.nextId();
+        for ( int i = 0; i < 7; i++ ) neoStore.nextId();
         neoStore.setCreationTime( storeId.getCreationTime() );
         neoStore.setRandomNumber( storeId.getRandomId() );
         neoStore.setVersion( 0 );
         neoStore.setLastCommittedTx( 1 );
         neoStore.setStoreVersion( storeId.getStoreVersion() );
         neoStore.setGraphNextProp( -1 );
+        neoStore.setDenseNodes( false );
+        if ( denseNodes )
+        {
+            neoStore.enableDenseNodes();
+        }
         return neoStore;
     }
 
@@ -207,6 +259,21 @@ public class StoreFactory
         createEmptyStore( fileName, buildTypeDescriptorAndVersion( RelationshipStore.TYPE_DESCRIPTOR )  );
     }
 
+    /**
+     * Creates a new, empty, relationship group store next to the neo store
+     * {@code neoStoreFileName}, which is opened along with the other stores
+     * from then on. Done when creating or migrating a store to have dense
+     * nodes.
+     *
+     * @param neoStoreFileName
+     *            File name of the neo store to add the group store to
+     */
+    public void createRelationshipGroupStore( String neoStoreFileName )
+    {
+        String fileName = neoStoreFileName + ".relationshipgroupstore.db";
+        createEmptyStore( fileName, buildTypeDescriptorAndVersion( RelationshipGroupStore.TYPE_DESCRIPTOR ) );
+    }
+
     /**
      * Creates a new property store contained in <CODE>fileName</CODE> If
      * filename is <CODE>null</CODE> or the file already exists an
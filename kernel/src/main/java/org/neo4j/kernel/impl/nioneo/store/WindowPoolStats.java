@@ -32,9 +32,19 @@ public class WindowPoolStats
     private final int hitCount;
     private final int missCount;
     private final int oomCount;
-    
+
+    private final long evictionCount;
+    private final long contentionCount;
+
     public WindowPoolStats( String name, long memAvail, long memUsed, int windowCount,
             int windowSize, int hitCount, int missCount, int oomCount )
+    {
+        this( name, memAvail, memUsed, windowCount, windowSize, hitCount, missCount, oomCount, 0, 0 );
+    }
+
+    public WindowPoolStats( String name, long memAvail, long memUsed, int windowCount,
+            int windowSize, int hitCount, int missCount, int oomCount, long evictionCount,
+            long contentionCount )
     {
         this.name = name;
         this.memAvail = memAvail;
@@ -44,6 +54,8 @@ public class WindowPoolStats
         this.hitCount = hitCount;
         this.missCount = missCount;
         this.oomCount = oomCount;
+        this.evictionCount = evictionCount;
+        this.contentionCount = contentionCount;
     }
     
     public String getName()
@@ -85,4 +97,38 @@ public class WindowPoolStats
     {
         return oomCount;
     }
+
+    /**
+     * @return the number of times a mapped window has been unmapped to make
+     *         room for a window over a more frequently used part of the store.
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of times a window couldn't be mapped because another
+     *         thread was busy (re)mapping windows at the time.
+     */
+    public long getContentionCount()
+    {
+        return contentionCount;
+    }
+
+    public double getEvictionRate()
+    {
+        return rate( evictionCount );
+    }
+
+    public double getContentionRate()
+    {
+        return rate( contentionCount );
+    }
+
+    private double rate( long count )
+    {
+        long acquisitions = (long) hitCount + missCount;
+        return acquisitions == 0 ? 0 : (double) count / acquisitions;
+    }
 }
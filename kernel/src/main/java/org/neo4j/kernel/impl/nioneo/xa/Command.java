@@ -37,6 +37,8 @@ import org.neo4j.kernel.impl.nioneo.store.PropertyRecord;
 import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
 import org.neo4j.kernel.impl.nioneo.store.PropertyType;
 import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupRecord;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupStore;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipTypeRecord;
@@ -286,9 +288,13 @@ public abstract class Command extends XaCommand
     private static final byte REL_TYPE_COMMAND = (byte) 4;
     private static final byte PROP_INDEX_COMMAND = (byte) 5;
     private static final byte NEOSTORE_COMMAND = (byte) 6;
+    private static final byte REL_GROUP_COMMAND = (byte) 7;
 
     static class NodeCommand extends Command
     {
+        // Set in the in use flag of dense nodes
+        private static final byte DENSE = (byte) 0x2;
+
         private final NodeRecord record;
         private final NodeStore store;
 
@@ -342,6 +348,10 @@ public abstract class Command extends XaCommand
         {
             byte inUse = record.inUse() ? Record.IN_USE.byteValue()
                 : Record.NOT_IN_USE.byteValue();
+            if ( record.inUse() && record.isDense() )
+            {
+                inUse |= DENSE;
+            }
             buffer.put( NODE_COMMAND );
             buffer.putLong( record.getId() );
             buffer.put( inUse );
@@ -366,10 +376,16 @@ public abstract class Command extends XaCommand
             long id = buffer.getLong();
             byte inUseFlag = buffer.get();
             boolean inUse = false;
+            boolean dense = false;
             if ( inUseFlag == Record.IN_USE.byteValue() )
             {
                 inUse = true;
             }
+            else if ( inUseFlag == (Record.IN_USE.byteValue() | DENSE) )
+            {
+                inUse = true;
+                dense = true;
+            }
             else if ( inUseFlag != Record.NOT_IN_USE.byteValue() )
             {
                 throw new IOException( "Illegal in use flag: " + inUseFlag );
@@ -388,6 +404,7 @@ public abstract class Command extends XaCommand
             }
             else record = new NodeRecord( id, Record.NO_NEXT_RELATIONSHIP.intValue(), Record.NO_NEXT_PROPERTY.intValue() );
             record.setInUse( inUse );
+            record.setDense( dense );
             return new NodeCommand( neoStore == null ? null : neoStore.getNodeStore(), record );
         }
 
@@ -550,6 +567,118 @@ public abstract class Command extends XaCommand
         }
     }
     
+    static class RelationshipGroupCommand extends Command
+    {
+        private final RelationshipGroupRecord record;
+        private final RelationshipGroupStore store;
+
+        RelationshipGroupCommand( RelationshipGroupStore store, RelationshipGroupRecord record )
+        {
+            super( record.getId() );
+            this.record = record;
+            this.store = store;
+        }
+
+        @Override
+        public void accept( CommandRecordVisitor visitor )
+        {
+            visitor.visitRelationshipGroup( record );
+        }
+
+        @Override
+        boolean isCreated()
+        {
+            return record.isCreated();
+        }
+
+        @Override
+        boolean isDeleted()
+        {
+            return !record.inUse();
+        }
+
+        long getOwningNode()
+        {
+            return record.getOwningNode();
+        }
+
+        @Override
+        public void execute()
+        {
+            if ( isRecovered() )
+            {
+                logger.fine( this.toString() );
+                store.updateRecord( record, true );
+            }
+            else
+            {
+                store.updateRecord( record );
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return record.toString();
+        }
+
+        @Override
+        public void writeToFile( LogBuffer buffer ) throws IOException
+        {
+            byte inUse = record.inUse() ? Record.IN_USE.byteValue()
+                : Record.NOT_IN_USE.byteValue();
+            buffer.put( REL_GROUP_COMMAND );
+            buffer.putLong( record.getId() );
+            buffer.put( inUse );
+            buffer.putInt( record.getType() ).putLong( record.getNext() ).putLong(
+                record.getFirstOut() ).putLong( record.getFirstIn() ).putLong(
+                record.getFirstLoop() ).putLong( record.getOwningNode() );
+        }
+
+        public static Command readCommand( NeoStore neoStore,
+            ReadableByteChannel byteChannel, ByteBuffer buffer )
+            throws IOException
+        {
+            buffer.clear();
+            buffer.limit( 53 );
+            if ( byteChannel.read( buffer ) != buffer.limit() )
+            {
+                return null;
+            }
+            buffer.flip();
+            long id = buffer.getLong();
+            byte inUseFlag = buffer.get();
+            boolean inUse = false;
+            if ( inUseFlag == Record.IN_USE.byteValue() )
+            {
+                inUse = true;
+            }
+            else if ( inUseFlag != Record.NOT_IN_USE.byteValue() )
+            {
+                throw new IOException( "Illegal in use flag: " + inUseFlag );
+            }
+            RelationshipGroupRecord record = new RelationshipGroupRecord( id, buffer.getInt() );
+            record.setInUse( inUse );
+            record.setNext( buffer.getLong() );
+            record.setFirstOut( buffer.getLong() );
+            record.setFirstIn( buffer.getLong() );
+            record.setFirstLoop( buffer.getLong() );
+            record.setOwningNode( buffer.getLong() );
+            return new RelationshipGroupCommand( neoStore == null ? null : neoStore.getRelationshipGroupStore(),
+                record );
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if ( !(o instanceof RelationshipGroupCommand) )
+            {
+                return false;
+            }
+            return getKey() == ((Command) o).getKey();
+        }
+    }
+
     static class NeoStoreCommand extends Command
     {
         private final NeoStoreRecord record;
@@ -1100,6 +1229,8 @@ public abstract class Command extends XaCommand
                     byteChannel, buffer );
             case NEOSTORE_COMMAND:
                 return NeoStoreCommand.readCommand( neoStore, byteChannel, buffer );
+            case REL_GROUP_COMMAND:
+                return RelationshipGroupCommand.readCommand( neoStore, byteChannel, buffer );
             case NONE: return null;
             default:
                 throw new IOException( "Unknown command type[" + commandType
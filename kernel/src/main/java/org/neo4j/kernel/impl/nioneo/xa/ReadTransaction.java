@@ -19,17 +19,15 @@
  */
 package org.neo4j.kernel.impl.nioneo.xa;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.EnumMap;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import javax.transaction.SystemException;
 import javax.transaction.Transaction;
 
-import org.neo4j.helpers.Pair;
+import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.impl.core.PropertyIndex;
 import org.neo4j.kernel.impl.nioneo.store.InvalidRecordException;
 import org.neo4j.kernel.impl.nioneo.store.NameData;
@@ -43,16 +41,19 @@ import org.neo4j.kernel.impl.nioneo.store.PropertyIndexStore;
 import org.neo4j.kernel.impl.nioneo.store.PropertyRecord;
 import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
 import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipChainBatch;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
 import org.neo4j.kernel.impl.persistence.NeoStoreTransaction;
 import org.neo4j.kernel.impl.transaction.xaframework.XaConnection;
 import org.neo4j.kernel.impl.util.ArrayMap;
 import org.neo4j.kernel.impl.util.RelIdArray;
-import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
 
 class ReadTransaction implements NeoStoreTransaction
 {
+    private static final int MAX_GRAB_SIZE_DOUBLINGS = 6;
+
     private final NeoStore neoStore;
 
     public ReadTransaction( NeoStore neoStore )
@@ -99,77 +100,70 @@ class ReadTransaction implements NeoStoreTransaction
     }
 
     @Override
-    public Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> getMoreRelationships(
-            long nodeId, long position )
+    public RelationshipChainBatch getMoreRelationships( long nodeId, long position, int loadedBatches )
     {
-        return getMoreRelationships( nodeId, position, getRelGrabSize(), getRelationshipStore() );
+        return getMoreRelationships( nodeId, position, loadedBatches, getRelGrabSize(), getRelationshipStore() );
     }
 
-    static Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> getMoreRelationships(
-            long nodeId, long position, int grabSize, RelationshipStore relStore )
+    static RelationshipChainBatch getMoreRelationships( long nodeId, long position, int loadedBatches,
+            int grabSize, RelationshipStore relStore )
     {
-        // initialCapacity=grabSize saves the lists the trouble of resizing
-        List<RelationshipRecord> out = new ArrayList<RelationshipRecord>();
-        List<RelationshipRecord> in = new ArrayList<RelationshipRecord>();
-        List<RelationshipRecord> loop = null;
-        Map<DirectionWrapper, Iterable<RelationshipRecord>> result =
-            new EnumMap<DirectionWrapper, Iterable<RelationshipRecord>>( DirectionWrapper.class );
-        result.put( DirectionWrapper.OUTGOING, out );
-        result.put( DirectionWrapper.INCOMING, in );
-        for ( int i = 0; i < grabSize &&
-            position != Record.NO_NEXT_RELATIONSHIP.intValue(); i++ )
-        {
-            RelationshipRecord relRecord = relStore.getChainRecord( position );
-            if ( relRecord == null )
-            {
-                // return what we got so far
-                return Pair.of( result, position );
-            }
-            long firstNode = relRecord.getFirstNode();
-            long secondNode = relRecord.getSecondNode();
-            if ( relRecord.inUse() )
-            {
-                if ( firstNode == secondNode )
-                {
-                    if ( loop == null )
-                    {
-                        // This is done lazily because loops are probably quite
-                        // rarely encountered
-                        loop = new ArrayList<RelationshipRecord>();
-                        result.put( DirectionWrapper.BOTH, loop );
-                    }
-                    loop.add( relRecord );
-                }
-                else if ( firstNode == nodeId )
-                {
-                    out.add( relRecord );
-                }
-                else if ( secondNode == nodeId )
-                {
-                    in.add( relRecord );
-                }
-            }
-            else
-            {
-                i--;
-            }
+        return relStore.getMoreRelationships( nodeId, position, adaptGrabSize( grabSize, loadedBatches ) );
+    }
 
-            if ( firstNode == nodeId )
-            {
-                position = relRecord.getFirstNextRel();
-            }
-            else if ( secondNode == nodeId )
-            {
-                position = relRecord.getSecondNextRel();
-            }
-            else
-            {
-                throw new InvalidRecordException( "Node[" + nodeId +
-                    "] is neither firstNode[" + firstNode +
-                    "] nor secondNode[" + secondNode + "] for Relationship[" + relRecord.getId() + "]" );
-            }
+    @Override
+    public List<RelationshipGroupRecord> getRelationshipGroups( long nodeId )
+    {
+        return getRelationshipGroups( nodeId, neoStore );
+    }
+
+    @Override
+    public RelationshipChainBatch getRelationshipGroupChains( long nodeId, long groupId )
+    {
+        return getRelationshipGroupChains( nodeId, groupId, neoStore );
+    }
+
+    @Override
+    public boolean nodeScan( long fromId, long toId, Visitor<NodeRecord> visitor )
+    {
+        return getNodeStore().scan( fromId, toId, visitor );
+    }
+
+    @Override
+    public boolean relScan( long fromId, long toId, Visitor<RelationshipRecord> visitor )
+    {
+        return getRelationshipStore().scan( fromId, toId, visitor );
+    }
+
+    static List<RelationshipGroupRecord> getRelationshipGroups( long nodeId, NeoStore neoStore )
+    {
+        NodeRecord node = neoStore.getNodeStore().getRecord( nodeId );
+        if ( !node.isDense() )
+        {
+            return Collections.emptyList();
         }
-        return Pair.of( result, position );
+        return neoStore.getRelationshipGroupStore().getGroups( node.getNextRel() );
+    }
+
+    static RelationshipChainBatch getRelationshipGroupChains( long nodeId, long groupId, NeoStore neoStore )
+    {
+        // Read the group again, its chains may have changed since the groups
+        // of the node were loaded
+        RelationshipGroupRecord group = neoStore.getRelationshipGroupStore().getRecord( groupId );
+        return neoStore.getRelationshipStore().getRelationshipChains( nodeId, group.getFirstOut(),
+                group.getFirstIn(), group.getFirstLoop() );
+    }
+
+    /**
+     * A node that needs more than one batch to load its relationships is
+     * likely to have a lot of them, so the grab size doubles for every batch
+     * already loaded, up to {@code 2^MAX_GRAB_SIZE_DOUBLINGS} times the
+     * configured grab size.
+     */
+    static int adaptGrabSize( int grabSize, int loadedBatches )
+    {
+        int doublings = Math.min( Math.max( loadedBatches, 0 ), MAX_GRAB_SIZE_DOUBLINGS );
+        return (int) Math.min( (long) grabSize << doublings, Integer.MAX_VALUE );
     }
 
     static List<PropertyRecord> getPropertyRecordChain(
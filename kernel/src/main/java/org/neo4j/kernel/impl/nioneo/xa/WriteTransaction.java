@@ -37,7 +37,7 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
-import org.neo4j.helpers.Pair;
+import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.impl.core.LockReleaser;
 import org.neo4j.kernel.impl.core.PropertyIndex;
 import org.neo4j.kernel.impl.nioneo.store.DynamicRecord;
@@ -56,6 +56,9 @@ import org.neo4j.kernel.impl.nioneo.store.PropertyRecord;
 import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
 import org.neo4j.kernel.impl.nioneo.store.PropertyType;
 import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipChainBatch;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupRecord;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupStore;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipTypeRecord;
@@ -85,6 +88,7 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
     private final Map<Long,RelationshipRecord> relRecords = new HashMap<Long,RelationshipRecord>();
     private Map<Integer,RelationshipTypeRecord> relTypeRecords;
     private Map<Integer,PropertyIndexRecord> propIndexRecords;
+    private Map<Long,RelationshipGroupRecord> relGroupRecords;
     private NeoStoreRecord neoStoreRecord;
 
     private final ArrayList<Command.NodeCommand> nodeCommands = new ArrayList<Command.NodeCommand>();
@@ -92,6 +96,8 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
     private final ArrayList<Command.RelationshipCommand> relCommands = new ArrayList<Command.RelationshipCommand>();
     private ArrayList<Command.RelationshipTypeCommand> relTypeCommands;
     private ArrayList<Command.PropertyIndexCommand> propIndexCommands;
+    private final ArrayList<Command.RelationshipGroupCommand> relGroupCommands =
+            new ArrayList<Command.RelationshipGroupCommand>();
     private Command.NeoStoreCommand neoStoreCommand;
 
     private final NeoStore neoStore;
@@ -118,11 +124,11 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
         {
             return nodeCommands.size() == 0 && propCommands.size() == 0 &&
                 relCommands.size() == 0 && relTypeCommands == null &&
-                propIndexCommands == null;
+                propIndexCommands == null && relGroupCommands.size() == 0;
         }
         return nodeRecords.size() == 0 && relRecords.size() == 0 &&
             propertyRecords.size() == 0 && relTypeRecords == null &&
-            propIndexRecords == null;
+            propIndexRecords == null && relGroupRecords == null;
     }
 
     @Override
@@ -134,11 +140,19 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
     @Override
     protected void doPrepare() throws XAException
     {
+        for ( NodeRecord record : nodeRecords.values() )
+        {
+            if ( !record.inUse() && record.isDense() )
+            {
+                deleteRelationshipGroups( record );
+            }
+        }
         int noOfCommands = nodeRecords.size() +
                            relRecords.size() +
                            propertyRecords.size() +
                            (propIndexRecords != null ? propIndexRecords.size() : 0) +
-                           (relTypeRecords != null ? relTypeRecords.size() : 0);
+                           (relTypeRecords != null ? relTypeRecords.size() : 0) +
+                           (relGroupRecords != null ? relGroupRecords.size() : 0);
         List<Command> commands = new ArrayList<Command>( noOfCommands );
         if ( committed )
         {
@@ -196,6 +210,17 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
             }
             commands.add( command );
         }
+        if ( relGroupRecords != null )
+        {
+            for ( RelationshipGroupRecord record : relGroupRecords.values() )
+            {
+                Command.RelationshipGroupCommand command =
+                    new Command.RelationshipGroupCommand(
+                        neoStore.getRelationshipGroupStore(), record );
+                relGroupCommands.add( command );
+                commands.add( command );
+            }
+        }
         if ( neoStoreRecord != null )
         {
             neoStoreCommand = new Command.NeoStoreCommand( neoStore, neoStoreRecord );
@@ -261,6 +286,10 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
             if ( relTypeCommands == null ) relTypeCommands = new ArrayList<Command.RelationshipTypeCommand>();
             relTypeCommands.add( (Command.RelationshipTypeCommand) xaCommand );
         }
+        else if ( xaCommand instanceof Command.RelationshipGroupCommand )
+        {
+            relGroupCommands.add( (Command.RelationshipGroupCommand) xaCommand );
+        }
         else if ( xaCommand instanceof Command.NeoStoreCommand )
         {
             assert neoStoreCommand == null;
@@ -316,6 +345,14 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
                 }
                 removeRelationshipFromCache( record.getId() );
             }
+            if ( relGroupRecords != null ) for ( RelationshipGroupRecord record : relGroupRecords.values() )
+            {
+                if ( freeIds && record.isCreated() )
+                {
+                    getRelationshipGroupStore().freeId( record.getId() );
+                }
+                removeNodeFromCache( record.getOwningNode() );
+            }
             if ( neoStoreRecord != null )
             {
                 removeGraphPropertiesFromCache();
@@ -463,10 +500,11 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
             java.util.Collections.sort( nodeCommands, sorter );
             java.util.Collections.sort( relCommands, sorter );
             java.util.Collections.sort( propCommands, sorter );
-            executeCreated( propCommands, relCommands, nodeCommands );
-            executeModified( propCommands, relCommands, nodeCommands );
+            java.util.Collections.sort( relGroupCommands, sorter );
+            executeCreated( propCommands, relCommands, relGroupCommands, nodeCommands );
+            executeModified( propCommands, relCommands, relGroupCommands, nodeCommands );
             if ( neoStoreCommand != null ) neoStoreCommand.execute();
-            executeDeleted( propCommands, relCommands, nodeCommands );
+            executeDeleted( propCommands, relCommands, relGroupCommands, nodeCommands );
             updateFirstRelationships();
             lockReleaser.commitCows(); // updates the cached primitives
             neoStore.setLastCommittedTx( getCommitTxId() );
@@ -572,6 +610,13 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
                     removeNodeFromCache( command.getSecondNode() );
                 }
             }
+            // relationship groups
+            java.util.Collections.sort( relGroupCommands, sorter );
+            for ( Command.RelationshipGroupCommand command : relGroupCommands )
+            {
+                command.execute();
+                removeNodeFromCache( command.getOwningNode() );
+            }
             // nodes
             java.util.Collections.sort( nodeCommands, sorter );
             for ( Command.NodeCommand command : nodeCommands )
@@ -608,6 +653,7 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
         relRecords.clear();
         if ( relTypeRecords != null ) relTypeRecords.clear();
         if ( propIndexRecords != null ) propIndexRecords.clear();
+        if ( relGroupRecords != null ) relGroupRecords.clear();
         neoStoreRecord = null;
 
         nodeCommands.clear();
@@ -615,6 +661,7 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
         if ( propIndexCommands != null ) propIndexCommands.clear();
         relCommands.clear();
         if ( relTypeCommands != null ) relTypeCommands.clear();
+        relGroupCommands.clear();
         neoStoreCommand = null;
     }
 
@@ -659,6 +706,11 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
         return neoStore.getPropertyStore();
     }
 
+    private RelationshipGroupStore getRelationshipGroupStore()
+    {
+        return neoStore.getRelationshipGroupStore();
+    }
+
     @Override
     public NodeRecord nodeLoadLight( long nodeId )
     {
@@ -917,10 +969,34 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
         return getNodeStore().getRecord( nodeId ).getNextRel();
     }
 
-    public Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> getMoreRelationships( long nodeId,
-        long position )
+    public RelationshipChainBatch getMoreRelationships( long nodeId, long position, int loadedBatches )
+    {
+        return ReadTransaction.getMoreRelationships( nodeId, position, loadedBatches, getRelGrabSize(),
+                getRelationshipStore() );
+    }
+
+    @Override
+    public List<RelationshipGroupRecord> getRelationshipGroups( long nodeId )
+    {
+        return ReadTransaction.getRelationshipGroups( nodeId, neoStore );
+    }
+
+    @Override
+    public RelationshipChainBatch getRelationshipGroupChains( long nodeId, long groupId )
+    {
+        return ReadTransaction.getRelationshipGroupChains( nodeId, groupId, neoStore );
+    }
+
+    @Override
+    public boolean nodeScan( long fromId, long toId, Visitor<NodeRecord> visitor )
+    {
+        return getNodeStore().scan( fromId, toId, visitor );
+    }
+
+    @Override
+    public boolean relScan( long fromId, long toId, Visitor<RelationshipRecord> visitor )
     {
-        return ReadTransaction.getMoreRelationships( nodeId, position, getRelGrabSize(), getRelationshipStore() );
+        return getRelationshipStore().scan( fromId, toId, visitor );
     }
 
     private void updateNodes( RelationshipRecord rel )
@@ -933,7 +1009,7 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
                 firstNode = getNodeStore().getRecord( rel.getFirstNode() );
                 addNodeRecord( firstNode );
             }
-            firstNode.setNextRel( rel.getFirstNextRel() );
+            setFirstRel( firstNode, getRelationshipGroup( firstNode, rel ), rel, rel.getFirstNextRel() );
         }
         if ( rel.getSecondPrevRel() == Record.NO_PREV_RELATIONSHIP.intValue() )
         {
@@ -943,10 +1019,116 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
                 secondNode = getNodeStore().getRecord( rel.getSecondNode() );
                 addNodeRecord( secondNode );
             }
-            secondNode.setNextRel( rel.getSecondNextRel() );
+            setFirstRel( secondNode, getRelationshipGroup( secondNode, rel ), rel, rel.getSecondNextRel() );
         }
     }
 
+    /**
+     * Returns the group of {@code node} that {@code rel} belongs in, creating
+     * it if there's none for that type yet, or {@code null} if the node isn't
+     * dense and so keeps all its relationships in one chain.
+     */
+    private RelationshipGroupRecord getRelationshipGroup( NodeRecord node, RelationshipRecord rel )
+    {
+        if ( !node.isDense() )
+        {
+            return null;
+        }
+        long groupId = node.getNextRel();
+        while ( groupId != Record.NO_NEXT_RELATIONSHIP.intValue() )
+        {
+            RelationshipGroupRecord group = getRelationshipGroupRecord( groupId );
+            if ( group == null )
+            {
+                group = getRelationshipGroupStore().getRecord( groupId );
+            }
+            if ( group.getType() == rel.getType() )
+            {
+                addRelationshipGroupRecord( group );
+                return group;
+            }
+            groupId = group.getNext();
+        }
+        RelationshipGroupRecord group = new RelationshipGroupRecord(
+            getRelationshipGroupStore().nextId(), rel.getType() );
+        group.setInUse( true );
+        group.setCreated();
+        group.setOwningNode( node.getId() );
+        group.setNext( node.getNextRel() );
+        node.setNextRel( group.getId() );
+        addRelationshipGroupRecord( group );
+        return group;
+    }
+
+    /**
+     * Returns the first relationship of the chain of {@code node} that
+     * {@code rel} belongs in, given the group returned by
+     * {@link #getRelationshipGroup(NodeRecord, RelationshipRecord)}.
+     */
+    private static long getFirstRel( NodeRecord node, RelationshipGroupRecord group, RelationshipRecord rel )
+    {
+        if ( group == null )
+        {
+            return node.getNextRel();
+        }
+        if ( rel.getFirstNode() == rel.getSecondNode() )
+        {
+            return group.getFirstLoop();
+        }
+        return rel.getFirstNode() == node.getId() ? group.getFirstOut() : group.getFirstIn();
+    }
+
+    private static void setFirstRel( NodeRecord node, RelationshipGroupRecord group, RelationshipRecord rel,
+            long firstRel )
+    {
+        if ( group == null )
+        {
+            node.setNextRel( firstRel );
+        }
+        else if ( rel.getFirstNode() == rel.getSecondNode() )
+        {
+            group.setFirstLoop( firstRel );
+        }
+        else if ( rel.getFirstNode() == node.getId() )
+        {
+            group.setFirstOut( firstRel );
+        }
+        else
+        {
+            group.setFirstIn( firstRel );
+        }
+    }
+
+    /**
+     * Deletes the groups of a deleted dense node, unless there are
+     * relationships left in any of them in which case the node is left as is,
+     * to fail the transaction when prepared.
+     */
+    private void deleteRelationshipGroups( NodeRecord node )
+    {
+        List<RelationshipGroupRecord> groups = new ArrayList<RelationshipGroupRecord>();
+        for ( long groupId = node.getNextRel(); groupId != Record.NO_NEXT_RELATIONSHIP.intValue(); )
+        {
+            RelationshipGroupRecord group = getRelationshipGroupRecord( groupId );
+            if ( group == null )
+            {
+                group = getRelationshipGroupStore().getRecord( groupId );
+            }
+            if ( !group.isEmpty() )
+            {
+                return;
+            }
+            groups.add( group );
+            groupId = group.getNext();
+        }
+        for ( RelationshipGroupRecord group : groups )
+        {
+            group.setInUse( false );
+            addRelationshipGroupRecord( group );
+        }
+        node.setNextRel( Record.NO_NEXT_RELATIONSHIP.intValue() );
+    }
+
     @Override
     public void relRemoveProperty( long relId, PropertyData propertyData )
     {
@@ -1385,26 +1567,31 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
     private void connectRelationship( NodeRecord firstNode,
         NodeRecord secondNode, RelationshipRecord rel )
     {
-        assert firstNode.getNextRel() != rel.getId();
-        assert secondNode.getNextRel() != rel.getId();
-        rel.setFirstNextRel( firstNode.getNextRel() );
-        rel.setSecondNextRel( secondNode.getNextRel() );
-        connect( firstNode, rel );
-        connect( secondNode, rel );
-        firstNode.setNextRel( rel.getId() );
-        secondNode.setNextRel( rel.getId() );
+        // Dense nodes have their own chain per relationship type and direction
+        RelationshipGroupRecord firstGroup = getRelationshipGroup( firstNode, rel );
+        RelationshipGroupRecord secondGroup = getRelationshipGroup( secondNode, rel );
+        long firstNextRel = getFirstRel( firstNode, firstGroup, rel );
+        long secondNextRel = getFirstRel( secondNode, secondGroup, rel );
+        assert firstNextRel != rel.getId();
+        assert secondNextRel != rel.getId();
+        rel.setFirstNextRel( firstNextRel );
+        rel.setSecondNextRel( secondNextRel );
+        connect( firstNode, firstNextRel, rel );
+        connect( secondNode, secondNextRel, rel );
+        setFirstRel( firstNode, firstGroup, rel, rel.getId() );
+        setFirstRel( secondNode, secondGroup, rel, rel.getId() );
     }
 
-    private void connect( NodeRecord node, RelationshipRecord rel )
+    private void connect( NodeRecord node, long firstRel, RelationshipRecord rel )
     {
-        if ( node.getNextRel() != Record.NO_NEXT_RELATIONSHIP.intValue() )
+        if ( firstRel != Record.NO_NEXT_RELATIONSHIP.intValue() )
         {
-            Relationship lockableRel = new LockableRelationship( node.getNextRel() );
+            Relationship lockableRel = new LockableRelationship( firstRel );
             getWriteLock( lockableRel );
-            RelationshipRecord nextRel = getRelationshipRecord( node.getNextRel() );
+            RelationshipRecord nextRel = getRelationshipRecord( firstRel );
             if ( nextRel == null )
             {
-                nextRel = getRelationshipStore().getRecord( node.getNextRel() );
+                nextRel = getRelationshipStore().getRecord( firstRel );
                 addRelationshipRecord( nextRel );
             }
             boolean changed = false;
@@ -1592,6 +1779,17 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
         propIndexRecords.put( record.getId(), record );
     }
 
+    void addRelationshipGroupRecord( RelationshipGroupRecord record )
+    {
+        if ( relGroupRecords == null ) relGroupRecords = new HashMap<Long, RelationshipGroupRecord>();
+        relGroupRecords.put( record.getId(), record );
+    }
+
+    RelationshipGroupRecord getRelationshipGroupRecord( long id )
+    {
+        return relGroupRecords != null ? relGroupRecords.get( id ) : null;
+    }
+
     PropertyIndexRecord getPropertyIndexRecord( int id )
     {
         return propIndexRecords.get( id );
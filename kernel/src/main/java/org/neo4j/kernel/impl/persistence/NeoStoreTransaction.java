@@ -19,21 +19,22 @@
  */
 package org.neo4j.kernel.impl.persistence;
 
-import java.util.Map;
+import java.util.List;
 
 import javax.transaction.SystemException;
 import javax.transaction.Transaction;
 
-import org.neo4j.helpers.Pair;
+import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.impl.core.PropertyIndex;
 import org.neo4j.kernel.impl.nioneo.store.NameData;
 import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
 import org.neo4j.kernel.impl.nioneo.store.PropertyData;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipChainBatch;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.transaction.xaframework.XaConnection;
 import org.neo4j.kernel.impl.util.ArrayMap;
 import org.neo4j.kernel.impl.util.RelIdArray;
-import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
 
 /**
  * A connection to a {@link PersistenceSource}. <CODE>ResourceConnection</CODE>
@@ -288,16 +289,40 @@ public interface NeoStoreTransaction
     public long getRelationshipChainPosition( long nodeId );
 
     /*
-     * List<Iterable<RelationshipRecord>> is a list with three items:
-     * 0: outgoing relationships
-     * 1: incoming relationships
-     * 2: loop relationships
+     * Loads the next batch of relationships from the chain of the node,
+     * starting at position. loadedBatches is the number of batches already
+     * loaded for the node, nodes with many relationships get bigger batches.
      *
-     * Long is the relationship chain position as it stands after this
-     * batch of relationships has been loaded.
+     * The batch also holds the relationship chain position as it stands after
+     * this batch of relationships has been loaded.
      */
-    public Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> getMoreRelationships(
-            long nodeId, long position );
+    public RelationshipChainBatch getMoreRelationships( long nodeId, long position, int loadedBatches );
+
+    /*
+     * Returns the relationship groups of a dense node, one per relationship
+     * type, or an empty list if the node isn't dense.
+     */
+    public List<RelationshipGroupRecord> getRelationshipGroups( long nodeId );
+
+    /*
+     * Loads all relationships of the node from the outgoing, incoming and
+     * loop chains of one of its relationship groups.
+     */
+    public RelationshipChainBatch getRelationshipGroupChains( long nodeId, long groupId );
+
+    /*
+     * Visits the committed node records in use with ids from fromId
+     * (inclusive) to toId (exclusive), in id order, straight off the store.
+     * Returns true if the visitor terminated the scan.
+     */
+    public boolean nodeScan( long fromId, long toId, Visitor<NodeRecord> visitor );
+
+    /*
+     * Visits the committed relationship records in use with ids from fromId
+     * (inclusive) to toId (exclusive), in id order, straight off the store.
+     * Returns true if the visitor terminated the scan.
+     */
+    public boolean relScan( long fromId, long toId, Visitor<RelationshipRecord> visitor );
 
     /**
      * Returns an array view of the ids of the nodes that have been created in
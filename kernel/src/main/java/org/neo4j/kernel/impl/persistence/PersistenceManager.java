@@ -19,7 +19,7 @@
  */
 package org.neo4j.kernel.impl.persistence;
 
-import java.util.Map;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,7 +33,7 @@ import javax.transaction.xa.XAResource;
 
 import org.neo4j.graphdb.NotInTransactionException;
 import org.neo4j.graphdb.TransactionFailureException;
-import org.neo4j.helpers.Pair;
+import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.impl.core.LockReleaser;
 import org.neo4j.kernel.impl.core.PropertyIndex;
 import org.neo4j.kernel.impl.core.TransactionEventsSyncHook;
@@ -41,12 +41,13 @@ import org.neo4j.kernel.impl.core.TxEventSyncHookFactory;
 import org.neo4j.kernel.impl.nioneo.store.NameData;
 import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
 import org.neo4j.kernel.impl.nioneo.store.PropertyData;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipChainBatch;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.nioneo.xa.NioNeoDbPersistenceSource;
 import org.neo4j.kernel.impl.transaction.xaframework.XaConnection;
 import org.neo4j.kernel.impl.util.ArrayMap;
 import org.neo4j.kernel.impl.util.RelIdArray;
-import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
 
 public class PersistenceManager
 {
@@ -102,10 +103,29 @@ public class PersistenceManager
         return getReadOnlyResourceIfPossible().getRelationshipChainPosition( nodeId );
     }
 
-    public Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> getMoreRelationships(
-            long nodeId, long position )
+    public RelationshipChainBatch getMoreRelationships( long nodeId, long position, int loadedBatches )
     {
-        return getReadOnlyResource().getMoreRelationships( nodeId, position );
+        return getReadOnlyResource().getMoreRelationships( nodeId, position, loadedBatches );
+    }
+
+    public boolean nodeScan( long fromId, long toId, Visitor<NodeRecord> visitor )
+    {
+        return getReadOnlyResource().nodeScan( fromId, toId, visitor );
+    }
+
+    public boolean relScan( long fromId, long toId, Visitor<RelationshipRecord> visitor )
+    {
+        return getReadOnlyResource().relScan( fromId, toId, visitor );
+    }
+
+    public List<RelationshipGroupRecord> getRelationshipGroups( long nodeId )
+    {
+        return getReadOnlyResourceIfPossible().getRelationshipGroups( nodeId );
+    }
+
+    public RelationshipChainBatch getRelationshipGroupChains( long nodeId, long groupId )
+    {
+        return getReadOnlyResource().getRelationshipGroupChains( nodeId, groupId );
     }
 
     public ArrayMap<Integer,PropertyData> loadNodeProperties( long nodeId, boolean light )
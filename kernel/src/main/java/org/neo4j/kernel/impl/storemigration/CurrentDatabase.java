@@ -36,12 +36,15 @@ import org.neo4j.kernel.impl.nioneo.store.NeoStore;
 import org.neo4j.kernel.impl.nioneo.store.NodeStore;
 import org.neo4j.kernel.impl.nioneo.store.PropertyIndexStore;
 import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupStore;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipTypeStore;
 
 public class CurrentDatabase
 {
     private Map<String, String> fileNamesToTypeDescriptors = new HashMap<String, String>();
+    // Only stores with dense nodes have a relationship group store
+    private static final String OPTIONAL_FILE_NAME = "neostore.relationshipgroupstore.db";
 
     public CurrentDatabase()
     {
@@ -55,6 +58,7 @@ public class CurrentDatabase
         fileNamesToTypeDescriptors.put( "neostore.relationshipstore.db", RelationshipStore.TYPE_DESCRIPTOR );
         fileNamesToTypeDescriptors.put( "neostore.relationshiptypestore.db", RelationshipTypeStore.TYPE_DESCRIPTOR );
         fileNamesToTypeDescriptors.put( "neostore.relationshiptypestore.db.names", DynamicStringStore.TYPE_DESCRIPTOR );
+        fileNamesToTypeDescriptors.put( OPTIONAL_FILE_NAME, RelationshipGroupStore.TYPE_DESCRIPTOR );
     }
 
     public boolean storeFilesAtCurrentVersion( File storeDirectory )
@@ -69,6 +73,10 @@ public class CurrentDatabase
                 File storeFile = new File( storeDirectory, fileName );
                 if ( !storeFile.exists() )
                 {
+                    if ( fileName.equals( OPTIONAL_FILE_NAME ) )
+                    {
+                        continue;
+                    }
                     return false;
                 }
                 fileChannel = new RandomAccessFile( storeFile, "r" ).getChannel();
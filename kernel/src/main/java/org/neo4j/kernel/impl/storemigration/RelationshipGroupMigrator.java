@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.storemigration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.IdGeneratorFactory;
+import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
+import org.neo4j.kernel.impl.nioneo.store.NeoStore;
+import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
+import org.neo4j.kernel.impl.nioneo.store.NodeStore;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupRecord;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupStore;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
+import org.neo4j.kernel.impl.nioneo.store.StoreFactory;
+import org.neo4j.kernel.impl.storemigration.monitoring.MigrationProgressMonitor;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * Converts the nodes of a store that have at least a given number of
+ * relationships into dense nodes, which keep their relationships in one
+ * {@link RelationshipGroupRecord group} per relationship type and direction
+ * instead of in a single chain. Getting the relationships of one type from
+ * such a node only needs to read the relationships of that type.
+ * <p>
+ * Stores don't have dense nodes unless asked for with
+ * {@link Config#DENSE_NODE_THRESHOLD}, since the dense flag takes one bit of
+ * the property id of node records. Stores are migrated by the
+ * {@link StoreUpgrader#attemptDenseNodeMigration(String, RelationshipGroupMigrator)
+ * store upgrader} the first time they are started with it.
+ */
+public class RelationshipGroupMigrator
+{
+    private static final int OUT = 0, IN = 1, LOOP = 2;
+
+    private final int denseNodeThreshold;
+    private final MigrationProgressMonitor progressMonitor;
+
+    public RelationshipGroupMigrator( int denseNodeThreshold, MigrationProgressMonitor progressMonitor )
+    {
+        if ( denseNodeThreshold < 1 )
+        {
+            throw new IllegalArgumentException( "Invalid dense node threshold " + denseNodeThreshold );
+        }
+        this.denseNodeThreshold = denseNodeThreshold;
+        this.progressMonitor = progressMonitor;
+    }
+
+    /**
+     * Migrates the cleanly shut down store {@code neoStoreFileName} in place,
+     * adding the relationship group store if it doesn't have one.
+     *
+     * @return the number of nodes that were made dense.
+     */
+    public long migrate( String neoStoreFileName, Map<String, String> config,
+            IdGeneratorFactory idGeneratorFactory, FileSystemAbstraction fileSystemAbstraction )
+    {
+        Map<String, String> migrationConfig = new HashMap<String, String>( config );
+        migrationConfig.remove( Config.DENSE_NODE_THRESHOLD );
+        StoreFactory storeFactory = new StoreFactory( migrationConfig, idGeneratorFactory, fileSystemAbstraction,
+                null, StringLogger.DEV_NULL, null );
+        if ( !fileSystemAbstraction.fileExists( neoStoreFileName + ".relationshipgroupstore.db" ) )
+        {
+            storeFactory.createRelationshipGroupStore( neoStoreFileName );
+        }
+        NeoStore neoStore = storeFactory.newNeoStore( neoStoreFileName );
+        try
+        {
+            if ( !neoStore.hasDenseNodes() )
+            {
+                neoStore.enableDenseNodes();
+            }
+            return migrate( neoStore );
+        }
+        catch ( IllegalStateException e )
+        {
+            throw new StoreUpgrader.UnableToUpgradeException( e );
+        }
+        finally
+        {
+            neoStore.close();
+        }
+    }
+
+    private long migrate( NeoStore neoStore )
+    {
+        NodeStore nodeStore = neoStore.getNodeStore();
+        long migrated = 0;
+        long highId = nodeStore.getHighestPossibleIdInUse();
+        int percentComplete = 0;
+        progressMonitor.started();
+        for ( long nodeId = 0; nodeId <= highId; nodeId++ )
+        {
+            NodeRecord node = nodeStore.forceGetRecord( nodeId );
+            if ( node.inUse() && !node.isDense() && degree( neoStore, node ) >= denseNodeThreshold )
+            {
+                makeDense( neoStore, node );
+                migrated++;
+            }
+            int newPercent = (int) ((nodeId + 1) * 100 / (highId + 1));
+            if ( newPercent > percentComplete )
+            {
+                percentComplete = newPercent;
+                progressMonitor.percentComplete( percentComplete );
+            }
+        }
+        progressMonitor.finished();
+        return migrated;
+    }
+
+    private int degree( NeoStore neoStore, NodeRecord node )
+    {
+        RelationshipStore relStore = neoStore.getRelationshipStore();
+        int degree = 0;
+        for ( long relId = node.getNextRel(); relId != Record.NO_NEXT_RELATIONSHIP.intValue()
+                && degree < denseNodeThreshold; degree++ )
+        {
+            relId = nextRel( node.getId(), relStore.getRecord( relId ) );
+        }
+        return degree;
+    }
+
+    private void makeDense( NeoStore neoStore, NodeRecord node )
+    {
+        long nodeId = node.getId();
+        RelationshipStore relStore = neoStore.getRelationshipStore();
+        SortedMap<Integer,List<RelationshipRecord>[]> chains = new TreeMap<Integer,List<RelationshipRecord>[]>();
+        for ( long relId = node.getNextRel(); relId != Record.NO_NEXT_RELATIONSHIP.intValue(); )
+        {
+            RelationshipRecord rel = relStore.getRecord( relId );
+            List<RelationshipRecord>[] typeChains = chains.get( rel.getType() );
+            if ( typeChains == null )
+            {
+                typeChains = newChains();
+                chains.put( rel.getType(), typeChains );
+            }
+            typeChains[direction( nodeId, rel )].add( rel );
+            relId = nextRel( nodeId, rel );
+        }
+
+        RelationshipGroupStore groupStore = neoStore.getRelationshipGroupStore();
+        RelationshipGroupRecord previous = null;
+        for ( Map.Entry<Integer,List<RelationshipRecord>[]> entry : chains.entrySet() )
+        {
+            RelationshipGroupRecord group = new RelationshipGroupRecord( groupStore.nextId(), entry.getKey() );
+            group.setInUse( true );
+            group.setOwningNode( nodeId );
+            List<RelationshipRecord>[] typeChains = entry.getValue();
+            group.setFirstOut( relink( relStore, nodeId, typeChains[OUT] ) );
+            group.setFirstIn( relink( relStore, nodeId, typeChains[IN] ) );
+            group.setFirstLoop( relink( relStore, nodeId, typeChains[LOOP] ) );
+            if ( previous == null )
+            {
+                node.setNextRel( group.getId() );
+            }
+            else
+            {
+                previous.setNext( group.getId() );
+                groupStore.updateRecord( previous );
+            }
+            previous = group;
+        }
+        groupStore.updateRecord( previous );
+        node.setDense( true );
+        neoStore.getNodeStore().updateRecord( node );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static List<RelationshipRecord>[] newChains()
+    {
+        return new List[] { new ArrayList<RelationshipRecord>(), new ArrayList<RelationshipRecord>(),
+                new ArrayList<RelationshipRecord>() };
+    }
+
+    private static int direction( long nodeId, RelationshipRecord rel )
+    {
+        if ( rel.getFirstNode() == nodeId )
+        {
+            return rel.getSecondNode() == nodeId ? LOOP : OUT;
+        }
+        return IN;
+    }
+
+    private static long nextRel( long nodeId, RelationshipRecord rel )
+    {
+        return rel.getFirstNode() == nodeId ? rel.getFirstNextRel() : rel.getSecondNextRel();
+    }
+
+    /**
+     * Links the relationships of one chain together on the side of the given
+     * node, leaving the side of the other node as is.
+     *
+     * @return the id of the first relationship in the chain.
+     */
+    private static long relink( RelationshipStore relStore, long nodeId, List<RelationshipRecord> chain )
+    {
+        long noRel = Record.NO_NEXT_RELATIONSHIP.intValue();
+        for ( int i = 0; i < chain.size(); i++ )
+        {
+            RelationshipRecord rel = chain.get( i );
+            long prev = i > 0 ? chain.get( i - 1 ).getId() : Record.NO_PREV_RELATIONSHIP.intValue();
+            long next = i < chain.size() - 1 ? chain.get( i + 1 ).getId() : noRel;
+            if ( rel.getFirstNode() == nodeId )
+            {
+                rel.setFirstPrevRel( prev );
+                rel.setFirstNextRel( next );
+            }
+            if ( rel.getSecondNode() == nodeId )
+            {
+                rel.setSecondPrevRel( prev );
+                rel.setSecondNextRel( next );
+            }
+            relStore.updateRecord( rel );
+        }
+        return chain.isEmpty() ? noRel : chain.get( 0 ).getId();
+    }
+}
@@ -38,6 +38,7 @@ public class StoreFiles
             "neostore.relationshipstore.db",
             "neostore.relationshiptypestore.db",
             "neostore.relationshiptypestore.db.names",
+            "neostore.relationshipgroupstore.db",
     };
 
     /**
@@ -55,11 +56,40 @@ public class StoreFiles
         // TODO: change the order that files are moved to handle failure conditions properly
         for ( String fileName : fileNames )
         {
+            // Stores of earlier versions don't have all of the files
+            if ( !new File( fromDirectory, fileName ).exists() )
+            {
+                continue;
+            }
             moveFile( fileName, fromDirectory, toDirectory );
             moveFile( fileName + ".id", fromDirectory, toDirectory );
         }
     }
 
+    /**
+     * Copies a database's store files, along with their id files, from one
+     * directory to another.
+     *
+     * @param fromDirectory The directory that hosts the database files.
+     * @param toDirectory The directory to copy the database files to.
+     * @throws IOException If any of the copy operations fail for any reason.
+     */
+    public static void copy( File fromDirectory, File toDirectory )
+            throws IOException
+    {
+        for ( String fileName : fileNames )
+        {
+            File file = new File( fromDirectory, fileName );
+            if ( !file.exists() )
+            {
+                continue;
+            }
+            FileUtils.copyFile( file, new File( toDirectory, fileName ) );
+            FileUtils.copyFile( new File( fromDirectory, fileName + ".id" ),
+                    new File( toDirectory, fileName + ".id" ) );
+        }
+    }
+
     /**
      * Moves a file from one directory to another, by a rename op.
      *
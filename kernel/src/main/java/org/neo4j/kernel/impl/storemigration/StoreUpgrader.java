@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.neo4j.kernel.Config;
 import org.neo4j.kernel.IdGeneratorFactory;
 import org.neo4j.kernel.impl.nioneo.store.StoreFactory;
 import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
@@ -71,6 +72,38 @@ public class StoreUpgrader
         databaseFiles.moveToWorkingDirectory( upgradeDirectory, workingDirectory );
     }
 
+    /**
+     * Migrates a store of the current version to have dense nodes, see
+     * {@link RelationshipGroupMigrator}. Like an upgrade, a copy of the store
+     * is migrated and the original store files are kept, in a backup
+     * directory of their own.
+     */
+    public void attemptDenseNodeMigration( String storageFileName, RelationshipGroupMigrator relationshipGroupMigrator )
+    {
+        upgradeConfiguration.checkConfigurationAllowsAutomaticUpgrade();
+
+        File workingDirectory = new File( storageFileName ).getParentFile();
+        File upgradeDirectory = new File( workingDirectory, "upgrade" );
+        File backupDirectory = new File( workingDirectory, "dense_nodes_backup" );
+
+        prepareUpgradeDirectory( upgradeDirectory );
+        String upgradeFileName = new File( upgradeDirectory, NeoStore.DEFAULT_NAME ).getPath();
+        try
+        {
+            StoreFiles.copy( workingDirectory, upgradeDirectory );
+        }
+        catch ( IOException e )
+        {
+            throw new UnableToUpgradeException( e );
+        }
+        relationshipGroupMigrator.migrate( upgradeFileName, upgradeConfig( upgradeFileName ), idGeneratorFactory,
+                fileSystemAbstraction );
+
+        databaseFiles.moveToBackupDirectory( workingDirectory, backupDirectory );
+        backupMessagesLogLeavingInPlaceForNewDatabaseMessages( workingDirectory, backupDirectory );
+        databaseFiles.moveToWorkingDirectory( upgradeDirectory, workingDirectory );
+    }
+
     private void backupMessagesLogLeavingInPlaceForNewDatabaseMessages( File workingDirectory, File backupDirectory )
     {
         try
@@ -86,23 +119,10 @@ public class StoreUpgrader
 
     private void migrateToIsolatedDirectory( String storageFileName, File upgradeDirectory )
     {
-        if (upgradeDirectory.exists()) {
-            try
-            {
-                FileUtils.deleteRecursively( upgradeDirectory );
-            }
-            catch ( IOException e )
-            {
-                throw new UnableToUpgradeException( e );
-            }
-        }
-        upgradeDirectory.mkdir();
+        prepareUpgradeDirectory( upgradeDirectory );
 
         String upgradeFileName = new File( upgradeDirectory, NeoStore.DEFAULT_NAME ).getPath();
-        Map<String, String> upgradeConfig = new HashMap<String, String>( originalConfig );
-        upgradeConfig.put( "neo_store", upgradeFileName );
-
-        NeoStore neoStore = new StoreFactory(upgradeConfig, idGeneratorFactory, fileSystemAbstraction, null, StringLogger.DEV_NULL, null).createNeoStore(upgradeFileName);
+        NeoStore neoStore = new StoreFactory(upgradeConfig( upgradeFileName ), idGeneratorFactory, fileSystemAbstraction, null, StringLogger.DEV_NULL, null).createNeoStore(upgradeFileName);
         try
         {
             storeMigrator.migrate( new LegacyStore( storageFileName ), neoStore );
@@ -117,6 +137,30 @@ public class StoreUpgrader
         }
     }
 
+    private Map<String, String> upgradeConfig( String upgradeFileName )
+    {
+        Map<String, String> upgradeConfig = new HashMap<String, String>( originalConfig );
+        upgradeConfig.put( "neo_store", upgradeFileName );
+        // Migrating to dense nodes is done on its own, as the last step
+        upgradeConfig.remove( Config.DENSE_NODE_THRESHOLD );
+        return upgradeConfig;
+    }
+
+    private void prepareUpgradeDirectory( File upgradeDirectory )
+    {
+        if (upgradeDirectory.exists()) {
+            try
+            {
+                FileUtils.deleteRecursively( upgradeDirectory );
+            }
+            catch ( IOException e )
+            {
+                throw new UnableToUpgradeException( e );
+            }
+        }
+        upgradeDirectory.mkdir();
+    }
+
     public static class UnableToUpgradeException extends RuntimeException
     {
         public UnableToUpgradeException( Exception cause )
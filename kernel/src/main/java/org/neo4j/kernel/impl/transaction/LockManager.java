@@ -47,18 +47,69 @@ import org.neo4j.kernel.info.WaitingThread;
  * must invoke <CODE>releaseReadLock</CODE> x times to release all the locks.
  * <p>
  * LockManager just maps locks to resources and they do all the hard work
- * together with a resource allocation graph.
+ * together with a resource allocation graph. The mapping is split up in a
+ * number of stripes, each guarded by its own monitor, so that transactions
+ * locking different resources don't contend for the same monitor.
  */
 public class LockManager
 {
-    private final Map<Object,RWLock> resourceLockMap =
-        new HashMap<Object,RWLock>();
+    private static final int DEFAULT_STRIPES = defaultStripes();
+
+    private final Map<Object,RWLock>[] resourceLockMaps;
+    private final int stripeMask;
 
     private final RagManager ragManager;
 
     public LockManager( RagManager ragManager)
     {
+        this( ragManager, DEFAULT_STRIPES );
+    }
+
+    /**
+     * @param stripes the number of stripes to split the resource to lock
+     *            mapping up in, will be rounded up to a power of two. One
+     *            stripe means that all lock acquisitions and releases
+     *            synchronize on the same monitor.
+     */
+    @SuppressWarnings( "unchecked" )
+    public LockManager( RagManager ragManager, int stripes )
+    {
+        if ( stripes < 1 )
+        {
+            throw new IllegalArgumentException( "Invalid number of stripes " + stripes );
+        }
         this.ragManager = ragManager;
+        int size = Integer.highestOneBit( stripes );
+        if ( size < stripes )
+        {
+            size <<= 1;
+        }
+        resourceLockMaps = new Map[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            resourceLockMaps[i] = new HashMap<Object,RWLock>();
+        }
+        stripeMask = size - 1;
+    }
+
+    private static int defaultStripes()
+    {
+        return Runtime.getRuntime().availableProcessors() * 8;
+    }
+
+    private Map<Object,RWLock> stripeFor( Object resource )
+    {
+        // Spread the bits, like HashMap does, since the hash code of
+        // entities is their id
+        int hash = resource.hashCode();
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return resourceLockMaps[hash & stripeMask];
+    }
+
+    public int getNumberOfStripes()
+    {
+        return resourceLockMaps.length;
     }
 
     public long getDetectedDeadlockCount()
@@ -87,6 +138,7 @@ public class LockManager
         }
 
         RWLock lock = null;
+        Map<Object,RWLock> resourceLockMap = stripeFor( resource );
         synchronized ( resourceLockMap )
         {
             lock = resourceLockMap.get( resource );
@@ -121,6 +173,7 @@ public class LockManager
         }
 
         RWLock lock = null;
+        Map<Object,RWLock> resourceLockMap = stripeFor( resource );
         synchronized ( resourceLockMap )
         {
             lock = resourceLockMap.get( resource );
@@ -153,6 +206,7 @@ public class LockManager
         }
 
         RWLock lock = null;
+        Map<Object,RWLock> resourceLockMap = stripeFor( resource );
         synchronized ( resourceLockMap )
         {
             lock = resourceLockMap.get( resource );
@@ -190,6 +244,7 @@ public class LockManager
         }
 
         RWLock lock = null;
+        Map<Object,RWLock> resourceLockMap = stripeFor( resource );
         synchronized ( resourceLockMap )
         {
             lock = resourceLockMap.get( resource );
@@ -218,6 +273,7 @@ public class LockManager
     public void dumpLocksOnResource( Object resource )
     {
         RWLock lock = null;
+        Map<Object,RWLock> resourceLockMap = stripeFor( resource );
         synchronized ( resourceLockMap )
         {
             if ( !resourceLockMap.containsKey( resource ) )
@@ -241,7 +297,8 @@ public class LockManager
     }
 
     /**
-     * Visit all locks.
+     * Visit all locks. The stripes are visited one at a time, so this
+     * isn't a consistent snapshot of all locks.
      * 
      * The supplied visitor may not block.
      * 
@@ -249,11 +306,14 @@ public class LockManager
      */
     private <V extends Visitor<LockInfo>> V eachLock( V visitor )
     {
-        synchronized ( resourceLockMap )
+        for ( Map<Object,RWLock> resourceLockMap : resourceLockMaps )
         {
-            for ( RWLock lock : resourceLockMap.values() )
+            synchronized ( resourceLockMap )
             {
-                if ( visitor.visit( lock.info() ) ) break;
+                for ( RWLock lock : resourceLockMap.values() )
+                {
+                    if ( visitor.visit( lock.info() ) ) return visitor;
+                }
             }
         }
         return visitor;
@@ -273,11 +333,14 @@ public class LockManager
     private <V extends Visitor<LockInfo>> V eachAwaitedLock( V visitor, long minWaitTime )
     {
         long waitStart = System.currentTimeMillis() - minWaitTime;
-        synchronized ( resourceLockMap )
+        for ( Map<Object,RWLock> resourceLockMap : resourceLockMaps )
         {
-            for ( RWLock lock : resourceLockMap.values() )
+            synchronized ( resourceLockMap )
             {
-                if ( lock.acceptVisitorIfWaitedSinceBefore( visitor, waitStart ) ) break;
+                for ( RWLock lock : resourceLockMap.values() )
+                {
+                    if ( lock.acceptVisitorIfWaitedSinceBefore( visitor, waitStart ) ) return visitor;
+                }
             }
         }
         return visitor;
@@ -26,12 +26,13 @@ import org.neo4j.kernel.impl.util.ArrayMap;
 import javax.transaction.SystemException;
 import javax.transaction.Transaction;
 import javax.transaction.TransactionManager;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -71,9 +72,19 @@ public class RagManager
     // in a DeadlockDetectedException the transaction must wait
     // o When the transaction wakes up from waiting on a resource the
     // stopWaitOn( resource ) method must be invoked
+    // o lockAcquired and lockReleased for the same resource are never invoked
+    // concurrently (RWLock calls them holding its own monitor)
+    //
+    // Only the waiting side (checkWaitOn/stopWaitOn) is synchronized on the
+    // RagManager. Taking and releasing locks just updates the concurrent
+    // resource map, so transactions locking different resources don't contend
+    // here. The deadlock check still sees a consistent graph where it matters:
+    // it only follows held-by edges through transactions in waitingTxMap, and a
+    // waiting transaction can't take or release locks until it has been
+    // removed from that map again.
 
     private final Map<Object,List<Transaction>> resourceMap =
-        new HashMap<Object,List<Transaction>>();
+        new ConcurrentHashMap<Object,List<Transaction>>();
 
     private final ArrayMap<Transaction,Object> waitingTxMap =
         new ArrayMap<Transaction,Object>( (byte)5, false, true );
@@ -92,7 +103,7 @@ public class RagManager
         return deadlockCount.longValue();
     }
 
-    synchronized void lockAcquired( Object resource, Transaction tx )
+    void lockAcquired( Object resource, Transaction tx )
     {
         List<Transaction> lockingTxList = resourceMap.get( resource );
         if ( lockingTxList != null )
@@ -102,13 +113,14 @@ public class RagManager
         }
         else
         {
-            lockingTxList = new LinkedList<Transaction>();
+            // Copy on write, so that a concurrent deadlock check can iterate it
+            lockingTxList = new CopyOnWriteArrayList<Transaction>();
             lockingTxList.add( tx );
             resourceMap.put( resource, lockingTxList );
         }
     }
 
-    synchronized void lockReleased( Object resource, Transaction tx )
+    void lockReleased( Object resource, Transaction tx )
     {
         List<Transaction> lockingTxList = resourceMap.get( resource );
         if ( lockingTxList == null )
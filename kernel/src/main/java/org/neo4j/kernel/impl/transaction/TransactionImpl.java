@@ -471,6 +471,16 @@ class TransactionImpl implements Transaction
         return true;
     }
 
+    /**
+     * Commits all enlisted resources. With more than one resource the
+     * resources are prepared and committed in two phases, unless only the last
+     * one has anything to commit: the others are prepared first, and if they
+     * are all read only the last resource is the only participant and is
+     * committed in one phase instead. That leaves a single force of its
+     * logical log, which group commit can share, and no force of the tx log.
+     * Recovery stays correct since the read only resources have nothing to
+     * recover and the last one has its one phase commit in its own log.
+     */
     void doCommit() throws XAException, SystemException
     {
         boolean onePhase = isOnePhase();
@@ -479,37 +489,30 @@ class TransactionImpl implements Transaction
         {
             // prepare
             status = Status.STATUS_PREPARING;
+            Xid lastXid = resourceList.getLast().getXid();
             LinkedList<Xid> preparedXids = new LinkedList<Xid>();
-            Iterator<ResourceElement> itr = resourceList.iterator();
-            while ( itr.hasNext() )
+            int vote = prepare( preparedXids, lastXid, false );
+            if ( vote == XAResource.XA_RDONLY )
             {
-                ResourceElement re = itr.next();
-                if ( !preparedXids.contains( re.getXid() ) )
-                {
-                    preparedXids.add( re.getXid() );
-                    int vote = re.getResource().prepare( re.getXid() );
-                    if ( vote == XAResource.XA_OK )
-                    {
-                        readOnly = false;
-                    }
-                    else if ( vote == XAResource.XA_RDONLY )
-                    {
-                        re.setStatus( RS_READONLY );
-                    }
-                    else
-                    {
-                        // rollback tx
-                        status = Status.STATUS_MARKED_ROLLBACK;
-                        return;
-                    }
-                }
-                else
-                {
-                    // set it to readonly, only need to commit once
-                    re.setStatus( RS_READONLY );
-                }
+                // only the last resource has anything to commit
+                onePhase = true;
+                commitOnce( lastXid );
+            }
+            else if ( vote == XAResource.XA_OK )
+            {
+                readOnly = false;
+                vote = prepare( preparedXids, lastXid, true );
+            }
+            if ( vote != XAResource.XA_OK && vote != XAResource.XA_RDONLY )
+            {
+                // rollback tx
+                status = Status.STATUS_MARKED_ROLLBACK;
+                return;
+            }
+            if ( !onePhase )
+            {
+                status = Status.STATUS_PREPARED;
             }
-            status = Status.STATUS_PREPARED;
         }
         // commit
         if ( !onePhase && readOnly )
@@ -519,6 +522,11 @@ class TransactionImpl implements Transaction
         }
         if ( !onePhase )
         {
+            // The forced MARK_COMMIT record is what recovery uses to commit
+            // the prepared branches, the data sources don't know about each
+            // other. So a single transaction changing more than one data
+            // source (graph and index) forces the tx log and then the log of
+            // each data source. Only concurrent commits share those forces.
             try
             {
                 txManager.getTxLog().markAsCommitting( getGlobalId(), forceMode );
@@ -544,6 +552,68 @@ class TransactionImpl implements Transaction
         status = Status.STATUS_COMMITTED;
     }
 
+    /**
+     * Prepares the resources whose xid is, or with {@code matching} false
+     * isn't, {@code xid}. A branch is only prepared once, later resources of
+     * a branch in {@code preparedXids} are set to read only.
+     *
+     * @return {@link XAResource#XA_OK} if any resource voted so,
+     *         {@link XAResource#XA_RDONLY} if all were read only, or else the
+     *         vote of the resource that didn't vote either.
+     */
+    private int prepare( List<Xid> preparedXids, Xid xid, boolean matching ) throws XAException
+    {
+        int result = XAResource.XA_RDONLY;
+        for ( ResourceElement re : resourceList )
+        {
+            if ( re.getXid().equals( xid ) != matching )
+            {
+                continue;
+            }
+            if ( preparedXids.contains( re.getXid() ) )
+            {
+                // set it to readonly, only need to commit once
+                re.setStatus( RS_READONLY );
+                continue;
+            }
+            preparedXids.add( re.getXid() );
+            int vote = re.getResource().prepare( re.getXid() );
+            if ( vote == XAResource.XA_OK )
+            {
+                result = XAResource.XA_OK;
+            }
+            else if ( vote == XAResource.XA_RDONLY )
+            {
+                re.setStatus( RS_READONLY );
+            }
+            else
+            {
+                return vote;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Marks all but the first resource of {@code xid} as read only, so that
+     * the branch is committed once.
+     */
+    private void commitOnce( Xid xid )
+    {
+        boolean seen = false;
+        for ( ResourceElement re : resourceList )
+        {
+            if ( re.getStatus() != RS_READONLY && re.getXid().equals( xid ) )
+            {
+                if ( seen )
+                {
+                    re.setStatus( RS_READONLY );
+                }
+                seen = true;
+            }
+        }
+    }
+
     void doRollback() throws XAException
     {
         status = Status.STATUS_ROLLING_BACK;
@@ -552,7 +622,8 @@ class TransactionImpl implements Transaction
         while ( itr.hasNext() )
         {
             ResourceElement re = itr.next();
-            if ( !rolledbackXids.contains( re.getXid() ) )
+            // a resource that voted read only has already forgotten the branch
+            if ( re.getStatus() != RS_READONLY && !rolledbackXids.contains( re.getXid() ) )
             {
                 rolledbackXids.add( re.getXid() );
                 re.getResource().rollback( re.getXid() );
@@ -21,6 +21,7 @@ package org.neo4j.kernel.impl.transaction;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -37,6 +38,7 @@ import org.neo4j.helpers.UTF8;
 import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
 import org.neo4j.kernel.impl.transaction.xaframework.DirectMappedLogBuffer;
 import org.neo4j.kernel.impl.transaction.xaframework.ForceMode;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommit;
 import org.neo4j.kernel.impl.transaction.xaframework.LogBuffer;
 import org.neo4j.kernel.impl.util.StringLogger;
 
@@ -63,6 +65,16 @@ public class TxLog
     private final FileSystemAbstraction fileSystem;
     private final StringLogger msgLog;
 
+    private GroupCommit groupCommit;
+    private final GroupCommit.Force groupForce = new GroupCommit.Force()
+    {
+        @Override
+        public void force() throws IOException
+        {
+            forceForGroupCommit();
+        }
+    };
+
     /**
      * Initializes a transaction log using <CODE>filename</CODE>. If the file
      * isn't empty the position will be set to size of file so new records will
@@ -181,7 +193,8 @@ public class TxLog
 
     /**
      * Writes a <CODE>MARK_COMMIT</CODE> record to the file and forces the
-     * file to disk.
+     * file to disk. With group commit enabled the force is shared with other
+     * transactions marked as committing at the same time.
      * 
      * @param globalId
      *            The global id of the transaction
@@ -190,8 +203,24 @@ public class TxLog
      */
     // mark_committing(byte)|gid_length(byte)|globalId
     // forces
-    public synchronized void markAsCommitting( byte globalId[], ForceMode forceMode )
+    public void markAsCommitting( byte globalId[], ForceMode forceMode )
         throws IOException
+    {
+        long ticket;
+        synchronized ( this )
+        {
+            if ( groupCommit == null || forceMode != ForceMode.forced )
+            {
+                writeMarkAsCommitting( globalId, forceMode );
+                return;
+            }
+            writeMarkAsCommitting( globalId, ForceMode.unforced );
+            ticket = groupCommit.nextTicket();
+        }
+        groupCommit.awaitForced( ticket, groupForce );
+    }
+
+    private synchronized void writeMarkAsCommitting( byte globalId[], ForceMode forceMode ) throws IOException
     {
         assertNotNull( globalId, "global id" );
         logBuffer.put( MARK_COMMIT ).put( (byte) globalId.length ).put( globalId );
@@ -199,6 +228,39 @@ public class TxLog
         recordCount++;
     }
 
+    private void forceForGroupCommit() throws IOException
+    {
+        FileChannel channel;
+        synchronized ( this )
+        {
+            logBuffer.writeOut();
+            channel = logBuffer.getFileChannel();
+        }
+        try
+        {
+            channel.force( false );
+        }
+        catch ( ClosedChannelException e )
+        {
+            // The log was switched after our records were written, which
+            // forces the log before closing it.
+        }
+    }
+
+    /**
+     * Lets transactions marked as committing at the same time share a force
+     * of the log, see {@link GroupCommit}.
+     */
+    public synchronized void setGroupCommit( GroupCommit groupCommit )
+    {
+        this.groupCommit = groupCommit;
+    }
+
+    public synchronized GroupCommit getGroupCommit()
+    {
+        return groupCommit;
+    }
+
     /**
      * Writes a <CODE>TX_DONE</CODE> record to the file.
      * 
@@ -306,7 +368,8 @@ public class TxLog
         }
         else if ( record.getType() == MARK_COMMIT )
         {
-            markAsCommitting( record.getGlobalId(), forceMode );
+            // Called while switching logs, holding the monitor
+            writeMarkAsCommitting( record.getGlobalId(), forceMode );
         }
         else
         {
@@ -50,6 +50,7 @@ import org.neo4j.kernel.Lifecycle;
 import org.neo4j.kernel.impl.core.KernelPanicEventGenerator;
 import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
 import org.neo4j.kernel.impl.transaction.xaframework.ForceMode;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommit;
 import org.neo4j.kernel.impl.transaction.xaframework.XaResource;
 import org.neo4j.kernel.impl.util.StringLogger;
 
@@ -80,6 +81,7 @@ public class TxManager extends AbstractTransactionManager
     private int eventIdentifierCounter = 0;
 
     private TxLog txLog = null;
+    private GroupCommit groupCommit;
     private boolean tmOk = false;
     private boolean blocked = false;
 
@@ -117,6 +119,16 @@ public class TxManager extends AbstractTransactionManager
         return eventIdentifierCounter++;
     }
 
+    /**
+     * Lets transactions that commit in two phases at the same time share the
+     * force of the tx log that marks them as committing. Must be set before
+     * {@link #init()}.
+     */
+    public void setGroupCommit( GroupCommit groupCommit )
+    {
+        this.groupCommit = groupCommit;
+    }
+
     private <E extends Exception> E logAndReturn(String msg, E exception)
     {
         try
@@ -179,6 +191,7 @@ public class TxManager extends AbstractTransactionManager
                 fc.force( true );
                 fc.close();
             }
+            txLog.setGroupCommit( groupCommit );
             tmOk = true;
         }
         catch ( IOException e )
@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.helpers.TimeUtil;
+import org.neo4j.kernel.Config;
+
+/**
+ * Lets concurrently committing transactions share a single force of the
+ * logical log. Each committer appends its commit entry and receives a ticket
+ * (see {@link #nextTicket()}), which must be handed out in the same order as
+ * the entries are written to the log. The committer then calls
+ * {@link #awaitForced(long, Force)}: the first one to arrive becomes the leader
+ * and forces the log on behalf of every ticket handed out so far, the others
+ * wait for the leader to finish.
+ * <p>
+ * A leader may optionally linger for up to {@code maxWait} milliseconds for
+ * more committers to join the group, until {@code maxSize} commits are
+ * pending. With a zero wait, groups form naturally from the commits that
+ * arrive while the previous force is in progress.
+ */
+public class GroupCommit
+{
+    /**
+     * Makes everything written to the log so far durable.
+     */
+    public interface Force
+    {
+        void force() throws IOException;
+    }
+
+    private final long maxWaitNanos;
+    private final int maxSize;
+
+    // All guarded by this
+    private long appended;
+    private long forced;
+    private boolean forcing;
+    private boolean lingering;
+    private long failedThrough;
+    private IOException failure;
+
+    private long groupCount;
+    private long groupedCommitCount;
+    private long largestGroup;
+    private long totalForceNanos;
+    private long lastForceNanos;
+
+    public GroupCommit( long maxWaitMillis, int maxSize )
+    {
+        if ( maxWaitMillis < 0 || maxSize < 1 )
+        {
+            throw new IllegalArgumentException( "Invalid group commit settings, max wait " + maxWaitMillis
+                                                + "ms, max size " + maxSize );
+        }
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos( maxWaitMillis );
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return a group commit with the settings in {@code config}, or
+     *         {@code null} if {@link Config#GROUP_COMMIT} isn't enabled.
+     */
+    public static GroupCommit fromConfig( Map<String, String> config )
+    {
+        if ( !"true".equalsIgnoreCase( config.get( Config.GROUP_COMMIT ) ) )
+        {
+            return null;
+        }
+        String maxWait = config.get( Config.GROUP_COMMIT_MAX_WAIT );
+        String maxSize = config.get( Config.GROUP_COMMIT_MAX_SIZE );
+        try
+        {
+            return new GroupCommit( maxWait != null ? TimeUtil.parseTimeMillis( maxWait ) : 0,
+                    maxSize != null ? Integer.parseInt( maxSize ) : 100 );
+        }
+        catch ( RuntimeException e )
+        {
+            throw new IllegalArgumentException( "Invalid group commit configuration " + Config.GROUP_COMMIT_MAX_WAIT
+                                                + "=" + maxWait + ", " + Config.GROUP_COMMIT_MAX_SIZE + "=" + maxSize, e );
+        }
+    }
+
+    /**
+     * Hands out the ticket for a commit entry that has just been written to
+     * the log. Must be called while holding the log monitor, right after the
+     * entry has been written out to the log file channel.
+     */
+    public synchronized long nextTicket()
+    {
+        long ticket = ++appended;
+        if ( lingering && appended - forced >= maxSize )
+        {
+            notifyAll();
+        }
+        return ticket;
+    }
+
+    /**
+     * Returns when the commit entry with the given ticket has been forced,
+     * possibly after having forced the log for a whole group of commits.
+     *
+     * @throws IOException if the force covering {@code ticket} failed.
+     */
+    public void awaitForced( long ticket, Force force ) throws IOException
+    {
+        long target;
+        synchronized ( this )
+        {
+            while ( forced < ticket )
+            {
+                if ( ticket <= failedThrough )
+                {
+                    throw failure;
+                }
+                if ( !forcing )
+                {
+                    break;
+                }
+                waitFor( 0 );
+            }
+            if ( forced >= ticket )
+            {
+                return;
+            }
+            forcing = true;
+            linger();
+            target = appended;
+        }
+
+        long start = System.nanoTime();
+        IOException forceFailure = null;
+        try
+        {
+            force.force();
+        }
+        catch ( IOException e )
+        {
+            forceFailure = e;
+        }
+        finally
+        {
+            groupForced( target, System.nanoTime() - start, forceFailure );
+        }
+        if ( forceFailure != null )
+        {
+            throw forceFailure;
+        }
+    }
+
+    private void linger()
+    {
+        if ( maxWaitNanos == 0 )
+        {
+            return;
+        }
+        lingering = true;
+        long deadline = System.nanoTime() + maxWaitNanos;
+        long remaining;
+        while ( appended - forced < maxSize && (remaining = deadline - System.nanoTime()) > 0 )
+        {
+            waitFor( Math.max( 1, TimeUnit.NANOSECONDS.toMillis( remaining ) ) );
+        }
+        lingering = false;
+    }
+
+    private synchronized void groupForced( long target, long forceNanos, IOException forceFailure )
+    {
+        if ( forceFailure == null )
+        {
+            long groupSize = target - forced;
+            forced = target;
+            groupCount++;
+            groupedCommitCount += groupSize;
+            largestGroup = Math.max( largestGroup, groupSize );
+            totalForceNanos += forceNanos;
+            lastForceNanos = forceNanos;
+        }
+        else
+        {
+            failedThrough = target;
+            failure = forceFailure;
+        }
+        forcing = false;
+        notifyAll();
+    }
+
+    private void waitFor( long millis )
+    {
+        try
+        {
+            wait( millis );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.interrupted();
+        }
+    }
+
+    public long getMaxWaitMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( maxWaitNanos );
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public synchronized long getNumberOfGroups()
+    {
+        return groupCount;
+    }
+
+    public synchronized long getNumberOfGroupedCommits()
+    {
+        return groupedCommitCount;
+    }
+
+    public synchronized double getAverageGroupSize()
+    {
+        return groupCount == 0 ? 0 : (double) groupedCommitCount / groupCount;
+    }
+
+    public synchronized long getLargestGroupSize()
+    {
+        return largestGroup;
+    }
+
+    public synchronized double getAverageForceLatencyMillis()
+    {
+        return groupCount == 0 ? 0 : (double) totalForceNanos / groupCount / 1000000;
+    }
+
+    public synchronized double getLastForceLatencyMillis()
+    {
+        return (double) lastForceNanos / 1000000;
+    }
+}
@@ -56,6 +56,12 @@ public abstract class LogBackedXaDataSource extends XaDataSource
         this.logicalLog = logicalLog;
     }
 
+    @Override
+    public long getLastLoggedTxId()
+    {
+        return getXaContainer().getResourceManager().getLastLoggedTxId();
+    }
+
     @Override
     public boolean deleteLogicalLog( long version )
     {
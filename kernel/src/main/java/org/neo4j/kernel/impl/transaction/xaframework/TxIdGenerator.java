@@ -25,7 +25,7 @@ public interface TxIdGenerator
     {
         public long generate( XaDataSource dataSource, int identifier )
         {
-            return dataSource.getLastCommittedTxId() + 1;
+            return dataSource.getLastLoggedTxId() + 1;
         }
         
         public int getCurrentMasterId()
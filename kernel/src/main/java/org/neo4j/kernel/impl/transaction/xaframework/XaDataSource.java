@@ -326,6 +326,19 @@ public abstract class XaDataSource
         throw new UnsupportedOperationException( getClass().getName() );
     }
     
+    /**
+     * Returns the tx id of the last transaction that has written its commit
+     * entry to the logical log. It can be ahead of
+     * {@link #getLastCommittedTxId()} while group committed transactions wait
+     * for their force, see {@link XaLogicalLog#appendCommit(boolean, int, long, ForceMode)}.
+     *
+     * @return the last logged tx id.
+     */
+    public long getLastLoggedTxId()
+    {
+        return getLastCommittedTxId();
+    }
+
     public void setLastCommittedTxId( long txId )
     {
         throw new UnsupportedOperationException( getClass().getName() );
@@ -80,6 +80,12 @@ public class XaFactory
             log = new XaLogicalLog( logicalLog, rm, cf, tf, logBufferFactory, fileSystemAbstraction, stringLogger );
         }
 
+        GroupCommit groupCommit = GroupCommit.fromConfig( config );
+        if ( groupCommit != null )
+        {
+            log.setGroupCommit( groupCommit );
+        }
+
         // TODO These setters should be removed somehow
         rm.setLogicalLog( log );
         tf.setLogicalLog( log );
@@ -22,6 +22,7 @@ package org.neo4j.kernel.impl.transaction.xaframework;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.util.HashMap;
@@ -112,6 +113,16 @@ public class XaLogicalLog implements LogLoader
     private final LogPositionCache positionCache = new LogPositionCache();
     private final FileSystemAbstraction fileSystem;
 
+    private GroupCommit groupCommit;
+    private final GroupCommit.Force groupForce = new GroupCommit.Force()
+    {
+        @Override
+        public void force() throws IOException
+        {
+            forceForGroupCommit();
+        }
+    };
+
     public XaLogicalLog( String fileName, XaResourceManager xaRm, XaCommandFactory cf,
             XaTransactionFactory xaTf, LogBufferFactory logBufferFactory, FileSystemAbstraction fileSystem, StringLogger stringLogger )
     {
@@ -365,6 +376,91 @@ public class XaLogicalLog implements LogLoader
         }
     }
 
+    /**
+     * Writes a commit entry like {@link #commitOnePhase(int, long, ForceMode)}
+     * and {@link #commitTwoPhase(int, long, ForceMode)}, but leaves the force
+     * to {@link #awaitGroupCommit(int, long)} so that it can be shared with
+     * other transactions committing at the same time. Only valid when group
+     * commit has been enabled.
+     *
+     * @return the ticket to pass to {@link #awaitGroupCommit(int, long)}, or
+     *         {@code -1} if the force mode doesn't require a force.
+     */
+    // [TX_1P_COMMIT|TX_2P_COMMIT][identifier]
+    public synchronized long appendCommit( boolean twoPhase, int identifier, long txId, ForceMode forceMode )
+        throws XAException
+    {
+        LogEntry.Start startEntry = xidIdentMap.get( identifier );
+        assert startEntry != null;
+        assert txId != -1;
+        assert groupCommit != null;
+        try
+        {
+            cacheTxStartPosition( txId, startEntry );
+            LogIoUtils.writeCommit( twoPhase, writeBuffer, identifier, txId, System.currentTimeMillis() );
+            writeBuffer.writeOut();
+            return forceMode == ForceMode.forced ? groupCommit.nextTicket() : -1;
+        }
+        catch ( IOException e )
+        {
+            throw Exceptions.withCause( new XAException( "Logical log unable to mark " + ( twoPhase ? "2PC" : "1P-commit" )
+                                                         + " [" + identifier + "] " ), e );
+        }
+    }
+
+    /**
+     * Waits for the commit entry written by
+     * {@link #appendCommit(boolean, int, long, ForceMode)} to be forced,
+     * possibly forcing the log on behalf of a group of committers. Must not be
+     * called while holding the monitor of this log.
+     */
+    public void awaitGroupCommit( int identifier, long ticket ) throws XAException
+    {
+        try
+        {
+            groupCommit.awaitForced( ticket, groupForce );
+        }
+        catch ( IOException e )
+        {
+            throw Exceptions.withCause( new XAException( "Logical log unable to force commit [" + identifier + "] " ),
+                    e );
+        }
+    }
+
+    private void forceForGroupCommit() throws IOException
+    {
+        FileChannel channel;
+        synchronized ( this )
+        {
+            writeBuffer.writeOut();
+            channel = writeBuffer.getFileChannel();
+        }
+        try
+        {
+            channel.force( false );
+        }
+        catch ( ClosedChannelException e )
+        {
+            // The log was rotated or closed after our entries were written,
+            // both of which force the log before closing it.
+        }
+    }
+
+    public synchronized void setGroupCommit( GroupCommit groupCommit )
+    {
+        this.groupCommit = groupCommit;
+    }
+
+    public synchronized GroupCommit getGroupCommit()
+    {
+        return groupCommit;
+    }
+
+    public synchronized boolean isGroupCommitEnabled()
+    {
+        return groupCommit != null;
+    }
+
     private synchronized void cacheTxStartPosition( long txId, LogEntry.Start startEntry )
     {
         cacheTxStartPosition( txId, startEntry, logVersion );
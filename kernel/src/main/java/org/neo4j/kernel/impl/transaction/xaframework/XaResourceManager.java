@@ -61,6 +61,11 @@ public class XaResourceManager
     private final AbstractTransactionManager transactionManager;
     private final RecoveryVerifier recoveryVerifier;
 
+    // Order in which group committed transactions are applied, see commit()
+    private long nextCommitOrder;
+    private long appliedCommitOrder;
+    private long lastGroupCommitTxId = -1;
+
     public XaResourceManager( XaDataSource dataSource, XaTransactionFactory tf,
             TxIdGenerator txIdGenerator, AbstractTransactionManager transactionManager,
             RecoveryVerifier recoveryVerifier, String name )
@@ -414,16 +419,98 @@ public class XaResourceManager
         return xaTransaction;
     }
 
-    synchronized XaTransaction commit( Xid xid, boolean onePhase )
+    XaTransaction commit( Xid xid, boolean onePhase )
         throws XAException
+    {
+        if ( !log.isGroupCommitEnabled() )
+        {
+            return commitSerially( xid, onePhase );
+        }
+
+        /*
+         * With group commit the force of the commit entry happens outside of
+         * this monitor, so that other transactions can write their commit
+         * entries meanwhile. Transactions are still applied one at a time,
+         * and in the order their tx ids were handed out.
+         */
+        XidStatus status;
+        long ticket;
+        long commitOrder = -1;
+        synchronized ( this )
+        {
+            status = getXidStatus( xid );
+            TransactionStatus txStatus = status.getTransactionStatus();
+            XaTransaction xaTransaction = txStatus.getTransaction();
+            ticket = logCommit( txStatus, xaTransaction, onePhase, true );
+            if ( !xaTransaction.isReadOnly() && !xaTransaction.isRecovered() )
+            {
+                commitOrder = nextCommitOrder++;
+            }
+        }
+
+        boolean forced = ticket == -1;
+        try
+        {
+            if ( !forced )
+            {
+                log.awaitGroupCommit( status.getTransactionStatus().getTransaction().getIdentifier(), ticket );
+                forced = true;
+            }
+        }
+        finally
+        {
+            if ( !forced )
+            {
+                synchronized ( this )
+                {
+                    awaitCommitOrder( commitOrder );
+                    commitOrderDone( commitOrder );
+                }
+            }
+        }
+
+        synchronized ( this )
+        {
+            awaitCommitOrder( commitOrder );
+            try
+            {
+                return applyCommit( xid, status.getTransactionStatus(), onePhase );
+            }
+            finally
+            {
+                commitOrderDone( commitOrder );
+            }
+        }
+    }
+
+    private synchronized XaTransaction commitSerially( Xid xid, boolean onePhase )
+        throws XAException
+    {
+        TransactionStatus txStatus = getXidStatus( xid ).getTransactionStatus();
+        logCommit( txStatus, txStatus.getTransaction(), onePhase, false );
+        return applyCommit( xid, txStatus, onePhase );
+    }
+
+    private XidStatus getXidStatus( Xid xid ) throws XAException
     {
         XidStatus status = xidMap.get( xid );
         if ( status == null )
         {
             throw new XAException( "Unknown xid[" + xid + "]" );
         }
-        TransactionStatus txStatus = status.getTransactionStatus();
-        XaTransaction xaTransaction = txStatus.getTransaction();
+        return status;
+    }
+
+    /**
+     * Writes the commit entry of the transaction, if it has one.
+     *
+     * @return the group commit ticket to await the force of the entry with,
+     *         or {@code -1} if there is nothing to await.
+     */
+    private long logCommit( TransactionStatus txStatus, XaTransaction xaTransaction, boolean onePhase,
+            boolean grouped ) throws XAException
+    {
+        long ticket = -1;
         checkStartWritten( txStatus, xaTransaction );
         if ( onePhase )
         {
@@ -436,9 +523,22 @@ public class XaResourceManager
 
                     long txId = txIdGenerator.generate( dataSource,
                             xaTransaction.getIdentifier() );
+                    if ( grouped )
+                    {
+                        checkGroupCommitTxId( txId );
+                    }
                     xaTransaction.setCommitTxId( txId );
-                    log.commitOnePhase( xaTransaction.getIdentifier(),
-                            xaTransaction.getCommitTxId(), getForceMode() );
+                    if ( grouped )
+                    {
+                        ticket = log.appendCommit( false, xaTransaction.getIdentifier(),
+                                xaTransaction.getCommitTxId(), getForceMode() );
+                        lastGroupCommitTxId = txId;
+                    }
+                    else
+                    {
+                        log.commitOnePhase( xaTransaction.getIdentifier(),
+                                xaTransaction.getCommitTxId(), getForceMode() );
+                    }
                 }
             }
         }
@@ -455,11 +555,65 @@ public class XaResourceManager
                 {
                     long txId = txIdGenerator.generate( dataSource,
                             xaTransaction.getIdentifier() );
+                    if ( grouped )
+                    {
+                        checkGroupCommitTxId( txId );
+                    }
                     xaTransaction.setCommitTxId( txId );
-                    log.commitTwoPhase( xaTransaction.getIdentifier(),
-                            xaTransaction.getCommitTxId(), getForceMode() );
+                    if ( grouped )
+                    {
+                        ticket = log.appendCommit( true, xaTransaction.getIdentifier(),
+                                xaTransaction.getCommitTxId(), getForceMode() );
+                        lastGroupCommitTxId = txId;
+                    }
+                    else
+                    {
+                        log.commitTwoPhase( xaTransaction.getIdentifier(),
+                                xaTransaction.getCommitTxId(), getForceMode() );
+                    }
                 }
             }
+        }
+        return ticket;
+    }
+
+    /**
+     * Transactions that are waiting for their group force aren't applied yet,
+     * so the tx id generator has to go by {@link #getLastLoggedTxId()} rather
+     * than the last committed tx id of the data source. Two transactions with
+     * the same tx id would corrupt the log, so a generator that doesn't is
+     * refused here instead of having its ids patched up.
+     */
+    private void checkGroupCommitTxId( long txId ) throws XAException
+    {
+        if ( nextCommitOrder != appliedCommitOrder && txId != lastGroupCommitTxId + 1 )
+        {
+            throw new XAException( "Tx id generator handed out txId=" + txId + " while txId="
+                                   + lastGroupCommitTxId + " is still waiting for its group commit" );
+        }
+    }
+
+    /**
+     * @return the tx id of the last transaction that has written its commit
+     *         entry to the logical log. Group committed transactions are
+     *         applied after their force, so until then this is ahead of the
+     *         last committed tx id of the data source.
+     */
+    synchronized long getLastLoggedTxId()
+    {
+        if ( nextCommitOrder != appliedCommitOrder )
+        {
+            return lastGroupCommitTxId;
+        }
+        return dataSource.getLastCommittedTxId();
+    }
+
+    private XaTransaction applyCommit( Xid xid, TransactionStatus txStatus, boolean onePhase )
+        throws XAException
+    {
+        XaTransaction xaTransaction = txStatus.getTransaction();
+        if ( !xaTransaction.isReadOnly() )
+        {
             txStatus.markCommitStarted();
             if ( xaTransaction.isRecovered() && xaTransaction.getCommitTxId() == -1 )
             {
@@ -495,6 +649,30 @@ public class XaResourceManager
         return xaTransaction;
     }
 
+    private void awaitCommitOrder( long commitOrder )
+    {
+        while ( commitOrder != -1 && commitOrder != appliedCommitOrder )
+        {
+            try
+            {
+                wait();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private void commitOrderDone( long commitOrder )
+    {
+        if ( commitOrder != -1 )
+        {
+            appliedCommitOrder = commitOrder + 1;
+            notifyAll();
+        }
+    }
+
     private ForceMode getForceMode()
     {
         return transactionManager.getForceMode();
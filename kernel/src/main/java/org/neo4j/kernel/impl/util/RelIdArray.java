@@ -269,7 +269,17 @@ public class RelIdArray implements SizeOf
     {
         return direction.iterator( this );
     }
-    
+
+    /**
+     * Returns an iterator over only the ids added with exactly the given
+     * direction, i.e. the loops aren't included for OUTGOING and INCOMING
+     * and only the loops are included for BOTH.
+     */
+    public RelIdIterator iteratorOfOnly( DirectionWrapper direction )
+    {
+        return new RelIdIteratorImpl( this, new DirectionWrapper[] { direction } );
+    }
+
     public RelIdArray newSimilarInstance()
     {
         return new RelIdArray( type );
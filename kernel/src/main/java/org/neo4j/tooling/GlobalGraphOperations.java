@@ -86,6 +86,88 @@ public class GlobalGraphOperations
         };
     }
 
+    /**
+     * Returns all nodes in the graph, read sequentially off the node store
+     * without going through the node cache, so that a full scan doesn't evict
+     * the working set. Only committed nodes are returned, changes made by the
+     * current transaction aren't seen.
+     *
+     * @return all committed nodes in the graph.
+     */
+    public Iterable<Node> scanAllNodes()
+    {
+        return scanNodes( 0, getNodeIdRangeEnd() );
+    }
+
+    /**
+     * Returns the nodes with ids from {@code fromId} (inclusive) to
+     * {@code toId} (exclusive), read like {@link #scanAllNodes()}. Splitting
+     * {@code [0, }{@link #getNodeIdRangeEnd()}{@code )} into ranges lets
+     * several threads scan the graph in parallel.
+     *
+     * @param fromId the first node id to scan.
+     * @param toId the node id to stop the scan at.
+     * @return the committed nodes in the given id range.
+     */
+    public Iterable<Node> scanNodes( final long fromId, final long toId )
+    {
+        return new Iterable<Node>()
+        {
+            @Override
+            public Iterator<Node> iterator()
+            {
+                return nodeManager.scanNodes( fromId, toId );
+            }
+        };
+    }
+
+    /**
+     * Returns all relationships in the graph, read sequentially off the
+     * relationship store like {@link #scanAllNodes()} reads nodes.
+     *
+     * @return all committed relationships in the graph.
+     */
+    public Iterable<Relationship> scanAllRelationships()
+    {
+        return scanRelationships( 0, getRelationshipIdRangeEnd() );
+    }
+
+    /**
+     * Returns the relationships with ids from {@code fromId} (inclusive) to
+     * {@code toId} (exclusive), read like {@link #scanAllNodes()}.
+     *
+     * @param fromId the first relationship id to scan.
+     * @param toId the relationship id to stop the scan at.
+     * @return the committed relationships in the given id range.
+     */
+    public Iterable<Relationship> scanRelationships( final long fromId, final long toId )
+    {
+        return new Iterable<Relationship>()
+        {
+            @Override
+            public Iterator<Relationship> iterator()
+            {
+                return nodeManager.scanRelationships( fromId, toId );
+            }
+        };
+    }
+
+    /**
+     * @return an id above the highest node id currently in use.
+     */
+    public long getNodeIdRangeEnd()
+    {
+        return nodeManager.getHighestPossibleIdInUse( Node.class ) + 1;
+    }
+
+    /**
+     * @return an id above the highest relationship id currently in use.
+     */
+    public long getRelationshipIdRangeEnd()
+    {
+        return nodeManager.getHighestPossibleIdInUse( Relationship.class ) + 1;
+    }
+
     /**
      * Returns all relationship types currently in the underlying store. Relationship types are
      * added to the underlying store the first time they are used in a successfully commited
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.batchinsert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.neo4j.graphdb.Direction.OUTGOING;
+import static org.neo4j.helpers.collection.IteratorUtil.count;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+
+public class TestParallelBatchImporter
+{
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+    private static final RelationshipType LIKES = DynamicRelationshipType.withName( "LIKES" );
+    private static final int NODES = 1000;
+
+    private String storePath;
+    private BatchInserterImpl inserter;
+
+    @Before
+    public void createInserter()
+    {
+        storePath = AbstractNeo4jTestCase.getStorePath( "parallel-batch-import" );
+        AbstractNeo4jTestCase.deleteFileOrDirectory( new File( storePath ) );
+        inserter = new BatchInserterImpl( storePath );
+    }
+
+    @After
+    public void shutdownInserter()
+    {
+        if ( inserter != null )
+        {
+            inserter.shutdown();
+        }
+    }
+
+    private static Iterator<Integer> range( int count )
+    {
+        List<Integer> items = new ArrayList<Integer>();
+        for ( int i = 0; i < count; i++ )
+        {
+            items.add( i );
+        }
+        return items.iterator();
+    }
+
+    private static Map<String,Object> nodeProperties( int i )
+    {
+        // A mix of inlined values and values in the dynamic stores
+        StringBuilder longString = new StringBuilder();
+        for ( int j = 0; j < i % 50; j++ )
+        {
+            longString.append( "long string " ).append( i );
+        }
+        return map( "id", i, "name", "node" + i, "description", longString.toString(),
+                "scores", new long[] { i, Long.MAX_VALUE - i, i * 3 } );
+    }
+
+    private static final InputParser<Integer,InputNode> NODE_PARSER = new InputParser<Integer,InputNode>()
+    {
+        public InputNode parse( Integer input )
+        {
+            return new InputNode( nodeProperties( input ) );
+        }
+    };
+
+    @Test
+    public void importsNodesAndRelationshipsInInputOrder()
+    {
+        ParallelBatchImporter importer = new ParallelBatchImporter( inserter, 4, 17 );
+        assertEquals( NODES, importer.importNodes( range( NODES ), NODE_PARSER ) );
+        // The reference node has id 0
+        for ( int i = 0; i < NODES; i++ )
+        {
+            Map<String,Object> properties = inserter.getNodeProperties( i + 1 );
+            Map<String,Object> expected = nodeProperties( i );
+            assertEquals( expected.get( "name" ), properties.get( "name" ) );
+            assertEquals( expected.get( "description" ), properties.get( "description" ) );
+            assertArrayEquals( (long[]) expected.get( "scores" ), (long[]) properties.get( "scores" ) );
+        }
+
+        // Every node knows the next one and likes node 1
+        long relationships = importer.importRelationships( range( NODES * 2 ),
+                new InputParser<Integer,InputRelationship>()
+                {
+                    public InputRelationship parse( Integer input )
+                    {
+                        long node = input / 2 + 1;
+                        return input % 2 == 0 ?
+                                new InputRelationship( node, node % NODES + 1, KNOWS, map( "since", input ) ) :
+                                new InputRelationship( node, 1, LIKES, null );
+                    }
+                } );
+        assertEquals( NODES * 2, relationships );
+        assertEquals( 3, count( inserter.getRelationships( 5 ) ) );
+        inserter.shutdown();
+        inserter = null;
+
+        GraphDatabaseService db = new EmbeddedGraphDatabase( storePath );
+        try
+        {
+            Node node = db.getNodeById( 5 );
+            assertEquals( 4, node.getProperty( "id" ) );
+            assertEquals( 6L, node.getSingleRelationship( KNOWS, OUTGOING )
+                    .getEndNode().getId() );
+            assertEquals( 8, node.getSingleRelationship( KNOWS, OUTGOING )
+                    .getProperty( "since" ) );
+            assertEquals( NODES + 2, count( db.getNodeById( 1 ).getRelationships() ) );
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void reportsMetricsForEveryStage()
+    {
+        ParallelBatchImporter importer = new ParallelBatchImporter( inserter, 2, 100 );
+        importer.importNodes( range( NODES ), NODE_PARSER );
+        List<StageMetrics> metrics = importer.getLastImportMetrics();
+        assertEquals( 4, metrics.size() );
+        for ( StageMetrics stage : metrics )
+        {
+            assertEquals( stage.toString(), NODES, stage.getItems() );
+            assertEquals( stage.toString(), NODES / 100, stage.getBatches() );
+        }
+    }
+
+    @Test
+    public void failingParserFailsImport()
+    {
+        ParallelBatchImporter importer = new ParallelBatchImporter( inserter, 4, 10 );
+        try
+        {
+            importer.importNodes( range( NODES * 10 ), new InputParser<Integer,InputNode>()
+            {
+                public InputNode parse( Integer input )
+                {
+                    if ( input == 555 )
+                    {
+                        throw new IllegalArgumentException( "Bad input " + input );
+                    }
+                    return new InputNode( null );
+                }
+            } );
+            fail( "Should have failed" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertEquals( "Bad input 555", e.getMessage() );
+        }
+    }
+}
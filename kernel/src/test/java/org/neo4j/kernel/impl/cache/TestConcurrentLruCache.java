@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TestConcurrentLruCache
+{
+    @Test
+    public void testCreate()
+    {
+        try
+        {
+            new ConcurrentLruCache<Object,Object>( "TestCache", 0 );
+            fail( "Illegal maxSize should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        ConcurrentLruCache<Object,Object> cache = new ConcurrentLruCache<Object,Object>( "TestCache", 70 );
+        try
+        {
+            cache.put( null, new Object() );
+            fail( "Null key should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        try
+        {
+            cache.put( new Object(), null );
+            fail( "Null element should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        try
+        {
+            cache.get( null );
+            fail( "Null key should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        try
+        {
+            cache.remove( null );
+            fail( "Null key should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        cache.put( new Object(), new Object() );
+        cache.clear();
+    }
+
+    private static class CleanedRecordingCache<K,E> extends ConcurrentLruCache<K,E>
+    {
+        private final List<E> cleaned = Collections.synchronizedList( new ArrayList<E>() );
+
+        CleanedRecordingCache( String name, int maxSize )
+        {
+            super( name, maxSize );
+        }
+
+        @Override
+        public void elementCleaned( E element )
+        {
+            cleaned.add( element );
+        }
+    }
+
+    @Test
+    public void smallCacheEvictsLeastRecentlyUsed()
+    {
+        CleanedRecordingCache<Integer,String> cache = new CleanedRecordingCache<Integer,String>( "TestCache", 3 );
+        cache.put( 1, "1" );
+        cache.put( 2, "2" );
+        cache.put( 3, "3" );
+        cache.get( 1 );
+        cache.put( 4, "4" );
+        assertEquals( Collections.singletonList( "2" ), cache.cleaned );
+        assertNull( cache.get( 2 ) );
+        assertEquals( "1", cache.get( 1 ) );
+        assertEquals( 3, cache.size() );
+        assertEquals( 2, cache.hitCount() );
+        assertEquals( 1, cache.missCount() );
+
+        assertEquals( "3", cache.remove( 3 ) );
+        assertEquals( 1, cache.cleaned.size() );
+        cache.clear();
+        assertEquals( 0, cache.size() );
+        assertEquals( new HashSet<String>( Arrays.asList( "2", "1", "4" ) ),
+                new HashSet<String>( cache.cleaned ) );
+    }
+
+    @Test
+    public void largeCacheStaysWithinMaxSize()
+    {
+        CleanedRecordingCache<Integer,Integer> cache = new CleanedRecordingCache<Integer,Integer>( "TestCache", 1000 );
+        for ( int i = 0; i < 5000; i++ )
+        {
+            cache.put( i, i );
+            assertTrue( cache.size() <= 1000 );
+        }
+        assertEquals( 1000, cache.size() );
+        assertEquals( 4000, cache.cleaned.size() );
+        Set<Integer> all = new HashSet<Integer>( cache.keySet() );
+        all.addAll( cache.cleaned );
+        assertEquals( 5000, all.size() );
+    }
+
+    @Test
+    public void testResize()
+    {
+        CleanedRecordingCache<Integer,Integer> cache = new CleanedRecordingCache<Integer,Integer>( "TestCache", 1000 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            cache.put( i, i );
+        }
+        cache.resize( 100 );
+        assertEquals( 100, cache.maxSize() );
+        assertEquals( 100, cache.size() );
+        assertEquals( 900, cache.cleaned.size() );
+        cache.resize( 2000 );
+        for ( int i = 1000; i < 2900; i++ )
+        {
+            cache.put( i, i );
+        }
+        assertTrue( cache.size() > 100 );
+        assertTrue( cache.size() <= 2000 );
+        try
+        {
+            cache.resize( 0 );
+            fail( "Illegal maxSize should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+    }
+
+    @Test
+    public void concurrentAccessKeepsCacheConsistent() throws Exception
+    {
+        final CleanedRecordingCache<Integer,Integer> cache =
+                new CleanedRecordingCache<Integer,Integer>( "TestCache", 500 );
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for ( int t = 0; t < 8; t++ )
+        {
+            final long seed = t;
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        Random random = new Random( seed );
+                        for ( int i = 0; i < 20000; i++ )
+                        {
+                            Integer key = random.nextInt( 2000 );
+                            Integer value = cache.get( key );
+                            if ( value == null )
+                            {
+                                cache.put( key, key );
+                            }
+                            else if ( !value.equals( key ) )
+                            {
+                                throw new AssertionError( "Got " + value + " for " + key );
+                            }
+                        }
+                    }
+                    catch ( Throwable e )
+                    {
+                        failure.set( e );
+                    }
+                }
+            };
+            thread.start();
+            threads.add( thread );
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        if ( failure.get() != null )
+        {
+            throw new AssertionError( failure.get() );
+        }
+        assertTrue( cache.size() <= 500 );
+        assertEquals( 8 * 20000, cache.hitCount() + cache.missCount() );
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOffHeapCache
+{
+    private static final int ON_HEAP_SIZE = 10;
+
+    private OffHeapCache<Entity> cache;
+
+    @Before
+    public void setup()
+    {
+        cache = new OffHeapCache<Entity>( "test", new EntityEncoder(), ON_HEAP_SIZE, 1024 * 1024,
+                OffHeapCache.MIN_SLAB_SIZE, null );
+    }
+
+    @Test
+    public void shouldGetEntityFromHeap()
+    {
+        Entity entity = new Entity( 5, 10 );
+        cache.put( entity );
+        assertSame( entity, cache.get( 5 ) );
+        assertNull( cache.get( 6 ) );
+        assertEquals( 1, cache.hitCount() );
+        assertEquals( 1, cache.missCount() );
+        assertEquals( 0, cache.offHeapHitCount() );
+    }
+
+    @Test
+    public void shouldMoveDisplacedEntityOffHeap()
+    {
+        Entity entity = new Entity( 5, 10 );
+        cache.put( entity );
+        cache.put( new Entity( 5 + ON_HEAP_SIZE, 20 ) );
+        assertEquals( 1, cache.movedOffHeapCount() );
+        assertEquals( 2, cache.size() );
+
+        Entity decoded = cache.get( 5 );
+        assertNotNull( decoded );
+        assertEquals( 5, decoded.getId() );
+        assertEquals( 10, decoded.value );
+        assertEquals( 1, cache.offHeapHitCount() );
+        // Now the other one has been moved off heap
+        assertSame( decoded, cache.get( 5 ) );
+        assertEquals( 20, cache.get( 5 + ON_HEAP_SIZE ).value );
+        assertEquals( 2, cache.offHeapHitCount() );
+    }
+
+    @Test
+    public void shouldRemoveEntityOnAndOffHeap()
+    {
+        cache.put( new Entity( 5, 10 ) );
+        cache.put( new Entity( 5 + ON_HEAP_SIZE, 20 ) );
+        assertEquals( 10, cache.remove( 5 ).value );
+        assertEquals( 20, cache.remove( 5 + ON_HEAP_SIZE ).value );
+        assertNull( cache.get( 5 ) );
+        assertNull( cache.get( 5 + ON_HEAP_SIZE ) );
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void changedEntityThatHasBeenMovedOffHeapShouldBeRemoved()
+    {
+        Entity entity = new Entity( 5, 10 );
+        cache.put( entity );
+        cache.put( new Entity( 5 + ON_HEAP_SIZE, 20 ) );
+        // Someone still holding on to the entity changes it
+        entity.value = 11;
+        cache.updateSize( entity, 10, 11 );
+        assertNull( cache.get( 5 ) );
+    }
+
+    @Test
+    public void shouldDropEntitiesThatCantBeEncoded()
+    {
+        cache.put( new Entity( 5, -1 ) );
+        cache.put( new Entity( 5 + ON_HEAP_SIZE, 20 ) );
+        assertEquals( 1, cache.notEncodedCount() );
+        assertNull( cache.get( 5 ) );
+    }
+
+    @Test
+    public void shouldEvictOldestEntitiesWhenSlabIsFull()
+    {
+        int payload = 100 * 1024;
+        for ( int i = 0; i < 20; i++ )
+        {
+            cache.put( new Entity( i * ON_HEAP_SIZE, payload ) );
+        }
+        assertTrue( cache.evictionCount() > 0 );
+        assertTrue( cache.offHeapBytesUsed() <= cache.offHeapBytes() );
+        assertNull( cache.get( 0 ) );
+        assertNotNull( cache.get( 18 * ON_HEAP_SIZE ) );
+    }
+
+    @Test
+    public void shouldMoveEntitiesOffHeapToStayWithinOnHeapSize()
+    {
+        int entitySize = new Entity( 0, 0 ).size();
+        cache = new OffHeapCache<Entity>( "test", new EntityEncoder(), ON_HEAP_SIZE, 4 * entitySize,
+                OffHeapCache.MIN_SLAB_SIZE, null );
+        for ( int i = 0; i < ON_HEAP_SIZE; i++ )
+        {
+            cache.put( new Entity( i, i ) );
+        }
+        assertTrue( cache.purgeCount() > 0 );
+        assertTrue( cache.onHeapSize() <= 4 * entitySize );
+        assertEquals( ON_HEAP_SIZE, cache.size() );
+        for ( int i = 0; i < ON_HEAP_SIZE; i++ )
+        {
+            assertEquals( i, cache.get( i ).value );
+        }
+
+        cache.remove( ON_HEAP_SIZE - 1 );
+        cache.clear();
+        assertEquals( 0, cache.onHeapSize() );
+    }
+
+    @Test
+    public void slabShouldKeepTheMostRecentEntries()
+    {
+        OffHeapSlab slab = new OffHeapSlab( 64 * 1024 );
+        Map<Long,Integer> model = new HashMap<Long,Integer>();
+        Random random = new Random( 1 );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            long id = random.nextInt( 1000 );
+            if ( random.nextInt( 10 ) == 0 )
+            {
+                boolean removed = slab.remove( id );
+                // Entries may have been evicted, but can't be removed twice
+                assertTrue( model.remove( id ) != null || !removed );
+                continue;
+            }
+            int length = 1 + random.nextInt( 200 );
+            ByteBuffer entry = ByteBuffer.allocate( 4 * length );
+            for ( int j = 0; j < length; j++ )
+            {
+                entry.putInt( (int) id + i );
+            }
+            entry.flip();
+            assertTrue( slab.put( id, entry ) );
+            model.put( id, i );
+
+            ByteBuffer stored = slab.get( id );
+            assertEquals( 4 * length, stored.remaining() );
+            assertEquals( (int) id + i, stored.getInt() );
+        }
+        int found = 0;
+        for ( Map.Entry<Long,Integer> entry : model.entrySet() )
+        {
+            ByteBuffer stored = slab.get( entry.getKey() );
+            if ( stored != null )
+            {
+                assertEquals( (int) ( entry.getKey() + entry.getValue() ), stored.getInt() );
+                found++;
+            }
+        }
+        assertEquals( found, slab.size() );
+        assertTrue( slab.usedBytes() <= slab.capacity() );
+        assertFalse( slab.put( 1, ByteBuffer.allocate( slab.capacity() ) ) );
+    }
+
+    private static class Entity implements EntityWithSize
+    {
+        private final long id;
+        private int value;
+
+        Entity( long id, int value )
+        {
+            this.id = id;
+            this.value = value;
+        }
+
+        @Override
+        public int size()
+        {
+            return 16 + 8 + 4;
+        }
+
+        @Override
+        public long getId()
+        {
+            return id;
+        }
+    }
+
+    /**
+     * Encodes the value of an entity followed by as many bytes, entities with
+     * a negative value can't be encoded.
+     */
+    private static class EntityEncoder implements EntityCodec<Entity>
+    {
+        @Override
+        public boolean encode( Entity entity, ByteBuffer target )
+        {
+            if ( entity.value < 0 )
+            {
+                return false;
+            }
+            target.putInt( entity.value );
+            target.put( new byte[entity.value] );
+            return true;
+        }
+
+        @Override
+        public Entity decode( long id, ByteBuffer source )
+        {
+            return new Entity( id, source.getInt() );
+        }
+    }
+}
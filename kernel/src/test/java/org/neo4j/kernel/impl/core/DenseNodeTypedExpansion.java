@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.storemigration.RelationshipGroupMigrator;
+import org.neo4j.test.TargetDirectory;
+
+/**
+ * Measures getting the relationships of a rare type from high degree nodes,
+ * with a cold cache, before and after migrating the store to dense nodes with
+ * the {@link RelationshipGroupMigrator}. Each hub has one {@code KNOWS}
+ * relationship for every hundred {@code LIKES} relationships.
+ */
+public class DenseNodeTypedExpansion
+{
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+    private static final RelationshipType LIKES = DynamicRelationshipType.withName( "LIKES" );
+
+    private static final int RUNS = 5;
+    private static final int HUBS = 10;
+
+    public static void main( String[] args )
+    {
+        int degree = args.length > 0 ? Integer.parseInt( args[0] ) : 100000;
+        String storeDir = TargetDirectory.forTest( DenseNodeTypedExpansion.class ).graphDbDir( true )
+                .getAbsolutePath();
+        long[] hubs = createHubs( storeDir, degree );
+        System.err.println( "single chain: " + typedExpansionMillis( storeDir, hubs,
+                new HashMap<String, String>() ) + " ms" );
+        System.err.println( "grouped:      " + typedExpansionMillis( storeDir, hubs,
+                stringMap( Config.ALLOW_STORE_UPGRADE, "true", Config.DENSE_NODE_THRESHOLD, "50" ) ) + " ms" );
+    }
+
+    private static long[] createHubs( String storeDir, int degree )
+    {
+        long[] hubs = new long[HUBS];
+        EmbeddedGraphDatabase db = new EmbeddedGraphDatabase( storeDir );
+        try
+        {
+            for ( int h = 0; h < HUBS; h++ )
+            {
+                Transaction tx = db.beginTx();
+                Node hub = db.createNode();
+                hubs[h] = hub.getId();
+                for ( int i = 0; i < degree; i++ )
+                {
+                    hub.createRelationshipTo( db.createNode(), i % 100 == 0 ? KNOWS : LIKES );
+                    if ( i % 10000 == 9999 )
+                    {
+                        tx.success();
+                        tx.finish();
+                        tx = db.beginTx();
+                    }
+                }
+                tx.success();
+                tx.finish();
+            }
+        }
+        finally
+        {
+            db.shutdown();
+        }
+        return hubs;
+    }
+
+    /**
+     * @return the best time out of {@link #RUNS} of getting the
+     * {@code KNOWS} relationships of every hub.
+     */
+    private static long typedExpansionMillis( String storeDir, long[] hubs, Map<String, String> config )
+    {
+        EmbeddedGraphDatabase db = new EmbeddedGraphDatabase( storeDir, config );
+        try
+        {
+            long best = Long.MAX_VALUE;
+            for ( int run = 0; run < RUNS; run++ )
+            {
+                db.getNodeManager().clearCache();
+                long start = System.currentTimeMillis();
+                int count = 0;
+                for ( long hub : hubs )
+                {
+                    for ( Relationship rel : db.getNodeById( hub ).getRelationships( KNOWS ) )
+                    {
+                        count++;
+                    }
+                }
+                best = Math.min( best, System.currentTimeMillis() - start );
+                if ( count == 0 )
+                {
+                    throw new IllegalStateException( "No relationships found" );
+                }
+            }
+            return best;
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+}
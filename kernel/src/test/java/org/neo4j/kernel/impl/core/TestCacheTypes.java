@@ -100,6 +100,14 @@ public class TestCacheTypes extends AbstractNeo4jTestCase
         db.shutdown();
     }
     
+    @Test
+    public void testOffHeapCache()
+    {
+        EmbeddedGraphDatabase db = newDb( "offheap" );
+        assertEquals( CacheType.offheap, db.getNodeManager().getCacheType() );
+        db.shutdown();
+    }
+
     @Test
     public void testInvalidCache()
     {
@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.IteratorUtil.count;
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.nioneo.store.NeoStore;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupRecord;
+import org.neo4j.test.TargetDirectory;
+import org.neo4j.test.TargetDirectory.TestDirectory;
+
+public class TestDenseNodes
+{
+    private static final RelationshipType TYPE_A = DynamicRelationshipType.withName( "A" );
+    private static final RelationshipType TYPE_B = DynamicRelationshipType.withName( "B" );
+    private static final RelationshipType TYPE_C = DynamicRelationshipType.withName( "C" );
+
+    public @Rule
+    TestDirectory testdir = TargetDirectory.testDirForTest( getClass() );
+
+    private EmbeddedGraphDatabase db;
+    private long hub;
+
+    @Before
+    public void createDenseNode()
+    {
+        String storeDir = storeDir();
+        db = new EmbeddedGraphDatabase( storeDir );
+        Transaction tx = db.beginTx();
+        Node hubNode = db.createNode();
+        for ( int i = 0; i < 20; i++ )
+        {
+            hubNode.createRelationshipTo( db.createNode(), TYPE_A );
+            db.createNode().createRelationshipTo( hubNode, TYPE_A );
+            hubNode.createRelationshipTo( db.createNode(), TYPE_B );
+        }
+        hubNode.createRelationshipTo( hubNode, TYPE_A );
+        hubNode.createRelationshipTo( hubNode, TYPE_C );
+        Node sparse = db.createNode();
+        sparse.createRelationshipTo( hubNode, TYPE_C );
+        tx.success();
+        tx.finish();
+        hub = hubNode.getId();
+        db.shutdown();
+
+        db = new EmbeddedGraphDatabase( storeDir, stringMap( Config.ALLOW_STORE_UPGRADE, "true",
+                Config.DENSE_NODE_THRESHOLD, "10" ) );
+    }
+
+    @After
+    public void shutdown()
+    {
+        db.shutdown();
+    }
+
+    private String storeDir()
+    {
+        return new File( testdir.directory(), "graph-db" ).getAbsolutePath();
+    }
+
+    @Test
+    public void migrationKeepsAllRelationships()
+    {
+        Node hubNode = db.getNodeById( hub );
+        assertEquals( 63, count( hubNode.getRelationships() ) );
+        assertEquals( 41, count( hubNode.getRelationships( TYPE_A ) ) );
+        assertEquals( 21, count( hubNode.getRelationships( TYPE_A, Direction.OUTGOING ) ) );
+        assertEquals( 21, count( hubNode.getRelationships( TYPE_A, Direction.INCOMING ) ) );
+        assertEquals( 20, count( hubNode.getRelationships( TYPE_B ) ) );
+        assertEquals( 0, count( hubNode.getRelationships( TYPE_B, Direction.INCOMING ) ) );
+        assertEquals( 2, count( hubNode.getRelationships( TYPE_C ) ) );
+        assertEquals( 43, count( hubNode.getRelationships( TYPE_A, TYPE_C ) ) );
+        for ( Relationship rel : hubNode.getRelationships( TYPE_B ) )
+        {
+            Node other = rel.getOtherNode( hubNode );
+            assertEquals( rel, other.getSingleRelationship( TYPE_B, Direction.INCOMING ) );
+        }
+    }
+
+    @Test
+    public void gettingRelationshipsOfOneTypeOnlyLoadsThatType()
+    {
+        Node hubNode = db.getNodeById( hub );
+        assertEquals( 20, count( hubNode.getRelationships( TYPE_B ) ) );
+        NodeImpl node = db.getNodeManager().getNodeForProxy( hub, null );
+        assertTrue( node instanceof DenseNodeImpl );
+        assertNotNull( node.getRelationshipIds( TYPE_B.name() ) );
+        assertNull( node.getRelationshipIds( TYPE_A.name() ) );
+        assertNull( node.getRelationshipIds( TYPE_C.name() ) );
+
+        assertEquals( 63, count( hubNode.getRelationships() ) );
+        assertNotNull( node.getRelationshipIds( TYPE_A.name() ) );
+        assertNotNull( node.getRelationshipIds( TYPE_C.name() ) );
+    }
+
+    @Test
+    public void canCreateAndDeleteRelationshipsOfDenseNode()
+    {
+        Node hubNode = db.getNodeById( hub );
+        Transaction tx = db.beginTx();
+        Relationship newType = hubNode.createRelationshipTo( db.createNode(), DynamicRelationshipType.withName( "D" ) );
+        Relationship loop = hubNode.createRelationshipTo( hubNode, TYPE_B );
+        db.createNode().createRelationshipTo( hubNode, TYPE_B );
+        for ( Relationship rel : hubNode.getRelationships( TYPE_C ) )
+        {
+            rel.delete();
+        }
+        // The first relationship of the outgoing A chain
+        hubNode.getRelationships( TYPE_A, Direction.OUTGOING ).iterator().next().delete();
+        tx.success();
+        tx.finish();
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            assertEquals( 40, count( hubNode.getRelationships( TYPE_A ) ) );
+            assertEquals( 22, count( hubNode.getRelationships( TYPE_B ) ) );
+            assertEquals( 2, count( hubNode.getRelationships( TYPE_B, Direction.INCOMING ) ) );
+            assertEquals( 0, count( hubNode.getRelationships( TYPE_C ) ) );
+            assertEquals( newType, hubNode.getSingleRelationship( DynamicRelationshipType.withName( "D" ),
+                    Direction.OUTGOING ) );
+            assertEquals( 63, count( hubNode.getRelationships() ) );
+            Set<Relationship> loops = new HashSet<Relationship>();
+            for ( Relationship rel : hubNode.getRelationships( TYPE_B, Direction.OUTGOING ) )
+            {
+                if ( rel.getEndNode().equals( hubNode ) )
+                {
+                    loops.add( rel );
+                }
+            }
+            assertEquals( 1, loops.size() );
+            assertTrue( loops.contains( loop ) );
+            db.getNodeManager().clearCache();
+        }
+    }
+
+    @Test
+    public void loadingATypeWaitsForTransactionsCommittingToTheNode() throws Exception
+    {
+        final Node hubNode = db.getNodeById( hub );
+        db.getNodeManager().clearCache();
+        Transaction tx = db.beginTx();
+        hubNode.createRelationshipTo( db.createNode(), TYPE_B );
+        final AtomicInteger loaded = new AtomicInteger( -1 );
+        Thread reader = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                loaded.set( count( hubNode.getRelationships( TYPE_B ) ) );
+            }
+        };
+        reader.start();
+        reader.join( 500 );
+        assertTrue( "Expected the reader to wait for the write lock of the node", reader.isAlive() );
+        tx.success();
+        tx.finish();
+        reader.join();
+
+        assertEquals( 21, loaded.get() );
+        assertEquals( 21, count( hubNode.getRelationships( TYPE_B ) ) );
+    }
+
+    @Test
+    public void deletingDenseNodeDeletesItsGroups()
+    {
+        NeoStore neoStore = db.getXaDataSourceManager().getNeoStoreDataSource().getNeoStore();
+        List<RelationshipGroupRecord> groups = neoStore.getRelationshipGroupStore().getGroups(
+                neoStore.getNodeStore().getRecord( hub ).getNextRel() );
+        assertEquals( 3, groups.size() );
+
+        Node hubNode = db.getNodeById( hub );
+        Transaction tx = db.beginTx();
+        for ( Relationship rel : hubNode.getRelationships() )
+        {
+            rel.delete();
+        }
+        hubNode.delete();
+        tx.success();
+        tx.finish();
+
+        assertFalse( neoStore.getNodeStore().forceGetRecord( hub ).inUse() );
+        for ( RelationshipGroupRecord group : groups )
+        {
+            assertFalse( neoStore.getRelationshipGroupStore().forceGetRecord( group.getId() ).inUse() );
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+import org.neo4j.kernel.impl.core.StoreAccesses.Kind;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+public class TestGraphScan extends AbstractNeo4jTestCase
+{
+    @Test
+    public void scansTheSameEntitiesAsGetAll() throws Exception
+    {
+        List<Node> nodes = new ArrayList<Node>();
+        for ( int i = 0; i < 3000; i++ )
+        {
+            nodes.add( getGraphDb().createNode() );
+        }
+        for ( int i = 1; i < nodes.size(); i++ )
+        {
+            nodes.get( i - 1 ).createRelationshipTo( nodes.get( i ), withName( "NEXT" ) );
+        }
+        for ( int i = 0; i < nodes.size(); i += 7 )
+        {
+            for ( Relationship relationship : nodes.get( i ).getRelationships() )
+            {
+                relationship.delete();
+            }
+            nodes.get( i ).delete();
+        }
+        newTransaction();
+
+        GlobalGraphOperations operations = GlobalGraphOperations.at( getGraphDb() );
+        assertEquals( ids( operations.getAllNodes() ), ids( operations.scanAllNodes() ) );
+        assertEquals( ids( operations.getAllRelationships() ), ids( operations.scanAllRelationships() ) );
+    }
+
+    @Test
+    public void idRangesSplitTheScan() throws Exception
+    {
+        for ( int i = 0; i < 2500; i++ )
+        {
+            getGraphDb().createNode();
+        }
+        newTransaction();
+
+        GlobalGraphOperations operations = GlobalGraphOperations.at( getGraphDb() );
+        long end = operations.getNodeIdRangeEnd();
+        List<Long> split = new ArrayList<Long>();
+        for ( long from = 0; from < end; from += 1000 )
+        {
+            List<Long> range = ids( operations.scanNodes( from, Math.min( end, from + 1000 ) ) );
+            for ( long id : range )
+            {
+                assertTrue( id >= from && id < from + 1000 );
+            }
+            split.addAll( range );
+        }
+        assertEquals( ids( operations.scanAllNodes() ), split );
+        assertFalse( operations.scanNodes( end, end + 1000 ).iterator().hasNext() );
+    }
+
+    @Test
+    public void scanningBypassesTheCache() throws Exception
+    {
+        Node node = getGraphDb().createNode();
+        node.createRelationshipTo( getGraphDb().createNode(), withName( "SCANNED" ) );
+        newTransaction();
+        getNodeManager().clearCache();
+
+        StoreAccesses accesses = getNodeManager().startCountingStoreAccesses();
+        try
+        {
+            GlobalGraphOperations operations = GlobalGraphOperations.at( getGraphDb() );
+            assertTrue( ids( operations.scanAllNodes() ).contains( node.getId() ) );
+            assertFalse( ids( operations.scanAllRelationships() ).isEmpty() );
+            assertEquals( 0, accesses.getTotal() );
+            assertNull( getNodeManager().getNodeIfCached( node.getId() ) );
+        }
+        finally
+        {
+            getNodeManager().stopCountingStoreAccesses();
+        }
+    }
+
+    @Test
+    public void onlySeesCommittedEntities() throws Exception
+    {
+        Node committed = getGraphDb().createNode();
+        newTransaction();
+        Node created = getGraphDb().createNode();
+        committed.delete();
+
+        List<Long> scanned = ids( GlobalGraphOperations.at( getGraphDb() ).scanAllNodes() );
+        assertTrue( scanned.contains( committed.getId() ) );
+        assertFalse( scanned.contains( created.getId() ) );
+    }
+
+    private static List<Long> ids( Iterable<? extends PropertyContainer> entities )
+    {
+        List<Long> ids = new ArrayList<Long>();
+        for ( PropertyContainer entity : entities )
+        {
+            ids.add( entity instanceof Node ? ((Node) entity).getId() : ((Relationship) entity).getId() );
+        }
+        return ids;
+    }
+}
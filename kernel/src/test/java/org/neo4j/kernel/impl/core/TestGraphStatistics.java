@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+
+public class TestGraphStatistics extends AbstractNeo4jTestCase
+{
+    @Test
+    public void relationshipCountsFollowCommittedTransactions() throws Exception
+    {
+        RelationshipType type = withName( "STATS_COUNTED" );
+        Node node = getGraphDb().createNode();
+        node.createRelationshipTo( getGraphDb().createNode(), type );
+        newTransaction();
+
+        GraphStatistics statistics = getNodeManager().getStatistics();
+        assertEquals( 1, statistics.getRelationshipCount( type.name() ) );
+
+        Relationship first = node.createRelationshipTo( getGraphDb().createNode(), type );
+        node.createRelationshipTo( node, type );
+        assertEquals( "uncommitted relationships shouldn't be counted", 1,
+                statistics.getRelationshipCount( type.name() ) );
+        newTransaction();
+        assertEquals( 3, statistics.getRelationshipCount( type.name() ) );
+
+        first.delete();
+        node.createRelationshipTo( getGraphDb().createNode(), type ).delete();
+        newTransaction();
+        assertEquals( 2, statistics.getRelationshipCount( type.name() ) );
+
+        node.createRelationshipTo( getGraphDb().createNode(), type );
+        rollback();
+        newTransaction();
+        assertEquals( 2, statistics.getRelationshipCount( type.name() ) );
+    }
+
+    @Test
+    public void degreeHistogramsTellDirectionsApart() throws Exception
+    {
+        RelationshipType type = withName( "STATS_HUB" );
+        Node hub = getGraphDb().createNode();
+        for ( int i = 0; i < 10; i++ )
+        {
+            hub.createRelationshipTo( getGraphDb().createNode(), type );
+        }
+        newTransaction();
+
+        GraphStatistics statistics = getNodeManager().getStatistics();
+        statistics.resample();
+
+        DegreeHistogram outgoing = statistics.getDegreeHistogram( type.name(), Direction.OUTGOING );
+        assertEquals( 1, outgoing.getNodesWithRelationships() );
+        assertEquals( 1, outgoing.getNodesInBucket( DegreeHistogram.bucketFor( 10 ) ) );
+        assertTrue( outgoing.getSampledNodes() >= 11 );
+        assertEquals( 10.0, statistics.getExpectedDegree( type.name(), Direction.OUTGOING ), 0.0 );
+        assertEquals( 1.0, statistics.getExpectedDegree( type.name(), Direction.INCOMING ), 0.0 );
+        assertEquals( 0.0, statistics.getExpectedDegree( "STATS_NONE", Direction.BOTH ), 0.0 );
+    }
+
+    @Test
+    public void samplingDegreesDoesntCacheTheSampledNodes() throws Exception
+    {
+        RelationshipType type = withName( "STATS_UNCACHED" );
+        Node node = getGraphDb().createNode();
+        node.createRelationshipTo( node, type );
+        node.createRelationshipTo( getGraphDb().createNode(), type );
+        newTransaction();
+        getNodeManager().clearCache();
+
+        GraphStatistics statistics = getNodeManager().getStatistics();
+        statistics.resample();
+
+        DegreeHistogram both = statistics.getDegreeHistogram( type.name(), Direction.BOTH );
+        assertEquals( 2, both.getNodesWithRelationships() );
+        assertEquals( 1.5, statistics.getExpectedDegree( type.name(), Direction.BOTH ), 0.0 );
+        assertEquals( 1.0, statistics.getExpectedDegree( type.name(), Direction.INCOMING ), 0.0 );
+        assertNull( getNodeManager().getNodeIfCached( node.getId() ) );
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+import org.neo4j.kernel.impl.MyRelTypes;
+import org.neo4j.kernel.impl.cache.EntityCodec;
+
+public class TestPrimitiveCodec extends AbstractNeo4jTestCase
+{
+    @Test
+    public void shouldEncodeLoadedRelationshipsAndProperties()
+    {
+        Node node = getGraphDb().createNode();
+        node.setProperty( "int", 10 );
+        node.setProperty( "string", "a string" );
+        node.setProperty( "longs", new long[] { 1, 2, 3 } );
+        node.setProperty( "strings", new String[] { "a", "b" } );
+        Set<Relationship> outgoing = new HashSet<Relationship>();
+        for ( int i = 0; i < 10; i++ )
+        {
+            outgoing.add( node.createRelationshipTo( getGraphDb().createNode(), MyRelTypes.TEST ) );
+        }
+        Relationship incoming = getGraphDb().createNode().createRelationshipTo( node, MyRelTypes.TEST2 );
+        Relationship loop = node.createRelationshipTo( node, MyRelTypes.TEST );
+        loop.setProperty( "double", 1.5d );
+        loop.setProperty( "bool", true );
+        newTransaction();
+        getNodeManager().clearCache();
+
+        // Load the relationships and properties into the cache
+        assertEquals( 12, count( node.getRelationships() ) );
+        node.getPropertyKeys().iterator().next();
+        NodeImpl nodeImpl = getNodeManager().getNodeForProxy( node.getId(), null );
+        NodeImpl decoded = roundTrip( PrimitiveCodec.NODES, nodeImpl );
+
+        assertEquals( 4, decoded.allProperties().length );
+        assertEquals( 10, decoded.getProperty( getNodeManager(), "int" ) );
+        assertEquals( "a string", decoded.getProperty( getNodeManager(), "string" ) );
+        assertArrayEquals( new long[] { 1, 2, 3 }, (long[]) decoded.getProperty( getNodeManager(), "longs" ) );
+        assertArrayEquals( new String[] { "a", "b" }, (String[]) decoded.getProperty( getNodeManager(), "strings" ) );
+
+        assertEquals( 2, decoded.getRelationshipIds().length );
+        assertFalse( decoded.hasMoreRelationshipsToLoad() );
+        Set<Relationship> decodedOutgoing = new HashSet<Relationship>();
+        for ( Relationship rel : decoded.getRelationships( getNodeManager(), Direction.OUTGOING ) )
+        {
+            decodedOutgoing.add( rel );
+        }
+        outgoing.add( loop );
+        assertEquals( outgoing, decodedOutgoing );
+        assertEquals( incoming, decoded.getSingleRelationship( getNodeManager(), MyRelTypes.TEST2,
+                Direction.INCOMING ) );
+        assertEquals( 12, count( decoded.getRelationships( getNodeManager() ) ) );
+
+        RelationshipImpl loopImpl = getNodeManager().getRelationshipForProxy( loop.getId(), null );
+        loopImpl.getPropertyKeys( getNodeManager() ).iterator().next();
+        RelationshipImpl decodedLoop = roundTrip( PrimitiveCodec.RELATIONSHIPS, loopImpl );
+        assertEquals( node.getId(), decodedLoop.getStartNodeId() );
+        assertEquals( node.getId(), decodedLoop.getEndNodeId() );
+        assertEquals( loopImpl.getTypeId(), decodedLoop.getTypeId() );
+        assertEquals( 1.5d, decodedLoop.getProperty( getNodeManager(), "double" ) );
+        assertEquals( true, decodedLoop.getProperty( getNodeManager(), "bool" ) );
+    }
+
+    @Test
+    public void shouldNotEncodeStateThatIsntLoaded()
+    {
+        Node node = getGraphDb().createNode();
+        node.setProperty( "key", "value" );
+        node.createRelationshipTo( getGraphDb().createNode(), MyRelTypes.TEST );
+        newTransaction();
+        getNodeManager().clearCache();
+
+        NodeImpl decoded = roundTrip( PrimitiveCodec.NODES, getNodeManager().getNodeForProxy( node.getId(), null ) );
+        assertNull( decoded.getRelationshipIds() );
+        assertNull( decoded.allProperties() );
+        assertEquals( "value", decoded.getProperty( getNodeManager(), "key" ) );
+        assertEquals( 1, count( decoded.getRelationships( getNodeManager() ) ) );
+    }
+
+    private static <E extends ArrayBasedPrimitive> E roundTrip( EntityCodec<E> codec,
+            E entity )
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( 4096 );
+        synchronized ( entity )
+        {
+            codec.encode( entity, buffer );
+        }
+        buffer.flip();
+        return codec.decode( entity.getId(), buffer );
+    }
+
+    private static int count( Iterable<?> iterable )
+    {
+        int count = 0;
+        for ( @SuppressWarnings( "unused" ) Object item : iterable )
+        {
+            count++;
+        }
+        return count;
+    }
+}
@@ -32,6 +32,7 @@ import java.util.HashSet;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.DynamicRelationshipType;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
@@ -217,6 +218,34 @@ public class TestRelationshipGrabSize
         clearCacheAndCreateDeleteCount( db, node1, node2, type2, type2, count );
     }
 
+    @Test
+    public void loadsAllRelationshipsOfNodeWithManyRelationshipsInGrowingBatches()
+    {
+        beginTx();
+        Node hub = db.createNode();
+        Node other = db.createNode();
+        RelationshipType type1 = DynamicRelationshipType.withName( "type" );
+        RelationshipType type2 = DynamicRelationshipType.withName( "bar" );
+        for ( int i = 0; i < GRAB_SIZE * 50; i++ )
+        {
+            hub.createRelationshipTo( other, i % 3 == 0 ? type2 : type1 );
+            other.createRelationshipTo( hub, type1 );
+            if ( i % 100 == 0 )
+            {
+                hub.createRelationshipTo( hub, type2 );
+            }
+        }
+        finishTx( true );
+        clearCache();
+
+        assertEquals( GRAB_SIZE * 100 + 5, count( hub.getRelationships() ) );
+        assertEquals( GRAB_SIZE * 50 + 5, count( hub.getRelationships( Direction.OUTGOING, type1, type2 ) ) );
+        assertEquals( GRAB_SIZE * 50 + 5, count( hub.getRelationships( Direction.INCOMING ) ) );
+        assertEquals( 167 + 5, count( hub.getRelationships( type2 ) ) );
+        // 10+20+40+80+160+320+640 >= 1005, rather than 101 batches of 10
+        assertEquals( 7, db.getNodeManager().getNodeIfCached( hub.getId() ).getRelChainBatches() );
+    }
+
     private void clearCacheAndCreateDeleteCount( EmbeddedGraphDatabase db, Node node1, Node node2,
             RelationshipType createType, RelationshipType deleteType, int expectedCount )
     {
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+import org.neo4j.kernel.impl.core.StoreAccesses.Kind;
+
+public class TestStoreAccesses extends AbstractNeo4jTestCase
+{
+    @Test
+    public void countsLoadsOnCacheMissesOnly() throws Exception
+    {
+        Node node = getGraphDb().createNode();
+        node.setProperty( "name", "counted" );
+        node.createRelationshipTo( getGraphDb().createNode(), withName( "ACCESSED" ) );
+        newTransaction();
+        getNodeManager().clearCache();
+
+        StoreAccesses accesses = getNodeManager().startCountingStoreAccesses();
+        try
+        {
+            Node loaded = getGraphDb().getNodeById( node.getId() );
+            assertEquals( "counted", loaded.getProperty( "name" ) );
+            for ( Relationship relationship : loaded.getRelationships() )
+            {
+                relationship.getOtherNode( loaded );
+            }
+            assertEquals( 1, accesses.get( Kind.NODE ) );
+            assertEquals( 1, accesses.get( Kind.PROPERTY ) );
+            assertTrue( accesses.get( Kind.RELATIONSHIP_CHAIN ) >= 1 );
+            long total = accesses.getTotal();
+
+            getGraphDb().getNodeById( node.getId() ).getProperty( "name" );
+            assertEquals( "cached records shouldn't be counted", total, accesses.getTotal() );
+        }
+        finally
+        {
+            getNodeManager().stopCountingStoreAccesses();
+        }
+
+        getNodeManager().clearCache();
+        getGraphDb().getNodeById( node.getId() ).getProperty( "name" );
+        assertEquals( "loads after stopping shouldn't be counted", 1, accesses.get( Kind.NODE ) );
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+
+public class TestConcurrentPersistenceWindowPool
+{
+    private static final int RECORD_SIZE = 8;
+    private static final int RECORD_COUNT = 100000;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+
+    @Before
+    public void createStoreFile() throws Exception
+    {
+        String path = AbstractNeo4jTestCase.getStorePath( "windowpool" );
+        new File( path ).mkdirs();
+        File storeFile = new File( path, "concurrent.db" );
+        storeFile.delete();
+        file = new RandomAccessFile( storeFile, "rw" );
+        file.setLength( (long) RECORD_SIZE * RECORD_COUNT );
+        channel = file.getChannel();
+    }
+
+    @After
+    public void closeStoreFile() throws Exception
+    {
+        file.close();
+    }
+
+    @Test
+    public void concurrentWritesSurviveEvictions() throws Exception
+    {
+        concurrentWritesSurviveEvictions( true );
+    }
+
+    @Test
+    public void concurrentWritesSurviveEvictionsOfPlainWindows() throws Exception
+    {
+        concurrentWritesSurviveEvictions( false );
+    }
+
+    private void concurrentWritesSurviveEvictions( boolean memoryMapped ) throws Exception
+    {
+        // Room for a tenth of the store, so bricks get evicted all the time
+        final WindowPool pool = new ConcurrentPersistenceWindowPool( "concurrent.db", RECORD_SIZE, channel,
+                RECORD_SIZE * RECORD_COUNT / 10, memoryMapped, false );
+        final int threadCount = 4;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for ( int t = 0; t < threadCount; t++ )
+        {
+            final int offset = t;
+            threads.add( new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        Random random = new Random( offset );
+                        for ( int i = 0; i < 20000; i++ )
+                        {
+                            long id = random.nextInt( RECORD_COUNT / threadCount ) * threadCount + offset;
+                            write( pool, id, id + 1 );
+                            assertEquals( id + 1, read( pool, id ) );
+                        }
+                    }
+                    catch ( Throwable e )
+                    {
+                        failure.compareAndSet( null, e );
+                    }
+                }
+            } );
+        }
+        for ( Thread thread : threads )
+        {
+            thread.start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        if ( failure.get() != null )
+        {
+            throw new AssertionError( failure.get() );
+        }
+
+        WindowPoolStats stats = pool.getStats();
+        assertTrue( stats.getEvictionCount() > 0 );
+        assertTrue( stats.getMemUsed() <= stats.getMemAvail() );
+        pool.close();
+
+        WindowPool reopened = new ConcurrentPersistenceWindowPool( "concurrent.db", RECORD_SIZE, channel, 0,
+                true, true );
+        for ( long id = 0; id < RECORD_COUNT; id++ )
+        {
+            long value = read( reopened, id );
+            assertTrue( value == 0 || value == id + 1 );
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void brickIsNotMappedOverRowBeingWritten() throws Exception
+    {
+        // Plain windows keep a copy of the brick, which would write the record
+        // back as it was when mapped
+        final WindowPool pool = new ConcurrentPersistenceWindowPool( "concurrent.db", RECORD_SIZE, channel,
+                RECORD_SIZE * RECORD_COUNT, false, false );
+        final CountDownLatch rowAcquired = new CountDownLatch( 1 );
+        final CountDownLatch brickUsed = new CountDownLatch( 1 );
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread rowWriter = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    // First access of the brick, so it isn't mapped yet
+                    PersistenceWindow row = pool.acquire( 42, OperationType.WRITE );
+                    try
+                    {
+                        assertTrue( row instanceof PersistenceRow );
+                        row.getOffsettedBuffer( 42 ).putLong( 4242 );
+                        rowAcquired.countDown();
+                        brickUsed.await();
+                    }
+                    finally
+                    {
+                        pool.release( row );
+                    }
+                }
+                catch ( Throwable e )
+                {
+                    failure.compareAndSet( null, e );
+                    rowAcquired.countDown();
+                }
+            }
+        };
+        rowWriter.start();
+        rowAcquired.await();
+        // Hot enough to get mapped, the same brick as the row
+        for ( int i = 0; i < 10; i++ )
+        {
+            write( pool, 43, i );
+        }
+        brickUsed.countDown();
+        rowWriter.join();
+        if ( failure.get() != null )
+        {
+            throw new AssertionError( failure.get() );
+        }
+        for ( int i = 0; i < 10; i++ )
+        {
+            write( pool, 43, i );
+        }
+        assertEquals( 4242, read( pool, 42 ) );
+        pool.close();
+
+        WindowPool reopened = new ConcurrentPersistenceWindowPool( "concurrent.db", RECORD_SIZE, channel, 0,
+                false, true );
+        assertEquals( 4242, read( reopened, 42 ) );
+        assertEquals( 9, read( reopened, 43 ) );
+        reopened.close();
+    }
+
+    @Test
+    public void hotBricksGetMapped() throws Exception
+    {
+        WindowPool pool = new ConcurrentPersistenceWindowPool( "concurrent.db", RECORD_SIZE, channel,
+                RECORD_SIZE * RECORD_COUNT, true, false );
+        for ( int i = 0; i < 10; i++ )
+        {
+            write( pool, 42, i );
+        }
+        assertEquals( 9, read( pool, 42 ) );
+        WindowPoolStats stats = pool.getStats();
+        assertTrue( stats.getHitCount() > 0 );
+        assertEquals( stats.getWindowSize(), stats.getMemUsed() );
+        assertEquals( 0, stats.getEvictionCount() );
+        pool.close();
+    }
+
+    private static void write( WindowPool pool, long id, long value )
+    {
+        PersistenceWindow window = pool.acquire( id, OperationType.WRITE );
+        try
+        {
+            window.getOffsettedBuffer( id ).putLong( value );
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+
+    private static long read( WindowPool pool, long id )
+    {
+        PersistenceWindow window = pool.acquire( id, OperationType.READ );
+        try
+        {
+            return window.getOffsettedBuffer( id ).getLong();
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+}
@@ -273,11 +273,11 @@ public class TestGraphProperties
 
     private void removeLastNeoStoreRecord( String storeDir ) throws IOException
     {
-        // Remove the last record, next startup will look like as if we're upgrading an old store
+        // Remove the "next prop" and "dense nodes" records, next startup will look like as if we're upgrading an old store
         File neoStoreFile = new File( storeDir, NeoStore.DEFAULT_NAME );
         RandomAccessFile raFile = new RandomAccessFile( neoStoreFile, "rw" );
         FileChannel channel = raFile.getChannel();
-        channel.position( NeoStore.RECORD_SIZE*6/*position of "next prop"*/ );
+        channel.position( NeoStore.RECORD_SIZE*7/*after "dense nodes"*/ );
         int trail = (int) (channel.size()-channel.position());
         ByteBuffer trailBuffer = null;
         if ( trail > 0 )
@@ -42,7 +42,6 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.helpers.Pair;
-import org.neo4j.helpers.collection.CombiningIterable;
 import org.neo4j.helpers.collection.MapUtil;
 import org.neo4j.kernel.CommonFactories;
 import org.neo4j.kernel.ConfigProxy;
@@ -60,7 +59,6 @@ import org.neo4j.kernel.impl.transaction.xaframework.TxIdGenerator;
 import org.neo4j.kernel.impl.transaction.xaframework.XaFactory;
 import org.neo4j.kernel.impl.util.ArrayMap;
 import org.neo4j.kernel.impl.util.FileUtils;
-import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
 import org.neo4j.kernel.impl.util.StringLogger;
 
 import static org.junit.Assert.assertEquals;
@@ -232,6 +230,10 @@ public class TestNeoStore extends AbstractNeo4jTestCase
         file.delete();
         file = new File( file( "neo.relationshiptypestore.db.names.id" ) );
         file.delete();
+        file = new File( file( "neo.relationshipgroupstore.db" ) );
+        file.delete();
+        file = new File( file( "neo.relationshipgroupstore.db.id" ) );
+        file.delete();
         file = new File( "." );
         for ( File nioFile : file.listFiles() )
         {
@@ -372,18 +374,17 @@ public class TestNeoStore extends AbstractNeo4jTestCase
         return new AtomicLong( xaCon.getWriteTransaction().getRelationshipChainPosition( node ) );
     }
 
-    @SuppressWarnings( "unchecked" )
     private Iterable<RelationshipRecord> getMore( NeoStoreXaConnection xaCon, long node, AtomicLong pos )
     {
-        Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> rels =
-                xaCon.getWriteTransaction().getMoreRelationships( node, pos.get() );
-        pos.set( rels.other() );
-        List<Iterable<RelationshipRecord>> list = new ArrayList<Iterable<RelationshipRecord>>();
-        for ( Map.Entry<DirectionWrapper, Iterable<RelationshipRecord>> entry : rels.first().entrySet() )
+        RelationshipChainBatch rels = xaCon.getWriteTransaction().getMoreRelationships( node, pos.get(), 0 );
+        pos.set( rels.getNextPosition() );
+        List<RelationshipRecord> list = new ArrayList<RelationshipRecord>();
+        for ( int i = 0; i < rels.size(); i++ )
         {
-            list.add( entry.getValue() );
+            list.add( new RelationshipRecord( rels.getId( i ), rels.getFirstNode( i ), rels.getSecondNode( i ),
+                    rels.getType( i ) ) );
         }
-        return new CombiningIterable<RelationshipRecord>( list );
+        return list;
     }
 
     /*
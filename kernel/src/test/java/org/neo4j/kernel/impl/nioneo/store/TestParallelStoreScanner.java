@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.ProgressIndicator;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.test.TargetDirectory;
+import org.neo4j.test.TargetDirectory.TestDirectory;
+
+public class TestParallelStoreScanner
+{
+    public @Rule
+    TestDirectory testdir = TargetDirectory.testDirForTest( getClass() );
+
+    private StoreAccess stores;
+
+    @Before
+    public void createStore()
+    {
+        EmbeddedGraphDatabase db = new EmbeddedGraphDatabase( testdir.directory().getAbsolutePath() );
+        try
+        {
+            Transaction tx = db.beginTx();
+            Node previous = db.createNode();
+            for ( int i = 0; i < 2000; i++ )
+            {
+                Node node = db.createNode();
+                node.setProperty( "name", "node " + i );
+                node.setProperty( "values", new long[] { i, i * 2 } );
+                Relationship relationship = previous.createRelationshipTo( node,
+                        withName( i % 2 == 0 ? "EVEN" : "ODD" ) );
+                if ( i % 5 == 0 )
+                {
+                    relationship.delete();
+                    db.createNode().delete();
+                }
+                previous = node;
+            }
+            tx.success();
+            tx.finish();
+        }
+        finally
+        {
+            db.shutdown();
+        }
+        stores = new StoreAccess( testdir.directory().getAbsolutePath() );
+    }
+
+    @After
+    public void closeStore()
+    {
+        stores.close();
+    }
+
+    @Test
+    public void processesTheSameRecordsAsASingleThreadedScan() throws Exception
+    {
+        RecordCounter expected = stores.applyToAll( new RecordCounter() );
+
+        ParallelStoreScanner scanner = new ParallelStoreScanner( stores, 4, 100 );
+        RecordCounter counted = scanner.applyToAll( new RecordCounter.Factory(), new RecordCounter.Sum() );
+
+        assertEquals( expected.counts, counted.counts );
+        long total = 0;
+        for ( long count : counted.counts.values() )
+        {
+            total += count;
+        }
+        assertEquals( total, scanner.getRecordsProcessed() );
+    }
+
+    @Test
+    public void reportsProgressForAllIds() throws Exception
+    {
+        final long[] reported = new long[2];
+        ParallelStoreScanner scanner = new ParallelStoreScanner( stores, 3, 64 )
+        {
+            @Override
+            protected ProgressIndicator progressInit( long totalIds )
+            {
+                reported[0] = totalIds;
+                return new ProgressIndicator()
+                {
+                    @Override
+                    public void update( boolean incremental, long value )
+                    {
+                        reported[1] += value;
+                    }
+
+                    @Override
+                    public void done( long totalProgress )
+                    {
+                        assertEquals( reported[0], totalProgress );
+                    }
+                };
+            }
+        };
+        scanner.applyToAll( new RecordCounter.Factory(), new RecordCounter.Sum() );
+
+        assertEquals( reported[0], reported[1] );
+        assertEquals( reported[0], scanner.getIdsScanned() );
+    }
+
+    @Test
+    public void rethrowsFailuresOfTheProcessors() throws Exception
+    {
+        final IllegalStateException failure = new IllegalStateException( "broken" );
+        try
+        {
+            new ParallelStoreScanner( stores, 2, 100 ).applyToAll(
+                    new ParallelStoreScanner.ProcessorFactory<RecordCounter>()
+                    {
+                        @Override
+                        public RecordCounter newProcessor()
+                        {
+                            return new RecordCounter()
+                            {
+                                @Override
+                                public void processNode( RecordStore<NodeRecord> store, NodeRecord node )
+                                {
+                                    throw failure;
+                                }
+                            };
+                        }
+                    }, new RecordCounter.Sum() );
+            fail( "should have rethrown the failure" );
+        }
+        catch ( IllegalStateException e )
+        {
+            assertSame( failure, e );
+        }
+    }
+
+    private static class RecordCounter extends RecordStore.Processor
+    {
+        final Map<String, Long> counts = new HashMap<String, Long>();
+
+        @Override
+        public void processString( RecordStore<DynamicRecord> store, DynamicRecord string )
+        {
+            count( "String" );
+        }
+
+        @Override
+        public void processArray( RecordStore<DynamicRecord> store, DynamicRecord array )
+        {
+            count( "Array" );
+        }
+
+        @Override
+        protected void processDynamic( RecordStore<DynamicRecord> store, DynamicRecord record )
+        {
+            count( "Name" );
+        }
+
+        @Override
+        protected <R extends AbstractBaseRecord> void processRecord( Class<R> type, RecordStore<R> store, R record )
+        {
+            count( type.getSimpleName() );
+        }
+
+        private void count( String type )
+        {
+            Long count = counts.get( type );
+            counts.put( type, count == null ? 1 : count + 1 );
+        }
+
+        static class Factory implements ParallelStoreScanner.ProcessorFactory<RecordCounter>
+        {
+            @Override
+            public RecordCounter newProcessor()
+            {
+                return new RecordCounter();
+            }
+        }
+
+        static class Sum implements ParallelStoreScanner.Reducer<RecordCounter>
+        {
+            @Override
+            public RecordCounter reduce( RecordCounter left, RecordCounter right )
+            {
+                for ( Map.Entry<String, Long> count : right.counts.entrySet() )
+                {
+                    Long sum = left.counts.get( count.getKey() );
+                    left.counts.put( count.getKey(), sum == null ? count.getValue() : sum + count.getValue() );
+                }
+                return left;
+            }
+        }
+    }
+}
@@ -244,6 +244,16 @@ public class TestXa extends AbstractNeo4jTestCase
         {
             assertTrue( file.delete() );
         }
+        file = new File( file( "neo.relationshipgroupstore.db" ) );
+        if ( file.exists() )
+        {
+            assertTrue( file.delete() );
+        }
+        file = new File( file( "neo.relationshipgroupstore.db.id" ) );
+        if ( file.exists() )
+        {
+            assertTrue( file.delete() );
+        }
         file = new File( path() );
         for ( File nioFile : file.listFiles() )
         {
@@ -0,0 +1,297 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.storemigration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.helpers.collection.IteratorUtil.count;
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.CommonFactories;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.nioneo.store.NeoStore;
+import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
+import org.neo4j.kernel.impl.nioneo.store.NodeStore;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.StoreFactory;
+import org.neo4j.kernel.impl.nioneo.store.UnderlyingStorageException;
+import org.neo4j.kernel.impl.util.FileUtils;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.test.TargetDirectory;
+import org.neo4j.test.TargetDirectory.TestDirectory;
+
+public class TestRelationshipGroupUpgrade
+{
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+    private static final RelationshipType LIKES = DynamicRelationshipType.withName( "LIKES" );
+
+    public @Rule
+    TestDirectory testdir = TargetDirectory.testDirForTest( getClass() );
+
+    private String storeDir;
+    private long hubId, leafId;
+
+    @Before
+    public void createStore() throws IOException
+    {
+        storeDir = new File( testdir.directory(), "graph-db" ).getAbsolutePath();
+        FileUtils.deleteRecursively( new File( storeDir ) );
+        EmbeddedGraphDatabase db = new EmbeddedGraphDatabase( storeDir );
+        Transaction tx = db.beginTx();
+        Node hub = db.createNode();
+        hub.setProperty( "name", "hub" );
+        for ( int i = 0; i < 10; i++ )
+        {
+            hub.createRelationshipTo( db.createNode(), KNOWS );
+            db.createNode().createRelationshipTo( hub, LIKES );
+        }
+        Node leaf = db.createNode();
+        leaf.createRelationshipTo( hub, KNOWS );
+        tx.success();
+        tx.finish();
+        hubId = hub.getId();
+        leafId = leaf.getId();
+        db.shutdown();
+    }
+
+    @Test
+    public void storesDontHaveDenseNodesUnlessAskedFor()
+    {
+        assertFalse( new File( storeDir, "neostore.relationshipgroupstore.db" ).exists() );
+        NeoStore neoStore = newNeoStore( stringMap() );
+        try
+        {
+            assertFalse( neoStore.hasDenseNodes() );
+            assertEquals( null, neoStore.getRelationshipGroupStore() );
+        }
+        finally
+        {
+            neoStore.close();
+        }
+    }
+
+    @Test
+    public void storeFromBeforeDenseNodesStartsWithoutUpgrade() throws IOException
+    {
+        removeDenseNodesRecord();
+
+        EmbeddedGraphDatabase db = new EmbeddedGraphDatabase( storeDir );
+        try
+        {
+            assertEquals( 21, count( db.getNodeById( hubId ).getRelationships() ) );
+            assertFalse( db.getXaDataSourceManager().getNeoStoreDataSource().getNeoStore().hasDenseNodes() );
+        }
+        finally
+        {
+            db.shutdown();
+        }
+        assertFalse( new File( storeDir, "upgrade_backup" ).exists() );
+        assertFalse( new File( storeDir, "dense_nodes_backup" ).exists() );
+        assertTrue( new CurrentDatabase().storeFilesAtCurrentVersion( new File( storeDir ) ) );
+    }
+
+    @Test
+    public void nodesKeepFullPropertyIdWidthWithoutDenseNodes()
+    {
+        long propertyId = NodeStore.MAX_DENSE_NODES_PROPERTY_ID + 5;
+        NeoStore neoStore = newNeoStore( stringMap() );
+        try
+        {
+            NodeStore nodeStore = neoStore.getNodeStore();
+            NodeRecord node = new NodeRecord( nodeStore.nextId(), Record.NO_NEXT_RELATIONSHIP.intValue(),
+                    propertyId );
+            node.setInUse( true );
+            nodeStore.updateRecord( node );
+
+            NodeRecord read = nodeStore.getRecord( node.getId() );
+            assertEquals( propertyId, read.getNextProp() );
+            assertFalse( read.isDense() );
+        }
+        finally
+        {
+            neoStore.close();
+        }
+    }
+
+    @Test
+    public void migratesToDenseNodesWhenAskedTo()
+    {
+        EmbeddedGraphDatabase db = new EmbeddedGraphDatabase( storeDir, stringMap( Config.ALLOW_STORE_UPGRADE,
+                "true", Config.DENSE_NODE_THRESHOLD, "10" ) );
+        try
+        {
+            assertTrue( new File( storeDir, "dense_nodes_backup" ).isDirectory() );
+            NeoStore neoStore = db.getXaDataSourceManager().getNeoStoreDataSource().getNeoStore();
+            assertTrue( neoStore.hasDenseNodes() );
+            assertTrue( neoStore.getNodeStore().getRecord( hubId ).isDense() );
+            assertFalse( neoStore.getNodeStore().getRecord( leafId ).isDense() );
+
+            Node hub = db.getNodeById( hubId );
+            assertEquals( "hub", hub.getProperty( "name" ) );
+            assertEquals( 21, count( hub.getRelationships() ) );
+            assertEquals( 11, count( hub.getRelationships( KNOWS ) ) );
+            assertEquals( 1, count( hub.getRelationships( KNOWS, Direction.INCOMING ) ) );
+            assertEquals( 10, count( hub.getRelationships( LIKES, Direction.INCOMING ) ) );
+            assertEquals( hub, db.getNodeById( leafId ).getSingleRelationship( KNOWS, Direction.OUTGOING )
+                    .getEndNode() );
+        }
+        finally
+        {
+            db.shutdown();
+        }
+        assertTrue( new CurrentDatabase().storeFilesAtCurrentVersion( new File( storeDir ) ) );
+
+        // Stays dense without the threshold
+        NeoStore neoStore = newNeoStore( stringMap() );
+        try
+        {
+            assertTrue( neoStore.hasDenseNodes() );
+            assertTrue( neoStore.getNodeStore().getRecord( hubId ).isDense() );
+        }
+        finally
+        {
+            neoStore.close();
+        }
+    }
+
+    @Test
+    public void migratingToDenseNodesNeedsUpgradeToBeAllowed()
+    {
+        try
+        {
+            new EmbeddedGraphDatabase( storeDir, stringMap( Config.DENSE_NODE_THRESHOLD, "10" ) ).shutdown();
+            fail( "Shouldn't migrate to dense nodes without " + Config.ALLOW_STORE_UPGRADE );
+        }
+        catch ( RuntimeException e )
+        {
+            assertTrue( hasCause( e, UpgradeNotAllowedByConfigurationException.class ) );
+        }
+        assertFalse( new File( storeDir, "dense_nodes_backup" ).exists() );
+        NeoStore neoStore = newNeoStore( stringMap() );
+        try
+        {
+            assertFalse( neoStore.hasDenseNodes() );
+        }
+        finally
+        {
+            neoStore.close();
+        }
+    }
+
+    @Test
+    public void newStoreHasDenseNodesWhenAskedFor()
+    {
+        String newStoreDir = new File( testdir.directory(), "new-graph-db" ).getAbsolutePath();
+        EmbeddedGraphDatabase db = new EmbeddedGraphDatabase( newStoreDir, stringMap(
+                Config.DENSE_NODE_THRESHOLD, "10" ) );
+        try
+        {
+            assertTrue( db.getXaDataSourceManager().getNeoStoreDataSource().getNeoStore().hasDenseNodes() );
+        }
+        finally
+        {
+            db.shutdown();
+        }
+        assertFalse( new File( newStoreDir, "dense_nodes_backup" ).exists() );
+    }
+
+    @Test( expected = UnderlyingStorageException.class )
+    public void denseNodesLimitPropertyIds()
+    {
+        NeoStore neoStore = newNeoStore( stringMap( Config.ALLOW_STORE_UPGRADE, "true",
+                Config.DENSE_NODE_THRESHOLD, "10" ) );
+        try
+        {
+            assertTrue( neoStore.hasDenseNodes() );
+            NodeStore nodeStore = neoStore.getNodeStore();
+            NodeRecord node = new NodeRecord( nodeStore.nextId(), Record.NO_NEXT_RELATIONSHIP.intValue(),
+                    NodeStore.MAX_DENSE_NODES_PROPERTY_ID + 1 );
+            node.setInUse( true );
+            node.setDense( true );
+            nodeStore.updateRecord( node );
+        }
+        finally
+        {
+            neoStore.close();
+        }
+    }
+
+    private NeoStore newNeoStore( Map<String, String> config )
+    {
+        String neoStoreFileName = new File( storeDir, NeoStore.DEFAULT_NAME ).getPath();
+        config.put( "neo_store", neoStoreFileName );
+        return new StoreFactory( config, CommonFactories.defaultIdGeneratorFactory(),
+                CommonFactories.defaultFileSystemAbstraction(), null, StringLogger.DEV_NULL, null )
+                .newNeoStore( neoStoreFileName );
+    }
+
+    /**
+     * Makes a cleanly shut down store look like one from before the dense
+     * nodes record was added to the neo store, keeping its version trailer.
+     */
+    private void removeDenseNodesRecord() throws IOException
+    {
+        FileChannel channel = new RandomAccessFile( new File( storeDir, NeoStore.DEFAULT_NAME ), "rw" )
+                .getChannel();
+        try
+        {
+            int recordsSize = NeoStore.RECORD_SIZE * 7;
+            ByteBuffer trailer = ByteBuffer.allocate( (int) channel.size() - recordsSize );
+            channel.read( trailer, recordsSize );
+            trailer.flip();
+            channel.write( trailer, NeoStore.RECORD_SIZE * 6 );
+            channel.truncate( channel.size() - NeoStore.RECORD_SIZE );
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private static boolean hasCause( Throwable e, Class<? extends Throwable> cause )
+    {
+        for ( Throwable t = e; t != null; t = t.getCause() )
+        {
+            if ( cause.isInstance( t ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -21,6 +21,7 @@ package org.neo4j.kernel.impl.transaction;
 
 import java.util.ArrayList;
 
+import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
@@ -29,6 +30,8 @@ class FakeXAResource implements XAResource
     private String name = null;
     private int transactionTimeout = 0;
     private ArrayList<MethodCall> methodCalls = new ArrayList<MethodCall>();
+    private int prepareVote = XAResource.XA_OK;
+    private boolean failCommit = false;
 
     FakeXAResource( String name )
     {
@@ -45,6 +48,16 @@ class FakeXAResource implements XAResource
         return name;
     }
 
+    void setPrepareVote( int vote )
+    {
+        this.prepareVote = vote;
+    }
+
+    void setFailCommit( boolean failCommit )
+    {
+        this.failCommit = failCommit;
+    }
+
     synchronized MethodCall[] getAndRemoveMethodCalls()
     {
         if ( methodCalls.size() > 0 )
@@ -62,11 +75,15 @@ class FakeXAResource implements XAResource
         methodCalls.add( methodCall );
     }
 
-    public void commit( Xid xid, boolean onePhase )
+    public void commit( Xid xid, boolean onePhase ) throws XAException
     {
         addMethodCall( new MethodCall( "commit", new Object[] { xid,
             new Boolean( onePhase ) }, new String[] {
             "javax.transaction.xa.Xid", "java.lang.Boolean" } ) );
+        if ( failCommit )
+        {
+            throw new XAException( XAException.XAER_RMERR );
+        }
     }
 
     public void end( Xid xid, int flags )
@@ -109,7 +126,7 @@ class FakeXAResource implements XAResource
     {
         addMethodCall( new MethodCall( "prepare", new Object[] { xid },
             new String[] { "javax.transaction.xa.Xid" } ) );
-        return XAResource.XA_OK;
+        return prepareVote;
     }
 
     public Xid[] recover( int flag )
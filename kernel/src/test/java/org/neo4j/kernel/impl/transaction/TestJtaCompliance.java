@@ -23,6 +23,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import javax.transaction.HeuristicRollbackException;
 import javax.transaction.NotSupportedException;
 import javax.transaction.RollbackException;
 import javax.transaction.Status;
@@ -413,6 +414,79 @@ public class TestJtaCompliance extends AbstractNeo4jTestCase
         assertEquals( 0, calls2.length );
     }
 
+    /**
+     * o Tests that when all resources but the last one are read only, the
+     * last one is committed in one phase without being prepared.
+     */
+    @Test
+    public void testOnePhaseCommitOfLastResource() throws Exception
+    {
+        tm.begin();
+        FakeXAResource res1 = new FakeXAResource( "XAResource1" );
+        FakeXAResource res2 = new FakeXAResource( "XAResource2" );
+        res1.setPrepareVote( XAResource.XA_RDONLY );
+        tm.getTransaction().enlistResource( res1 );
+        tm.getTransaction().enlistResource( res2 );
+        Xid xid2 = (Xid) res2.getAndRemoveMethodCalls()[0].getArgs()[0];
+        tm.getTransaction().delistResource( res2, XAResource.TMSUCCESS );
+        tm.getTransaction().delistResource( res1, XAResource.TMSUCCESS );
+        res1.getAndRemoveMethodCalls();
+        res2.getAndRemoveMethodCalls();
+
+        tm.commit();
+        MethodCall calls1[] = res1.getAndRemoveMethodCalls();
+        MethodCall calls2[] = res2.getAndRemoveMethodCalls();
+        // res1
+        assertEquals( 1, calls1.length );
+        assertEquals( "prepare", calls1[0].getMethodName() );
+        // res2
+        assertEquals( 1, calls2.length );
+        assertEquals( "commit", calls2[0].getMethodName() );
+        Object args[] = calls2[0].getArgs();
+        assertTrue( ((Xid) args[0]).equals( xid2 ) );
+        assertEquals( true, ((Boolean) args[1]).booleanValue() );
+    }
+
+    /**
+     * o Tests that a failing one phase commit of the last resource only rolls
+     * back that resource, the read only ones have already forgotten the
+     * transaction.
+     */
+    @Test
+    public void testFailingOnePhaseCommitOfLastResource() throws Exception
+    {
+        tm.begin();
+        FakeXAResource res1 = new FakeXAResource( "XAResource1" );
+        FakeXAResource res2 = new FakeXAResource( "XAResource2" );
+        res1.setPrepareVote( XAResource.XA_RDONLY );
+        res2.setFailCommit( true );
+        tm.getTransaction().enlistResource( res1 );
+        tm.getTransaction().enlistResource( res2 );
+        tm.getTransaction().delistResource( res2, XAResource.TMSUCCESS );
+        tm.getTransaction().delistResource( res1, XAResource.TMSUCCESS );
+        res1.getAndRemoveMethodCalls();
+        res2.getAndRemoveMethodCalls();
+
+        try
+        {
+            tm.commit();
+            fail( "Commit should have failed" );
+        }
+        catch ( HeuristicRollbackException e )
+        { // good
+        }
+        MethodCall calls1[] = res1.getAndRemoveMethodCalls();
+        MethodCall calls2[] = res2.getAndRemoveMethodCalls();
+        // res1
+        assertEquals( 1, calls1.length );
+        assertEquals( "prepare", calls1[0].getMethodName() );
+        // res2
+        assertEquals( 2, calls2.length );
+        assertEquals( "commit", calls2[0].getMethodName() );
+        assertEquals( "rollback", calls2[1].getMethodName() );
+        assertTrue( tm.getStatus() == Status.STATUS_NO_TRANSACTION );
+    }
+
     /**
      * o Tests that multiple enlistments receive rollback calls properly.
      */
@@ -19,6 +19,7 @@
  */
 package org.neo4j.kernel.impl.transaction;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -553,4 +554,24 @@ public class TestRWLock
         }
         go = true;
     }
-}
\ No newline at end of file
+
+    @Test
+    public void locksOnResourcesInDifferentStripesAreRemovedWhenReleased() throws Exception
+    {
+        LockManager stripedLm = new LockManager( new RagManager( new PlaceboTm() ), 16 );
+        ResourceObject[] resources = new ResourceObject[100];
+        for ( int i = 0; i < resources.length; i++ )
+        {
+            resources[i] = new ResourceObject( "R" + i );
+            stripedLm.getReadLock( resources[i] );
+            stripedLm.getWriteLock( resources[i] );
+        }
+        assertEquals( resources.length, stripedLm.getAllLocks().size() );
+        for ( ResourceObject resource : resources )
+        {
+            stripedLm.releaseWriteLock( resource, null );
+            stripedLm.releaseReadLock( resource, null );
+        }
+        assertTrue( stripedLm.getAllLocks().isEmpty() );
+    }
+}
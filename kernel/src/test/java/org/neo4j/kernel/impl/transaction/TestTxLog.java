@@ -33,6 +33,7 @@ import org.neo4j.kernel.CommonFactories;
 import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
 import org.neo4j.kernel.impl.transaction.TxLog.Record;
 import org.neo4j.kernel.impl.transaction.xaframework.ForceMode;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommit;
 import org.neo4j.kernel.impl.util.StringLogger;
 
 public class TestTxLog
@@ -190,6 +191,74 @@ public class TestTxLog
         }
     }
 
+    @Test
+    public void testMarkAsCommittingWithGroupCommit() throws Exception
+    {
+        File file = new File( txFile() );
+        if ( file.exists() )
+        {
+            file.delete();
+        }
+        try
+        {
+            final TxLog txLog = new TxLog( txFile(), CommonFactories.defaultFileSystemAbstraction(),
+                    StringLogger.DEV_NULL );
+            GroupCommit groupCommit = new GroupCommit( 0, 100 );
+            txLog.setGroupCommit( groupCommit );
+            Thread[] committers = new Thread[10];
+            final List<Exception> failures = new ArrayList<Exception>();
+            for ( int i = 0; i < committers.length; i++ )
+            {
+                final byte globalId[] = new byte[] { (byte) i };
+                txLog.txStart( globalId );
+                committers[i] = new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            txLog.markAsCommitting( globalId, ForceMode.forced );
+                        }
+                        catch ( Exception e )
+                        {
+                            synchronized ( failures )
+                            {
+                                failures.add( e );
+                            }
+                        }
+                    }
+                };
+                committers[i].start();
+            }
+            for ( Thread committer : committers )
+            {
+                committer.join();
+            }
+            assertTrue( failures.toString(), failures.isEmpty() );
+            assertEquals( committers.length, groupCommit.getNumberOfGroupedCommits() );
+            txLog.close();
+
+            TxLog reopened = new TxLog( txFile(), CommonFactories.defaultFileSystemAbstraction(),
+                    StringLogger.DEV_NULL );
+            List<?> lists[] = getRecordLists( reopened.getDanglingRecords() );
+            assertEquals( committers.length, lists.length );
+            for ( List<?> records : lists )
+            {
+                assertEquals( TxLog.MARK_COMMIT, ( (Record) records.get( records.size() - 1 ) ).getType() );
+            }
+            reopened.close();
+        }
+        finally
+        {
+            file = new File( txFile() );
+            if ( file.exists() )
+            {
+                file.delete();
+            }
+        }
+    }
+
     @Test
     public void testTxRecovery()
     {
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.AbstractGraphDatabase;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.util.FileUtils;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+public class TestGroupCommit
+{
+    @Test
+    public void concurrentCommittersShareForces() throws Exception
+    {
+        final GroupCommit groupCommit = new GroupCommit( 0, 100 );
+        final AtomicInteger forces = new AtomicInteger();
+        final GroupCommit.Force slowForce = new GroupCommit.Force()
+        {
+            @Override
+            public void force() throws IOException
+            {
+                forces.incrementAndGet();
+                try
+                {
+                    Thread.sleep( 10 );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.interrupted();
+                }
+            }
+        };
+
+        int threads = 20;
+        final CountDownLatch go = new CountDownLatch( 1 );
+        final AtomicInteger failures = new AtomicInteger();
+        List<Thread> committers = new ArrayList<Thread>();
+        for ( int i = 0; i < threads; i++ )
+        {
+            Thread committer = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        go.await();
+                        groupCommit.awaitForced( groupCommit.nextTicket(), slowForce );
+                    }
+                    catch ( Exception e )
+                    {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            committer.start();
+            committers.add( committer );
+        }
+        go.countDown();
+        for ( Thread committer : committers )
+        {
+            committer.join();
+        }
+
+        assertEquals( 0, failures.get() );
+        assertEquals( threads, groupCommit.getNumberOfGroupedCommits() );
+        assertEquals( forces.get(), groupCommit.getNumberOfGroups() );
+        assertTrue( "Expected fewer forces than commits, but got " + forces.get(), forces.get() < threads );
+    }
+
+    @Test
+    public void failedForceFailsTheWholeGroup() throws Exception
+    {
+        GroupCommit groupCommit = new GroupCommit( 0, 100 );
+        long first = groupCommit.nextTicket();
+        long second = groupCommit.nextTicket();
+        try
+        {
+            groupCommit.awaitForced( first, new GroupCommit.Force()
+            {
+                @Override
+                public void force() throws IOException
+                {
+                    throw new IOException( "Disk on fire" );
+                }
+            } );
+        }
+        catch ( IOException e )
+        {   // Expected
+        }
+        try
+        {
+            groupCommit.awaitForced( second, null );
+            throw new AssertionError( "Should have failed, since its force failed" );
+        }
+        catch ( IOException e )
+        {   // Expected
+        }
+        assertEquals( 0, groupCommit.getNumberOfGroups() );
+    }
+
+    @Test
+    public void concurrentTransactionsWithGroupCommitSurviveRestart() throws Exception
+    {
+        final String storeDir = "target/test-data/group-commit";
+        FileUtils.deleteRecursively( new File( storeDir ) );
+        final AbstractGraphDatabase db = new EmbeddedGraphDatabase( storeDir, stringMap(
+                Config.GROUP_COMMIT, "true", Config.GROUP_COMMIT_MAX_WAIT, "1ms" ) );
+        final int threads = 10, txPerThread = 50;
+        XaDataSource neoStore = db.getXaDataSourceManager().getNeoStoreDataSource();
+        long txIdBefore = neoStore.getLastCommittedTxId();
+        List<Thread> committers = new ArrayList<Thread>();
+        for ( int i = 0; i < threads; i++ )
+        {
+            Thread committer = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int t = 0; t < txPerThread; t++ )
+                    {
+                        Transaction tx = db.beginTx();
+                        try
+                        {
+                            db.createNode().setProperty( "name", getName() + "-" + t );
+                            tx.success();
+                        }
+                        finally
+                        {
+                            tx.finish();
+                        }
+                    }
+                }
+            };
+            committer.start();
+            committers.add( committer );
+        }
+        for ( Thread committer : committers )
+        {
+            committer.join();
+        }
+        GroupCommit groupCommit = neoStore.getXaContainer().getLogicalLog().getGroupCommit();
+        assertEquals( threads * txPerThread, groupCommit.getNumberOfGroupedCommits() );
+        assertEquals( txIdBefore + threads * txPerThread, neoStore.getLastCommittedTxId() );
+        assertEquals( neoStore.getLastCommittedTxId(), neoStore.getLastLoggedTxId() );
+        db.shutdown();
+
+        AbstractGraphDatabase restarted = new EmbeddedGraphDatabase( storeDir );
+        try
+        {
+            int count = 0;
+            for ( Node node : GlobalGraphOperations.at( restarted ).getAllNodes() )
+            {
+                if ( node.hasProperty( "name" ) ) count++;
+            }
+            assertEquals( threads * txPerThread, count );
+        }
+        finally
+        {
+            restarted.shutdown();
+        }
+    }
+}
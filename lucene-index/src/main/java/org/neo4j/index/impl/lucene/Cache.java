@@ -24,34 +24,34 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.neo4j.kernel.impl.cache.LruCache;
+import org.neo4j.kernel.impl.cache.ConcurrentLruCache;
 
 public class Cache
 {
-    private final Map<IndexIdentifier, Map<String,LruCache<String,Collection<Long>>>> caching = 
+    private final Map<IndexIdentifier, Map<String,ConcurrentLruCache<String,Collection<Long>>>> caching = 
             Collections.synchronizedMap( 
-                    new HashMap<IndexIdentifier, Map<String,LruCache<String,Collection<Long>>>>() );
+                    new HashMap<IndexIdentifier, Map<String,ConcurrentLruCache<String,Collection<Long>>>>() );
     
     public void setCapacity( IndexIdentifier identifier, String key, int size )
     {
-        Map<String, LruCache<String, Collection<Long>>> map = caching.get( identifier );
+        Map<String, ConcurrentLruCache<String, Collection<Long>>> map = caching.get( identifier );
         if ( map == null )
         {
-            map = new HashMap<String, LruCache<String,Collection<Long>>>();
+            map = new HashMap<String, ConcurrentLruCache<String,Collection<Long>>>();
             caching.put( identifier, map );
         }
-        map.put( key, new LruCache<String, Collection<Long>>( key, size ) );
+        map.put( key, new ConcurrentLruCache<String, Collection<Long>>( key, size ) );
     }
     
-    public LruCache<String, Collection<Long>> get( IndexIdentifier identifier, String key )
+    public ConcurrentLruCache<String, Collection<Long>> get( IndexIdentifier identifier, String key )
     {
-        Map<String, LruCache<String, Collection<Long>>> map = caching.get( identifier );
+        Map<String, ConcurrentLruCache<String, Collection<Long>>> map = caching.get( identifier );
         return map != null ? map.get( key ) : null;
     }
     
     public void disable( IndexIdentifier identifier, String key )
     {
-        Map<String, LruCache<String, Collection<Long>>> map = caching.get( identifier );
+        Map<String, ConcurrentLruCache<String, Collection<Long>>> map = caching.get( identifier );
         if ( map != null )
         {
             map.remove( key );
@@ -60,7 +60,7 @@ public class Cache
     
     public void disable( IndexIdentifier identifier )
     {
-        Map<String, LruCache<String, Collection<Long>>> map = caching.get( identifier );
+        Map<String, ConcurrentLruCache<String, Collection<Long>>> map = caching.get( identifier );
         if ( map != null )
         {
             map.clear();
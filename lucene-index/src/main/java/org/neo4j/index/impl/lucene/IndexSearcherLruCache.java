@@ -20,17 +20,15 @@
 package org.neo4j.index.impl.lucene;
 
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.neo4j.helpers.Pair;
-import org.neo4j.kernel.impl.cache.LruCache;
+import org.neo4j.kernel.impl.cache.ConcurrentLruCache;
 
 /**
- * An Lru Cache for Lucene Index searchers.
+ * An Lru Cache for the searchers of Lucene indexes.
  *
  * @see LuceneDataSource
  */
-public class IndexSearcherLruCache extends LruCache<IndexIdentifier, Pair<IndexSearcherRef, AtomicBoolean>>
+public class IndexSearcherLruCache extends ConcurrentLruCache<IndexIdentifier, IndexSearcherManager>
 {
     /**
      * Creates a LRU cache. If <CODE>maxSize < 1</CODE> an
@@ -44,10 +42,10 @@ public class IndexSearcherLruCache extends LruCache<IndexIdentifier, Pair<IndexS
     }
 
     @Override
-    public void elementCleaned(Pair<IndexSearcherRef, AtomicBoolean> searcher)
+    public void elementCleaned( IndexSearcherManager searcher )
     {
         try {
-            searcher.first().dispose();
+            searcher.close();
         } catch (IOException e) {
             throw new RuntimeException( e );
         }
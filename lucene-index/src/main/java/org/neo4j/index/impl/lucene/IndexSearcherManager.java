@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+
+/**
+ * Keeps the current {@link IndexSearcherRef} of one index. Getting the current
+ * searcher doesn't lock anything. Once the index has been changed the
+ * searcher is marked as stale and the next {@link #acquire(IndexWriter, boolean)}
+ * reopens it, holding a lock for this index only, unless a background refresh
+ * already did so.
+ */
+class IndexSearcherManager
+{
+    private final IndexIdentifier identifier;
+    private final SearcherReopenStats stats = new SearcherReopenStats();
+    private final SearcherReopenStats totalStats;
+    // Incremented for every change, current has seen changes up to refreshedGeneration
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long refreshedGeneration;
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private volatile IndexSearcherRef current;
+    private volatile boolean closed;
+
+    IndexSearcherManager( IndexIdentifier identifier, SearcherReopenStats totalStats )
+    {
+        this.identifier = identifier;
+        this.totalStats = totalStats;
+    }
+
+    /**
+     * @return the current searcher, reopened if there have been changes
+     *         since it was opened, or {@code null} if this manager has been
+     *         closed.
+     */
+    IndexSearcherRef acquire( IndexWriter writer, boolean incRef ) throws IOException
+    {
+        while ( !closed )
+        {
+            IndexSearcherRef searcher = current;
+            if ( searcher == null || generation.get() != refreshedGeneration )
+            {
+                searcher = refresh( writer );
+                if ( searcher == null )
+                {
+                    return null;
+                }
+            }
+            if ( !incRef || searcher.tryIncRef() )
+            {
+                return searcher;
+            }
+            // Closed by a refresh or eviction since we read it, try again
+        }
+        return null;
+    }
+
+    /**
+     * Marks the current searcher as stale.
+     *
+     * @return {@code true} if a background refresh should be scheduled,
+     *         {@code false} if there's already one pending.
+     */
+    boolean invalidate()
+    {
+        generation.incrementAndGet();
+        return refreshScheduled.compareAndSet( false, true );
+    }
+
+    /**
+     * Called by the background refresh, before it refreshes.
+     */
+    void refreshStarted()
+    {
+        refreshScheduled.set( false );
+    }
+
+    /**
+     * Opens the searcher, or reopens it if it's stale.
+     *
+     * @return the current searcher, or {@code null} if this manager has
+     *         been closed.
+     */
+    synchronized IndexSearcherRef refresh( IndexWriter writer ) throws IOException
+    {
+        if ( closed )
+        {
+            return null;
+        }
+        IndexSearcherRef searcher = current;
+        // Changes committed while reopening will cause another refresh
+        long target = generation.get();
+        if ( searcher == null )
+        {
+            current = new IndexSearcherRef( identifier, new IndexSearcher( IndexReader.open( writer, true ) ) );
+            refreshedGeneration = target;
+            return current;
+        }
+        if ( target == refreshedGeneration )
+        {
+            return searcher;
+        }
+        long start = System.nanoTime();
+        IndexReader reopened = IndexReader.openIfChanged( searcher.getSearcher().getIndexReader(), writer, true );
+        long time = System.nanoTime() - start;
+        stats.reopened( time );
+        totalStats.reopened( time );
+        if ( reopened != null )
+        {
+            current = new IndexSearcherRef( identifier, new IndexSearcher( reopened ) );
+            searcher.detachOrClose();
+        }
+        refreshedGeneration = target;
+        return current;
+    }
+
+    /**
+     * Closes the current searcher, regardless of references to it.
+     */
+    synchronized void close() throws IOException
+    {
+        closed = true;
+        if ( current != null )
+        {
+            current.dispose();
+        }
+    }
+
+    SearcherReopenStats getStats()
+    {
+        return stats;
+    }
+}
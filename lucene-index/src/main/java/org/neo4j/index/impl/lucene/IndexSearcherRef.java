@@ -55,12 +55,27 @@ class IndexSearcherRef
         return identifier;
     }
 
-    void incRef()
+    /**
+     * Increments the reference count, unless this searcher has already been
+     * closed by a concurrent refresh, in which case {@code false} is returned.
+     */
+    boolean tryIncRef()
     {
-        this.refCount.incrementAndGet();
+        while ( true )
+        {
+            int count = this.refCount.get();
+            if ( count < 0 || this.isClosed )
+            {
+                return false;
+            }
+            if ( this.refCount.compareAndSet( count, count + 1 ) )
+            {
+                return true;
+            }
+        }
     }
     
-    public void dispose() throws IOException
+    public synchronized void dispose() throws IOException
     {
         if ( !this.isClosed )
         {
@@ -72,25 +87,23 @@ class IndexSearcherRef
     
     public void detachOrClose() throws IOException
     {
-        if ( this.refCount.get() == 0 )
+        this.detached = true;
+        // A reference count of -1 means no one can get a reference any more
+        if ( this.refCount.compareAndSet( 0, -1 ) )
         {
             dispose();
         }
-        else
-        {
-            this.detached = true;
-        }
     }
     
     public boolean close() throws IOException
     {
-        if ( this.isClosed || this.refCount.get() == 0 )
+        if ( this.isClosed || this.refCount.get() <= 0 )
         {
             return true;
         }
         
         boolean reallyClosed = false;
-        if ( this.refCount.decrementAndGet() <= 0 && this.detached )
+        if ( this.refCount.decrementAndGet() == 0 && this.detached && this.refCount.compareAndSet( 0, -1 ) )
         {
             dispose();
             reallyClosed = true;
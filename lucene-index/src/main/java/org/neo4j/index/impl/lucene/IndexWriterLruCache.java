@@ -22,14 +22,14 @@ package org.neo4j.index.impl.lucene;
 import java.io.IOException;
 
 import org.apache.lucene.index.IndexWriter;
-import org.neo4j.kernel.impl.cache.LruCache;
+import org.neo4j.kernel.impl.cache.ConcurrentLruCache;
 
 /**
  * An Lru Cache for Lucene Index Writers.
  *
  * @see LuceneDataSource
  */
-public class IndexWriterLruCache extends LruCache<IndexIdentifier, IndexWriter>
+public class IndexWriterLruCache extends ConcurrentLruCache<IndexIdentifier, IndexWriter>
 {
     /**
      * Creates a LRU cache. If <CODE>maxSize < 1</CODE> an
@@ -33,7 +33,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -46,7 +48,6 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.Fieldable;
 import org.apache.lucene.index.IndexCommit;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.SnapshotDeletionPolicy;
@@ -67,10 +68,11 @@ import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexManager;
 import org.neo4j.graphdb.index.RelationshipIndex;
+import org.neo4j.helpers.DaemonThreadFactory;
 import org.neo4j.helpers.Pair;
 import org.neo4j.helpers.UTF8;
 import org.neo4j.helpers.collection.ClosableIterable;
-import org.neo4j.kernel.impl.cache.LruCache;
+import org.neo4j.kernel.impl.cache.ConcurrentLruCache;
 import org.neo4j.kernel.impl.index.IndexProviderStore;
 import org.neo4j.kernel.impl.index.IndexStore;
 import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
@@ -150,6 +152,9 @@ public class LuceneDataSource extends LogBackedXaDataSource
 
     private final IndexWriterLruCache indexWriters;
     private final IndexSearcherLruCache indexSearchers;
+    private final SearcherReopenStats searcherReopenStats = new SearcherReopenStats();
+    private final ExecutorService searcherRefresher =
+            Executors.newSingleThreadExecutor( new DaemonThreadFactory( "Lucene searcher refresh" ) );
 
     private final XaContainer xaContainer;
     private final String baseStorePath;
@@ -157,7 +162,7 @@ public class LuceneDataSource extends LogBackedXaDataSource
     final IndexStore indexStore;
     final IndexProviderStore providerStore;
     private final IndexTypeCache typeCache;
-    private boolean closed;
+    private volatile boolean closed;
     private final Cache caching;
     EntityType nodeEntityType;
     EntityType relationshipEntityType;
@@ -297,11 +302,12 @@ public class LuceneDataSource extends LogBackedXaDataSource
                 return;
             }
             closed = true;
-            for ( Pair<IndexSearcherRef, AtomicBoolean> searcher : indexSearchers.values() )
+            searcherRefresher.shutdown();
+            for ( IndexSearcherManager searcher : indexSearchers.values() )
             {
                 try
                 {
-                    searcher.first().dispose();
+                    searcher.close();
                 }
                 catch ( IOException e )
                 {
@@ -458,39 +464,6 @@ public class LuceneDataSource extends LogBackedXaDataSource
         lock.writeLock().unlock();
     }
 
-    /**
-     * If nothing has changed underneath (since the searcher was last created
-     * or refreshed) {@code searcher} is returned. But if something has changed a
-     * refreshed searcher is returned. It makes use if the
-     * {@link IndexReader#openIfChanged(IndexReader, IndexWriter, boolean)} which faster than opening an index from
-     * scratch.
-     *
-     * @param searcher the {@link IndexSearcher} to refresh.
-     * @param writer 
-     * @return a refreshed version of the searcher or, if nothing has changed,
-     * {@code null}.
-     * @throws IOException if there's a problem with the index.
-     */
-    private Pair<IndexSearcherRef, AtomicBoolean> refreshSearcher( Pair<IndexSearcherRef, AtomicBoolean> searcher, IndexWriter writer )
-    {
-        try
-        {
-            IndexReader reader = searcher.first().getSearcher().getIndexReader();
-            IndexReader reopened = IndexReader.openIfChanged( reader, writer, true );
-            if ( reopened != null )
-            {
-                IndexSearcher newSearcher = new IndexSearcher( reopened );
-                searcher.first().detachOrClose();
-                return Pair.of( new IndexSearcherRef( searcher.first().getIdentifier(), newSearcher ), new AtomicBoolean() );
-            }
-            return searcher;
-        }
-        catch ( IOException e )
-        {
-            throw new RuntimeException( e );
-        }
-    }
-
     static File getFileDirectory( String storeDir, byte entityType )
     {
         File path = new File( storeDir, "lucene" );
@@ -527,35 +500,25 @@ public class LuceneDataSource extends LogBackedXaDataSource
         return TopFieldCollector.create( sorting, n, false, true, false, true );
     }
 
-    synchronized IndexSearcherRef getIndexSearcher( IndexIdentifier identifier, boolean incRef )
+    /**
+     * Returns the current searcher of an index, reopened if there have been
+     * changes to the index since it was last opened. Reopening only blocks
+     * other lookups in the same index.
+     */
+    IndexSearcherRef getIndexSearcher( IndexIdentifier identifier, boolean incRef )
     {
         try
         {
-            Pair<IndexSearcherRef, AtomicBoolean> searcher = indexSearchers.get( identifier );
-            IndexWriter writer = getIndexWriter( identifier );
-            if ( searcher == null )
-            {
-                IndexReader reader = IndexReader.open( writer, true );
-                IndexSearcher indexSearcher = new IndexSearcher( reader );
-                searcher = Pair.of( new IndexSearcherRef( identifier, indexSearcher ), new AtomicBoolean() );
-                indexSearchers.put( identifier, searcher );
-            }
-            else
+            while ( true )
             {
-                if ( searcher.other().compareAndSet( true, false ) )
+                IndexSearcherManager manager = getSearcherManager( identifier );
+                IndexSearcherRef searcher = manager.acquire( getIndexWriter( identifier ), incRef );
+                if ( searcher != null )
                 {
-                    searcher = refreshSearcher( searcher, writer );
-                    if ( searcher != null )
-                    {
-                        indexSearchers.put( identifier, searcher );
-                    }
+                    return searcher;
                 }
+                // The manager was evicted from the cache meanwhile, get a new one
             }
-            if ( incRef )
-            {
-                searcher.first().incRef();
-            }
-            return searcher.first();
         }
         catch ( IOException e )
         {
@@ -563,21 +526,97 @@ public class LuceneDataSource extends LogBackedXaDataSource
         }
     }
 
+    private IndexSearcherManager getSearcherManager( IndexIdentifier identifier )
+    {
+        IndexSearcherManager manager = indexSearchers.get( identifier );
+        if ( manager != null )
+        {
+            return manager;
+        }
+        synchronized ( this )
+        {
+            if ( closed ) throw new IllegalStateException( "Index has been shut down" );
+            manager = indexSearchers.get( identifier );
+            if ( manager == null )
+            {
+                manager = new IndexSearcherManager( identifier, searcherReopenStats );
+                indexSearchers.put( identifier, manager );
+            }
+            return manager;
+        }
+    }
+
     XaTransaction createTransaction( int identifier,
         XaLogicalLog logicalLog )
     {
         return new LuceneTransaction( identifier, logicalLog, this );
     }
 
-    synchronized void invalidateIndexSearcher( IndexIdentifier identifier )
+    /**
+     * Marks the searcher of an index as stale after a commit and reopens it
+     * in the background, so that the next lookup most likely finds it
+     * already refreshed.
+     */
+    void invalidateIndexSearcher( final IndexIdentifier identifier )
     {
-        Pair<IndexSearcherRef, AtomicBoolean> searcher = indexSearchers.get( identifier );
-        if ( searcher != null )
+        final IndexSearcherManager searcher = indexSearchers.get( identifier );
+        if ( searcher == null || !searcher.invalidate() || closed )
         {
-            searcher.other().set( true );
+            return;
+        }
+        try
+        {
+            searcherRefresher.execute( new Runnable()
+            {
+                public void run()
+                {
+                    searcher.refreshStarted();
+                    IndexWriter writer = indexWriters.get( identifier );
+                    if ( writer == null )
+                    {
+                        return;
+                    }
+                    try
+                    {
+                        searcher.refresh( writer );
+                    }
+                    catch ( Exception e )
+                    {
+                        // Still stale, the next lookup will reopen it
+                    }
+                }
+            } );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // Shutting down
         }
     }
 
+    /**
+     * @return the number of times index searchers have been reopened to see
+     * committed changes.
+     */
+    public long getSearcherReopenCount()
+    {
+        return searcherReopenStats.getReopenCount();
+    }
+
+    public double getAverageSearcherReopenMillis()
+    {
+        return searcherReopenStats.getAverageReopenMillis();
+    }
+
+    public double getMaxSearcherReopenMillis()
+    {
+        return searcherReopenStats.getMaxReopenMillis();
+    }
+
+    public double getLastSearcherReopenMillis()
+    {
+        return searcherReopenStats.getLastReopenMillis();
+    }
+
     void deleteIndex( IndexIdentifier identifier, boolean recovery )
     {
         closeWriter( identifier );
@@ -615,7 +654,15 @@ public class LuceneDataSource extends LogBackedXaDataSource
         }
     }
 
-    synchronized IndexWriter getIndexWriter( IndexIdentifier identifier )
+    IndexWriter getIndexWriter( IndexIdentifier identifier )
+    {
+        if ( closed ) throw new IllegalStateException( "Index has been shut down" );
+
+        IndexWriter writer = indexWriters.get( identifier );
+        return writer != null ? writer : openIndexWriter( identifier );
+    }
+
+    private synchronized IndexWriter openIndexWriter( IndexIdentifier identifier )
     {
         if ( closed ) throw new IllegalStateException( "Index has been shut down" );
 
@@ -713,11 +760,11 @@ public class LuceneDataSource extends LogBackedXaDataSource
     {
         try
         {
-            Pair<IndexSearcherRef, AtomicBoolean> searcher = indexSearchers.remove( identifier );
+            IndexSearcherManager searcher = indexSearchers.remove( identifier );
             IndexWriter writer = indexWriters.remove( identifier );
             if ( searcher != null )
             {
-                searcher.first().dispose();
+                searcher.close();
             }
             if ( writer != null )
             {
@@ -730,7 +777,7 @@ public class LuceneDataSource extends LogBackedXaDataSource
         }
     }
 
-    LruCache<String,Collection<Long>> getFromCache( IndexIdentifier identifier, String key )
+    ConcurrentLruCache<String,Collection<Long>> getFromCache( IndexIdentifier identifier, String key )
     {
         return caching.get( identifier, key );
     }
@@ -742,13 +789,13 @@ public class LuceneDataSource extends LogBackedXaDataSource
 
     Integer getCacheCapacity( IndexIdentifier identifier, String key )
     {
-        LruCache<String,Collection<Long>> cache = this.caching.get( identifier, key );
+        ConcurrentLruCache<String,Collection<Long>> cache = this.caching.get( identifier, key );
         return cache != null ? cache.maxSize() : null;
     }
 
     void invalidateCache( IndexIdentifier identifier, String key, Object value )
     {
-        LruCache<String, Collection<Long>> cache = caching.get( identifier, key );
+        ConcurrentLruCache<String, Collection<Long>> cache = caching.get( identifier, key );
         if ( cache != null )
         {
             cache.remove( value.toString() );
@@ -46,7 +46,7 @@ import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.index.lucene.QueryContext;
 import org.neo4j.kernel.GraphDatabaseSPI;
-import org.neo4j.kernel.impl.cache.LruCache;
+import org.neo4j.kernel.impl.cache.ConcurrentLruCache;
 import org.neo4j.kernel.impl.core.ReadOnlyDbException;
 import org.neo4j.kernel.impl.util.IoPrimitiveUtils;
 
@@ -269,7 +269,7 @@ public abstract class LuceneIndex<T extends PropertyContainer> implements Index<
             if ( searcher != null )
             {
                 boolean foundInCache = false;
-                LruCache<String, Collection<Long>> cachedIdsMap = null;
+                ConcurrentLruCache<String, Collection<Long>> cachedIdsMap = null;
                 if ( keyForDirectLookup != null )
                 {
                     cachedIdsMap = service.dataSource().getFromCache(
@@ -332,7 +332,7 @@ public abstract class LuceneIndex<T extends PropertyContainer> implements Index<
     }
 
     private boolean fillFromCache(
-            LruCache<String, Collection<Long>> cachedNodesMap,
+            ConcurrentLruCache<String, Collection<Long>> cachedNodesMap,
             List<Long> ids, String key, String valueAsString,
             Collection<Long> deletedNodes )
     {
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How often, and how slowly, index searchers have been reopened to see
+ * committed changes.
+ */
+class SearcherReopenStats
+{
+    // All guarded by this
+    private long reopenCount;
+    private long totalReopenNanos;
+    private long maxReopenNanos;
+    private long lastReopenNanos;
+
+    synchronized void reopened( long nanos )
+    {
+        reopenCount++;
+        totalReopenNanos += nanos;
+        maxReopenNanos = Math.max( maxReopenNanos, nanos );
+        lastReopenNanos = nanos;
+    }
+
+    synchronized long getReopenCount()
+    {
+        return reopenCount;
+    }
+
+    synchronized double getAverageReopenMillis()
+    {
+        return reopenCount == 0 ? 0 : millis( totalReopenNanos ) / reopenCount;
+    }
+
+    synchronized double getMaxReopenMillis()
+    {
+        return millis( maxReopenNanos );
+    }
+
+    synchronized double getLastReopenMillis()
+    {
+        return millis( lastReopenNanos );
+    }
+
+    private static double millis( long nanos )
+    {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos( 1 );
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format( "%d reopens, average %.2fms, max %.2fms", reopenCount, getAverageReopenMillis(),
+                getMaxReopenMillis() );
+    }
+}
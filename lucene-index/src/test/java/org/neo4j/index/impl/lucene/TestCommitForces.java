@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.kernel.DefaultFileSystemAbstraction;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
+import org.neo4j.kernel.impl.util.FileUtils;
+
+/**
+ * Counts how many times each log is forced when committing a single
+ * transaction. A transaction touching both the graph and an index still
+ * commits in two phases: the tm_tx_log is forced to mark it as committing,
+ * then the logical logs of both data sources are forced when they commit.
+ * Only concurrent transactions share those forces, through group commit.
+ */
+public class TestCommitForces
+{
+    private static final String PATH = "target/test-data/commit-forces";
+
+    private final AtomicInteger txLogForces = new AtomicInteger();
+    private final AtomicInteger graphLogForces = new AtomicInteger();
+    private final AtomicInteger indexLogForces = new AtomicInteger();
+    private EmbeddedGraphDatabase db;
+    private Index<Node> index;
+
+    @Before
+    public void startDb() throws IOException
+    {
+        FileUtils.deleteRecursively( new File( PATH ) );
+        db = new EmbeddedGraphDatabase( PATH )
+        {
+            @Override
+            protected FileSystemAbstraction createFileSystemAbstraction()
+            {
+                return new ForceCountingFileSystem();
+            }
+        };
+        index = db.index().forNodes( "index" );
+
+        // Get the index created and the data sources started
+        Transaction tx = db.beginTx();
+        index.add( db.createNode(), "key", "value" );
+        tx.success();
+        tx.finish();
+        resetCounts();
+    }
+
+    @After
+    public void stopDb()
+    {
+        db.shutdown();
+    }
+
+    @Test
+    public void graphOnlyCommitForcesOnlyTheGraphLog()
+    {
+        Transaction tx = db.beginTx();
+        db.createNode().setProperty( "key", "value" );
+        tx.success();
+        tx.finish();
+
+        assertForces( 0, 1, 0 );
+    }
+
+    @Test
+    public void indexReadDoesNotMakeGraphCommitTwoPhase()
+    {
+        Transaction tx = db.beginTx();
+        index.get( "key", "value" ).getSingle();
+        db.createNode().setProperty( "key", "value" );
+        tx.success();
+        tx.finish();
+
+        assertForces( 0, 1, 0 );
+    }
+
+    @Test
+    public void graphAndIndexCommitForcesEachLogOnce()
+    {
+        Transaction tx = db.beginTx();
+        Node node = db.createNode();
+        node.setProperty( "key", "other value" );
+        index.add( node, "key", "other value" );
+        tx.success();
+        tx.finish();
+
+        assertForces( 1, 1, 1 );
+    }
+
+    private void assertForces( int txLog, int graphLog, int indexLog )
+    {
+        assertEquals( "tm_tx_log forces", txLog, txLogForces.get() );
+        assertEquals( "graph logical log forces", graphLog, graphLogForces.get() );
+        assertEquals( "index logical log forces", indexLog, indexLogForces.get() );
+    }
+
+    private void resetCounts()
+    {
+        txLogForces.set( 0 );
+        graphLogForces.set( 0 );
+        indexLogForces.set( 0 );
+    }
+
+    private AtomicInteger counterFor( String fileName )
+    {
+        String name = new File( fileName ).getName();
+        if ( name.startsWith( "tm_tx_log." ) )
+        {
+            return txLogForces;
+        }
+        else if ( name.startsWith( "nioneo_logical.log." ) )
+        {
+            return graphLogForces;
+        }
+        else if ( name.startsWith( "lucene.log." ) )
+        {
+            return indexLogForces;
+        }
+        return null;
+    }
+
+    private class ForceCountingFileSystem extends DefaultFileSystemAbstraction
+    {
+        @Override
+        public FileChannel open( String fileName, String mode ) throws IOException
+        {
+            FileChannel channel = super.open( fileName, mode );
+            AtomicInteger counter = counterFor( fileName );
+            return counter != null ? new ForceCountingFileChannel( channel, counter ) : channel;
+        }
+    }
+
+    private static class ForceCountingFileChannel extends FileChannel
+    {
+        private final FileChannel actual;
+        private final AtomicInteger forces;
+
+        ForceCountingFileChannel( FileChannel actual, AtomicInteger forces )
+        {
+            this.actual = actual;
+            this.forces = forces;
+        }
+
+        @Override
+        public void force( boolean metaData ) throws IOException
+        {
+            forces.incrementAndGet();
+            actual.force( metaData );
+        }
+
+        @Override
+        public int read( ByteBuffer dst ) throws IOException
+        {
+            return actual.read( dst );
+        }
+
+        @Override
+        public long read( ByteBuffer[] dsts, int offset, int length ) throws IOException
+        {
+            return actual.read( dsts, offset, length );
+        }
+
+        @Override
+        public int write( ByteBuffer src ) throws IOException
+        {
+            return actual.write( src );
+        }
+
+        @Override
+        public long write( ByteBuffer[] srcs, int offset, int length ) throws IOException
+        {
+            return actual.write( srcs, offset, length );
+        }
+
+        @Override
+        public long position() throws IOException
+        {
+            return actual.position();
+        }
+
+        @Override
+        public FileChannel position( long newPosition ) throws IOException
+        {
+            actual.position( newPosition );
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException
+        {
+            return actual.size();
+        }
+
+        @Override
+        public FileChannel truncate( long size ) throws IOException
+        {
+            actual.truncate( size );
+            return this;
+        }
+
+        @Override
+        public long transferTo( long position, long count, WritableByteChannel target )
+                throws IOException
+        {
+            return actual.transferTo( position, count, target );
+        }
+
+        @Override
+        public long transferFrom( ReadableByteChannel src, long position, long count )
+                throws IOException
+        {
+            return actual.transferFrom( src, position, count );
+        }
+
+        @Override
+        public int read( ByteBuffer dst, long position ) throws IOException
+        {
+            return actual.read( dst, position );
+        }
+
+        @Override
+        public int write( ByteBuffer src, long position ) throws IOException
+        {
+            return actual.write( src, position );
+        }
+
+        @Override
+        public MappedByteBuffer map( MapMode mode, long position, long size ) throws IOException
+        {
+            return actual.map( mode, position, size );
+        }
+
+        @Override
+        public java.nio.channels.FileLock lock( long position, long size, boolean shared ) throws IOException
+        {
+            return actual.lock( position, size, shared );
+        }
+
+        @Override
+        public java.nio.channels.FileLock tryLock( long position, long size, boolean shared ) throws IOException
+        {
+            return actual.tryLock( position, size, shared );
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException
+        {
+            actual.close();
+        }
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.neo4j.index.impl.lucene;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
@@ -179,6 +180,40 @@ public class TestLuceneDataSource
         assertFalse( IndexWriterAccessor.isClosed( newFooIndexWriter ) );
     }
 
+    @Test
+    public void testReopensSearcherAfterInvalidationAndRecordsIt() throws Exception
+    {
+        dataSource = new LuceneDataSource( ConfigProxy.config(config(), LuceneDataSource.Configuration.class), indexStore, CommonFactories.defaultFileSystemAbstraction(), new XaFactory(config(), TxIdGenerator.DEFAULT, new PlaceboTm(), CommonFactories.defaultLogBufferFactory(), CommonFactories.defaultFileSystemAbstraction(), StringLogger.DEV_NULL, CommonFactories.defaultRecoveryVerifier()) );
+        IndexIdentifier identifier = identifier( "foo" );
+        IndexWriter writer = dataSource.getIndexWriter( identifier );
+        IndexSearcherRef oldSearcher = dataSource.getIndexSearcher( identifier, false );
+        writer.addDocument( IndexType.newBaseDocument( 1 ) );
+        assertSame( oldSearcher, dataSource.getIndexSearcher( identifier, false ) );
+
+        dataSource.invalidateIndexSearcher( identifier );
+        IndexSearcherRef newSearcher = dataSource.getIndexSearcher( identifier, false );
+        assertNotSame( oldSearcher, newSearcher );
+        assertEquals( 1, newSearcher.getSearcher().getIndexReader().numDocs() );
+        assertTrue( oldSearcher.isClosed() );
+        assertEquals( 1, dataSource.getSearcherReopenCount() );
+        assertSame( newSearcher, dataSource.getIndexSearcher( identifier, false ) );
+    }
+
+    @Test
+    public void testReferencedSearcherIsClosedWhenReleasedAfterReopen() throws Exception
+    {
+        dataSource = new LuceneDataSource( ConfigProxy.config(config(), LuceneDataSource.Configuration.class), indexStore, CommonFactories.defaultFileSystemAbstraction(), new XaFactory(config(), TxIdGenerator.DEFAULT, new PlaceboTm(), CommonFactories.defaultLogBufferFactory(), CommonFactories.defaultFileSystemAbstraction(), StringLogger.DEV_NULL, CommonFactories.defaultRecoveryVerifier()) );
+        IndexIdentifier identifier = identifier( "foo" );
+        IndexWriter writer = dataSource.getIndexWriter( identifier );
+        IndexSearcherRef oldSearcher = dataSource.getIndexSearcher( identifier, true );
+        writer.addDocument( IndexType.newBaseDocument( 1 ) );
+        dataSource.invalidateIndexSearcher( identifier );
+        assertNotSame( oldSearcher, dataSource.getIndexSearcher( identifier, false ) );
+        assertFalse( oldSearcher.isClosed() );
+        oldSearcher.close();
+        assertTrue( oldSearcher.isClosed() );
+    }
+
     @Ignore( "No longer valid since Lucene 3.5" )
     @Test
     public void testInvalidatingSearcherCreatesANewOne() throws InstantiationException
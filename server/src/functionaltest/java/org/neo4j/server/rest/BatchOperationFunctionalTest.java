@@ -25,6 +25,8 @@ import static org.junit.Assert.assertTrue;
 import java.util.List;
 import java.util.Map;
 
+import javax.ws.rs.core.MediaType;
+
 import org.json.JSONException;
 import org.junit.Test;
 import org.neo4j.graphdb.Node;
@@ -34,7 +36,9 @@ import org.neo4j.server.rest.domain.JsonParseException;
 import org.neo4j.server.rest.web.PropertyValueException;
 import org.neo4j.test.GraphDescription.Graph;
 
+import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.UniformInterfaceException;
 
 public class BatchOperationFunctionalTest extends AbstractRestFunctionalTestBase
@@ -470,6 +474,151 @@ public class BatchOperationFunctionalTest extends AbstractRestFunctionalTestBase
 
     }
     
+    @Test
+    public void shouldStreamResultsOfOperations() throws Exception
+    {
+        int originalNodeCount = countNodes();
+
+        String jsonString = new PrettyJSON()
+            .array()
+                .object()
+                    .key("method")  .value("POST")
+                    .key("to")      .value("/node")
+                    .key("id")      .value(0)
+                    .key("body")
+                        .object()
+                            .key("name").value("bob")
+                        .endObject()
+                .endObject()
+                .object()
+                    .key("method")  .value("POST")
+                    .key("to")      .value("/node")
+                    .key("id")      .value(1)
+                .endObject()
+                .object()
+                    .key("method")  .value("POST")
+                    .key("to")      .value("{0}/relationships")
+                    .key("id")      .value(2)
+                    .key("body")
+                        .object()
+                            .key("to").value("{1}")
+                            .key("type").value("KNOWS")
+                        .endObject()
+                .endObject()
+                .object()
+                    .key("method")  .value("PUT")
+                    .key("to")      .value("{1}/properties/age")
+                    .key("id")      .value(3)
+                    .key("body")    .value(12)
+                .endObject()
+                .object()
+                    .key("method")  .value("GET")
+                    .key("to")      .value("{1}")
+                    .key("id")      .value(4)
+                .endObject()
+            .endArray().toString();
+
+        ClientResponse response = postStreaming( jsonString );
+
+        // The operations run while the response is read
+        List<Map<String, Object>> results = JsonHelper.jsonToList( response.getEntity( String.class ) );
+        assertEquals( 200, response.getStatus() );
+        assertEquals( originalNodeCount + 2, countNodes() );
+        assertEquals( 5, results.size() );
+        assertEquals( "bob", data( results.get( 0 ) ).get( "name" ) );
+        assertEquals( results.get( 0 ).get( "location" ), body( results.get( 2 ) ).get( "start" ) );
+        assertEquals( 12, data( results.get( 4 ) ).get( "age" ) );
+    }
+
+    @Test
+    public void shouldRollbackAllStreamedOperationsOnFailure() throws Exception
+    {
+        int originalNodeCount = countNodes();
+
+        String jsonString = new PrettyJSON()
+            .array()
+                .object()
+                    .key("method")  .value("POST")
+                    .key("to")      .value("/node")
+                .endObject()
+                .object()
+                    .key("method")  .value("PUT")
+                    .key("to")      .value("/node/1234567/properties")
+                    .key("body")
+                        .object()
+                            .key("age").value(1)
+                        .endObject()
+                .endObject()
+                .object()
+                    .key("method")  .value("POST")
+                    .key("to")      .value("/node")
+                .endObject()
+            .endArray().toString();
+
+        ClientResponse response = postStreaming( jsonString );
+
+        List<Map<String, Object>> results = JsonHelper.jsonToList( response.getEntity( String.class ) );
+        assertEquals( 200, response.getStatus() );
+        assertEquals( originalNodeCount, countNodes() );
+        assertEquals( 2, results.size() );
+        assertEquals( 404, results.get( 1 ).get( "status" ) );
+    }
+
+    @Test
+    public void shouldOnlyReplaceKnownPlaceholdersInStreamedBodies() throws Exception
+    {
+        String jsonString = new PrettyJSON()
+            .array()
+                .object()
+                    .key("method")  .value("POST")
+                    .key("to")      .value("/node")
+                    .key("id")      .value(1)
+                .endObject()
+                .object()
+                    .key("method")  .value("POST")
+                    .key("to")      .value("/node")
+                    .key("id")      .value(2)
+                    .key("body")
+                        .object()
+                            .key("known").value("{1}/{1}")
+                            .key("unknown").value("{12}")
+                            .key("other").value("{name} {} {1")
+                        .endObject()
+                .endObject()
+            .endArray().toString();
+
+        ClientResponse response = postStreaming( jsonString );
+
+        List<Map<String, Object>> results = JsonHelper.jsonToList( response.getEntity( String.class ) );
+        String location = (String) results.get( 0 ).get( "location" );
+        Map<String, Object> data = data( results.get( 1 ) );
+        assertEquals( location + "/" + location, data.get( "known" ) );
+        assertEquals( "{12}", data.get( "unknown" ) );
+        assertEquals( "{name} {} {1", data.get( "other" ) );
+    }
+
+    private ClientResponse postStreaming( String jsonString )
+    {
+        return Client.create()
+                .resource( batchUri() )
+                .accept( MediaType.APPLICATION_JSON_TYPE )
+                .header( "X-Stream", "true" )
+                .entity( jsonString, MediaType.APPLICATION_JSON_TYPE )
+                .post( ClientResponse.class );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private Map<String, Object> body( Map<String, Object> result )
+    {
+        return (Map<String, Object>) result.get( "body" );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private Map<String, Object> data( Map<String, Object> result )
+    {
+        return (Map<String, Object>) body( result ).get( "data" );
+    }
+
     private int countNodes()
     {
         int count = 0;
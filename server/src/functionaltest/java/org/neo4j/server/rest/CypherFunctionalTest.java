@@ -33,6 +33,7 @@ import org.neo4j.test.GraphDescription.NODE;
 import org.neo4j.test.GraphDescription.PROP;
 import org.neo4j.test.GraphDescription.REL;
 import org.neo4j.test.TestData.Title;
+import org.neo4j.visualization.asciidoc.AsciidocHelper;
 
 import javax.ws.rs.core.Response.Status;
 import java.io.UnsupportedEncodingException;
@@ -181,6 +182,40 @@ public class CypherFunctionalTest extends AbstractRestFunctionalTestBase {
         assertThat(response, containsString("\"I\", \"you\""));
     }
 
+    /**
+     * Setting `profile` to `true` returns the execution plan together with
+     * the result. Every step of the plan tells how many rows it produced,
+     * how many store accesses it made and how long it took.
+     */
+    @Test
+    @Documented
+    @Title( "Profile a query" )
+    @Graph( "I know you" )
+    public void profile_a_query() throws Exception {
+        data.get();
+        String script = createScript( "start x  = node(%I%) match x -[r]-> n return type(r), n.name?" );
+        String queryString = "{\"query\": \"" + script + "\", \"params\": {}, \"profile\": true}";
+
+        String response = gen().expectedStatus( Status.OK.getStatusCode() ).payload( queryString ).description(
+                AsciidocHelper.createCypherSnippet( script ) ).post( cypherUri() ).entity();
+
+        Map<String, Object> resultMap = JsonHelper.jsonToMap( response );
+        assertEquals( 3, resultMap.size() );
+        assertThat( response, containsString( "you" ) );
+        Map<?, ?> plan = (Map<?, ?>) resultMap.get( "plan" );
+        assertEquals( 2, ( (Number) plan.get( "rows" ) ).intValue() );
+        assertTrue( plan.containsKey( "dbHits" ) );
+    }
+
+    @Test
+    @Graph( "I know you" )
+    public void plan_is_only_returned_for_profiled_queries() throws Exception {
+        String response = cypherRestCall( "start x  = node(%I%) match x -[r]-> n return n.name?", Status.OK );
+
+        assertEquals( 2, ( JsonHelper.jsonToMap( response ) ).size() );
+        assertThat( response, not( containsString( "plan" ) ) );
+    }
+
     @Test
     @Graph( value = { "I know you" }, autoIndexNodes = false )
     public void array_property() throws Exception {
@@ -20,11 +20,13 @@
 package org.neo4j.server.rest.domain;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.neo4j.server.rest.web.PropertyValueException;
@@ -109,4 +111,15 @@ public class JsonHelper
             throw new JsonBuildRuntimeException( e );
         }
     }
+
+    /**
+     * Creates a generator writing UTF-8 encoded JSON to {@code output}, laid
+     * out like the output of {@link #createJsonFrom(Object)}.
+     */
+    public static JsonGenerator createJsonGenerator( OutputStream output ) throws IOException
+    {
+        return OBJECT_MAPPER.getJsonFactory()
+                .createJsonGenerator( output, JsonEncoding.UTF8 )
+                .useDefaultPrettyPrinter();
+    }
 }
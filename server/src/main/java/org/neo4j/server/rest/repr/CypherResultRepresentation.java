@@ -23,6 +23,7 @@ import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.helpers.collection.IterableWrapper;
 import org.neo4j.server.webadmin.rest.representations.JmxAttributeRepresentationDispatcher;
 
 import java.util.ArrayList;
@@ -33,13 +34,25 @@ public class CypherResultRepresentation extends ObjectRepresentation
 {
     private final Representation resultRepresentation;
     private final ListRepresentation columns;
+    private final MapRepresentation plan;
 
 
     public CypherResultRepresentation( ExecutionResult result )
+    {
+        this( result, false );
+    }
+
+    /**
+     * @param profiled whether the result comes from a profiled query, in
+     * which case the execution plan is included
+     */
+    public CypherResultRepresentation( ExecutionResult result, boolean profiled )
     {
         super( RepresentationType.STRING );
-        resultRepresentation = createResultRepresentation(result);
+        resultRepresentation = profiled ? createResultRepresentation( result )
+                                        : createLazyResultRepresentation( result );
         columns = ListRepresentation.string( result.columns() );
+        plan = profiled ? new MapRepresentation( result.executionPlanDescription().asJava() ) : null;
     }
 
     @Mapping( "columns" )
@@ -55,6 +68,12 @@ public class CypherResultRepresentation extends ObjectRepresentation
 
     }
 
+    @Mapping( "plan" )
+    public Representation plan()
+    {
+        return plan;
+    }
+
     private Representation createResultRepresentation(ExecutionResult executionResult) {
         // rows
         List<Representation> rows = new ArrayList<Representation>();
@@ -72,6 +91,31 @@ public class CypherResultRepresentation extends ObjectRepresentation
         return new ListRepresentation( "data", rows );
     }
 
+    /**
+     * Reads the rows of {@code executionResult} while the representation is
+     * serialized, so that a streamed response doesn't keep the whole result
+     * in memory. Such a representation can only be serialized once. Profiled
+     * results are read up front since the plan needs the full statistics.
+     */
+    private Representation createLazyResultRepresentation( ExecutionResult executionResult )
+    {
+        final List<String> columns = executionResult.columns();
+        return new ListRepresentation( "data", new IterableWrapper<Representation, Map<String, Object>>(
+                executionResult )
+        {
+            @Override
+            protected Representation underlyingObjectToObject( Map<String, Object> row )
+            {
+                List<Representation> fields = new ArrayList<Representation>();
+                for ( String column : columns )
+                {
+                    fields.add( getRepresentation( row.get( column ) ) );
+                }
+                return new ListRepresentation( "row", fields );
+            }
+        } );
+    }
+
     Representation getRepresentation( Object r )
     {
         if( r == null )
@@ -19,6 +19,8 @@
  */
 package org.neo4j.server.rest.repr;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 
@@ -27,6 +29,11 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.neo4j.server.rest.domain.JsonHelper;
+import org.neo4j.server.rest.repr.formats.StreamingJsonFormat;
 
 public class OutputFormat
 {
@@ -34,12 +41,29 @@ public class OutputFormat
     private final RepresentationFormat format;
     private final ExtensionInjector extensions;
     private final URI baseUri;
+    private final boolean streaming;
 
     public OutputFormat( RepresentationFormat format, URI baseUri, ExtensionInjector extensions )
+    {
+        this( format, baseUri, extensions, false );
+    }
+
+    /**
+     * @param streaming whether to write JSON responses to the client while
+     *            they are being serialized, rather than building the whole
+     *            response in memory first. Other formats are never streamed.
+     */
+    public OutputFormat( RepresentationFormat format, URI baseUri, ExtensionInjector extensions, boolean streaming )
     {
         this.format = format;
         this.baseUri = baseUri;
         this.extensions = extensions;
+        this.streaming = streaming && MediaType.APPLICATION_JSON_TYPE.equals( format.mediaType );
+    }
+
+    public boolean isStreaming()
+    {
+        return streaming;
     }
 
     public final Response ok( Representation representation )
@@ -90,13 +114,20 @@ public class OutputFormat
         return response( Response.status( Status.INTERNAL_SERVER_ERROR ), new ExceptionRepresentation( exception ) );
     }
 
-    private URI uri( EntityRepresentation representation ) throws BadInputException
+    public URI uri( EntityRepresentation representation ) throws BadInputException
     {
         return URI.create( format( representation.selfUri() ) );
     }
 
     protected Response response( ResponseBuilder response, Representation representation )
     {
+        if ( streaming )
+        {
+            return response.entity( stream( representation ) )
+                    .header( HttpHeaders.CONTENT_ENCODING, UTF8 )
+                    .type( getMediaType() )
+                    .build();
+        }
         String entity = format( representation );
         byte[] entityAsBytes;
         try
@@ -113,6 +144,42 @@ public class OutputFormat
                 .build();
     }
 
+    /**
+     * Serializes {@code representation} when the container writes the
+     * response, so that the client receives the first part of it before the
+     * rest has been serialized (or, for lazy representations, computed).
+     * Since the status has been sent by then, a failure half way through
+     * can only be reported by cutting the response short.
+     */
+    private StreamingOutput stream( final Representation representation )
+    {
+        return new StreamingOutput()
+        {
+            @Override
+            public void write( OutputStream output ) throws IOException
+            {
+                JsonGenerator generator = JsonHelper.createJsonGenerator( output );
+                // URIs serialize to their plain text, like in a buffered response
+                generator.writeRaw( representation.serialize( new StreamingJsonFormat( generator ), baseUri,
+                        extensions ) );
+                generator.flush();
+            }
+        };
+    }
+
+    /**
+     * Writes {@code representation} to {@code generator} as a JSON value, for
+     * responses that embed representations in a document of their own.
+     */
+    public void writeTo( JsonGenerator generator, Representation representation ) throws IOException
+    {
+        String uri = representation.serialize( new StreamingJsonFormat( generator ), baseUri, extensions );
+        if ( uri.length() > 0 )
+        {
+            generator.writeString( uri );
+        }
+    }
+
     public MediaType getMediaType()
     {
         return format.mediaType;
@@ -25,12 +25,21 @@ import java.util.List;
 import java.util.Map;
 
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 
 import org.neo4j.helpers.Service;
 import org.neo4j.server.rest.repr.formats.JsonFormat;
 
 public final class RepresentationFormatRepository
 {
+    /**
+     * Clients ask for a streamed JSON response with this header set to
+     * {@code true}, or with this parameter on the accepted media type, as
+     * in {@code application/json;stream=true}.
+     */
+    public static final String STREAM_HEADER = "X-Stream";
+    public static final String STREAM_PARAMETER = "stream";
+
     private final Map<MediaType, RepresentationFormat> formats;
     private final ExtensionInjector injector;
 
@@ -46,16 +55,29 @@ public final class RepresentationFormatRepository
 
     public OutputFormat outputFormat( List<MediaType> acceptable, URI baseUri )
     {
+        return outputFormat( acceptable, baseUri, null );
+    }
+
+    public OutputFormat outputFormat( List<MediaType> acceptable, URI baseUri,
+            MultivaluedMap<String, String> requestHeaders )
+    {
+        boolean streaming = requestHeaders != null
+                            && "true".equalsIgnoreCase( requestHeaders.getFirst( STREAM_HEADER ) );
         for ( MediaType type : acceptable )
         {
             RepresentationFormat format = formats.get( type );
+            if ( format == null && type.getParameters().containsKey( STREAM_PARAMETER ) )
+            {
+                format = formats.get( new MediaType( type.getType(), type.getSubtype() ) );
+                streaming |= "true".equalsIgnoreCase( type.getParameters().get( STREAM_PARAMETER ) );
+            }
             if ( format != null )
             {
-                return new OutputFormat( format, baseUri, injector );
+                return new OutputFormat( format, baseUri, injector, streaming );
             }
         }
 
-        return new OutputFormat( useDefault( acceptable ), baseUri, injector );
+        return new OutputFormat( useDefault( acceptable ), baseUri, injector, streaming );
     }
 
     public InputFormat inputFormat( MediaType type )
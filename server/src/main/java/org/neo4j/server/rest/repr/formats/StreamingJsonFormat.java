@@ -0,0 +1,299 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr.formats;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.neo4j.server.rest.domain.JsonBuildRuntimeException;
+import org.neo4j.server.rest.repr.BadInputException;
+import org.neo4j.server.rest.repr.ListWriter;
+import org.neo4j.server.rest.repr.MappingWriter;
+import org.neo4j.server.rest.repr.RepresentationFormat;
+
+/**
+ * Writes representations as JSON straight to a {@link JsonGenerator} while
+ * they are being serialized, instead of collecting them into maps and lists
+ * first. All {@code serialize} and {@code complete} methods return an empty
+ * string, the output ends up in the generator.
+ * <p>
+ * Unlike the formats in the {@link org.neo4j.server.rest.repr.RepresentationFormatRepository}
+ * this format is stateful, a new instance is created for every response.
+ * Reading input is delegated to {@link JsonFormat}.
+ */
+public class StreamingJsonFormat extends RepresentationFormat
+{
+    private final JsonGenerator generator;
+    private final JsonFormat input = new JsonFormat();
+
+    public StreamingJsonFormat( JsonGenerator generator )
+    {
+        super( MediaType.APPLICATION_JSON_TYPE );
+        this.generator = generator;
+    }
+
+    @Override
+    protected String serializeValue( String type, Object value )
+    {
+        try
+        {
+            generator.writeObject( value );
+        }
+        catch ( IOException e )
+        {
+            throw new JsonBuildRuntimeException( e );
+        }
+        return "";
+    }
+
+    @Override
+    protected ListWriter serializeList( String type )
+    {
+        return new StreamingListWriter( new Scope( generator, false ).open( null, true ) );
+    }
+
+    @Override
+    protected MappingWriter serializeMapping( String type )
+    {
+        return new StreamingMappingWriter( new Scope( generator, false ).open( null, false ) );
+    }
+
+    @Override
+    protected String complete( ListWriter serializer )
+    {
+        return flush();
+    }
+
+    @Override
+    protected String complete( MappingWriter serializer )
+    {
+        return flush();
+    }
+
+    private String flush()
+    {
+        try
+        {
+            generator.flush();
+        }
+        catch ( IOException e )
+        {
+            throw new JsonBuildRuntimeException( e );
+        }
+        return "";
+    }
+
+    @Override
+    public Object readValue( String input ) throws BadInputException
+    {
+        return this.input.readValue( input );
+    }
+
+    @Override
+    public Map<String, Object> readMap( String input, String... requiredKeys ) throws BadInputException
+    {
+        return this.input.readMap( input, requiredKeys );
+    }
+
+    @Override
+    public List<Object> readList( String input ) throws BadInputException
+    {
+        return this.input.readList( input );
+    }
+
+    @Override
+    public URI readUri( String input ) throws BadInputException
+    {
+        return this.input.readUri( input );
+    }
+
+    /**
+     * An open JSON array or object. Not every serializer calls
+     * {@code done()} on the writers it nests, so an open nested scope is
+     * closed as soon as its parent is written to again. The outermost scope
+     * of a response is never opened or closed itself, it only holds the
+     * array or object of the top level writer.
+     */
+    private static class Scope
+    {
+        private final JsonGenerator generator;
+        private final boolean array;
+        private Scope child;
+        private boolean closed;
+
+        Scope( JsonGenerator generator, boolean array )
+        {
+            this.generator = generator;
+            this.array = array;
+        }
+
+        Scope open( String key, boolean array )
+        {
+            Scope scope = new Scope( generator, array );
+            try
+            {
+                field( key );
+                if ( array )
+                {
+                    generator.writeStartArray();
+                }
+                else
+                {
+                    generator.writeStartObject();
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new JsonBuildRuntimeException( e );
+            }
+            child = scope;
+            return scope;
+        }
+
+        void value( String key, Object value )
+        {
+            try
+            {
+                field( key );
+                generator.writeObject( value );
+            }
+            catch ( IOException e )
+            {
+                throw new JsonBuildRuntimeException( e );
+            }
+        }
+
+        private void field( String key ) throws IOException
+        {
+            closeChild();
+            if ( key != null )
+            {
+                generator.writeFieldName( key );
+            }
+        }
+
+        private void closeChild()
+        {
+            if ( child != null )
+            {
+                child.close();
+                child = null;
+            }
+        }
+
+        void close()
+        {
+            if ( closed )
+            {
+                return;
+            }
+            closeChild();
+            closed = true;
+            try
+            {
+                if ( array )
+                {
+                    generator.writeEndArray();
+                }
+                else
+                {
+                    generator.writeEndObject();
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new JsonBuildRuntimeException( e );
+            }
+        }
+    }
+
+    private static class StreamingListWriter extends ListWriter
+    {
+        private final Scope scope;
+
+        StreamingListWriter( Scope scope )
+        {
+            this.scope = scope;
+        }
+
+        @Override
+        protected ListWriter newList( String type )
+        {
+            return new StreamingListWriter( scope.open( null, true ) );
+        }
+
+        @Override
+        protected MappingWriter newMapping( String type )
+        {
+            return new StreamingMappingWriter( scope.open( null, false ) );
+        }
+
+        @Override
+        protected void writeValue( String type, Object value )
+        {
+            scope.value( null, value );
+        }
+
+        @Override
+        protected void done()
+        {
+            scope.close();
+        }
+    }
+
+    private static class StreamingMappingWriter extends MappingWriter
+    {
+        private final Scope scope;
+
+        StreamingMappingWriter( Scope scope )
+        {
+            this.scope = scope;
+        }
+
+        @Override
+        protected ListWriter newList( String type, String key )
+        {
+            return new StreamingListWriter( scope.open( key, true ) );
+        }
+
+        @Override
+        protected MappingWriter newMapping( String type, String key )
+        {
+            return new StreamingMappingWriter( scope.open( key, false ) );
+        }
+
+        @Override
+        protected void writeValue( String type, String key, Object value )
+        {
+            scope.value( key, value );
+        }
+
+        @Override
+        protected void done()
+        {
+            scope.close();
+        }
+    }
+}
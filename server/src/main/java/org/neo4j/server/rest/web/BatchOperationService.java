@@ -21,6 +21,7 @@ package org.neo4j.server.rest.web;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.net.URI;
 import java.util.List;
@@ -33,6 +34,7 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.codehaus.jackson.JsonFactory;
@@ -43,11 +45,15 @@ import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.kernel.GraphDatabaseSPI;
+import org.neo4j.kernel.impl.transaction.xaframework.ForceMode;
 import org.neo4j.server.database.Database;
 import org.neo4j.server.rest.domain.BatchOperationFailedException;
+import org.neo4j.server.rest.domain.JsonHelper;
+import org.neo4j.server.rest.paging.LeaseManager;
 import org.neo4j.server.rest.repr.BadInputException;
 import org.neo4j.server.rest.repr.BatchOperationResults;
 import org.neo4j.server.rest.repr.OutputFormat;
+import org.neo4j.server.rest.repr.RepresentationFormatRepository;
 import org.neo4j.server.web.WebServer;
 
 @Path( "/batch" )
@@ -64,18 +70,26 @@ public class BatchOperationService
     private final OutputFormat output;
     private final WebServer webServer;
     private final Database database;
+    private final LeaseManager leaseManager;
 
-    public BatchOperationService(@Context Database database, @Context WebServer webServer, @Context OutputFormat output)
+    public BatchOperationService( @Context Database database, @Context WebServer webServer,
+            @Context OutputFormat output, @Context LeaseManager leaseManager )
     {
         this.output = output;
         this.webServer = webServer;
         this.database = database;
+        this.leaseManager = leaseManager;
     }
 
     @POST
     public Response performBatchOperations( @Context UriInfo uriInfo, @Context HttpHeaders httpHeaders,
                                             InputStream body ) throws BadInputException
     {
+        if ( output.isStreaming() )
+        {
+            return streamBatchOperations( uriInfo, httpHeaders, body );
+        }
+
         GraphDatabaseSPI db = database.graph;
 
         Transaction tx = db.beginTx();
@@ -142,6 +156,30 @@ public class BatchOperationService
         }
     }
 
+    /**
+     * Runs the operations while the response is written, see
+     * {@link StreamingBatchOperations}.
+     */
+    private Response streamBatchOperations( final UriInfo uriInfo, final HttpHeaders httpHeaders,
+            final InputStream body )
+    {
+        final StreamingBatchOperations operations = new StreamingBatchOperations( database.graph,
+                new DatabaseActions( database, leaseManager, ForceMode.forced ), output, webServer, uriInfo,
+                httpHeaders );
+        return Response.ok()
+                .entity( new StreamingOutput()
+                {
+                    @Override
+                    public void write( OutputStream out ) throws IOException
+                    {
+                        operations.execute( body, JsonHelper.createJsonGenerator( out ) );
+                    }
+                } )
+                .header( HttpHeaders.CONTENT_ENCODING, "UTF-8" )
+                .type( MediaType.APPLICATION_JSON )
+                .build();
+    }
+
     private void performJob( BatchOperationResults results, UriInfo uriInfo, String method, String path, String body,
                              Integer id, HttpHeaders httpHeaders )
             throws IOException, ServletException
@@ -171,7 +209,7 @@ public class BatchOperationService
         }
     }
 
-    private void addHeaders(final InternalJettyServletRequest res, final HttpHeaders httpHeaders)
+    static void addHeaders(final InternalJettyServletRequest res, final HttpHeaders httpHeaders)
     {
         for ( Map.Entry<String, List<String>> header : httpHeaders.getRequestHeaders().entrySet() )
         {
@@ -185,6 +223,10 @@ public class BatchOperationService
             {
                 continue; // We add them explicitly
             }
+            else if ( key.equalsIgnoreCase( RepresentationFormatRepository.STREAM_HEADER ) )
+            {
+                continue; // Nested responses are read back from a buffer
+            }
             else
             {
                 res.addHeader( key, value.get( 0 ) );
@@ -196,7 +238,7 @@ public class BatchOperationService
         res.addHeader( "Content-Type", "application/json" );
     }
 
-    private URI calculateTargetUri( UriInfo serverUriInfo, String requestedPath )
+    static URI calculateTargetUri( UriInfo serverUriInfo, String requestedPath )
     {
         URI baseUri = serverUriInfo.getBaseUri();
 
@@ -40,6 +40,7 @@ public class CypherService {
 
     private static final String PARAMS_KEY = "params";
     private static final String QUERY_KEY = "query";
+    private static final String PROFILE_KEY = "profile";
 
     private ExecutionEngine executionEngine;
     private OutputFormat output;
@@ -64,6 +65,11 @@ public class CypherService {
         String query =  (String) command.get(QUERY_KEY);
         Map<String,Object> params = (Map<String, Object>) (command.containsKey(PARAMS_KEY) ? command.get(PARAMS_KEY) : new HashMap<String, Object>());
         try {
+            if ( Boolean.TRUE.equals( command.get( PROFILE_KEY ) ) )
+            {
+                ExecutionResult result = executionEngine.profile( query, params );
+                return output.ok(new CypherResultRepresentation( result, true ));
+            }
             ExecutionResult result = executionEngine.execute(  query, params );
             return output.ok(new CypherResultRepresentation( result ));
         } catch(Exception e) {
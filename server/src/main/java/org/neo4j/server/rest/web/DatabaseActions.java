@@ -53,6 +53,7 @@ import org.neo4j.graphdb.index.RelationshipIndex;
 import org.neo4j.graphdb.index.UniqueFactory;
 import org.neo4j.graphdb.traversal.TraversalDescription;
 import org.neo4j.helpers.Pair;
+import org.neo4j.helpers.collection.FilteringIterable;
 import org.neo4j.helpers.collection.IterableWrapper;
 import org.neo4j.index.lucene.QueryContext;
 import org.neo4j.kernel.GraphDatabaseSPI;
@@ -1242,24 +1243,27 @@ public class DatabaseActions
 
     // Traversal
 
+    /**
+     * The traversal runs while the returned representation is serialized,
+     * so a streamed response never holds more than one position in memory.
+     */
     public ListRepresentation traverse( long startNode,
-            Map<String, Object> description, TraverserReturnType returnType )
+            Map<String, Object> description, final TraverserReturnType returnType )
     {
         Node node = graphDb.getNodeById( startNode );
 
-        List<Representation> result = new ArrayList<Representation>();
-
         TraversalDescription traversalDescription = TraversalDescriptionBuilder.from( description );
-        for ( Path position : traversalDescription.traverse( node ) )
+        Iterable<MappingRepresentation> result = new IterableWrapper<MappingRepresentation, Path>(
+                traversalDescription.traverse( node ) )
         {
-            MappingRepresentation representation = returnType.toRepresentation( position );
-            if ( representation != null )
+            @Override
+            protected MappingRepresentation underlyingObjectToObject( Path position )
             {
-                result.add( representation );
+                return returnType.toRepresentation( position );
             }
-        }
+        };
 
-        return new ListRepresentation( returnType.repType, result );
+        return new ListRepresentation( returnType.repType, FilteringIterable.notNull( result ) );
     }
 
     public ListRepresentation pagedTraverse( String traverserId,
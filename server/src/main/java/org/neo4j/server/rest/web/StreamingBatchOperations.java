@@ -0,0 +1,435 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.UriInfo;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.GraphDatabaseSPI;
+import org.neo4j.server.rest.domain.EndNodeNotFoundException;
+import org.neo4j.server.rest.domain.StartNodeNotFoundException;
+import org.neo4j.server.rest.repr.BadInputException;
+import org.neo4j.server.rest.repr.DefaultFormat;
+import org.neo4j.server.rest.repr.EntityRepresentation;
+import org.neo4j.server.rest.repr.ExceptionRepresentation;
+import org.neo4j.server.rest.repr.OutputFormat;
+import org.neo4j.server.rest.repr.Representation;
+import org.neo4j.server.web.WebServer;
+
+/**
+ * Runs a batch of operations while the request body is being read, writing
+ * the result of each operation to the response as soon as it is done. Only
+ * one job is held in memory at a time.
+ * <p>
+ * The common write operations (creating nodes and relationships, setting
+ * properties and adding to indexes) call {@link DatabaseActions} directly,
+ * other operations go through the REST API like in a buffered batch. All
+ * operations run in one transaction. Since the response status has been
+ * sent when an operation fails, the failure is reported as the last entry of
+ * the result, with a {@code status} and the exception as {@code body}, and
+ * the transaction is rolled back.
+ */
+class StreamingBatchOperations
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String ID_KEY = "id";
+    private static final String METHOD_KEY = "method";
+    private static final String BODY_KEY = "body";
+    private static final String TO_KEY = "to";
+
+    private final GraphDatabaseSPI graphDb;
+    private final DatabaseActions actions;
+    private final OutputFormat output;
+    private final WebServer webServer;
+    private final UriInfo uriInfo;
+    private final HttpHeaders httpHeaders;
+    // Any later job may refer to any earlier one, so this holds the location of every job that was given an id
+    private final Map<Integer, String> locations = new HashMap<Integer, String>();
+
+    StreamingBatchOperations( GraphDatabaseSPI graphDb, DatabaseActions actions, OutputFormat output,
+            WebServer webServer, UriInfo uriInfo, HttpHeaders httpHeaders )
+    {
+        this.graphDb = graphDb;
+        this.actions = actions;
+        this.output = output;
+        this.webServer = webServer;
+        this.uriInfo = uriInfo;
+        this.httpHeaders = httpHeaders;
+    }
+
+    void execute( InputStream body, JsonGenerator out ) throws IOException
+    {
+        JsonParser parser = MAPPER.getJsonFactory().createJsonParser( body );
+        boolean failed = false;
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            out.writeStartArray();
+            JsonToken token;
+            while ( !failed && ( token = parser.nextToken() ) != null )
+            {
+                if ( token == JsonToken.START_OBJECT )
+                {
+                    @SuppressWarnings( "unchecked" )
+                    Map<String, Object> job = parser.readValueAs( LinkedHashMap.class );
+                    failed = !perform( job, out );
+                    out.flush();
+                }
+            }
+            out.writeEndArray();
+            out.flush();
+            if ( !failed )
+            {
+                tx.success();
+            }
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    private boolean perform( Map<String, Object> job, JsonGenerator out ) throws IOException
+    {
+        Integer id = job.get( ID_KEY ) instanceof Number ? ( (Number) job.get( ID_KEY ) ).intValue() : null;
+        String method = String.valueOf( job.get( METHOD_KEY ) ).toUpperCase();
+        String path = job.containsKey( TO_KEY ) ? String.valueOf( job.get( TO_KEY ) ) : "";
+        path = replaceLocationPlaceholders( path );
+        Object body = replaceLocationPlaceholders( job.get( BODY_KEY ) );
+
+        Result result;
+        try
+        {
+            URI target = BatchOperationService.calculateTargetUri( uriInfo, path );
+            result = performDirectly( method, target, body );
+            if ( result == null )
+            {
+                result = performThroughServlet( method, target, body );
+            }
+        }
+        catch ( Exception e )
+        {
+            result = failure( e );
+        }
+
+        out.writeStartObject();
+        if ( id != null )
+        {
+            out.writeNumberField( ID_KEY, id );
+        }
+        if ( result.location != null && result.succeeded() )
+        {
+            if ( id != null )
+            {
+                locations.put( id, result.location );
+            }
+            out.writeStringField( "location", result.location );
+        }
+        if ( result.body != null )
+        {
+            out.writeFieldName( BODY_KEY );
+            output.writeTo( out, result.body );
+        }
+        else if ( result.rawBody != null && result.rawBody.length() != 0 )
+        {
+            out.writeFieldName( BODY_KEY );
+            out.writeRawValue( result.rawBody );
+        }
+        out.writeStringField( "from", path );
+        if ( !result.succeeded() )
+        {
+            out.writeNumberField( "status", result.status );
+        }
+        out.writeEndObject();
+        return result.succeeded();
+    }
+
+    /**
+     * @return the result of the operation, or {@code null} if it isn't one
+     *         of the operations that are performed directly.
+     */
+    @SuppressWarnings( "unchecked" )
+    private Result performDirectly( String method, URI target, Object body ) throws Exception
+    {
+        if ( target.getQuery() != null )
+        {
+            return null;
+        }
+        URI relative = uriInfo.getBaseUri().relativize( target );
+        if ( relative.isAbsolute() )
+        {
+            return null;
+        }
+        String[] segments = relative.getPath().split( "/" );
+
+        if ( method.equals( "POST" ) )
+        {
+            if ( matches( segments, "node" ) )
+            {
+                return created( actions.createNode( map( body ) ) );
+            }
+            if ( matches( segments, "node", null, "relationships" ) )
+            {
+                Map<String, Object> data = map( body );
+                long endNodeId = extractId( (String) data.get( "to" ) );
+                return created( actions.createRelationship( extractId( segments[1] ), endNodeId,
+                        (String) data.get( "type" ), (Map<String, Object>) data.get( "data" ) ) );
+            }
+            if ( matches( segments, "index", "node", null ) )
+            {
+                Map<String, Object> data = DefaultFormat.validateKeys( map( body ), "key", "value", "uri" );
+                return created( actions.addToNodeIndex( segments[2], String.valueOf( data.get( "key" ) ),
+                        String.valueOf( data.get( "value" ) ), extractId( data.get( "uri" ).toString() ) ) );
+            }
+            if ( matches( segments, "index", "relationship", null ) )
+            {
+                Map<String, Object> data = DefaultFormat.validateKeys( map( body ), "key", "value", "uri" );
+                return created( actions.addToRelationshipIndex( segments[2], String.valueOf( data.get( "key" ) ),
+                        String.valueOf( data.get( "value" ) ), extractId( data.get( "uri" ).toString() ) ) );
+            }
+        }
+        else if ( method.equals( "PUT" ) )
+        {
+            if ( matches( segments, "node", null, "properties" ) )
+            {
+                actions.setAllNodeProperties( extractId( segments[1] ), map( body ) );
+                return new Result( 204 );
+            }
+            if ( matches( segments, "node", null, "properties", null ) )
+            {
+                actions.setNodeProperty( extractId( segments[1] ), segments[3], body );
+                return new Result( 204 );
+            }
+            if ( matches( segments, "relationship", null, "properties" ) )
+            {
+                actions.setAllRelationshipProperties( extractId( segments[1] ), map( body ) );
+                return new Result( 204 );
+            }
+            if ( matches( segments, "relationship", null, "properties", null ) )
+            {
+                actions.setRelationshipProperty( extractId( segments[1] ), segments[3], body );
+                return new Result( 204 );
+            }
+        }
+        return null;
+    }
+
+    private Result performThroughServlet( String method, URI target, Object body ) throws IOException,
+            ServletException
+    {
+        String entity = body == null ? "" : MAPPER.writeValueAsString( body );
+        InternalJettyServletRequest req = new InternalJettyServletRequest( method, target.toString(), entity );
+        InternalJettyServletResponse res = new InternalJettyServletResponse();
+        BatchOperationService.addHeaders( req, httpHeaders );
+
+        webServer.invokeDirectly( target.getPath(), req, res );
+
+        Result result = new Result( res.getStatus() );
+        result.rawBody = res.getOutputStream().toString();
+        result.location = res.getHeader( "Location" );
+        return result;
+    }
+
+    private Result created( EntityRepresentation representation ) throws BadInputException
+    {
+        Result result = new Result( 201 );
+        result.location = output.uri( representation ).toString();
+        result.body = (Representation) representation;
+        return result;
+    }
+
+    private Result failure( Exception e ) throws IOException
+    {
+        Result result;
+        if ( e instanceof BadInputException || e instanceof EndNodeNotFoundException
+             || e instanceof ClassCastException || e instanceof ArrayStoreException )
+        {
+            result = new Result( 400 );
+        }
+        else if ( e instanceof NodeNotFoundException || e instanceof RelationshipNotFoundException
+                  || e instanceof StartNodeNotFoundException || e instanceof NotFoundException )
+        {
+            result = new Result( 404 );
+        }
+        else if ( e instanceof IOException )
+        {
+            throw (IOException) e;
+        }
+        else
+        {
+            result = new Result( 500 );
+        }
+        result.body = new ExceptionRepresentation( e );
+        return result;
+    }
+
+    private static boolean matches( String[] segments, String... pattern )
+    {
+        if ( segments.length != pattern.length )
+        {
+            return false;
+        }
+        for ( int i = 0; i < pattern.length; i++ )
+        {
+            if ( pattern[i] == null ? segments[i].length() == 0 : !pattern[i].equals( segments[i] ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static Map<String, Object> map( Object body ) throws BadInputException
+    {
+        if ( body == null || "".equals( body ) )
+        {
+            return new HashMap<String, Object>();
+        }
+        if ( body instanceof Map )
+        {
+            return (Map<String, Object>) body;
+        }
+        throw new BadInputException( "Expected a map, not " + body );
+    }
+
+    private static long extractId( String uri ) throws BadInputException
+    {
+        if ( uri == null )
+        {
+            throw new BadInputException( "Missing URI" );
+        }
+        try
+        {
+            return Long.parseLong( uri.substring( uri.lastIndexOf( "/" ) + 1 ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new BadInputException( e );
+        }
+    }
+
+    /**
+     * Replaces every {<job id>} in the string with the location of that job. The string is scanned once and
+     * every placeholder is looked up, so the cost doesn't grow with the number of jobs seen so far.
+     * Placeholders of jobs without a location are left as they are.
+     */
+    private String replaceLocationPlaceholders( String str )
+    {
+        int open = str.indexOf( '{' );
+        if ( open == -1 )
+        {
+            return str;
+        }
+        StringBuilder replaced = new StringBuilder( str.length() );
+        int copied = 0;
+        while ( open != -1 )
+        {
+            int end = open + 1;
+            while ( end < str.length() && Character.isDigit( str.charAt( end ) ) )
+            {
+                end++;
+            }
+            String location = null;
+            if ( end > open + 1 && end < str.length() && str.charAt( end ) == '}' && end - open <= 10 )
+            {
+                location = locations.get( Integer.valueOf( str.substring( open + 1, end ) ) );
+            }
+            if ( location != null )
+            {
+                replaced.append( str, copied, open ).append( location );
+                copied = end + 1;
+            }
+            open = str.indexOf( '{', open + 1 );
+        }
+        return copied == 0 ? str : replaced.append( str, copied, str.length() ).toString();
+    }
+
+    /**
+     * Replaces the placeholders in all strings of a parsed JSON value.
+     */
+    @SuppressWarnings( "unchecked" )
+    private Object replaceLocationPlaceholders( Object value )
+    {
+        if ( locations.isEmpty() )
+        {
+            return value;
+        }
+        if ( value instanceof String )
+        {
+            return replaceLocationPlaceholders( (String) value );
+        }
+        if ( value instanceof Map )
+        {
+            Map<String, Object> replaced = new LinkedHashMap<String, Object>();
+            for ( Map.Entry<String, Object> entry : ( (Map<String, Object>) value ).entrySet() )
+            {
+                replaced.put( replaceLocationPlaceholders( entry.getKey() ),
+                        replaceLocationPlaceholders( entry.getValue() ) );
+            }
+            return replaced;
+        }
+        if ( value instanceof List )
+        {
+            List<Object> replaced = new ArrayList<Object>();
+            for ( Object item : (List<Object>) value )
+            {
+                replaced.add( replaceLocationPlaceholders( item ) );
+            }
+            return replaced;
+        }
+        return value;
+    }
+
+    private static class Result
+    {
+        final int status;
+        String location;
+        Representation body;
+        String rawBody;
+
+        Result( int status )
+        {
+            this.status = status;
+        }
+
+        boolean succeeded()
+        {
+            return status >= 200 && status < 300;
+        }
+    }
+}
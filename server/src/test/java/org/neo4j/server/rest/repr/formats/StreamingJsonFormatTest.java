@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2002-2012 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr.formats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.Arrays;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.server.rest.domain.JsonHelper;
+import org.neo4j.server.rest.repr.ListRepresentation;
+import org.neo4j.server.rest.repr.MappingRepresentation;
+import org.neo4j.server.rest.repr.MappingSerializer;
+import org.neo4j.server.rest.repr.OutputFormat;
+import org.neo4j.server.rest.repr.Representation;
+import org.neo4j.server.rest.repr.ValueRepresentation;
+
+public class StreamingJsonFormatTest
+{
+    private OutputFormat buffered;
+    private OutputFormat streaming;
+
+    @Before
+    public void createOutputFormats() throws Exception
+    {
+        buffered = new OutputFormat( new JsonFormat(), new URI( "http://localhost/" ), null );
+        streaming = new OutputFormat( new JsonFormat(), new URI( "http://localhost/" ), null, true );
+    }
+
+    @Test
+    public void shouldOnlyStreamJson() throws Exception
+    {
+        assertTrue( streaming.isStreaming() );
+        assertFalse( buffered.isStreaming() );
+        assertFalse( new OutputFormat( new CompactJsonFormat(), new URI( "http://localhost/" ), null, true )
+                .isStreaming() );
+    }
+
+    @Test
+    public void canStreamValue() throws Exception
+    {
+        assertStreamedAsBuffered( ValueRepresentation.string( "expected value" ) );
+        assertStreamedAsBuffered( ValueRepresentation.number( 10 ) );
+    }
+
+    @Test
+    public void canStreamUri() throws Exception
+    {
+        Representation representation = ValueRepresentation.uri( "node/1" );
+
+        // A bare URI isn't JSON, it's written as plain text in both cases
+        assertEquals( "http://localhost/node/1", buffered.format( representation ) );
+        assertEquals( buffered.format( representation ), stream( representation ) );
+    }
+
+    @Test
+    public void canStreamListOfStrings() throws Exception
+    {
+        assertStreamedAsBuffered( ListRepresentation.strings( "hello", "world" ) );
+    }
+
+    @Test
+    public void canStreamNestedStructures() throws Exception
+    {
+        final MappingRepresentation nested = new MappingRepresentation( "data" )
+        {
+            @Override
+            protected void serialize( MappingSerializer serializer )
+            {
+                serializer.putString( "data", "expected data" );
+                serializer.putList( "numbers", ListRepresentation.numbers( 1, 2, 3 ) );
+            }
+        };
+        Representation representation = new MappingRepresentation( "nesting" )
+        {
+            @Override
+            protected void serialize( MappingSerializer serializer )
+            {
+                serializer.putMapping( "nested", nested );
+                serializer.putUri( "URL", "subpath" );
+                serializer.putList( "list", new ListRepresentation( "data", Arrays.asList( nested, nested ) ) );
+                serializer.putBoolean( "last", true );
+            }
+        };
+        assertStreamedAsBuffered( representation );
+    }
+
+    private void assertStreamedAsBuffered( Representation representation ) throws Exception
+    {
+        assertEquals( JsonHelper.readJson( buffered.format( representation ) ),
+                JsonHelper.readJson( stream( representation ) ) );
+    }
+
+    private String stream( Representation representation ) throws Exception
+    {
+        Response response = streaming.ok( representation );
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ( (StreamingOutput) response.getEntity() ).write( output );
+        return output.toString( "UTF-8" );
+    }
+}